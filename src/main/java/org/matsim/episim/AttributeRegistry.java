@@ -0,0 +1,81 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Numeric person attributes that are extracted into columns of the {@link PersonStateStore} when persons are created.
+ * Models and scenario modules declare the attributes they need and read them by column index with
+ * {@link EpisimPerson#getAttribute(int)}, instead of looking up the {@link org.matsim.utils.objectattributes.attributable.Attributes} by name.
+ * <p>
+ * Attributes need to be declared before the first person is created, usually in the constructor of a model.
+ */
+public final class AttributeRegistry {
+
+	private final List<String> names = new ArrayList<>();
+	private final List<Float> defaults = new ArrayList<>();
+
+	/**
+	 * Set when persons have been created and no further columns can be added.
+	 */
+	private boolean locked;
+
+	/**
+	 * Declares a float attribute and returns its column. Declaring an attribute multiple times returns the same column.
+	 *
+	 * @param defaultValue value used for persons without this attribute
+	 */
+	public synchronized int declare(String name, float defaultValue) {
+
+		int column = names.indexOf(name);
+		if (column >= 0)
+			return column;
+
+		if (locked)
+			throw new IllegalStateException("Attribute " + name + " must be declared before persons are created.");
+
+		names.add(name);
+		defaults.add(defaultValue);
+		return names.size() - 1;
+	}
+
+	/**
+	 * Number of declared attributes.
+	 */
+	public synchronized int size() {
+		return names.size();
+	}
+
+	synchronized String getName(int column) {
+		return names.get(column);
+	}
+
+	synchronized float getDefault(int column) {
+		return defaults.get(column);
+	}
+
+	synchronized void lock() {
+		locked = true;
+	}
+
+}
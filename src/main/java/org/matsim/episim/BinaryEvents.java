@@ -0,0 +1,339 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static org.matsim.episim.EpisimUtils.readChars;
+import static org.matsim.episim.EpisimUtils.writeChars;
+
+/**
+ * Compact, pre-resolved representation of the events of one input file, as they are needed by the {@link ReplayHandler}.
+ * Facility ids are already resolved and events are already filtered, so no further processing is needed when reading.
+ * <p>
+ * The file contains a small header with id and activity type tables, followed by one column per attribute:
+ * person index (int), container index (int), event kind (byte), time (double) and activity type index (short).
+ * Columns are memory-mapped and events are only materialized when accessed.
+ *
+ * @see org.matsim.scenarioCreation.ConvertEvents
+ */
+public final class BinaryEvents extends AbstractList<Event> implements RandomAccess {
+
+	/**
+	 * Files with this extension are read as binary events.
+	 */
+	public static final String EXTENSION = ".bin";
+
+	static final byte ACTIVITY_END = 0;
+	static final byte ACTIVITY_START = 1;
+	static final byte ENTERS_VEHICLE = 2;
+	static final byte LEAVES_VEHICLE = 3;
+
+	private static final int MAGIC = 0x45504953;
+	private static final int VERSION = 2;
+
+	/**
+	 * Magic, version, number of events and length of id tables.
+	 */
+	private static final int HEADER = 16;
+
+	private final Id<Person>[] persons;
+	private final Id<?>[] containers;
+	private final String[] actTypes;
+
+	private final int size;
+	private final IntBuffer person;
+	private final IntBuffer container;
+	private final ByteBuffer kind;
+	private final DoubleBuffer time;
+	private final ShortBuffer actType;
+
+	private BinaryEvents(Id<Person>[] persons, Id<?>[] containers, String[] actTypes, int size, IntBuffer person, IntBuffer container,
+						 ByteBuffer kind, DoubleBuffer time, ShortBuffer actType) {
+		this.persons = persons;
+		this.containers = containers;
+		this.actTypes = actTypes;
+		this.size = size;
+		this.person = person;
+		this.container = container;
+		this.kind = kind;
+		this.time = time;
+		this.actType = actType;
+	}
+
+	/**
+	 * Memory-maps a binary event file.
+	 */
+	@SuppressWarnings("unchecked")
+	public static BinaryEvents read(Path path) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+			if (header.getInt() != MAGIC)
+				throw new IllegalArgumentException("File " + path + " does not contain binary events.");
+
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IllegalArgumentException("Unsupported binary events version " + version + " in " + path);
+
+			int n = header.getInt();
+			int tableLength = header.getInt();
+
+			byte[] table = new byte[tableLength];
+			channel.map(FileChannel.MapMode.READ_ONLY, HEADER, tableLength).get(table);
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(table));
+
+			Id<Person>[] persons = new Id[in.readInt()];
+			for (int i = 0; i < persons.length; i++)
+				persons[i] = Id.createPersonId(readChars(in));
+
+			Id<?>[] containers = new Id[in.readInt()];
+			for (int i = 0; i < containers.length; i++) {
+				boolean vehicle = in.readBoolean();
+				String name = readChars(in);
+				containers[i] = vehicle ? Id.create(name, Vehicle.class) : Id.create(name, ActivityFacility.class);
+			}
+
+			String[] actTypes = new String[in.readInt()];
+			for (int i = 0; i < actTypes.length; i++)
+				actTypes[i] = readChars(in).intern();
+
+			long offset = HEADER + tableLength;
+
+			IntBuffer person = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * n).asIntBuffer();
+			offset += 4L * n;
+			IntBuffer container = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * n).asIntBuffer();
+			offset += 4L * n;
+			ByteBuffer kind = channel.map(FileChannel.MapMode.READ_ONLY, offset, n);
+			offset += n;
+			DoubleBuffer time = channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L * n).asDoubleBuffer();
+			offset += 8L * n;
+			ShortBuffer actType = channel.map(FileChannel.MapMode.READ_ONLY, offset, 2L * n).asShortBuffer();
+
+			return new BinaryEvents(persons, containers, actTypes, n, person, container, kind, time, actType);
+		}
+	}
+
+	/**
+	 * Writes already filtered and pre-processed events into binary format.
+	 *
+	 * @param events list of {@link ActivityStartEvent}, {@link ActivityEndEvent}, {@link PersonEntersVehicleEvent} and {@link PersonLeavesVehicleEvent}.
+	 */
+	public static void write(List<Event> events, Path path) throws IOException {
+
+		Object2IntMap<Id<Person>> persons = new Object2IntOpenHashMap<>();
+		Object2IntMap<Id<?>> containers = new Object2IntOpenHashMap<>();
+		Object2IntMap<String> actTypes = new Object2IntOpenHashMap<>();
+
+		List<Id<Person>> personList = new ArrayList<>();
+		List<Id<?>> containerList = new ArrayList<>();
+		List<String> actTypeList = new ArrayList<>();
+		BitSet vehicles = new BitSet();
+
+		int n = events.size();
+		int[] person = new int[n];
+		int[] container = new int[n];
+		byte[] kind = new byte[n];
+		short[] actType = new short[n];
+
+		for (int i = 0; i < n; i++) {
+			Event e = events.get(i);
+
+			Id<Person> personId;
+			Id<?> containerId;
+			String type = null;
+
+			if (e instanceof ActivityEndEvent) {
+				kind[i] = ACTIVITY_END;
+				personId = ((ActivityEndEvent) e).getPersonId();
+				containerId = ((ActivityEndEvent) e).getFacilityId();
+				type = ((ActivityEndEvent) e).getActType();
+			} else if (e instanceof ActivityStartEvent) {
+				kind[i] = ACTIVITY_START;
+				personId = ((ActivityStartEvent) e).getPersonId();
+				containerId = ((ActivityStartEvent) e).getFacilityId();
+				type = ((ActivityStartEvent) e).getActType();
+			} else if (e instanceof PersonEntersVehicleEvent) {
+				kind[i] = ENTERS_VEHICLE;
+				personId = ((PersonEntersVehicleEvent) e).getPersonId();
+				containerId = ((PersonEntersVehicleEvent) e).getVehicleId();
+			} else if (e instanceof PersonLeavesVehicleEvent) {
+				kind[i] = LEAVES_VEHICLE;
+				personId = ((PersonLeavesVehicleEvent) e).getPersonId();
+				containerId = ((PersonLeavesVehicleEvent) e).getVehicleId();
+			} else
+				throw new IllegalArgumentException("Unsupported event type: " + e.getEventType());
+
+			if (containerId == null)
+				throw new IllegalArgumentException("Event without facility or vehicle id: " + e);
+
+			person[i] = persons.computeIntIfAbsent(personId, k -> {
+				personList.add(personId);
+				return personList.size() - 1;
+			});
+
+			boolean vehicle = kind[i] == ENTERS_VEHICLE || kind[i] == LEAVES_VEHICLE;
+			container[i] = containers.computeIntIfAbsent(containerId, k -> {
+				containerList.add(containerId);
+				if (vehicle)
+					vehicles.set(containerList.size() - 1);
+				return containerList.size() - 1;
+			});
+
+			if (type != null) {
+				String t = type;
+				int idx = actTypes.computeIntIfAbsent(t, k -> {
+					actTypeList.add(t);
+					return actTypeList.size() - 1;
+				});
+
+				if (idx > Short.MAX_VALUE)
+					throw new IllegalArgumentException("Too many distinct activity types.");
+
+				actType[i] = (short) idx;
+			} else
+				actType[i] = -1;
+		}
+
+		ByteArrayOutputStream table = new ByteArrayOutputStream();
+		DataOutputStream tableOut = new DataOutputStream(table);
+
+		tableOut.writeInt(personList.size());
+		for (Id<Person> id : personList)
+			writeChars(tableOut, id.toString());
+
+		tableOut.writeInt(containerList.size());
+		for (int i = 0; i < containerList.size(); i++) {
+			tableOut.writeBoolean(vehicles.get(i));
+			writeChars(tableOut, containerList.get(i).toString());
+		}
+
+		tableOut.writeInt(actTypeList.size());
+		for (String t : actTypeList)
+			writeChars(tableOut, t);
+
+		tableOut.flush();
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1024 * 1024))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(table.size());
+			table.writeTo(out);
+
+			for (int i = 0; i < n; i++)
+				out.writeInt(person[i]);
+			for (int i = 0; i < n; i++)
+				out.writeInt(container[i]);
+
+			out.write(kind);
+
+			for (int i = 0; i < n; i++)
+				out.writeDouble(events.get(i).getTime());
+			for (int i = 0; i < n; i++)
+				out.writeShort(actType[i]);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Event get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		double t = time.get(index);
+		Id<Person> personId = persons[person.get(index)];
+		Id<?> containerId = containers[container.get(index)];
+
+		switch (kind.get(index)) {
+			case ACTIVITY_END:
+				return new ActivityEndEvent(t, personId, null, (Id<ActivityFacility>) containerId, actTypes[actType.get(index)]);
+			case ACTIVITY_START:
+				return new ActivityStartEvent(t, personId, null, (Id<ActivityFacility>) containerId, actTypes[actType.get(index)], null);
+			case ENTERS_VEHICLE:
+				return new PersonEntersVehicleEvent(t, personId, (Id<Vehicle>) containerId);
+			case LEAVES_VEHICLE:
+				return new PersonLeavesVehicleEvent(t, personId, (Id<Vehicle>) containerId);
+			default:
+				throw new IllegalStateException("Unknown event kind: " + kind.get(index));
+		}
+	}
+
+	/**
+	 * Replays all events directly from the columns, without creating event objects.
+	 * Input events can therefore not be written, which is already prevented by the {@link ReplayHandler}.
+	 */
+	@SuppressWarnings("unchecked")
+	void replay(InfectionEventHandler handler) {
+		for (int i = 0; i < size; i++) {
+
+			double t = time.get(i);
+			Id<Person> personId = persons[person.get(i)];
+			Id<?> containerId = containers[container.get(i)];
+
+			switch (kind.get(i)) {
+				case ACTIVITY_END:
+					handler.replayActivityEnd(personId, (Id<ActivityFacility>) containerId, t, actTypes[actType.get(i)]);
+					break;
+				case ACTIVITY_START:
+					handler.replayActivityStart(personId, (Id<ActivityFacility>) containerId, t, actTypes[actType.get(i)]);
+					break;
+				case ENTERS_VEHICLE:
+					handler.replayEntersVehicle(personId, (Id<Vehicle>) containerId, t);
+					break;
+				case LEAVES_VEHICLE:
+					handler.replayLeavesVehicle(personId, (Id<Vehicle>) containerId, t);
+					break;
+				default:
+					throw new IllegalStateException("Unknown event kind: " + kind.get(i));
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
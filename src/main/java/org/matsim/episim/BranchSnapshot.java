@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.google.common.collect.ImmutableMap;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.ShutdownPolicy;
+
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * In-memory snapshot of a simulation at the day where multiple runs branch off.
+ * The state is stored serialized and is never modified, so it can be shared by runs that are continued in parallel.
+ *
+ * @see EpisimRunner#branch(int)
+ * @see EpisimRunner#run(int, BranchSnapshot)
+ */
+public final class BranchSnapshot {
+
+	/**
+	 * Parameters that do not influence the simulated days, or are only compared until the branch day.
+	 */
+	private static final Set<String> IGNORED = Set.of(
+			"writeEvents", "eventsFormat", "snapshotInterval", "startFromSnapshot", "snapshotPrefix", "snapshotSeed", "snapshotFormat",
+			"snapshotDeltas", "threads", "performanceMetrics", "policyClass", "policyConfig",
+			"infectionsPerDay", "leisureOutdoorFraction", "inputDays", "curfewCompliance",
+			"tracingDelay", "tracingProbability", "tracingCapacity",
+			"testingCapacity", "testingRatePerActivity",
+			"vaccinationCapacity", "reVaccinationCapacity"
+	);
+
+	private final int iteration;
+	private final Path output;
+	@Nullable
+	private final String runId;
+
+	final byte[] state;
+	final byte[] reporting;
+	@Nullable
+	final byte[] progression;
+
+	/**
+	 * Reports of the base run for each day before the branch, which are needed to evaluate the policy of other runs.
+	 */
+	private final List<EpisimReporting.InfectionReport> reports;
+	private final List<String> history;
+
+	BranchSnapshot(int iteration, Path output, @Nullable String runId, byte[] state, byte[] reporting, @Nullable byte[] progression,
+				   Config config, List<EpisimReporting.InfectionReport> reports) {
+		this.iteration = iteration;
+		this.output = output;
+		this.runId = runId;
+		this.state = state;
+		this.reporting = reporting;
+		this.progression = progression;
+		this.reports = List.copyOf(reports);
+		this.history = history(config, iteration, this.reports);
+	}
+
+	/**
+	 * Iteration at which runs continue from this snapshot.
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * Output directory of the base run, which is copied for each branch.
+	 */
+	public Path getOutput() {
+		return output;
+	}
+
+	/**
+	 * Run id of the base run, which is removed from the file names of the copied output.
+	 */
+	@Nullable
+	public String getRunId() {
+		return runId;
+	}
+
+	/**
+	 * Checks that a run with {@code config} would have simulated the same days as the base run until the branch day.
+	 * The configuration is compared, except for dated entries from the branch day on, and the policy is evaluated with the reports of the base run.
+	 *
+	 * @throws IllegalStateException if the run can not be continued from this snapshot
+	 */
+	public void checkHistory(Config config) {
+
+		List<String> other = history(config, iteration, reports);
+
+		for (int i = 0; i < Math.max(history.size(), other.size()); i++) {
+			String expected = i < history.size() ? history.get(i) : null;
+			String actual = i < other.size() ? other.get(i) : null;
+
+			if (!Objects.equals(expected, actual))
+				throw new IllegalStateException(String.format("Configuration differs from the base run before branch day %d: expected '%s' but was '%s'",
+						iteration, expected, actual));
+		}
+	}
+
+	/**
+	 * Everything in the configuration that influences the days before {@code iteration}.
+	 */
+	private static List<String> history(Config config, int iteration, List<EpisimReporting.InfectionReport> reports) {
+
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		TracingConfigGroup tracingConfig = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class);
+		TestingConfigGroup testingConfig = ConfigUtils.addOrGetModule(config, TestingConfigGroup.class);
+		VaccinationConfigGroup vaccinationConfig = ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class);
+		VirusStrainConfigGroup strainConfig = ConfigUtils.addOrGetModule(config, VirusStrainConfigGroup.class);
+
+		List<String> history = new ArrayList<>();
+		history.add("randomSeed=" + config.global().getRandomSeed());
+
+		for (ConfigGroup group : List.of(episimConfig, tracingConfig, testingConfig, vaccinationConfig, strainConfig))
+			addParams(history, group.getName(), group);
+
+		LocalDate branch = episimConfig.getStartDate().plusDays(iteration - 1);
+
+		episimConfig.getInfections_pers_per_day().forEach((strain, m) -> history.add("infectionsPerDay." + strain + "=" + before(m, branch)));
+		history.add("inputDays=" + before(episimConfig.getInputDays(), branch));
+		history.add("curfewCompliance=" + before(episimConfig.getCurfewCompliance(), branch));
+
+		// values are interpolated, so the next entry is needed as well
+		TreeMap<LocalDate, Double> outdoor = new TreeMap<>(episimConfig.getLeisureOutdoorFraction());
+		history.add("leisureOutdoorFraction=" + outdoor.headMap(branch) + " " + outdoor.ceilingEntry(branch));
+
+		history.add("tracingDelay=" + before(tracingConfig.getTracingDelay(), branch));
+		history.add("tracingProbability=" + before(tracingConfig.getTracingProbability(), branch));
+		history.add("tracingCapacity=" + before(tracingConfig.getTracingCapacity(), branch));
+		history.add("testingCapacity=" + before(testingConfig.getTestingCapacity(), branch));
+		history.add("vaccinationCapacity=" + before(vaccinationConfig.getVaccinationCapacity(), branch));
+		history.add("reVaccinationCapacity=" + before(vaccinationConfig.getReVaccinationCapacity(), branch));
+
+		for (LocalDate date = episimConfig.getStartDate(); date.isBefore(branch); date = date.plusDays(1))
+			history.add("testingRatePerActivity " + date + "=" + new TreeMap<>(testingConfig.getDailyTestingRateForActivities(date)));
+
+		// restrictions of each day, as the handler computes them
+		Map<String, Restriction> restrictions = episimConfig.createInitialRestrictions();
+		ShutdownPolicy policy = episimConfig.createPolicyInstance();
+		policy.init(episimConfig.getStartDate(), ImmutableMap.copyOf(restrictions));
+
+		for (EpisimReporting.InfectionReport report : reports) {
+			policy.updateRestrictions(report, ImmutableMap.copyOf(restrictions));
+
+			Map<String, Object> day = new TreeMap<>();
+			restrictions.forEach((k, v) -> day.put(k, new TreeMap<>(v.asMap())));
+			history.add("restrictions " + report.date + "=" + day);
+		}
+
+		return history;
+	}
+
+	private static void addParams(List<String> history, String prefix, ConfigGroup group) {
+
+		new TreeMap<>(group.getParams()).forEach((k, v) -> {
+			if (!IGNORED.contains(k))
+				history.add(prefix + "." + k + "=" + v);
+		});
+
+		new TreeMap<>(group.getParameterSets()).forEach((type, sets) -> {
+			int i = 0;
+			for (ConfigGroup set : sets)
+				addParams(history, prefix + "." + type + "[" + i++ + "]", set);
+		});
+	}
+
+	private static String before(Map<LocalDate, ?> map, LocalDate date) {
+		return new TreeMap<>(map).headMap(date).toString();
+	}
+}
@@ -0,0 +1,346 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.Id;
+import org.matsim.facilities.ActivityFacility;
+
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * Co-presence of persons in containers for each weekday, computed once from the {@link CompiledEvents}.
+ * Because the same events are replayed every week, it is known in advance which persons meet each other, in which container and for
+ * how long. Every time a person leaves a container, the other persons in this container are stored together with their entering time
+ * and position in the trajectory. Contacts can then be evaluated directly from these groups instead of replaying the events.
+ * <p>
+ * The state at the start of a day is derived by replaying the previous weekday, i.e. a weekly cycle is assumed.
+ * Persons that are not at their first facility at the start of a day leave their container at time 0, which is the same
+ * as {@link InfectionEventHandler} does at the start of each day.
+ * All times are relative to the start of the day and already capped at 24h like {@link EpisimUtils#getCorrectedTime(long, double, long)}.
+ */
+final class CoPresenceNetwork {
+
+	final EpisimPerson[] persons;
+	final EpisimContainer<?>[] containers;
+
+	private final Map<DayOfWeek, Day> days = new EnumMap<>(DayOfWeek.class);
+
+	CoPresenceNetwork(CompiledEvents compiled, Collection<EpisimPerson> persons, Map<Id<ActivityFacility>, InfectionEventHandler.EpisimFacility> facilities,
+					  Collection<InfectionEventHandler.EpisimVehicle> vehicles) {
+
+		this.persons = persons.toArray(new EpisimPerson[0]);
+
+		List<EpisimContainer<?>> all = new ArrayList<>(facilities.values());
+		all.addAll(vehicles);
+		this.containers = all.toArray(new EpisimContainer[0]);
+
+		Object2IntMap<EpisimPerson> personIndex = new Object2IntOpenHashMap<>(this.persons.length);
+		for (int i = 0; i < this.persons.length; i++)
+			personIndex.put(this.persons[i], i);
+
+		Object2IntMap<EpisimContainer<?>> containerIndex = new Object2IntOpenHashMap<>(containers.length);
+		containerIndex.defaultReturnValue(-1);
+		for (int i = 0; i < containers.length; i++)
+			containerIndex.put(containers[i], i);
+
+		// translate the tables of the compiled events
+		int[] eventPersons = new int[compiled.persons.length];
+		for (int i = 0; i < eventPersons.length; i++)
+			eventPersons[i] = personIndex.getInt(compiled.persons[i]);
+
+		int[] eventFacilities = new int[compiled.facilities.length];
+		for (int i = 0; i < eventFacilities.length; i++)
+			eventFacilities[i] = containerIndex.getInt(compiled.facilities[i]);
+
+		int[] eventVehicles = new int[compiled.vehicles.length];
+		for (int i = 0; i < eventVehicles.length; i++)
+			eventVehicles[i] = containerIndex.getInt(compiled.vehicles[i]);
+
+		int[][] first = new int[7][this.persons.length];
+		for (DayOfWeek day : DayOfWeek.values()) {
+			for (int i = 0; i < this.persons.length; i++) {
+				Id<ActivityFacility> id = this.persons[i].getFirstFacilityId(day);
+				first[day.ordinal()][i] = id == null ? -1 : containerIndex.getInt(facilities.get(id));
+			}
+		}
+
+		// days with the same events and the same previous day have the same network, lists compare the days by identity
+		Map<List<CompiledEvents.Day>, Day> same = new HashMap<>();
+
+		for (DayOfWeek day : DayOfWeek.values()) {
+			CompiledEvents.Day prev = compiled.getDay(day.minus(1));
+			CompiledEvents.Day current = compiled.getDay(day);
+
+			days.put(day, same.computeIfAbsent(List.of(prev, current),
+					k -> new Builder(compiled, eventPersons, eventFacilities, eventVehicles).build(day, prev, current, first)));
+		}
+	}
+
+	/**
+	 * Network of one day.
+	 */
+	Day getDay(DayOfWeek day) {
+		return days.get(day);
+	}
+
+	/**
+	 * All groups of one day, ordered by the time the person left. The i-th group consists of {@code person[i]} leaving
+	 * {@code container[i]} and all persons stored from {@code offset[i]} to {@code offset[i + 1]}.
+	 */
+	static final class Day {
+
+		final int size;
+		final int[] person;
+		final int[] container;
+		final double[] time;
+		final double[] enterTime;
+		final int[] position;
+		final String[] actType;
+
+		final int[] offset;
+		final int[] contact;
+		final double[] contactEnterTime;
+		final int[] contactPosition;
+
+		/**
+		 * Groups of each person as leaving person or contact, stored from {@code personOffset[p]} to {@code personOffset[p + 1]}.
+		 */
+		final int[] personOffset;
+		final int[] personGroups;
+
+		private Day(int size, int[] person, int[] container, double[] time, double[] enterTime, int[] position, String[] actType,
+					int[] offset, int[] contact, double[] contactEnterTime, int[] contactPosition, int numPersons) {
+			this.size = size;
+			this.person = person;
+			this.container = container;
+			this.time = time;
+			this.enterTime = enterTime;
+			this.position = position;
+			this.actType = actType;
+			this.offset = offset;
+			this.contact = contact;
+			this.contactEnterTime = contactEnterTime;
+			this.contactPosition = contactPosition;
+
+			this.personOffset = new int[numPersons + 1];
+			for (int g = 0; g < size; g++) {
+				personOffset[person[g] + 1]++;
+				for (int i = offset[g]; i < offset[g + 1]; i++)
+					personOffset[contact[i] + 1]++;
+			}
+
+			for (int p = 0; p < numPersons; p++)
+				personOffset[p + 1] += personOffset[p];
+
+			this.personGroups = new int[personOffset[numPersons]];
+			int[] fill = Arrays.copyOf(personOffset, numPersons);
+			for (int g = 0; g < size; g++) {
+				personGroups[fill[person[g]]++] = g;
+				for (int i = offset[g]; i < offset[g + 1]; i++)
+					personGroups[fill[contact[i]]++] = g;
+			}
+		}
+
+		/**
+		 * Total number of stored contacts.
+		 */
+		int numContacts() {
+			return offset[size];
+		}
+	}
+
+	/**
+	 * Replays the previous and the current day once to record all groups.
+	 */
+	private final class Builder {
+
+		private final CompiledEvents compiled;
+		private final int[] eventPersons;
+		private final int[] eventFacilities;
+		private final int[] eventVehicles;
+
+		/**
+		 * Current container, entering time and trajectory position of each person. The position while being in a container
+		 * is the one at the time of entering.
+		 */
+		private final int[] location;
+		private final double[] enter;
+		private final int[] position;
+		private final int[] enterPosition;
+
+		/**
+		 * Persons in each container in order of entering.
+		 */
+		private final IntArrayList[] occupants;
+
+		private final IntArrayList person = new IntArrayList();
+		private final IntArrayList container = new IntArrayList();
+		private final DoubleArrayList time = new DoubleArrayList();
+		private final DoubleArrayList enterTime = new DoubleArrayList();
+		private final IntArrayList leavePosition = new IntArrayList();
+		private final List<String> actType = new ArrayList<>();
+		private final IntArrayList offset = new IntArrayList();
+		private final IntArrayList contact = new IntArrayList();
+		private final DoubleArrayList contactEnterTime = new DoubleArrayList();
+		private final IntArrayList contactPosition = new IntArrayList();
+
+		private Builder(CompiledEvents compiled, int[] eventPersons, int[] eventFacilities, int[] eventVehicles) {
+			this.compiled = compiled;
+			this.eventPersons = eventPersons;
+			this.eventFacilities = eventFacilities;
+			this.eventVehicles = eventVehicles;
+
+			this.location = new int[persons.length];
+			this.enter = new double[persons.length];
+			this.position = new int[persons.length];
+			this.enterPosition = new int[persons.length];
+			this.occupants = new IntArrayList[containers.length];
+		}
+
+		private Day build(DayOfWeek day, CompiledEvents.Day prev, CompiledEvents.Day current, int[][] first) {
+
+			DayOfWeek prevDay = day.minus(1);
+			Arrays.fill(location, -1);
+
+			for (int p = 0; p < persons.length; p++) {
+				position[p] = persons[p].getStartOfDay(prevDay);
+				enter(p, first[prevDay.ordinal()][p], -86400);
+			}
+
+			replay(prev, -86400, false);
+
+			// persons move to their first facility at the start of the day
+			int[] firstOfDay = first[day.ordinal()];
+			for (int p = 0; p < persons.length; p++) {
+				if (location[p] != firstOfDay[p]) {
+					if (location[p] != -1) {
+						String act = containers[location[p]] instanceof InfectionEventHandler.EpisimVehicle ? "pt" :
+								persons[p].getTrajectory().get(enterPosition[p]).actType;
+						leave(p, 0, act, true);
+					}
+
+					enter(p, firstOfDay[p], 0);
+				}
+			}
+
+			// persons that stayed over night continue with the position of the new day
+			for (int p = 0; p < persons.length; p++) {
+				position[p] = persons[p].getStartOfDay(day);
+				enterPosition[p] = position[p];
+			}
+
+			replay(current, 0, true);
+
+			offset.add(contact.size());
+
+			return new Day(person.size(), person.toIntArray(), container.toIntArray(), time.toDoubleArray(), enterTime.toDoubleArray(),
+					leavePosition.toIntArray(), actType.toArray(new String[0]), offset.toIntArray(), contact.toIntArray(),
+					contactEnterTime.toDoubleArray(), contactPosition.toIntArray(), persons.length);
+		}
+
+		/**
+		 * Same logic as the event handling in {@link InfectionEventHandler}.
+		 */
+		private void replay(CompiledEvents.Day events, double dayOffset, boolean record) {
+			for (int i = 0; i < events.size; i++) {
+
+				int p = eventPersons[events.person[i]];
+				double t = Math.min(events.time[i], 86400) + dayOffset;
+				int size = persons[p].getTrajectory().size();
+
+				switch (events.kind[i]) {
+					case CompiledEvents.ACTIVITY_END:
+						leave(p, t, compiled.actTypes[events.actType[i]], record);
+						if (position[p] + 1 != size)
+							position[p]++;
+						break;
+					case CompiledEvents.ACTIVITY_START:
+						if (position[p] + 1 != size)
+							position[p]++;
+						enter(p, eventFacilities[events.container[i]], t);
+						break;
+					case CompiledEvents.ENTERS_VEHICLE:
+						enter(p, eventVehicles[events.container[i]], t);
+						break;
+					case CompiledEvents.LEAVES_VEHICLE:
+						leave(p, t, "pt", record);
+						break;
+					default:
+						throw new IllegalStateException("Unknown event kind: " + events.kind[i]);
+				}
+			}
+		}
+
+		private void enter(int p, int c, double t) {
+			if (c == -1)
+				return;
+
+			// inconsistent trajectories are ignored
+			if (location[p] != -1)
+				leave(p, t, null, false);
+
+			if (occupants[c] == null)
+				occupants[c] = new IntArrayList(4);
+
+			occupants[c].add(p);
+			location[p] = c;
+			enter[p] = t;
+			enterPosition[p] = position[p];
+		}
+
+		private void leave(int p, double t, String act, boolean record) {
+			int c = location[p];
+			if (c == -1)
+				return;
+
+			IntArrayList list = occupants[c];
+
+			if (record) {
+				offset.add(contact.size());
+				person.add(p);
+				container.add(c);
+				time.add(t);
+				enterTime.add(enter[p]);
+				leavePosition.add(enterPosition[p]);
+				actType.add(act);
+
+				for (int i = 0; i < list.size(); i++) {
+					int other = list.getInt(i);
+					if (other == p)
+						continue;
+
+					contact.add(other);
+					contactEnterTime.add(enter[other]);
+					contactPosition.add(enterPosition[other]);
+				}
+			}
+
+			list.rem(p);
+			location[p] = -1;
+		}
+	}
+
+}
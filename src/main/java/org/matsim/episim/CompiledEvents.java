@@ -0,0 +1,340 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * Events of all weekdays compiled into parallel primitive arrays. Persons, containers and activity types are referenced by
+ * their index into the lookup tables, so that replaying a day needs neither map lookups nor type checks on the events.
+ */
+final class CompiledEvents {
+
+	static final byte ACTIVITY_END = 0;
+	static final byte ACTIVITY_START = 1;
+	static final byte ENTERS_VEHICLE = 2;
+	static final byte LEAVES_VEHICLE = 3;
+
+	final EpisimPerson[] persons;
+	final InfectionEventHandler.EpisimFacility[] facilities;
+	final InfectionEventHandler.EpisimVehicle[] vehicles;
+	final String[] actTypes;
+
+	private final Map<DayOfWeek, Day> days;
+
+	/**
+	 * Number of shards the containers have been partitioned into, 0 if not partitioned.
+	 */
+	private int numShards;
+
+	private CompiledEvents(EpisimPerson[] persons, InfectionEventHandler.EpisimFacility[] facilities, InfectionEventHandler.EpisimVehicle[] vehicles,
+						   String[] actTypes, Map<DayOfWeek, Day> days) {
+		this.persons = persons;
+		this.facilities = facilities;
+		this.vehicles = vehicles;
+		this.actTypes = actTypes;
+		this.days = days;
+	}
+
+	/**
+	 * Compiles the events. All persons and containers referenced by the events need to be present already.
+	 */
+	static CompiledEvents compile(Map<DayOfWeek, List<Event>> events, Map<Id<Person>, EpisimPerson> personMap,
+								  Map<Id<ActivityFacility>, InfectionEventHandler.EpisimFacility> facilityMap,
+								  Map<Id<Vehicle>, InfectionEventHandler.EpisimVehicle> vehicleMap) {
+
+		Table<EpisimPerson> persons = new Table<>();
+		Table<InfectionEventHandler.EpisimFacility> facilities = new Table<>();
+		Table<InfectionEventHandler.EpisimVehicle> vehicles = new Table<>();
+		Table<String> actTypes = new Table<>();
+
+		Map<DayOfWeek, Day> days = new EnumMap<>(DayOfWeek.class);
+		Map<List<Event>, Day> sameDay = new IdentityHashMap<>(7);
+
+		for (Map.Entry<DayOfWeek, List<Event>> entry : events.entrySet()) {
+
+			List<Event> eventsForDay = entry.getValue();
+			Day day = sameDay.get(eventsForDay);
+
+			if (day == null) {
+				day = new Day(entry.getKey(), eventsForDay.size());
+
+				for (int i = 0; i < day.size; i++) {
+					Event event = eventsForDay.get(i);
+
+					day.time[i] = event.getTime();
+
+					if (event instanceof ActivityEndEvent) {
+						ActivityEndEvent e = (ActivityEndEvent) event;
+						day.kind[i] = ACTIVITY_END;
+						day.person[i] = persons.index(lookup(personMap, e.getPersonId()));
+						day.container[i] = facilities.index(lookup(facilityMap, e.getFacilityId()));
+						day.actType[i] = actTypes.index(e.getActType());
+					} else if (event instanceof ActivityStartEvent) {
+						ActivityStartEvent e = (ActivityStartEvent) event;
+						day.kind[i] = ACTIVITY_START;
+						day.person[i] = persons.index(lookup(personMap, e.getPersonId()));
+						day.container[i] = facilities.index(lookup(facilityMap, e.getFacilityId()));
+						day.actType[i] = actTypes.index(e.getActType());
+					} else if (event instanceof PersonEntersVehicleEvent) {
+						PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) event;
+						day.kind[i] = ENTERS_VEHICLE;
+						day.person[i] = persons.index(lookup(personMap, e.getPersonId()));
+						day.container[i] = vehicles.index(lookup(vehicleMap, e.getVehicleId()));
+						day.actType[i] = -1;
+					} else if (event instanceof PersonLeavesVehicleEvent) {
+						PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) event;
+						day.kind[i] = LEAVES_VEHICLE;
+						day.person[i] = persons.index(lookup(personMap, e.getPersonId()));
+						day.container[i] = vehicles.index(lookup(vehicleMap, e.getVehicleId()));
+						day.actType[i] = -1;
+					} else
+						throw new IllegalStateException("Unsupported event type: " + event.getEventType());
+				}
+
+				sameDay.put(eventsForDay, day);
+			}
+
+			days.put(entry.getKey(), day);
+		}
+
+		return new CompiledEvents(
+				persons.list.toArray(new EpisimPerson[0]),
+				facilities.list.toArray(new InfectionEventHandler.EpisimFacility[0]),
+				vehicles.list.toArray(new InfectionEventHandler.EpisimVehicle[0]),
+				actTypes.list.toArray(new String[0]),
+				days
+		);
+	}
+
+	/**
+	 * Creates compiled events for other persons and containers, which share the already compiled days.
+	 * The tables must be in the same order as the ones of the original events.
+	 */
+	static CompiledEvents share(EpisimPerson[] persons, InfectionEventHandler.EpisimFacility[] facilities, InfectionEventHandler.EpisimVehicle[] vehicles,
+								String[] actTypes, Map<DayOfWeek, Day> days, int numShards) {
+		CompiledEvents events = new CompiledEvents(persons, facilities, vehicles, actTypes, new EnumMap<>(days));
+		events.numShards = numShards;
+		return events;
+	}
+
+	private static <K, V> V lookup(Map<K, V> map, K key) {
+		V v = map.get(key);
+		if (v == null)
+			throw new IllegalStateException("No entry for " + key + " present while compiling events.");
+
+		return v;
+	}
+
+	/**
+	 * Compiled events of one day.
+	 */
+	Day getDay(DayOfWeek day) {
+		return days.get(day);
+	}
+
+	/**
+	 * Compiled events of all days. Days with the same events are the same instance.
+	 */
+	Map<DayOfWeek, Day> getDays() {
+		return Collections.unmodifiableMap(days);
+	}
+
+	int getNumShards() {
+		return numShards;
+	}
+
+	/**
+	 * Partitions all containers into disjoint shards, which can be replayed independently of each other.
+	 * Containers are assigned greedily by their number of events, so that each shard has roughly the same load.
+	 * The assignment only depends on the events and is therefore deterministic.
+	 * <p>
+	 * Because persons move between shards, the trajectory position of persons after each event is precomputed.
+	 * This requires that all trajectories are already initialized.
+	 */
+	void partition(int shards) {
+
+		if (shards < 1)
+			throw new IllegalArgumentException("Number of shards must be at least 1.");
+
+		// partition only depends on the events and is the same for shared days
+		if (shards == numShards)
+			return;
+
+		// days may be shared with other runs, so the partition is stored in copies
+		if (numShards != 0) {
+			Map<Day, Day> copies = new IdentityHashMap<>();
+			days.replaceAll((k, day) -> copies.computeIfAbsent(day, Day::new));
+		}
+
+		Set<Day> unique = Collections.newSetFromMap(new IdentityHashMap<>());
+		unique.addAll(days.values());
+
+		// facilities and vehicles are using one index space, vehicles are offset by the number of facilities
+		long[] load = new long[facilities.length + vehicles.length];
+		for (Day day : unique) {
+			for (int i = 0; i < day.size; i++)
+				load[containerIndex(day, i)]++;
+		}
+
+		Integer[] order = new Integer[load.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+
+		// heaviest containers first, ties are broken by index
+		Arrays.sort(order, (a, b) -> load[a] != load[b] ? Long.compare(load[b], load[a]) : Integer.compare(a, b));
+
+		int[] shardOf = new int[load.length];
+		long[] shardLoad = new long[shards];
+		for (int c : order) {
+			int min = 0;
+			for (int s = 1; s < shards; s++) {
+				if (shardLoad[s] < shardLoad[min])
+					min = s;
+			}
+
+			shardOf[c] = min;
+			shardLoad[min] += load[c];
+		}
+
+		for (Day day : unique) {
+
+			int[] size = new int[shards];
+			for (int i = 0; i < day.size; i++)
+				size[shardOf[containerIndex(day, i)]]++;
+
+			day.shards = new int[shards][];
+			for (int s = 0; s < shards; s++)
+				day.shards[s] = new int[size[s]];
+
+			Arrays.fill(size, 0);
+
+			int[] position = new int[persons.length];
+			for (int p = 0; p < persons.length; p++)
+				position[p] = persons[p].getStartOfDay(day.dayOfWeek);
+
+			day.position = new int[day.size];
+			day.lastEvent = new int[persons.length];
+			Arrays.fill(day.lastEvent, -1);
+
+			for (int i = 0; i < day.size; i++) {
+				int s = shardOf[containerIndex(day, i)];
+				day.shards[s][size[s]++] = i;
+
+				int p = day.person[i];
+
+				// same logic as the trajectory handling of the event handler
+				if ((day.kind[i] == ACTIVITY_START || day.kind[i] == ACTIVITY_END) && position[p] + 1 != persons[p].getTrajectory().size())
+					position[p]++;
+
+				day.position[i] = position[p];
+				day.lastEvent[p] = i;
+			}
+		}
+
+		numShards = shards;
+	}
+
+	private int containerIndex(Day day, int i) {
+		return day.kind[i] == ACTIVITY_START || day.kind[i] == ACTIVITY_END ? day.container[i] : facilities.length + day.container[i];
+	}
+
+	/**
+	 * Events of one day, attributes of the i-th event are stored at index i of each array.
+	 */
+	static final class Day {
+
+		/**
+		 * One of the days these events belong to.
+		 */
+		final DayOfWeek dayOfWeek;
+		final int size;
+		final byte[] kind;
+		final int[] person;
+		final int[] container;
+		final double[] time;
+		final int[] actType;
+
+		/**
+		 * Indices of the events belonging to each shard. Only present after {@link #partition(int)}.
+		 */
+		int[][] shards;
+
+		/**
+		 * Position in the trajectory of the person after the i-th event.
+		 */
+		int[] position;
+
+		/**
+		 * Index of the last event for each person, or -1 if a person has no events at this day.
+		 */
+		int[] lastEvent;
+
+		/**
+		 * Copy that shares the events, but not the partition.
+		 */
+		private Day(Day other) {
+			this.dayOfWeek = other.dayOfWeek;
+			this.size = other.size;
+			this.kind = other.kind;
+			this.person = other.person;
+			this.container = other.container;
+			this.time = other.time;
+			this.actType = other.actType;
+		}
+
+		private Day(DayOfWeek dayOfWeek, int size) {
+			this.dayOfWeek = dayOfWeek;
+			this.size = size;
+			this.kind = new byte[size];
+			this.person = new int[size];
+			this.container = new int[size];
+			this.time = new double[size];
+			this.actType = new int[size];
+		}
+	}
+
+	/**
+	 * Assigns consecutive indices to objects.
+	 */
+	private static final class Table<T> {
+
+		private final Object2IntMap<T> index = new Object2IntOpenHashMap<>();
+		private final List<T> list = new ArrayList<>();
+
+		private int index(T obj) {
+			return index.computeIntIfAbsent(obj, k -> {
+				list.add(obj);
+				return list.size() - 1;
+			});
+		}
+	}
+
+}
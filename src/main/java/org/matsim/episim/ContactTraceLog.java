@@ -0,0 +1,286 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.ints.*;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Central log of traceable contacts between persons, which are referenced by their slot in the {@link PersonStateStore}.
+ * It behaves like an insertion ordered map from contact person to the time of the last contact for each person.
+ * <p>
+ * Each pair of person and contact has one record in a pool of primitive arrays. The records of a person are chained
+ * with the newest pair first, so that a lookup only visits the records of one person. Removed records are reused.
+ * Records are also listed under the day of their last contact, so that all contacts of a day can be expired at once.
+ */
+final class ContactTraceLog {
+
+	private static final double DAY = 24. * 3600;
+
+	/**
+	 * Records added or moved on each day. Records that have been moved to another day or removed since are skipped.
+	 */
+	private final Int2ObjectSortedMap<IntArrayList> days = new Int2ObjectAVLTreeMap<>();
+
+	/**
+	 * Record of each pair of person and contact.
+	 */
+	private final Long2IntMap records = new Long2IntOpenHashMap();
+
+	/**
+	 * First record of each person, or -1.
+	 */
+	private int[] head = new int[0];
+
+	/**
+	 * Slot of the person owning a record.
+	 */
+	private int[] owner = new int[0];
+
+	/**
+	 * Slot of the contact person, or -1 if the record is free.
+	 */
+	private int[] contact = new int[0];
+	private double[] time = new double[0];
+
+	/**
+	 * Sequence number given to pairs when they are first seen.
+	 */
+	private long[] firstSeen = new long[0];
+
+	/**
+	 * Neighbours in the chain of the owner. Free records are chained by {@link #next}.
+	 */
+	private int[] previous = new int[0];
+	private int[] next = new int[0];
+
+	/**
+	 * First free record, or -1.
+	 */
+	private int free = -1;
+
+	/**
+	 * Number of records that have ever been used.
+	 */
+	private int used;
+
+	private long sequence;
+
+	ContactTraceLog() {
+		records.defaultReturnValue(-1);
+	}
+
+	/**
+	 * Adds a contact of {@code person} to {@code contact} at {@code time}. A contact that is already present keeps its position,
+	 * but is updated to the new time.
+	 */
+	void add(int person, int contact, double time) {
+
+		int day = day(time);
+		long pair = pair(person, contact);
+
+		int r = records.get(pair);
+		if (r >= 0) {
+			int recordDay = day(this.time[r]);
+			this.time[r] = time;
+
+			// repeated contact on the same day only updates the time
+			if (recordDay != day)
+				recordsOf(day).add(r);
+
+			return;
+		}
+
+		r = allocate();
+		ensureHead(person);
+
+		this.owner[r] = person;
+		this.contact[r] = contact;
+		this.time[r] = time;
+		this.firstSeen[r] = sequence++;
+
+		previous[r] = -1;
+		next[r] = head[person];
+		if (head[person] >= 0)
+			previous[head[person]] = r;
+		head[person] = r;
+
+		records.put(pair, r);
+		recordsOf(day).add(r);
+	}
+
+	/**
+	 * Contacts of a person at or after {@code after}, mapped to the time of the latest contact.
+	 * Contacts are ordered by the time they were first seen, as long as they have not been cleared.
+	 */
+	Int2DoubleMap getContacts(int person, double after) {
+
+		IntArrayList found = new IntArrayList();
+		if (person < head.length) {
+			for (int r = head[person]; r >= 0; r = next[r]) {
+				if (time[r] >= after)
+					found.add(r);
+			}
+		}
+
+		// chain is ordered with the newest pair first
+		Int2DoubleMap result = new Int2DoubleLinkedOpenHashMap(found.size());
+		for (int i = found.size() - 1; i >= 0; i--) {
+			int r = found.getInt(i);
+			result.put(contact[r], time[r]);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Removes contacts of a person whose latest contact was before {@code before}.
+	 *
+	 * @return whether any contact was removed
+	 */
+	boolean clear(int person, double before) {
+
+		if (person >= head.length)
+			return false;
+
+		boolean removed = false;
+		for (int r = head[person], n; r >= 0; r = n) {
+			n = next[r];
+			if (time[r] < before) {
+				release(r);
+				removed = true;
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Removes all contacts of a person.
+	 */
+	void remove(int person) {
+		clear(person, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Removes the contacts of all persons whose latest contact was on a day that ended before {@code before}.
+	 * Whole days are dropped, contacts of the day containing {@code before} are kept.
+	 *
+	 * @param changed receives the slot of each person that lost a contact, possibly multiple times
+	 */
+	void expire(double before, IntConsumer changed) {
+
+		Int2ObjectSortedMap<IntArrayList> expired = days.headMap(day(before));
+		if (expired.isEmpty())
+			return;
+
+		for (Int2ObjectMap.Entry<IntArrayList> e : expired.int2ObjectEntrySet()) {
+			IntArrayList list = e.getValue();
+			for (int i = 0; i < list.size(); i++) {
+				int r = list.getInt(i);
+				if (contact[r] >= 0 && day(time[r]) == e.getIntKey()) {
+					changed.accept(owner[r]);
+					release(r);
+				}
+			}
+		}
+
+		expired.clear();
+	}
+
+	/**
+	 * Number of stored pairs of person and contact.
+	 */
+	int size() {
+		return records.size();
+	}
+
+	private IntArrayList recordsOf(int day) {
+		IntArrayList list = days.get(day);
+		if (list == null) {
+			list = new IntArrayList();
+			days.put(day, list);
+		}
+
+		return list;
+	}
+
+	private int allocate() {
+		if (free >= 0) {
+			int r = free;
+			free = next[r];
+			return r;
+		}
+
+		if (used == contact.length) {
+			int capacity = Math.max(16, used + (used >> 1));
+			owner = Arrays.copyOf(owner, capacity);
+			contact = Arrays.copyOf(contact, capacity);
+			time = Arrays.copyOf(time, capacity);
+			firstSeen = Arrays.copyOf(firstSeen, capacity);
+			previous = Arrays.copyOf(previous, capacity);
+			next = Arrays.copyOf(next, capacity);
+		}
+
+		return used++;
+	}
+
+	/**
+	 * Unlinks a record from the chain of its owner and frees it.
+	 */
+	private void release(int r) {
+		int person = owner[r];
+		records.remove(pair(person, contact[r]));
+
+		if (previous[r] >= 0)
+			next[previous[r]] = next[r];
+		else
+			head[person] = next[r];
+
+		if (next[r] >= 0)
+			previous[next[r]] = previous[r];
+
+		contact[r] = -1;
+		next[r] = free;
+		free = r;
+	}
+
+	private void ensureHead(int person) {
+		if (person < head.length)
+			return;
+
+		int n = head.length;
+		head = Arrays.copyOf(head, Math.max(person + 1, n + (n >> 1)));
+		Arrays.fill(head, n, head.length, -1);
+	}
+
+	private static int day(double time) {
+		return (int) Math.floor(time / DAY);
+	}
+
+	private static long pair(int person, int contact) {
+		return ((long) person << 32) | (contact & 0xffffffffL);
+	}
+}
@@ -0,0 +1,200 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.matsim.episim.model.InfectionLocationIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Collects changes to persons that can not be applied while containers are replayed in parallel,
+ * because persons are shared between shards. All changes are applied at the end of the day in a deterministic order.
+ */
+public final class DeferredEffects {
+
+	private final List<Infection> infections = new ArrayList<>();
+
+	private final List<EpisimPerson> contacts = new ArrayList<>();
+	private final DoubleArrayList contactTimes = new DoubleArrayList();
+	private final IntArrayList contactContainers = new IntArrayList();
+
+	private final List<EpisimPerson> spentTimePersons = new ArrayList<>();
+	private final List<String> spentTimeActs = new ArrayList<>();
+	private final DoubleArrayList spentTimes = new DoubleArrayList();
+	private final IntArrayList spentTimeContainers = new IntArrayList();
+
+	/**
+	 * Index of the container whose events are currently replayed.
+	 */
+	private int container;
+
+	DeferredEffects() {
+	}
+
+	/**
+	 * Applies the effects of all shards. Infections are applied ordered by time and only the first infection of a person is considered.
+	 * Effects of the same container are kept in order, effects of different containers are ordered by container index,
+	 * so that the result does not depend on how the containers are partitioned into shards.
+	 */
+	static void apply(List<DeferredEffects> shards, EpisimReporting reporting, InfectionLocationIndex infectionLocations) {
+
+		DeferredEffects all = new DeferredEffects();
+		for (DeferredEffects shard : shards) {
+			all.addAll(shard);
+			shard.clear();
+		}
+
+		for (int i : order(all.spentTimeContainers))
+			all.spentTimePersons.get(i).addSpentTime(all.spentTimeActs.get(i), all.spentTimes.getDouble(i));
+
+		for (int i : order(all.contactContainers)) {
+			EpisimPerson person = all.contacts.get(2 * i);
+			EpisimPerson contactPerson = all.contacts.get(2 * i + 1);
+			double now = all.contactTimes.getDouble(i);
+
+			person.addTraceableContactPerson(contactPerson, now);
+			contactPerson.addTraceableContactPerson(person, now);
+		}
+
+		// sort is stable, so infections in the same container at the same time keep their order
+		all.infections.sort(Comparator.comparingDouble((Infection inf) -> inf.now).thenComparingInt(inf -> inf.containerIndex));
+
+		for (Infection inf : all.infections) {
+
+			// person was already infected earlier on this day
+			if (inf.person.getDiseaseStatus() != EpisimPerson.DiseaseStatus.susceptible)
+				continue;
+
+			reporting.reportInfection(inf.person, inf.infector, inf.now, inf.infectionType, inf.infector.getVirusStrain(), inf.prob,
+					inf.container, inf.groupSize);
+
+			inf.person.setDiseaseStatus(inf.now, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+			inf.person.setVirusStrain(inf.infector.getVirusStrain());
+			inf.person.setInfectionContainer(inf.container);
+			inf.person.setInfectionType(inf.infectionType);
+			infectionLocations.add(inf.person);
+		}
+	}
+
+	/**
+	 * Defer the infection of a person. The current group size of the container is memorized.
+	 */
+	public void addInfection(EpisimPerson person, EpisimPerson infector, double now, String infectionType, double prob, EpisimContainer<?> container) {
+		infections.add(new Infection(person, infector, now, infectionType, prob, container, this.container, container.getPersons().size()));
+	}
+
+	/**
+	 * Defer a traceable contact between two persons.
+	 */
+	public void addContact(EpisimPerson person, EpisimPerson contactPerson, double now) {
+		contacts.add(person);
+		contacts.add(contactPerson);
+		contactTimes.add(now);
+		contactContainers.add(container);
+	}
+
+	/**
+	 * Defer adding spent time to a person.
+	 */
+	void addSpentTime(EpisimPerson person, String actType, double timeSpent) {
+		spentTimePersons.add(person);
+		spentTimeActs.add(actType);
+		spentTimes.add(timeSpent);
+		spentTimeContainers.add(container);
+	}
+
+	/**
+	 * Set the index of the container, to which all following effects belong.
+	 */
+	void setContainer(int container) {
+		this.container = container;
+	}
+
+	private void addAll(DeferredEffects other) {
+		infections.addAll(other.infections);
+		contacts.addAll(other.contacts);
+		contactTimes.addAll(other.contactTimes);
+		contactContainers.addAll(other.contactContainers);
+		spentTimePersons.addAll(other.spentTimePersons);
+		spentTimeActs.addAll(other.spentTimeActs);
+		spentTimes.addAll(other.spentTimes);
+		spentTimeContainers.addAll(other.spentTimeContainers);
+	}
+
+	/**
+	 * Indices of the entries sorted by their container, entries of the same container keep their order.
+	 */
+	private static int[] order(IntArrayList containers) {
+
+		// container and index are both non-negative ints and fit into one key
+		long[] keys = new long[containers.size()];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = ((long) containers.getInt(i) << 31) | i;
+
+		Arrays.sort(keys);
+
+		int[] order = new int[keys.length];
+		for (int i = 0; i < keys.length; i++)
+			order[i] = (int) (keys[i] & Integer.MAX_VALUE);
+
+		return order;
+	}
+
+	private void clear() {
+		infections.clear();
+		contacts.clear();
+		contactTimes.clear();
+		contactContainers.clear();
+		spentTimePersons.clear();
+		spentTimeActs.clear();
+		spentTimes.clear();
+		spentTimeContainers.clear();
+	}
+
+	private static final class Infection {
+
+		private final EpisimPerson person;
+		private final EpisimPerson infector;
+		private final double now;
+		private final String infectionType;
+		private final double prob;
+		private final EpisimContainer<?> container;
+		private final int containerIndex;
+		private final int groupSize;
+
+		private Infection(EpisimPerson person, EpisimPerson infector, double now, String infectionType, double prob,
+						  EpisimContainer<?> container, int containerIndex, int groupSize) {
+			this.person = person;
+			this.infector = infector;
+			this.now = now;
+			this.infectionType = infectionType;
+			this.prob = prob;
+			this.container = container;
+			this.containerIndex = containerIndex;
+			this.groupSize = groupSize;
+		}
+	}
+}
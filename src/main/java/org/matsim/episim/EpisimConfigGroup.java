@@ -55,6 +55,7 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	private static final Joiner.MapJoiner JOINER = Joiner.on(";").withKeyValueSeparator("=");
 
 	private static final String WRITE_EVENTS = "writeEvents";
+	private static final String EVENTS_FORMAT = "eventsFormat";
 	private static final String CALIBRATION_PARAMETER = "calibrationParameter";
 	private static final String HOSPITAL_FACTOR = "hospitalFactor";
 	private static final String INITIAL_INFECTIONS = "initialInfections";
@@ -69,12 +70,17 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	private static final String START_FROM_SNAPSHOT = "startFromSnapshot";
 	private static final String SNAPSHOT_PREFIX = "snapshotPrefix";
 	private static final String SNAPSHOT_SEED = "snapshotSeed";
+	private static final String SNAPSHOT_FORMAT = "snapshotFormat";
+	private static final String SNAPSHOT_DELTAS = "snapshotDeltas";
 	private static final String LEISUREOUTDOORFRACTION = "leisureOutdoorFraction";
 	private static final String INPUT_DAYS = "inputDays";
 	private static final String AGE_SUSCEPTIBILITY = "ageSusceptibility";
 	private static final String AGE_INFECTIVITY = "ageInfectivity";
 	private static final String DAYS_INFECTIOUS = "daysInfectious";
 	private static final String CURFEW_COMPLIANCE = "curfewCompliance";
+	private static final String THREADS = "threads";
+	private static final String CONTACT_NETWORK = "contactNetwork";
+	private static final String PERFORMANCE_METRICS = "performanceMetrics";
 
 	private static final Logger log = LogManager.getLogger(EpisimConfigGroup.class);
 	private static final String GROUPNAME = "episim";
@@ -109,6 +115,7 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	 * Which events to write in the output.
 	 */
 	private WriteEvents writeEvents = WriteEvents.episim;
+	private EventsFormat eventsFormat = EventsFormat.xml;
 	// this is current default for 25% scenarios
 	private double calibrationParameter = 0.000002;
 	private double hospitalFactor = 1.;
@@ -146,6 +153,11 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	 * How the internal rng state should be handled.
 	 */
 	private SnapshotSeed snapshotSeed = SnapshotSeed.restore;
+	private SnapshotFormat snapshotFormat = SnapshotFormat.java;
+	/**
+	 * Number of delta snapshots written after each full snapshot. Only used for the binary format.
+	 */
+	private int snapshotDeltas = 0;
 	private FacilitiesHandling facilitiesHandling = FacilitiesHandling.snz;
 	private Config policyConfig = ConfigFactory.empty();
 	private Config progressionConfig = ConfigFactory.empty();
@@ -153,6 +165,18 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	private Class<? extends ShutdownPolicy> policyClass = FixedPolicy.class;
 	private double maxContacts = 3.;
 	private int daysInfectious = 4;
+	/**
+	 * Number of threads used to replay the events of a day. Containers are partitioned into independent shards if larger than one.
+	 */
+	private int threads = 1;
+	/**
+	 * Evaluate contacts from the co-presence network of each weekday instead of replaying the events.
+	 */
+	private boolean contactNetwork = false;
+	/**
+	 * Record time, allocations and counters of each phase of a day.
+	 */
+	private boolean performanceMetrics = false;
 	/**
 	 * Child susceptibility used in AgeDependentInfectionModelWithSeasonality.
 	 * Taken from https://doi.org/10.1101/2020.06.03.20121145
@@ -213,6 +237,19 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		this.writeEvents = writeEvents;
 	}
 
+	@StringGetter(EVENTS_FORMAT)
+	public EventsFormat getEventsFormat() {
+		return eventsFormat;
+	}
+
+	/**
+	 * Sets the file format of the written events. The binary format only supports episim events.
+	 */
+	@StringSetter(EVENTS_FORMAT)
+	public void setEventsFormat(EventsFormat eventsFormat) {
+		this.eventsFormat = eventsFormat;
+	}
+
 	@StringGetter(CALIBRATION_PARAMETER)
 	public double getCalibrationParameter() {
 		return this.calibrationParameter;
@@ -385,6 +422,33 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		this.snapshotSeed = snapshotSeed;
 	}
 
+	@StringGetter(SNAPSHOT_FORMAT)
+	public SnapshotFormat getSnapshotFormat() {
+		return snapshotFormat;
+	}
+
+	@StringSetter(SNAPSHOT_FORMAT)
+	public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+		this.snapshotFormat = snapshotFormat;
+	}
+
+	@StringGetter(SNAPSHOT_DELTAS)
+	public int getSnapshotDeltas() {
+		return snapshotDeltas;
+	}
+
+	/**
+	 * Sets the number of delta snapshots between full snapshots. A delta snapshot can only be restored if all snapshots
+	 * since the last full snapshot are present in the same directory.
+	 */
+	@StringSetter(SNAPSHOT_DELTAS)
+	public void setSnapshotDeltas(int snapshotDeltas) {
+		if (snapshotDeltas < 0)
+			throw new IllegalArgumentException("Number of snapshot deltas must not be negative.");
+
+		this.snapshotDeltas = snapshotDeltas;
+	}
+
 	public long getStartOffset() {
 		return startOffset;
 	}
@@ -525,6 +589,53 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		this.daysInfectious = daysInfectious;
 	}
 
+	@StringGetter(THREADS)
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets the number of threads for replaying events. Results are reproducible for a fixed seed and number of threads,
+	 * but differ from the single threaded replay.
+	 */
+	@StringSetter(THREADS)
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Number of threads must be at least 1.");
+
+		this.threads = threads;
+	}
+
+	@StringGetter(CONTACT_NETWORK)
+	public boolean getContactNetwork() {
+		return contactNetwork;
+	}
+
+	/**
+	 * Whether contacts are evaluated from the cached co-presence network of each weekday. The network is built once from the events
+	 * and each day only the groups of relevant persons are evaluated. Results differ from the replay of events.
+	 */
+	@StringSetter(CONTACT_NETWORK)
+	public void setContactNetwork(boolean contactNetwork) {
+		this.contactNetwork = contactNetwork;
+	}
+
+	@StringGetter(PERFORMANCE_METRICS)
+	public boolean getPerformanceMetrics() {
+		return performanceMetrics;
+	}
+
+	/**
+	 * Whether time, allocated bytes and counters of each phase are written to {@code performance.tsv} for every day.
+	 * Measuring nested phases adds a small overhead to each evaluated container.
+	 *
+	 * @see PerformanceMetrics
+	 */
+	@StringSetter(PERFORMANCE_METRICS)
+	public void setPerformanceMetrics(boolean performanceMetrics) {
+		this.performanceMetrics = performanceMetrics;
+	}
+
 	@StringGetter(AGE_SUSCEPTIBILITY)
 	String getAgeSusceptibilityString() {
 		return JOINER.join(ageSusceptibility);
@@ -675,6 +786,13 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		}
 	}
 
+	/**
+	 * Names of all container types. The position in this list is the index stored in {@link EpisimPerson.Activity#containerType}.
+	 */
+	public List<String> getContainerTypes() {
+		return List.copyOf(getContainerParams().keySet());
+	}
+
 	/**
 	 * Create restriction for each {@link InfectionParams}.
 	 */
@@ -898,6 +1016,21 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		all
 	}
 
+	/**
+	 * File format of the written events.
+	 */
+	public enum EventsFormat {
+		/**
+		 * Standard matsim xml events.
+		 */
+		xml,
+
+		/**
+		 * Compact columnar format, which can be read with {@link org.matsim.episim.events.EpisimEventsBinaryReader}.
+		 */
+		binary
+	}
+
 	/**
 	 * Defines how the snapshot seed should be processed.
 	 */
@@ -913,6 +1046,21 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		reseed,
 	}
 
+	/**
+	 * Format of the simulation state in snapshots.
+	 */
+	public enum SnapshotFormat {
+		/**
+		 * Persons and containers are identified by their ids.
+		 */
+		java,
+
+		/**
+		 * Compact format referencing persons and containers by index, which also supports delta snapshots.
+		 */
+		binary
+	}
+
 	/**
 	 * Parameter set for one activity type.
 	 */
@@ -22,15 +22,16 @@ package org.matsim.episim;
 
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.gbl.Gbl;
 
-import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectOutput;
+import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -58,6 +59,32 @@ public class EpisimContainer<T> {
 
 	private final Int2DoubleMap containerEnterTimes = new Int2DoubleOpenHashMap(4);
 
+	/**
+	 * Position in the trajectory of contained persons. Only used during parallel replay, where the position stored at the person
+	 * may belong to a different container.
+	 */
+	private Int2IntMap positions;
+
+	/**
+	 * Contagious persons in this container, see {@link #getContagiousPersons(int)}.
+	 */
+	private final List<EpisimPerson> contagious = new ArrayList<>();
+
+	/**
+	 * Day for which {@link #contagious} has been built, -1 if it is not maintained.
+	 */
+	private int contagiousDay = -1;
+
+	/**
+	 * Susceptible persons in this container, see {@link #getSusceptiblePersons(int)}.
+	 */
+	private final List<EpisimPerson> susceptible = new ArrayList<>();
+
+	/**
+	 * Day for which {@link #susceptible} has been built, -1 if it is not maintained.
+	 */
+	private int susceptibleDay = -1;
+
 	/**
 	 * The maximum number of persons simultaneously in this container. Negative if unknown.
 	 * Already scaled with sampleSize.
@@ -88,9 +115,7 @@ public class EpisimContainer<T> {
 	 */
 	void read(ObjectInput in, Map<Id<Person>, EpisimPerson> persons) throws IOException {
 
-		this.persons.clear();
-		this.personsAsList.clear();
-		this.containerEnterTimes.clear();
+		clearPersons();
 
 		int n = in.readInt();
 		for (int i = 0; i < n; i++) {
@@ -113,6 +138,37 @@ public class EpisimContainer<T> {
 		}
 	}
 
+	/**
+	 * Reads state written by {@link #writeBinary(DataOutput, Object2IntMap)}. Persons are added without setting their current container.
+	 *
+	 * @param persons all persons by their index
+	 */
+	void readBinary(DataInput in, EpisimPerson[] persons) throws IOException {
+
+		clearPersons();
+
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			EpisimPerson person = persons[in.readInt()];
+			int index = person.getPersonId().index();
+			this.persons.add(index);
+			personsAsList.add(person);
+			containerEnterTimes.put(index, in.readDouble());
+		}
+	}
+
+	/**
+	 * Writes state in the binary snapshot format. Persons are referenced by their index in {@code index}.
+	 */
+	void writeBinary(DataOutput out, Object2IntMap<EpisimPerson> index) throws IOException {
+
+		out.writeInt(personsAsList.size());
+		for (EpisimPerson p : personsAsList) {
+			out.writeInt(index.getInt(p));
+			out.writeDouble(containerEnterTimes.get(p.getPersonId().index()));
+		}
+	}
+
 	void addPerson(EpisimPerson person, double now) {
 		final int index = person.getPersonId().index();
 
@@ -122,6 +178,77 @@ public class EpisimContainer<T> {
 		personsAsList.add(person);
 		containerEnterTimes.put(index, now);
 		person.setCurrentContainer(this);
+
+		if (contagiousDay != -1 && isContagious(person))
+			contagious.add(person);
+
+		if (susceptibleDay != -1 && person.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
+			susceptible.add(person);
+	}
+
+	/**
+	 * Adds a person together with its position in the trajectory, but without setting the current container of the person.
+	 * This is used during parallel replay, where only the shard owning this container may modify it.
+	 */
+	void enter(EpisimPerson person, double now, int position) {
+		final int index = person.getPersonId().index();
+
+		assert !persons.contains(index) : "Person already contained in this container.";
+
+		if (positions == null)
+			positions = new Int2IntOpenHashMap(4);
+
+		persons.add(index);
+		personsAsList.add(person);
+		containerEnterTimes.put(index, now);
+		positions.put(index, position);
+
+		if (contagiousDay != -1 && isContagious(person))
+			contagious.add(person);
+
+		if (susceptibleDay != -1 && person.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
+			susceptible.add(person);
+	}
+
+	/**
+	 * Removes a person that was added with {@link #enter(EpisimPerson, double, int)}.
+	 */
+	void leave(EpisimPerson person) {
+		int index = person.getPersonId().index();
+
+		containerEnterTimes.remove(index);
+		persons.remove(index);
+		if (positions != null)
+			positions.remove(index);
+
+		boolean wasRemoved = personsAsList.remove(person);
+		Gbl.assertIf(wasRemoved);
+
+		if (contagiousDay != -1 && isContagious(person))
+			contagious.remove(person);
+
+		if (susceptibleDay != -1 && mayBeSusceptible(person))
+			susceptible.remove(person);
+	}
+
+	/**
+	 * Removes all stored trajectory positions, persons will use their own position again.
+	 */
+	void clearPositions() {
+		positions = null;
+	}
+
+	/**
+	 * Returns the position in the trajectory of a person contained in this container.
+	 */
+	public int getPositionInTrajectory(EpisimPerson person) {
+		if (positions != null) {
+			int index = person.getPersonId().index();
+			if (positions.containsKey(index))
+				return positions.get(index);
+		}
+
+		return person.getCurrentPositionInTrajectory();
 	}
 
 	/**
@@ -134,9 +261,17 @@ public class EpisimContainer<T> {
 
 		containerEnterTimes.remove(index);
 		persons.remove(index);
+		if (positions != null)
+			positions.remove(index);
 		person.removeCurrentContainer(this);
 		boolean wasRemoved = personsAsList.remove(person);
 		Gbl.assertIf(wasRemoved);
+
+		if (contagiousDay != -1 && isContagious(person))
+			contagious.remove(person);
+
+		if (susceptibleDay != -1 && mayBeSusceptible(person))
+			susceptible.remove(person);
 	}
 
 	public Id<T> getContainerId() {
@@ -195,6 +330,11 @@ public class EpisimContainer<T> {
 		this.persons.clear();
 		this.personsAsList.clear();
 		this.containerEnterTimes.clear();
+		this.positions = null;
+		this.contagious.clear();
+		this.contagiousDay = -1;
+		this.susceptible.clear();
+		this.susceptibleDay = -1;
 	}
 
 	/**
@@ -204,6 +344,54 @@ public class EpisimContainer<T> {
 		return containerEnterTimes.getOrDefault(personId.index(), Double.NEGATIVE_INFINITY);
 	}
 
+	/**
+	 * Returns the persons in this container that are contagious or showing symptoms, in the order they are contained in {@link #getPersons()}.
+	 * The index is rebuilt when it is requested for the first time on a new day, because the disease status of persons only changes
+	 * between days. During the day, it is updated when persons enter or leave.
+	 */
+	public List<EpisimPerson> getContagiousPersons(int day) {
+		if (day != contagiousDay) {
+			contagious.clear();
+			for (EpisimPerson p : personsAsList) {
+				if (isContagious(p))
+					contagious.add(p);
+			}
+			contagiousDay = day;
+		}
+
+		return contagious;
+	}
+
+	/**
+	 * Returns the persons in this container that were susceptible when they entered or when the index was built, in the order they are
+	 * contained in {@link #getPersons()}. Persons infected during the current day remain in the list until they leave and need to be skipped.
+	 */
+	public List<EpisimPerson> getSusceptiblePersons(int day) {
+		if (day != susceptibleDay) {
+			susceptible.clear();
+			for (EpisimPerson p : personsAsList) {
+				if (p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
+					susceptible.add(p);
+			}
+			susceptibleDay = day;
+		}
+
+		return susceptible;
+	}
+
+	/**
+	 * Whether a person may be in {@link #susceptible}, which includes persons that got infected while being in this container.
+	 */
+	private static boolean mayBeSusceptible(EpisimPerson person) {
+		EpisimPerson.DiseaseStatus status = person.getDiseaseStatus();
+		return status == EpisimPerson.DiseaseStatus.susceptible || status == EpisimPerson.DiseaseStatus.infectedButNotContagious;
+	}
+
+	private static boolean isContagious(EpisimPerson person) {
+		EpisimPerson.DiseaseStatus status = person.getDiseaseStatus();
+		return status == EpisimPerson.DiseaseStatus.contagious || status == EpisimPerson.DiseaseStatus.showingSymptoms;
+	}
+
 	public List<EpisimPerson> getPersons() {
 		// Using Collections.unmodifiableList(...) puts huge pressure on the GC if its called hundred thousand times per second
 		return personsAsList;
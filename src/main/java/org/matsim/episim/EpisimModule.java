@@ -63,6 +63,9 @@ public class EpisimModule extends AbstractModule {
 		bind(ReplayHandler.class).in(Singleton.class);
 		bind(InfectionEventHandler.class).in(Singleton.class);
 		bind(EpisimReporting.class).in(Singleton.class);
+		bind(InfectionLocationIndex.class).in(Singleton.class);
+		bind(AttributeRegistry.class).in(Singleton.class);
+		bind(PerformanceMetrics.class).in(Singleton.class);
 
 		// Ah, ok, here one sees how it is plugged together.  kai, apr'20
 	}
@@ -21,9 +21,10 @@
 package org.matsim.episim;
 
 import com.google.common.annotations.Beta;
-import it.unimi.dsi.fastutil.objects.Object2DoubleLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.events.EpisimPersonStatusEvent;
@@ -33,13 +34,11 @@ import org.matsim.utils.objectattributes.attributable.Attributable;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 import org.matsim.vehicles.Vehicle;
 
-import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectOutput;
+import javax.annotation.Nullable;
+import java.io.*;
 import java.time.DayOfWeek;
 import java.util.*;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
 
 import static org.matsim.episim.EpisimUtils.readChars;
 import static org.matsim.episim.EpisimUtils.writeChars;
@@ -57,35 +56,25 @@ public final class EpisimPerson implements Attributable {
 	/**
 	 * Whole trajectory over all days of the week.
 	 */
-	private final List<Activity> trajectory = new ArrayList<>();
+	private List<Activity> trajectory = new ArrayList<>();
 
 	/**
 	 * The position in the trajectory at the start for each day of the week.
 	 */
-	private final int[] startOfDay = new int[7];
+	private int[] startOfDay = new int[7];
 
 	/**
 	 * The position in the trajectory for the end of the day.
 	 */
-	private final int[] endOfDay = new int[7];
+	private int[] endOfDay = new int[7];
 
 	/**
 	 * The first visited {@link org.matsim.facilities.ActivityFacility} for each day.
 	 */
-	private final Id<ActivityFacility>[] firstFacilityId = new Id[7];
+	private Id<ActivityFacility>[] firstFacilityId = new Id[7];
 
 	// Fields above are initialized from the sim and not persisted
 
-	/**
-	 * Traced contacts with other persons.
-	 */
-	private final Object2DoubleMap<EpisimPerson> traceableContactPersons = new Object2DoubleLinkedOpenHashMap<>(4);
-
-	/**
-	 * Stores first time of status changes to specific type.
-	 */
-	private final EnumMap<DiseaseStatus, Double> statusChanges = new EnumMap<>(DiseaseStatus.class);
-
 	/**
 	 * Total spent time during activities.
 	 */
@@ -107,56 +96,18 @@ public final class EpisimPerson implements Attributable {
 	private String infectionType = null;
 
 	/**
-	 * Current {@link DiseaseStatus}.
-	 */
-	private DiseaseStatus status = DiseaseStatus.susceptible;
-	/**
-	 * Current {@link QuarantineStatus}.
-	 */
-	private QuarantineStatus quarantineStatus = QuarantineStatus.no;
-
-	/**
-	 * Strain of the virus the person was infected with.
-	 */
-	private VirusStrain virusStrain = VirusStrain.SARS_CoV_2;
-
-	/**
-	 * Current {@link VaccinationStatus}.
-	 */
-	private VaccinationStatus vaccinationStatus = VaccinationStatus.no;
-
-	/**
-	 * Current status for re-vaccination.
-	 */
-	private VaccinationStatus reVaccinationStatus = VaccinationStatus.no;
-
-	/**
-	 * Current {@link TestStatus}.
-	 */
-	private TestStatus testStatus = TestStatus.untested;
-
-	/**
-	 * Iteration when this person was vaccinated. Negative if person was never vaccinated.
-	 */
-	private int vaccinationDate = -1;
-
-	/**
-	 * Iteration when this person got into quarantine. Negative if person was never quarantined.
+	 * Holds disease, quarantine, vaccination and test status, the respective dates, the virus strain, the age
+	 * and the first time of each status change. Unset dates are negative.
 	 */
-	private int quarantineDate = -1;
+	private final PersonStateStore state;
 
 	/**
-	 * Iteration when this person was tested. Negative if person was never tested.
+	 * Slot of this person in {@link #state}.
 	 */
-	private int testDate = -1;
+	private final int slot;
 
 	private int currentPositionInTrajectory;
 
-	/**
-	 * Age of the person in years.
-	 */
-	private final int age;
-
 	/**
 	 * Whether this person can be traced.
 	 */
@@ -168,31 +119,21 @@ public final class EpisimPerson implements Attributable {
 	private boolean vaccinable = true;
 
 	/**
-	 * Lookup age from attributes.
+	 * Container types of the activities for each day, see {@link #compileActivityMask()}.
 	 */
-	private static int getAge(Attributes attrs) {
-		int age = -1;
-
-		for (String attr : attrs.getAsMap().keySet()) {
-			if (attr.contains("age")) {
-				age = Integer.parseInt(attrs.getAttribute(attr).toString());
-				break;
-			}
-		}
+	@Nullable
+	private long[] activityMask;
 
-		return age;
-	}
-
-	EpisimPerson(Id<Person> personId, Attributes attrs, EpisimReporting reporting) {
-		this(personId, attrs, true, reporting);
-	}
-
-	EpisimPerson(Id<Person> personId, Attributes attrs, boolean traceable, EpisimReporting reporting) {
+	/**
+	 * Creates a person whose state is stored in {@code state}.
+	 */
+	EpisimPerson(Id<Person> personId, Attributes attrs, boolean traceable, EpisimReporting reporting, PersonStateStore state) {
 		this.personId = personId;
 		this.attributes = attrs;
 		this.traceable = traceable;
-		this.age = getAge(attrs);
 		this.reporting = reporting;
+		this.state = state;
+		this.slot = state.add(this, attrs);
 	}
 
 	/**
@@ -205,17 +146,19 @@ public final class EpisimPerson implements Attributable {
 	          Map<Id<Vehicle>, InfectionEventHandler.EpisimVehicle> vehicles) throws IOException {
 
 		int n = in.readInt();
-		traceableContactPersons.clear();
+		state.contacts.remove(slot);
 		for (int i = 0; i < n; i++) {
-			Id<Person> id = Id.create(readChars(in), Person.class);
-			traceableContactPersons.put(persons.get(id), in.readDouble());
+			EpisimPerson p = persons.get(Id.create(readChars(in), Person.class));
+			double time = in.readDouble();
+			if (p != null)
+				state.contacts.add(slot, p.slot, time);
 		}
 
 		n = in.readInt();
-		statusChanges.clear();
+		state.clearStatusChanges(slot);
 		for (int i = 0; i < n; i++) {
 			int status = in.readInt();
-			statusChanges.put(DiseaseStatus.values()[status], in.readDouble());
+			state.setStatusChange(slot, PersonStateStore.DISEASE_STATUS[status], in.readDouble());
 		}
 
 		// Current container is set
@@ -247,20 +190,22 @@ public final class EpisimPerson implements Attributable {
 			spentTime.put(act, in.readDouble());
 		}
 
-		status = DiseaseStatus.values()[in.readInt()];
-		virusStrain = VirusStrain.values()[in.readInt()];
-		quarantineStatus = QuarantineStatus.values()[in.readInt()];
-		quarantineDate = in.readInt();
-		vaccinationStatus = VaccinationStatus.values()[in.readInt()];
-		reVaccinationStatus = VaccinationStatus.values()[in.readInt()];
-		vaccinationDate = in.readInt();
-		testStatus = TestStatus.values()[in.readInt()];
-		testDate = in.readInt();
+		state.diseaseStatus[slot] = (byte) in.readInt();
+		state.virusStrain[slot] = (byte) in.readInt();
+		state.quarantineStatus[slot] = (byte) in.readInt();
+		state.quarantineDate[slot] = in.readInt();
+		state.vaccinationStatus[slot] = (byte) in.readInt();
+		state.reVaccinationStatus[slot] = (byte) in.readInt();
+		state.vaccinationDate[slot] = in.readInt();
+		state.testStatus[slot] = (byte) in.readInt();
+		state.testDate[slot] = in.readInt();
 		currentPositionInTrajectory = in.readInt();
 		traceable = in.readBoolean();
 
 		// vaccinable, which is not restored
 		in.readBoolean();
+
+		state.updatePools(slot);
 	}
 
 	/**
@@ -268,16 +213,25 @@ public final class EpisimPerson implements Attributable {
 	 */
 	void write(ObjectOutput out) throws IOException {
 
-		out.writeInt(traceableContactPersons.size());
-		for (Map.Entry<EpisimPerson, Double> kv : traceableContactPersons.entrySet()) {
-			writeChars(out, kv.getKey().getPersonId().toString());
-			out.writeDouble(kv.getValue());
+		Int2DoubleMap contacts = state.contacts.getContacts(slot, Double.NEGATIVE_INFINITY);
+		out.writeInt(contacts.size());
+		for (Int2DoubleMap.Entry kv : contacts.int2DoubleEntrySet()) {
+			writeChars(out, state.getPerson(kv.getIntKey()).getPersonId().toString());
+			out.writeDouble(kv.getDoubleValue());
 		}
 
-		out.writeInt(statusChanges.size());
-		for (Map.Entry<DiseaseStatus, Double> e : statusChanges.entrySet()) {
-			out.writeInt(e.getKey().ordinal());
-			out.writeDouble(e.getValue());
+		int n = 0;
+		for (DiseaseStatus status : PersonStateStore.DISEASE_STATUS) {
+			if (hadDiseaseStatus(status))
+				n++;
+		}
+
+		out.writeInt(n);
+		for (DiseaseStatus status : PersonStateStore.DISEASE_STATUS) {
+			if (hadDiseaseStatus(status)) {
+				out.writeInt(status.ordinal());
+				out.writeDouble(state.getStatusChange(slot, status));
+			}
 		}
 
 		out.writeBoolean(currentContainer != null);
@@ -303,43 +257,152 @@ public final class EpisimPerson implements Attributable {
 			out.writeDouble(kv.getDoubleValue());
 		}
 
-		out.writeInt(status.ordinal());
-		out.writeInt(virusStrain.ordinal());
-		out.writeInt(quarantineStatus.ordinal());
-		out.writeInt(quarantineDate);
-		out.writeInt(vaccinationStatus.ordinal());
-		out.writeInt(reVaccinationStatus.ordinal());
-		out.writeInt(vaccinationDate);
-		out.writeInt(testStatus.ordinal());
-		out.writeInt(testDate);
+		out.writeInt(state.diseaseStatus[slot]);
+		out.writeInt(state.virusStrain[slot]);
+		out.writeInt(state.quarantineStatus[slot]);
+		out.writeInt(state.quarantineDate[slot]);
+		out.writeInt(state.vaccinationStatus[slot]);
+		out.writeInt(state.reVaccinationStatus[slot]);
+		out.writeInt(state.vaccinationDate[slot]);
+		out.writeInt(state.testStatus[slot]);
+		out.writeInt(state.testDate[slot]);
 		out.writeInt(currentPositionInTrajectory);
 		out.writeBoolean(traceable);
 		out.writeBoolean(vaccinable);
 	}
 
+	/**
+	 * Writes the persistent state in the binary snapshot format. Other persons are referenced by their index in {@code index}.
+	 * Spent time, current container and position in the trajectory are not part of this record.
+	 */
+	void writeBinary(DataOutput out, Object2IntMap<EpisimPerson> index) throws IOException {
+
+		Int2DoubleMap contacts = state.contacts.getContacts(slot, Double.NEGATIVE_INFINITY);
+		out.writeInt(contacts.size());
+		for (Int2DoubleMap.Entry kv : contacts.int2DoubleEntrySet()) {
+			out.writeInt(index.getInt(state.getPerson(kv.getIntKey())));
+			out.writeDouble(kv.getDoubleValue());
+		}
+
+		int mask = 0;
+		for (DiseaseStatus status : PersonStateStore.DISEASE_STATUS) {
+			if (hadDiseaseStatus(status))
+				mask |= 1 << status.ordinal();
+		}
+
+		out.writeByte(mask);
+		for (DiseaseStatus status : PersonStateStore.DISEASE_STATUS) {
+			if (hadDiseaseStatus(status))
+				out.writeDouble(state.getStatusChange(slot, status));
+		}
+
+		out.writeBoolean(infectionContainer != null);
+		if (infectionContainer != null)
+			writeChars(out, infectionContainer.toString());
+
+		out.writeBoolean(infectionType != null);
+		if (infectionType != null)
+			writeChars(out, infectionType);
+
+		out.writeByte(state.diseaseStatus[slot]);
+		out.writeByte(state.virusStrain[slot]);
+		out.writeByte(state.quarantineStatus[slot]);
+		out.writeByte(state.vaccinationStatus[slot]);
+		out.writeByte(state.reVaccinationStatus[slot]);
+		out.writeByte(state.testStatus[slot]);
+		out.writeInt(state.quarantineDate[slot]);
+		out.writeInt(state.vaccinationDate[slot]);
+		out.writeInt(state.testDate[slot]);
+		out.writeBoolean(traceable);
+	}
+
+	/**
+	 * Reads state written by {@link #writeBinary(DataOutput, Object2IntMap)}.
+	 *
+	 * @param persons all persons by their index
+	 */
+	void readBinary(DataInput in, EpisimPerson[] persons) throws IOException {
+
+		int n = in.readInt();
+		state.contacts.remove(slot);
+		for (int i = 0; i < n; i++) {
+			EpisimPerson p = persons[in.readInt()];
+			state.contacts.add(slot, p.slot, in.readDouble());
+		}
+
+		int mask = in.readByte() & 0xff;
+		state.clearStatusChanges(slot);
+		for (DiseaseStatus status : PersonStateStore.DISEASE_STATUS) {
+			if ((mask & (1 << status.ordinal())) != 0)
+				state.setStatusChange(slot, status, in.readDouble());
+		}
+
+		infectionContainer = in.readBoolean() ? Id.create(readChars(in), ActivityFacility.class) : null;
+		infectionType = in.readBoolean() ? readChars(in) : null;
+
+		state.diseaseStatus[slot] = in.readByte();
+		state.virusStrain[slot] = in.readByte();
+		state.quarantineStatus[slot] = in.readByte();
+		state.vaccinationStatus[slot] = in.readByte();
+		state.reVaccinationStatus[slot] = in.readByte();
+		state.testStatus[slot] = in.readByte();
+		state.quarantineDate[slot] = in.readInt();
+		state.vaccinationDate[slot] = in.readInt();
+		state.testDate[slot] = in.readInt();
+		traceable = in.readBoolean();
+
+		state.updatePools(slot);
+	}
+
+	/**
+	 * Whether persistent state of this person changed since the last snapshot.
+	 */
+	boolean isChanged() {
+		return state.isChanged(slot);
+	}
+
+	/**
+	 * Whether disease, quarantine or test status changed since the last call of {@link #clearStatusChanged()}.
+	 */
+	boolean isStatusChanged() {
+		return state.isStatusChanged(slot);
+	}
+
+	void clearStatusChanged() {
+		state.clearStatusChanged(slot);
+	}
+
 	public Id<Person> getPersonId() {
 		return personId;
 	}
 
 	public DiseaseStatus getDiseaseStatus() {
-		return status;
+		return PersonStateStore.DISEASE_STATUS[state.diseaseStatus[slot]];
 	}
 
 	public void setDiseaseStatus(double now, DiseaseStatus status) {
-		this.status = status;
-		if (!statusChanges.containsKey(status))
-			statusChanges.put(status, now);
+		state.markChanged(slot);
+		state.markStatusChanged(slot);
+		reporting.countDiseaseStatus(this, getDiseaseStatus(), status);
+		state.diseaseStatus[slot] = (byte) status.ordinal();
+		if (!hadDiseaseStatus(status))
+			state.setStatusChange(slot, status, now);
+
+		state.updatePools(slot);
 
 		reporting.reportPersonStatus(this, new EpisimPersonStatusEvent(now, personId, status));
 	}
 
 	public QuarantineStatus getQuarantineStatus() {
-		return quarantineStatus;
+		return PersonStateStore.QUARANTINE_STATUS[state.quarantineStatus[slot]];
 	}
 
 	public void setQuarantineStatus(QuarantineStatus quarantineStatus, int iteration) {
-		this.quarantineStatus = quarantineStatus;
-		this.quarantineDate = iteration;
+		state.markChanged(slot);
+		state.markStatusChanged(slot);
+		reporting.countQuarantineStatus(this, getQuarantineStatus(), quarantineStatus);
+		state.quarantineStatus[slot] = (byte) quarantineStatus.ordinal();
+		state.quarantineDate[slot] = iteration;
 
 		// this function should receive now instead of iteration
 		// only for testing currently
@@ -347,43 +410,55 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public void setVirusStrain(VirusStrain virusStrain) {
-		this.virusStrain = virusStrain;
+		state.markChanged(slot);
+		state.virusStrain[slot] = (byte) virusStrain.ordinal();
 	}
 
 	public VirusStrain getVirusStrain() {
-		return virusStrain;
+		return PersonStateStore.VIRUS_STRAIN[state.virusStrain[slot]];
 	}
 
 	public VaccinationStatus getVaccinationStatus() {
-		return vaccinationStatus;
+		return PersonStateStore.VACCINATION_STATUS[state.vaccinationStatus[slot]];
 	}
 
 	public VaccinationStatus getReVaccinationStatus() {
-		return reVaccinationStatus;
+		return PersonStateStore.VACCINATION_STATUS[state.reVaccinationStatus[slot]];
 	}
 
 	public void setVaccinationStatus(VaccinationStatus vaccinationStatus, int iteration) {
 		if (vaccinationStatus != VaccinationStatus.yes) throw new IllegalArgumentException("Vaccination can only be set to yes.");
 
-		this.vaccinationStatus = vaccinationStatus;
-		this.vaccinationDate = iteration;
+		state.markChanged(slot);
+		reporting.countVaccinationStatus(this, getVaccinationStatus(), vaccinationStatus, false);
+		state.vaccinationStatus[slot] = (byte) vaccinationStatus.ordinal();
+		state.vaccinationDate[slot] = iteration;
+		state.updatePools(slot);
 	}
 
 	public void setReVaccinationStatus(VaccinationStatus vaccinationStatus, int iteration) {
-		if (this.vaccinationStatus != VaccinationStatus.yes) throw new IllegalArgumentException("First vaccination must already be present.");
+		if (getVaccinationStatus() != VaccinationStatus.yes) throw new IllegalArgumentException("First vaccination must already be present.");
 		if (vaccinationStatus != VaccinationStatus.yes) throw new IllegalArgumentException("Re-vaccination can only be set to yes.");
 
-		this.reVaccinationStatus = vaccinationStatus;
-		this.vaccinationDate = iteration;
+		state.markChanged(slot);
+		reporting.countVaccinationStatus(this, getReVaccinationStatus(), vaccinationStatus, true);
+		state.reVaccinationStatus[slot] = (byte) vaccinationStatus.ordinal();
+		state.vaccinationDate[slot] = iteration;
+		state.updatePools(slot);
 	}
 
 	public TestStatus getTestStatus() {
-		return testStatus;
+		return PersonStateStore.TEST_STATUS[state.testStatus[slot]];
 	}
 
 	public void setTestStatus(TestStatus testStatus, int iteration) {
-		this.testStatus = testStatus;
-		this.testDate = iteration;
+		state.markChanged(slot);
+		state.markStatusChanged(slot);
+		if (state.testDate[slot] != iteration)
+			reporting.countTest(this, state.testDate[slot], iteration);
+
+		state.testStatus[slot] = (byte) testStatus.ordinal();
+		state.testDate[slot] = iteration;
 	}
 
 	/**
@@ -395,9 +470,10 @@ public final class EpisimPerson implements Attributable {
 	 * @throws IllegalStateException when the requested status was never set
 	 */
 	public int daysSince(DiseaseStatus status, int currentDay) {
-		if (!statusChanges.containsKey(status)) throw new IllegalStateException("Person was never " + status);
+		double time = state.getStatusChange(slot, status);
+		if (Double.isNaN(time)) throw new IllegalStateException("Person was never " + status);
 
-		double day = Math.floor(statusChanges.get(status) / 86400d);
+		double day = Math.floor(time / 86400d);
 
 		return currentDay - (int) day;
 	}
@@ -406,7 +482,7 @@ public final class EpisimPerson implements Attributable {
 	 * Return whether a person had (or currently has) a certain disease status.
 	 */
 	public boolean hadDiseaseStatus(DiseaseStatus status) {
-		return statusChanges.containsKey(status);
+		return !Double.isNaN(state.getStatusChange(slot, status));
 	}
 
 	/**
@@ -420,6 +496,7 @@ public final class EpisimPerson implements Attributable {
 
 		// yyyy since this API is so unstable, I would prefer to have the class non-public.  kai, apr'20
 		// -> api now marked as unstable and containing an api note, because it is used by the models it has to be public. chr, apr'20
+		int quarantineDate = state.quarantineDate[slot];
 		if (quarantineDate < 0) throw new IllegalStateException("Person was never quarantined");
 
 		return currentDay - quarantineDate;
@@ -432,6 +509,7 @@ public final class EpisimPerson implements Attributable {
 	 */
 	public int daysSince(VaccinationStatus status, int currentDay) {
 		if (status != VaccinationStatus.yes) throw new IllegalArgumentException("Only supports querying when person was vaccinated");
+		int vaccinationDate = state.vaccinationDate[slot];
 		if (vaccinationDate < 0) throw new IllegalStateException("Person was never vaccinated");
 
 		return currentDay - vaccinationDate;
@@ -443,45 +521,46 @@ public final class EpisimPerson implements Attributable {
 	 * @param currentDay current day (iteration)
 	 */
 	public int daysSinceTest(int currentDay) {
+		int testDate = state.testDate[slot];
 		if (testDate < 0)
 			return Integer.MAX_VALUE;
 
 		return currentDay - testDate;
 	}
 
+	/**
+	 * Records a traceable contact. Both persons need to be stored in the same {@link PersonStateStore}.
+	 */
 	public void addTraceableContactPerson(EpisimPerson personWrapper, double now) {
 		// check if both persons have tracing capability
 		if (isTraceable() && personWrapper.isTraceable()) {
-			// Always use the latest tracking date
-			traceableContactPersons.put(personWrapper, now);
+			if (personWrapper.state != state)
+				throw new IllegalArgumentException("Contact person " + personWrapper.getPersonId() + " is not stored in the same state store.");
+
+			state.contacts.add(slot, personWrapper.slot, now);
+			state.markChanged(slot);
 			reporting.reportTracing(now, this, personWrapper);
 		}
 	}
 
 	/**
-	 * Get all traced contacts that happened after certain time.
+	 * Get all traced contacts that happened after certain time, in the order they were first traced.
 	 */
 	public List<EpisimPerson> getTraceableContactPersons(double after) {
-		return traceableContactPersons.object2DoubleEntrySet()
-				.stream().filter(p -> p.getDoubleValue() >= after)
-				.map(Map.Entry::getKey)
-				.collect(Collectors.toList());
-
-		// yyyy if the computationally intensive operation is to search by time, we should sort traceableContactPersons by time.  To simplify this, I
-		// would argue that it is not a problem to have a person in there multiple times.  kai, may'20
+		Int2DoubleMap contacts = state.contacts.getContacts(slot, after);
+		List<EpisimPerson> result = new ArrayList<>(contacts.size());
+		for (int contact : contacts.keySet())
+			result.add(state.getPerson(contact));
 
+		return result;
 	}
 
 	/**
 	 * Remove old contact tracing data before a certain date.
 	 */
 	public void clearTraceableContractPersons(double before) {
-
-		int oldSize = traceableContactPersons.size();
-
-		if (oldSize == 0) return;
-
-		traceableContactPersons.keySet().removeIf(k -> traceableContactPersons.getDouble(k) < before);
+		if (state.contacts.clear(slot, before))
+			state.markChanged(slot);
 	}
 
 	/**
@@ -492,6 +571,7 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	void setTraceable(boolean traceable) {
+		state.markChanged(slot);
 		this.traceable = traceable;
 	}
 
@@ -501,6 +581,17 @@ public final class EpisimPerson implements Attributable {
 
 	void setVaccinable(boolean vaccinable) {
 		this.vaccinable = vaccinable;
+		state.updatePools(slot);
+	}
+
+	/**
+	 * Uses a trajectory that was initialized by another run. The arrays may be shared with other persons and must not be modified.
+	 */
+	void setSchedule(List<Activity> trajectory, int[] startOfDay, int[] endOfDay, Id<ActivityFacility>[] firstFacilityId) {
+		this.trajectory = trajectory;
+		this.startOfDay = startOfDay;
+		this.endOfDay = endOfDay;
+		this.firstFacilityId = firstFacilityId;
 	}
 
 	void addToTrajectory(Activity trajectoryElement) {
@@ -523,6 +614,10 @@ public final class EpisimPerson implements Attributable {
 		currentPositionInTrajectory = startOfDay[day.getValue() - 1];
 	}
 
+	void setCurrentPositionInTrajectory(int position) {
+		this.currentPositionInTrajectory = position;
+	}
+
 	void setStartOfDay(DayOfWeek day, int position) {
 		startOfDay[day.getValue() - 1] = position;
 	}
@@ -551,6 +646,46 @@ public final class EpisimPerson implements Attributable {
 		return false;
 	}
 
+	/**
+	 * Compiles the container types of each day into {@link #getActivityMask(DayOfWeek)}. Needs to be called when the trajectory is complete.
+	 */
+	void compileActivityMask() {
+		long[] mask = new long[7];
+		for (DayOfWeek day : DayOfWeek.values()) {
+			for (int i = getStartOfDay(day); i < getEndOfDay(day); i++) {
+				int type = trajectory.get(i).containerType;
+
+				// activities without type or too many types, mask can not be used
+				if (type < 0 || type >= Long.SIZE) {
+					activityMask = null;
+					return;
+				}
+
+				mask[day.getValue() - 1] |= 1L << type;
+			}
+		}
+
+		activityMask = mask;
+	}
+
+	/**
+	 * Whether {@link #getActivityMask(DayOfWeek)} is available for this person.
+	 */
+	public boolean hasActivityMask() {
+		return activityMask != null;
+	}
+
+	/**
+	 * Bit mask of the container types of all activities on a week day, with one bit per {@link Activity#containerType}.
+	 * Matches the same activities as {@link #matchActivities(DayOfWeek, Set, BiFunction, Object)}.
+	 */
+	public long getActivityMask(DayOfWeek day) {
+		if (activityMask == null)
+			throw new IllegalStateException("Activity mask of person " + personId + " is not compiled.");
+
+		return activityMask[day.getValue() - 1];
+	}
+
 	/**
 	 * Matches all activities of a person for a day. Calls {@code reduce} on all matched activities.
 	 *
@@ -601,7 +736,40 @@ public final class EpisimPerson implements Attributable {
 		return attributes;
 	}
 
+	/**
+	 * Interned id of the household, which is the same for all persons with the same home id.
+	 */
+	public int getHouseholdId() {
+		return state.household[slot];
+	}
+
+	/**
+	 * Home id attribute at creation of this person, or null if there is none.
+	 */
+	@Nullable
+	public String getHomeId() {
+		return state.getHomeId(slot);
+	}
+
+	/**
+	 * District attribute at creation of this person, or null if there is none.
+	 */
+	@Nullable
+	public String getDistrict() {
+		return state.getDistrict(slot);
+	}
+
+	/**
+	 * Value of an attribute declared in the {@link AttributeRegistry}.
+	 *
+	 * @param column column returned by {@link AttributeRegistry#declare(String, float)}
+	 */
+	public float getAttribute(int column) {
+		return state.attributes[column][slot];
+	}
+
 	public int getAge() {
+		int age = state.age[slot];
 		assert age != -1 : "Person=" + getPersonId().toString() + " has no age. Age dependent progression is not possible.";
 		assert age >= 0 && age <= 120 : "Age of person=" + getPersonId().toString() + " is not plausible. Age is=" + age;
 
@@ -612,6 +780,7 @@ public final class EpisimPerson implements Attributable {
 	 * Return the age of a person or the default age if no age is specified.
 	 */
 	public int getAgeOrDefault(int defaultAge) {
+		int age = state.age[slot];
 		return age != -1 ? age : defaultAge;
 	}
 
@@ -629,6 +798,33 @@ public final class EpisimPerson implements Attributable {
 		this.currentContainer = null;
 	}
 
+	/**
+	 * Sets the current container without any checks. Used to restore a consistent state after parallel replay.
+	 *
+	 * @param container current container, or null if the person is in none.
+	 */
+	void resetCurrentContainer(@Nullable EpisimContainer<?> container) {
+		this.currentContainer = container;
+	}
+
+	/**
+	 * Index of the district counts used by {@link EpisimReporting}, -1 if not resolved yet.
+	 */
+	int getDistrictIndex() {
+		return state.district[slot];
+	}
+
+	void setDistrictIndex(int index) {
+		state.district[slot] = index;
+	}
+
+	/**
+	 * Slot of this person in the {@link PersonStateStore}, which is assigned in order of creation.
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
 	Id<ActivityFacility> getFirstFacilityId(DayOfWeek day) {
 		return firstFacilityId[day.getValue() - 1];
 	}
@@ -638,6 +834,7 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public void setInfectionContainer(EpisimContainer<?> container) {
+		state.markChanged(slot);
 		this.infectionContainer = (Id<ActivityFacility>) container.getContainerId();
 	}
 
@@ -646,6 +843,7 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public void setInfectionType(String infectionType) {
+		state.markChanged(slot);
 		this.infectionType = infectionType;
 	}
 
@@ -705,12 +903,35 @@ public final class EpisimPerson implements Attributable {
 		public final String actType;
 		public final EpisimConfigGroup.InfectionParams params;
 
+		/**
+		 * Dense index of the activity type within one simulation, or -1 if not assigned.
+		 */
+		public final int id;
+
+		/**
+		 * Index of the container type of {@link #params}, see {@link org.matsim.episim.policy.DailyRestrictionTable}, or -1 if not assigned.
+		 */
+		public final int containerType;
+
 		/**
 		 * Constructor.
 		 */
 		public Activity(String actType, EpisimConfigGroup.InfectionParams params) {
+			this(actType, params, -1, -1);
+		}
+
+		/**
+		 * Constructor for an activity whose container type is indexed, but that is not part of any trajectory.
+		 */
+		public Activity(String actType, EpisimConfigGroup.InfectionParams params, int containerType) {
+			this(actType, params, -1, containerType);
+		}
+
+		Activity(String actType, EpisimConfigGroup.InfectionParams params, int id, int containerType) {
 			this.actType = actType;
 			this.params = params;
+			this.id = id;
+			this.containerType = containerType;
 		}
 
 		@Override
@@ -36,6 +36,7 @@ import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.episim.events.EpisimContactEvent;
+import org.matsim.episim.events.EpisimEventsBinaryWriter;
 import org.matsim.episim.events.EpisimInfectionEvent;
 import org.matsim.episim.events.EpisimPersonStatusEvent;
 import org.matsim.episim.events.EpisimTracingEvent;
@@ -75,12 +76,24 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 */
 	private final Path eventPath;
 	private final EpisimConfigGroup.WriteEvents writeEvents;
+	private final EpisimConfigGroup.EventsFormat eventsFormat;
 
 	/**
 	 * Aggregated cumulative cases by status and district. Contains only a subset of relevant {@link org.matsim.episim.EpisimPerson.DiseaseStatus}.
 	 */
 	private final Map<EpisimPerson.DiseaseStatus, Object2IntMap<String>> cumulativeCases = new EnumMap<>(EpisimPerson.DiseaseStatus.class);
 
+	/**
+	 * Current number of persons by status for each district, in order of first occurrence.
+	 */
+	private final List<DistrictCounts> districtCounts = new ArrayList<>();
+	private final Map<String, DistrictCounts> districtIndex = new HashMap<>();
+
+	/**
+	 * Whether {@link #districtCounts} reflect the state of all persons.
+	 */
+	private boolean countsValid = false;
+
 	/**
 	 * Number of daily infections per virus strain.
 	 */
@@ -98,6 +111,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 */
 	private int iteration;
 	private BufferedWriter events;
+	private EpisimEventsBinaryWriter binaryEvents;
 	private BufferedWriter infectionReport;
 	private BufferedWriter infectionEvents;
 	private BufferedWriter restrictionReport;
@@ -106,8 +120,18 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	private BufferedWriter outdoorFraction;
 	private BufferedWriter virusStrains;
 
+	/**
+	 * Only present if performance metrics are enabled.
+	 */
+	private BufferedWriter performance;
+
 	private String memorizedDate = null;
 
+	/**
+	 * Last iteration the outdoor fraction was written for.
+	 */
+	private int outdoorFractionIteration = -1;
+
 
 	@Inject
 	EpisimReporting(Config config, EpisimWriter writer, EventsManager manager) {
@@ -147,8 +171,16 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		outdoorFraction = EpisimWriter.prepare(base + "outdoorFraction.tsv", "day", "date", "outdoorFraction");
 		virusStrains = EpisimWriter.prepare(base + "strains.tsv", "day", "date", (Object[]) VirusStrain.values());
 
+		if (episimConfig.getPerformanceMetrics())
+			performance = EpisimWriter.prepare(base + "performance.tsv", "day", "date", (Object[]) PerformanceMetrics.getColumns());
+
 		sampleSize = episimConfig.getSampleSize();
 		writeEvents = episimConfig.getWriteEvents();
+		eventsFormat = episimConfig.getEventsFormat();
+
+		if (eventsFormat == EpisimConfigGroup.EventsFormat.binary &&
+				(writeEvents == EpisimConfigGroup.WriteEvents.input || writeEvents == EpisimConfigGroup.WriteEvents.all))
+			throw new IllegalArgumentException("Input events can not be written in the binary events format, writeEvents=" + writeEvents);
 
 		// Init cumulative cases
 		cumulativeCases.put(EpisimPerson.DiseaseStatus.contagious, new Object2IntOpenHashMap<>());
@@ -190,7 +222,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		// Copy non prefixed files to base output
 		if (!base.equals(outDir))
 			for (String file : List.of("infections.txt", "infectionEvents.txt", "restrictions.txt", "timeUse.txt", "diseaseImport.tsv",
-					"outdoorFraction.tsv", "strains.tsv")) {
+					"outdoorFraction.tsv", "strains.tsv", "performance.tsv")) {
 				Path path = Path.of(outDir, file);
 				if (Files.exists(path)) {
 					Files.move(path, Path.of(base + file), StandardCopyOption.REPLACE_EXISTING);
@@ -204,6 +236,10 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		diseaseImport = EpisimWriter.prepare(base + "diseaseImport.tsv");
 		outdoorFraction = EpisimWriter.prepare(base + "outdoorFraction.tsv");
 		virusStrains = EpisimWriter.prepare(base + "strains.tsv");
+
+		if (episimConfig.getPerformanceMetrics())
+			performance = EpisimWriter.prepare(base + "performance.tsv");
+
 		memorizedDate = date;
 
 		// Write config files again to overwrite these from snapshot
@@ -212,9 +248,14 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 
 	/**
 	 * Creates infections reports for the day. Grouped by district, but always containing a "total" entry.
+	 * The reports are created from counts, which are updated on every status change of a person. Only if these are not
+	 * valid, e.g. on the first day or after restoring a snapshot, all persons are counted again.
 	 */
 	Map<String, InfectionReport> createReports(Collection<EpisimPerson> persons, int iteration) {
 
+		if (!countsValid)
+			recount(persons, iteration);
+
 		Map<String, InfectionReport> reports = new LinkedHashMap<>();
 
 		double time = EpisimUtils.getCorrectedTime(EpisimUtils.getStartOffset(episimConfig.getStartDate()), 0., iteration);
@@ -223,95 +264,11 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		InfectionReport report = new InfectionReport("total", time, date, iteration);
 		reports.put("total", report);
 
-		for (EpisimPerson person : persons) {
-			String districtName = (String) person.getAttributes().getAttribute("district");
-
-			// Also aggregate by district
-			InfectionReport district = reports.computeIfAbsent(districtName == null ? "unknown"
-					: districtName, name -> new InfectionReport(name, report.time, report.date, report.day));
-			switch (person.getDiseaseStatus()) {
-				case susceptible:
-					report.nSusceptible++;
-					district.nSusceptible++;
-					break;
-				case infectedButNotContagious:
-					report.nInfectedButNotContagious++;
-					district.nInfectedButNotContagious++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case contagious:
-					report.nContagious++;
-					district.nContagious++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case showingSymptoms:
-					report.nShowingSymptoms++;
-					district.nShowingSymptoms++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case seriouslySick:
-				case seriouslySickAfterCritical:
-					report.nSeriouslySick++;
-					district.nSeriouslySick++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case critical:
-					report.nCritical++;
-					district.nCritical++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case recovered:
-					report.nRecovered++;
-					district.nRecovered++;
-					break;
-				default:
-					throw new IllegalStateException("Unexpected value: " + person.getDiseaseStatus());
-			}
-			switch (person.getQuarantineStatus()) {
-				// For now there is no separation in the report between full and home
-				case atHome:
-					report.nInQuarantineHome++;
-					district.nInQuarantineHome++;
-					break;
-				case full:
-					report.nInQuarantineFull++;
-					district.nInQuarantineFull++;
-					break;
-				case no:
-					break;
-				default:
-					throw new IllegalStateException("Unexpected value: " + person.getQuarantineStatus());
-			}
-
-			switch (person.getVaccinationStatus()) {
-				case yes:
-					report.nVaccinated++;
-					district.nVaccinated++;
-				case no:
-					break;
-				default:
-					throw new IllegalArgumentException("Unexpected value: " + person.getVaccinationStatus());
-			}
-
-			switch (person.getReVaccinationStatus()) {
-				case yes:
-					report.nReVaccinated++;
-					district.nReVaccinated++;
-				case no:
-					break;
-				default:
-					throw new IllegalArgumentException("Unexpected value: " + person.getReVaccinationStatus());
-			}
-
-			if (person.daysSinceTest(iteration) == 0) {
-				report.nTested++;
-				district.nTested++;
-			}
+		for (DistrictCounts counts : districtCounts) {
+			InfectionReport district = new InfectionReport(counts.name, report.time, report.date, report.day);
+			counts.addTo(district, iteration);
+			counts.addTo(report, iteration);
+			reports.put(counts.name, district);
 		}
 
 		for (String district : reports.keySet()) {
@@ -418,6 +375,16 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 */
 	public void reportInfection(EpisimPerson personWrapper, EpisimPerson infector, double now, String infectionType,
 								VirusStrain strain, double prob, EpisimContainer<?> container) {
+		reportInfection(personWrapper, infector, now, infectionType, strain, prob, container, container.getPersons().size());
+	}
+
+	/**
+	 * Report the occurrence of an infection, with the group size at the time of infection given explicitly.
+	 *
+	 * @see #reportInfection(EpisimPerson, EpisimPerson, double, String, VirusStrain, double, EpisimContainer)
+	 */
+	public void reportInfection(EpisimPerson personWrapper, EpisimPerson infector, double now, String infectionType,
+								VirusStrain strain, double prob, EpisimContainer<?> container, int groupSize) {
 
 		int cnt = specificInfectionsCnt.getOpaque();
 		// This counter is used by many threads, for better performance we use very weak memory guarantees here
@@ -429,7 +396,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 
 		strains.mergeInt(strain, 1, Integer::sum);
 		manager.processEvent(new EpisimInfectionEvent(now, personWrapper.getPersonId(), infector.getPersonId(),
-				personWrapper.getCurrentContainer().getContainerId(), infectionType, container.getPersons().size(), strain, prob));
+				container.getContainerId(), infectionType, groupSize, strain, prob));
 
 
 		String[] array = new String[InfectionEventsWriterFields.values().length];
@@ -438,7 +405,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		array[InfectionEventsWriterFields.infected.ordinal()] = personWrapper.getPersonId().toString();
 		array[InfectionEventsWriterFields.infectionType.ordinal()] = infectionType;
 		array[InfectionEventsWriterFields.date.ordinal()] = memorizedDate;
-		array[InfectionEventsWriterFields.groupSize.ordinal()] = Long.toString(container.getPersons().size());
+		array[InfectionEventsWriterFields.groupSize.ordinal()] = Long.toString(groupSize);
 		array[InfectionEventsWriterFields.facility.ordinal()] = container.getContainerId().toString();
 		array[InfectionEventsWriterFields.virusStrain.ordinal()] = strain.toString();
 		array[InfectionEventsWriterFields.probability.ordinal()] = Double.toString(prob);
@@ -453,11 +420,21 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 * @see EpisimContactEvent
 	 */
 	public void reportContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
-							  StringBuilder actType, double duration) {
+							  CharSequence actType, double duration) {
+		reportContact(now, person, contactPerson, container, actType, duration, container.getPersons().size());
+	}
+
+	/**
+	 * Report a contact with the group size given explicitly.
+	 *
+	 * @see #reportContact(double, EpisimPerson, EpisimPerson, EpisimContainer, CharSequence, double)
+	 */
+	public void reportContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
+							  CharSequence actType, double duration, int groupSize) {
 
 		if (writeEvents == EpisimConfigGroup.WriteEvents.tracing || writeEvents == EpisimConfigGroup.WriteEvents.all) {
 			manager.processEvent(new EpisimContactEvent(now, person.getPersonId(), contactPerson.getPersonId(), container.getContainerId(),
-					actType.toString(), duration, container.getPersons().size()));
+					actType.toString(), duration, groupSize));
 		}
 
 	}
@@ -513,6 +490,119 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		writer.append(timeUse, "\n");
 	}
 
+	/**
+	 * Counts all persons again.
+	 */
+	private void recount(Collection<EpisimPerson> persons, int iteration) {
+
+		districtCounts.clear();
+		districtIndex.clear();
+
+		for (EpisimPerson person : persons) {
+			person.setDistrictIndex(-1);
+			DistrictCounts counts = getCounts(person);
+
+			counts.disease[person.getDiseaseStatus().ordinal()]++;
+			counts.quarantine[person.getQuarantineStatus().ordinal()]++;
+
+			if (person.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes)
+				counts.nVaccinated++;
+
+			if (person.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.yes)
+				counts.nReVaccinated++;
+
+			counts.testDay = iteration;
+			if (person.daysSinceTest(iteration) == 0)
+				counts.nTested++;
+		}
+
+		countsValid = true;
+	}
+
+	/**
+	 * Returns the counts for the district of a person, which are created if not present yet.
+	 */
+	private DistrictCounts getCounts(EpisimPerson person) {
+
+		int index = person.getDistrictIndex();
+		if (index >= 0)
+			return districtCounts.get(index);
+
+		String districtName = person.getDistrict();
+		DistrictCounts counts = districtIndex.computeIfAbsent(districtName == null ? "unknown" : districtName, name -> {
+			DistrictCounts c = new DistrictCounts(name, districtCounts.size());
+			districtCounts.add(c);
+			return c;
+		});
+
+		person.setDistrictIndex(counts.index);
+		return counts;
+	}
+
+	/**
+	 * Whether the state of a person is included in the current counts. Counts are invalidated when an unknown person is encountered.
+	 */
+	private boolean isCounted(EpisimPerson person) {
+		if (countsValid && person.getDistrictIndex() < 0)
+			countsValid = false;
+
+		return countsValid;
+	}
+
+	/**
+	 * Update counts after disease status of a person changed.
+	 */
+	void countDiseaseStatus(EpisimPerson person, EpisimPerson.DiseaseStatus oldStatus, EpisimPerson.DiseaseStatus newStatus) {
+		if (!isCounted(person)) return;
+
+		DistrictCounts counts = getCounts(person);
+		counts.disease[oldStatus.ordinal()]--;
+		counts.disease[newStatus.ordinal()]++;
+	}
+
+	/**
+	 * Update counts after quarantine status of a person changed.
+	 */
+	void countQuarantineStatus(EpisimPerson person, EpisimPerson.QuarantineStatus oldStatus, EpisimPerson.QuarantineStatus newStatus) {
+		if (!isCounted(person)) return;
+
+		DistrictCounts counts = getCounts(person);
+		counts.quarantine[oldStatus.ordinal()]--;
+		counts.quarantine[newStatus.ordinal()]++;
+	}
+
+	/**
+	 * Update counts after (re-)vaccination status of a person changed.
+	 */
+	void countVaccinationStatus(EpisimPerson person, EpisimPerson.VaccinationStatus oldStatus, EpisimPerson.VaccinationStatus newStatus,
+								boolean reVaccination) {
+		if (!isCounted(person) || oldStatus == newStatus) return;
+
+		DistrictCounts counts = getCounts(person);
+		int delta = newStatus == EpisimPerson.VaccinationStatus.yes ? 1 : -1;
+		if (reVaccination)
+			counts.nReVaccinated += delta;
+		else
+			counts.nVaccinated += delta;
+	}
+
+	/**
+	 * Update counts after the test date of a person changed. Only tests at the latest day are counted.
+	 */
+	void countTest(EpisimPerson person, int oldDay, int newDay) {
+		if (!isCounted(person)) return;
+
+		DistrictCounts counts = getCounts(person);
+		if (oldDay == counts.testDay)
+			counts.nTested--;
+
+		if (newDay > counts.testDay) {
+			counts.testDay = newDay;
+			counts.nTested = 1;
+		} else if (newDay == counts.testDay)
+			counts.nTested++;
+	}
+
 	/**
 	 * Report that a person status has changed and publish corresponding event.
 	 */
@@ -522,7 +612,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 
 		if (newStatus == EpisimPerson.DiseaseStatus.seriouslySick || newStatus == EpisimPerson.DiseaseStatus.contagious ||
 				newStatus == EpisimPerson.DiseaseStatus.showingSymptoms || newStatus == EpisimPerson.DiseaseStatus.critical) {
-			String districtName = (String) person.getAttributes().getAttribute("district");
+			String districtName = person.getDistrict();
 			cumulativeCases.get(newStatus).mergeInt(districtName == null ? "unknown" : districtName, 1, Integer::sum);
 		}
 
@@ -560,9 +650,24 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	}
 
 	/**
-	 * Write outdoor fraction for each day.
+	 * Write performance metrics of one day.
+	 *
+	 * @param row values created by {@link PerformanceMetrics#endDay(String)}
+	 */
+	void reportPerformance(String[] row) {
+		if (performance != null)
+			writer.append(performance, row);
+	}
+
+	/**
+	 * Write outdoor fraction for each day. Only the first call for each day is written, as there may be multiple
+	 * infection models with the same values when replaying in parallel.
 	 */
 	public void reportOutdoorFraction(double outdoorFraction, int iteration) {
+		if (iteration == outdoorFractionIteration)
+			return;
+
+		outdoorFractionIteration = iteration;
 		String date = episimConfig.getStartDate().plusDays(iteration - 1).toString();
 
 		try {
@@ -586,6 +691,9 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		writer.close(outdoorFraction);
 		writer.close(virusStrains);
 
+		if (performance != null)
+			writer.close(performance);
+
 	}
 
 	/**
@@ -602,7 +710,14 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 				|| (writeEvents == EpisimConfigGroup.WriteEvents.tracing && event instanceof EpisimTracingEvent)
 				|| (writeEvents == EpisimConfigGroup.WriteEvents.tracing && event instanceof EpisimContactEvent)) {
 
-			writer.append(events, event);
+			if (binaryEvents != null) {
+				try {
+					binaryEvents.append(event);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			} else
+				writer.append(events, event);
 
 		} else if (writeEvents == EpisimConfigGroup.WriteEvents.all || writeEvents == EpisimConfigGroup.WriteEvents.input) {
 
@@ -621,6 +736,15 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		if (iteration == 0 || writeEvents == EpisimConfigGroup.WriteEvents.none)
 			return;
 
+		if (eventsFormat == EpisimConfigGroup.EventsFormat.binary) {
+			try {
+				binaryEvents = new EpisimEventsBinaryWriter(eventPath.resolve(String.format("day_%03d", iteration) + EpisimEventsBinaryWriter.EXTENSION));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return;
+		}
+
 		events = IOUtils.getBufferedWriter(eventPath.resolve(String.format("day_%03d.xml.gz", iteration)).toString());
 		writer.append(events, "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
 	}
@@ -630,6 +754,15 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 * Flush written events.
 	 */
 	void flushEvents() {
+		if (binaryEvents != null) {
+			try {
+				binaryEvents.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			binaryEvents = null;
+		}
+
 		if (events != null) {
 			writer.append(events, "</events>");
 			writer.close(events);
@@ -674,6 +807,9 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		for (VirusStrain value : VirusStrain.values()) {
 			strains.put(value, in.readInt());
 		}
+
+		// person state was restored without updating the counts
+		countsValid = false;
 	}
 
 	enum InfectionsWriterFields {
@@ -684,6 +820,60 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 
 	enum InfectionEventsWriterFields {time, infector, infected, infectionType, date, groupSize, facility, virusStrain, probability}
 
+	/**
+	 * Number of persons by status within one district.
+	 */
+	private static final class DistrictCounts {
+
+		private final String name;
+		private final int index;
+		private final int[] disease = new int[EpisimPerson.DiseaseStatus.values().length];
+		private final int[] quarantine = new int[EpisimPerson.QuarantineStatus.values().length];
+		private int nVaccinated;
+		private int nReVaccinated;
+
+		/**
+		 * Persons tested at {@link #testDay}.
+		 */
+		private int nTested;
+		private int testDay = -1;
+
+		private DistrictCounts(String name, int index) {
+			this.name = name;
+			this.index = index;
+		}
+
+		/**
+		 * Add counts to a report.
+		 */
+		private void addTo(InfectionReport report, int iteration) {
+
+			int seriouslySick = disease[EpisimPerson.DiseaseStatus.seriouslySick.ordinal()]
+					+ disease[EpisimPerson.DiseaseStatus.seriouslySickAfterCritical.ordinal()];
+
+			report.nSusceptible += disease[EpisimPerson.DiseaseStatus.susceptible.ordinal()];
+			report.nInfectedButNotContagious += disease[EpisimPerson.DiseaseStatus.infectedButNotContagious.ordinal()];
+			report.nContagious += disease[EpisimPerson.DiseaseStatus.contagious.ordinal()];
+			report.nShowingSymptoms += disease[EpisimPerson.DiseaseStatus.showingSymptoms.ordinal()];
+			report.nSeriouslySick += seriouslySick;
+			report.nCritical += disease[EpisimPerson.DiseaseStatus.critical.ordinal()];
+			report.nRecovered += disease[EpisimPerson.DiseaseStatus.recovered.ordinal()];
+			report.nTotalInfected += disease[EpisimPerson.DiseaseStatus.infectedButNotContagious.ordinal()]
+					+ disease[EpisimPerson.DiseaseStatus.contagious.ordinal()]
+					+ disease[EpisimPerson.DiseaseStatus.showingSymptoms.ordinal()]
+					+ seriouslySick
+					+ disease[EpisimPerson.DiseaseStatus.critical.ordinal()];
+
+			report.nInQuarantineHome += quarantine[EpisimPerson.QuarantineStatus.atHome.ordinal()];
+			report.nInQuarantineFull += quarantine[EpisimPerson.QuarantineStatus.full.ordinal()];
+			report.nVaccinated += nVaccinated;
+			report.nReVaccinated += nReVaccinated;
+
+			if (testDay == iteration)
+				report.nTested += nTested;
+		}
+	}
+
 	/**
 	 * Detailed infection report for the end of a day.
 	 * Although the fields are mutable, do not change them outside this class.
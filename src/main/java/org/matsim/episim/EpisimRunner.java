@@ -33,14 +33,15 @@ import org.matsim.core.controler.ControlerUtils;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.episim.model.ProgressionModel;
 
-import java.io.Externalizable;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Main entry point and runner of one epidemic simulation.
@@ -58,16 +59,28 @@ public final class EpisimRunner {
 	private final Provider<ReplayHandler> replayProvider;
 	private final Provider<EpisimReporting> reportingProvider;
 	private final Provider<ProgressionModel> progressionProvider;
+	private final PerformanceMetrics metrics;
+
+	/**
+	 * File name of the last written binary snapshot, which following delta snapshots are based on.
+	 */
+	private String lastSnapshot;
+
+	/**
+	 * Number of delta snapshots written since the last full snapshot.
+	 */
+	private int deltas;
 
 	@Inject
 	public EpisimRunner(Config config, EventsManager manager, Provider<InfectionEventHandler> handlerProvider, Provider<ReplayHandler> replay,
-	                    Provider<EpisimReporting> reportingProvider, Provider<ProgressionModel> progressionProvider) {
+	                    Provider<EpisimReporting> reportingProvider, Provider<ProgressionModel> progressionProvider, PerformanceMetrics metrics) {
 		this.config = config;
 		this.handlerProvider = handlerProvider;
 		this.manager = manager;
 		this.replayProvider = replay;
 		this.reportingProvider = reportingProvider;
 		this.progressionProvider = progressionProvider;
+		this.metrics = metrics;
 	}
 
 	/**
@@ -76,6 +89,22 @@ public final class EpisimRunner {
 	 * @param maxIterations maximum number of iterations (inclusive)
 	 */
 	public void run(int maxIterations) {
+		run(maxIterations, null);
+	}
+
+	/**
+	 * Continues a simulation from a branch snapshot of another run. The output of the base run is copied into the output directory.
+	 *
+	 * @param maxIterations maximum number of iterations (inclusive)
+	 * @param branch        snapshot to start from, if null the simulation is started normally
+	 * @throws IllegalStateException if the configuration differs from the base run before the branch day
+	 * @see #branch(int)
+	 */
+	public void run(int maxIterations, @Nullable BranchSnapshot branch) {
+
+		// fail before anything is simulated or written
+		if (branch != null)
+			branch.checkHistory(config);
 
 		// Construct these dependencies as late as possible, so all other configs etc have been fully configured
 		final ReplayHandler replay = replayProvider.get();
@@ -90,14 +119,14 @@ public final class EpisimRunner {
 
 		ControlerUtils.checkConfigConsistencyAndWriteToLog(config, "Just before starting iterations");
 
-		handler.init(replay.getEvents());
+		replay.init(handler);
 
 		Path output = Path.of(config.controler().getOutputDirectory());
 
 		int iteration = 1;
-		if (episimConfig.getStartFromSnapshot() != null) {
+		if (branch != null || episimConfig.getStartFromSnapshot() != null) {
 			reporting.close();
-			iteration = readSnapshot(output, Path.of(episimConfig.getStartFromSnapshot()));
+			iteration = branch != null ? restoreBranch(output, branch) : readSnapshot(output, Path.of(episimConfig.getStartFromSnapshot()));
 			try {
 				reporting.append(episimConfig.getStartDate().plusDays(iteration - 1).toString());
 			} catch (IOException e) {
@@ -109,6 +138,80 @@ public final class EpisimRunner {
 
 		log.info("Starting from iteration {}...", iteration);
 
+		try {
+			loop(replay, handler, reporting, output, iteration, maxIterations, null);
+		} finally {
+			handler.close();
+		}
+
+		reporting.close();
+	}
+
+	/**
+	 * Simulates a run until the day before {@code iteration} and captures its state in memory.
+	 * Multiple runs that share the same history can then be continued from this snapshot via {@link #run(int, BranchSnapshot)}.
+	 *
+	 * @param iteration first iteration of the branched runs
+	 */
+	public BranchSnapshot branch(int iteration) {
+
+		if (iteration < 1)
+			throw new IllegalArgumentException("Branch iteration must be at least 1.");
+
+		final ReplayHandler replay = replayProvider.get();
+		final InfectionEventHandler handler = handlerProvider.get();
+		final EpisimReporting reporting = reportingProvider.get();
+		final ProgressionModel progressionModel = progressionProvider.get();
+
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+
+		if (episimConfig.getWriteEvents() != EpisimConfigGroup.WriteEvents.none)
+			manager.addHandler(reporting);
+
+		replay.init(handler);
+
+		Path output = Path.of(config.controler().getOutputDirectory());
+
+		log.info("Simulating base run until iteration {}...", iteration);
+
+		List<EpisimReporting.InfectionReport> reports = new ArrayList<>();
+		try {
+			loop(replay, handler, reporting, output, 1, iteration - 1, reports);
+		} finally {
+			handler.close();
+		}
+
+		BranchSnapshot snapshot;
+		try {
+			ByteArrayOutputStream state = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(state);
+			handler.writeBinary(dos, false);
+			dos.flush();
+
+			byte[] progression = progressionModel instanceof Externalizable ? serialize((Externalizable) progressionModel) : null;
+
+			snapshot = new BranchSnapshot(iteration, output, config.controler().getRunId(), state.toByteArray(), serialize(reporting), progression,
+					config, reports);
+
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not create branch snapshot", e);
+		}
+
+		reporting.close();
+
+		return snapshot;
+	}
+
+	/**
+	 * Performs iterations from {@code iteration} to {@code maxIterations} (inclusive).
+	 *
+	 * @param reports if not null, the report of each simulated day is added
+	 */
+	private void loop(ReplayHandler replay, InfectionEventHandler handler, EpisimReporting reporting, Path output,
+					  int iteration, int maxIterations, @Nullable List<EpisimReporting.InfectionReport> reports) {
+
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+
 		for (; iteration <= maxIterations; iteration++) {
 
 			if (episimConfig.getSnapshotInterval() > 0 && iteration % episimConfig.getSnapshotInterval() == 0)
@@ -120,9 +223,10 @@ public final class EpisimRunner {
 			if (!doStep(replay, handler, reporting, iteration))
 				break;
 
-		}
+			if (reports != null)
+				reports.add(handler.getReport());
 
-		reporting.close();
+		}
 	}
 
 	/**
@@ -132,6 +236,8 @@ public final class EpisimRunner {
 	 */
 	boolean doStep(final ReplayHandler replay, final InfectionEventHandler handler, final EpisimReporting reporting, int iteration) {
 
+		metrics.startDay(iteration);
+
 		manager.resetHandlers(iteration);
 		handler.reset(iteration);
 
@@ -141,10 +247,17 @@ public final class EpisimRunner {
 		DayOfWeek day = EpisimUtils.getDayOfWeek(ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class), iteration);
 
 		// Process all events
+		metrics.begin(PerformanceMetrics.Phase.replay);
 		replay.replayEvents(handler, day);
+		metrics.end(PerformanceMetrics.Phase.replay);
 
 		reporting.flushEvents();
 
+		if (metrics.isEnabled()) {
+			handler.collectCounters();
+			reporting.reportPerformance(metrics.endDay(handler.getReport().date));
+		}
+
 		return true;
 	}
 
@@ -183,7 +296,28 @@ public final class EpisimRunner {
 			oos.flush();
 			archive.closeArchiveEntry();
 
-			writeObject(handler, "state", archive);
+			if (episimConfig.getSnapshotFormat() == EpisimConfigGroup.SnapshotFormat.binary) {
+
+				boolean delta = lastSnapshot != null && deltas < episimConfig.getSnapshotDeltas();
+				if (delta) {
+					archive.putArchiveEntry(new ZipArchiveEntry("base"));
+					archive.write(lastSnapshot.getBytes(StandardCharsets.UTF_8));
+					archive.closeArchiveEntry();
+					deltas++;
+				} else
+					deltas = 0;
+
+				archive.putArchiveEntry(new ZipArchiveEntry("state.bin"));
+				DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(archive));
+				handler.writeBinary(dos, delta);
+				dos.flush();
+				archive.closeArchiveEntry();
+
+				lastSnapshot = path.getFileName().toString();
+
+			} else
+				writeObject(handler, "state", archive);
+
 			writeObject(reporting, "reporting", archive);
 
 			if (progressionModel instanceof Externalizable)
@@ -216,6 +350,8 @@ public final class EpisimRunner {
 		ProgressionModel progressionModel = progressionProvider.get();
 
 		int iteration = -1;
+		String base = null;
+		byte[] state = null;
 		try (var in = Files.newInputStream(path)) {
 
 			ArchiveInputStream archive = new ArchiveStreamFactory()
@@ -241,6 +377,12 @@ public final class EpisimRunner {
 					handler.readExternal(ois);
 				}
 
+				if (name.equals("state.bin"))
+					state = archive.readAllBytes();
+
+				if (name.equals("base"))
+					base = new String(archive.readAllBytes(), StandardCharsets.UTF_8);
+
 				if (name.equals("reporting")) {
 					ObjectInputStream ois = new ObjectInputStream(archive);
 					reporting.readExternal(ois);
@@ -257,12 +399,115 @@ public final class EpisimRunner {
 
 			archive.close();
 
-			return iteration;
-
 		} catch (IOException | ArchiveException | ClassNotFoundException e) {
 			throw new IllegalStateException("Could not read snapshot", e);
 		}
 
+		if (state != null) {
+			try {
+				readBinaryState(handler, path, base, state);
+			} catch (IOException | ArchiveException e) {
+				throw new IllegalStateException("Could not read snapshot", e);
+			}
+		}
+
+		return iteration;
+	}
+
+	/**
+	 * Restores binary state, recursively applying all base snapshots first if it is a delta.
+	 *
+	 * @return id tables of the full snapshot
+	 */
+	private InfectionEventHandler.SnapshotTables readBinaryState(InfectionEventHandler handler, Path path, @Nullable String base, byte[] state)
+			throws IOException, ArchiveException {
+
+		InfectionEventHandler.SnapshotTables tables = null;
+
+		if (base != null) {
+			Path basePath = path.resolveSibling(base);
+			if (!Files.exists(basePath))
+				throw new IllegalStateException("Base snapshot " + basePath + " of delta snapshot " + path + " does not exist.");
+
+			String baseOfBase = null;
+			byte[] baseState = null;
+
+			try (var in = Files.newInputStream(basePath)) {
+				ArchiveInputStream archive = new ArchiveStreamFactory().createArchiveInputStream("zip", in);
+
+				ArchiveEntry entry;
+				while ((entry = archive.getNextEntry()) != null) {
+					if (entry.getName().equals("state.bin"))
+						baseState = archive.readAllBytes();
+					else if (entry.getName().equals("base"))
+						baseOfBase = new String(archive.readAllBytes(), StandardCharsets.UTF_8);
+				}
+			}
+
+			if (baseState == null)
+				throw new IllegalStateException("Base snapshot " + basePath + " contains no binary state.");
+
+			log.info("Restoring base snapshot {}", basePath);
+			tables = readBinaryState(handler, basePath, baseOfBase, baseState);
+		}
+
+		return handler.readBinary(new DataInputStream(new ByteArrayInputStream(state)), tables);
+	}
+
+	/**
+	 * Restore state from a branch snapshot and copy the output of its base run.
+	 *
+	 * @return starting iteration
+	 */
+	private int restoreBranch(Path output, BranchSnapshot branch) {
+
+		InfectionEventHandler handler = handlerProvider.get();
+		EpisimReporting reporting = reportingProvider.get();
+		ProgressionModel progressionModel = progressionProvider.get();
+
+		log.info("Copying output from {} into {}", branch.getOutput(), output);
+
+		String prefix = branch.getRunId() != null ? branch.getRunId() + "." : null;
+
+		try (var files = Files.walk(branch.getOutput())) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+
+				// same files as in a snapshot
+				String name = file.getFileName().toString();
+				if (!Files.isRegularFile(file) || name.endsWith(".zip") || name.endsWith(".txt.gz"))
+					continue;
+
+				if (prefix != null && name.startsWith(prefix))
+					name = name.substring(prefix.length());
+
+				Path target = output.resolve(branch.getOutput().relativize(file)).resolveSibling(name);
+				Files.createDirectories(target.getParent());
+				Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			handler.readBinary(new DataInputStream(new ByteArrayInputStream(branch.state)), null);
+			reporting.readExternal(new ObjectInputStream(new ByteArrayInputStream(branch.reporting)));
+
+			if (branch.progression != null) {
+				if (progressionModel instanceof Externalizable)
+					((Externalizable) progressionModel).readExternal(new ObjectInputStream(new ByteArrayInputStream(branch.progression)));
+				else
+					log.warn("Progression state present, but model is not Externalizable");
+			}
+
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalStateException("Could not restore branch snapshot", e);
+		}
+
+		return branch.getIteration();
+	}
+
+	private static byte[] serialize(Externalizable obj) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		obj.writeExternal(oos);
+		oos.flush();
+		return bytes.toByteArray();
 	}
 
 	/**
@@ -59,6 +59,22 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public final class EpisimUtils {
 
+	/**
+	 * Seed field of {@link SplittableRandom}, null if it is not accessible.
+	 */
+	private static final Field seedField;
+
+	static {
+		Field field;
+		try {
+			field = SplittableRandom.class.getDeclaredField("seed");
+			field.setAccessible(true);
+		} catch (NoSuchFieldException | RuntimeException e) {
+			field = null;
+		}
+		seedField = field;
+	}
+
 	private EpisimUtils() {
 	}
 
@@ -145,9 +161,7 @@ public final class EpisimUtils {
 	 */
 	public static long getSeed(SplittableRandom rnd) {
 		try {
-			Field field = rnd.getClass().getDeclaredField("seed");
-			field.setAccessible(true);
-			return (long) field.get(rnd);
+			return seedField().getLong(rnd);
 		} catch (ReflectiveOperationException e) {
 			throw new IllegalStateException("Could not extract seed", e);
 		}
@@ -158,14 +172,19 @@ public final class EpisimUtils {
 	 */
 	public static void setSeed(SplittableRandom rnd, long seed) {
 		try {
-			Field field = rnd.getClass().getDeclaredField("seed");
-			field.setAccessible(true);
-			field.set(rnd, seed);
+			seedField().setLong(rnd, seed);
 		} catch (ReflectiveOperationException e) {
 			throw new IllegalStateException("Could not extract seed", e);
 		}
 	}
 
+	private static Field seedField() throws NoSuchFieldException {
+		if (seedField == null)
+			throw new NoSuchFieldException("Seed of SplittableRandom is not accessible");
+
+		return seedField;
+	}
+
 	/**
 	 * Find the current valid entry from a map of dates and values.
 	 *
@@ -23,7 +23,10 @@ package org.matsim.episim;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.typesafe.config.ConfigFactory;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.objects.AbstractObject2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.apache.logging.log4j.LogManager;
@@ -36,24 +39,30 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.model.AbstractContactModel;
 import org.matsim.episim.model.ContactModel;
+import org.matsim.episim.model.InfectionLocationIndex;
 import org.matsim.episim.model.InitialInfectionHandler;
 import org.matsim.episim.model.ProgressionModel;
+import org.matsim.episim.model.SymmetricContactModel;
 import org.matsim.episim.model.VaccinationModel;
 import org.matsim.episim.model.testing.TestingModel;
+import org.matsim.episim.policy.DailyRestrictionTable;
 import org.matsim.episim.policy.Restriction;
 import org.matsim.episim.policy.ShutdownPolicy;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 import org.matsim.vehicles.Vehicle;
 
-import java.io.Externalizable;
-import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectOutput;
+import javax.annotation.Nullable;
+import java.io.*;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static org.matsim.episim.EpisimUtils.readChars;
 import static org.matsim.episim.EpisimUtils.writeChars;
@@ -91,12 +100,27 @@ public final class InfectionEventHandler implements Externalizable {
 			// the number of facility ids is not known beforehand, so we use this as initial estimate
 			(int) (Id.getNumberOfIds(Vehicle.class) * 1.3));
 
+	/**
+	 * Columnar state of all persons in {@link #personMap}.
+	 */
+	private final PersonStateStore personState;
+
 	/**
 	 * Maps activity type to its parameter.
 	 * This can be an identity map because the strings are canonicalized by the {@link ReplayHandler}.
 	 */
 	private final Map<String, EpisimPerson.Activity> paramsMap = new IdentityHashMap<>();
 
+	/**
+	 * Next id of an activity type.
+	 */
+	private int activityIds = 0;
+
+	/**
+	 * Container names ordered by the index used in the {@link DailyRestrictionTable}.
+	 */
+	private final List<String> containerTypes;
+
 	/**
 	 * Holds the current restrictions in place for all the activities.
 	 */
@@ -129,6 +153,11 @@ public final class InfectionEventHandler implements Externalizable {
 
 	private final TestingModel testingModel;
 
+	/**
+	 * Persons by the container they have been infected in.
+	 */
+	private final InfectionLocationIndex infectionLocations;
+
 	/**
 	 * Scenario with population information.
 	 */
@@ -149,23 +178,66 @@ public final class InfectionEventHandler implements Externalizable {
 	private boolean init = false;
 	private int iteration = 0;
 
+	/**
+	 * Whether the progression of all persons needs to be updated at the next day, e.g. after restoring a snapshot.
+	 */
+	private boolean updateAll = true;
+
 	/**
 	 * Most recent infection report for all persons.
 	 */
 	private EpisimReporting.InfectionReport report;
 
+	/**
+	 * Events compiled for fast replay, null if not available.
+	 */
+	private CompiledEvents compiled;
+
+	/**
+	 * Shards for parallel replay, null if events are replayed sequentially.
+	 */
+	private List<ReplayShard> shards;
+	private ForkJoinPool pool;
+
+	/**
+	 * Number of shards, if 0 one shard per thread is used.
+	 */
+	private int numShards;
+
+	/**
+	 * Random number stream of each container during parallel replay, facilities are followed by vehicles.
+	 */
+	private SplittableRandom[] containerStreams;
+
+	/**
+	 * Cached co-presence network, null if contacts are evaluated by replaying the events.
+	 */
+	private CoPresenceNetwork network;
+	private double[] networkEnterTimes;
+
+	/**
+	 * Whether nobody is contagious on the current day and the contact model has no effect.
+	 * Events are then only replayed to move persons between containers and to account their time use.
+	 */
+	private boolean quiescent;
+	private boolean skipQuiescentDays = true;
+
+	private final PerformanceMetrics metrics;
+
 	@Inject
 	public InfectionEventHandler(Config config, Scenario scenario, ProgressionModel progressionModel, EpisimReporting reporting,
 	                             InitialInfectionHandler initialInfections, ContactModel contactModel, VaccinationModel vaccinationModel,
-	                             TestingModel testingModel,
-	                             SplittableRandom rnd) {
+	                             TestingModel testingModel, InfectionLocationIndex infectionLocations, AttributeRegistry attributes,
+	                             PerformanceMetrics metrics, SplittableRandom rnd) {
 		this.config = config;
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 		this.tracingConfig = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class);
 		this.vaccinationConfig = ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class);
 		this.scenario = scenario;
+		this.personState = new PersonStateStore(Id.getNumberOfIds(Person.class), attributes);
 		this.policy = episimConfig.createPolicyInstance();
 		this.restrictions = episimConfig.createInitialRestrictions();
+		this.containerTypes = episimConfig.getContainerTypes();
 		this.reporting = reporting;
 		this.rnd = rnd;
 		this.localRnd = new SplittableRandom(config.global().getRandomSeed() + 65536);
@@ -175,6 +247,8 @@ public final class InfectionEventHandler implements Externalizable {
 		this.initialInfections.setInfectionsLeft(episimConfig.getInitialInfections());
 		this.vaccinationModel = vaccinationModel;
 		this.testingModel = testingModel;
+		this.infectionLocations = infectionLocations;
+		this.metrics = metrics;
 	}
 
 	/**
@@ -198,6 +272,19 @@ public final class InfectionEventHandler implements Externalizable {
 	 * @param events All events in the simulation
 	 */
 	public void init(Map<DayOfWeek, List<Event>> events) {
+		init(events, false);
+	}
+
+	/**
+	 * Initializes like {@link #init(Map)} and returns the immutable part of the result, which can be used to initialize other runs
+	 * with {@link #init(SharedInit)}.
+	 */
+	SharedInit initAndShare(Map<DayOfWeek, List<Event>> events) {
+		return init(events, true);
+	}
+
+	@Nullable
+	private SharedInit init(Map<DayOfWeek, List<Event>> events, boolean share) {
 
 		iteration = 0;
 
@@ -404,131 +491,670 @@ public final class InfectionEventHandler implements Externalizable {
 		paramsMap.computeIfAbsent("tr", this::createActivityType);
 		paramsMap.computeIfAbsent("home", this::createActivityType);
 
+		for (Object2IntMap.Entry<EpisimContainer<?>> kv : maxGroupSize.object2IntEntrySet()) {
+			EpisimContainer<?> container = kv.getKey();
+			initContainer(container, totalUsers.getInt(container), kv.getIntValue(), activityUsage.get(container), useVehicles);
+		}
+
+		policy.init(episimConfig.getStartDate(), ImmutableMap.copyOf(this.restrictions));
+
+		// input events need to be passed to the reporting, which is only possible without compilation
+		if (episimConfig.getWriteEvents() != EpisimConfigGroup.WriteEvents.input && episimConfig.getWriteEvents() != EpisimConfigGroup.WriteEvents.all) {
+			compiled = CompiledEvents.compile(events, personMap, pseudoFacilityMap, vehicleMap);
+			log.info("Compiled events with {} persons, {} facilities and {} vehicles", compiled.persons.length,
+					compiled.facilities.length, compiled.vehicles.length);
+		}
+
+		personMap.values().forEach(EpisimPerson::compileActivityMask);
+
+		initReplay();
+
+		SharedInit shared = null;
+		if (share) {
+			shared = new SharedInit(personMap.values(), pseudoFacilityMap, vehicleMap, totalUsers, maxGroupSize, activityUsage, compiled);
+			log.info("Created shared initialization with {} persons and {} activity types", shared.persons.length, shared.actTypes.length);
+		}
+
+		// Clear time-use after first iteration
+		personMap.values().forEach(p -> p.getSpentTime().clear());
+		init = true;
+
+		return shared;
+	}
+
+	/**
+	 * Initializes all data structures using the immutable data of another run, which was initialized with the same events and population.
+	 * Trajectories and compiled events are shared with the other run.
+	 * Note that the events of the initialization are not passed to the contact model, which is only relevant for models
+	 * keeping state from {@link ContactModel#notifyEnterFacility(EpisimPerson, EpisimFacility, double)}.
+	 */
+	void init(SharedInit shared) {
+
+		iteration = 0;
+
+		EpisimPerson[] persons = new EpisimPerson[shared.persons.length];
+		for (int i = 0; i < persons.length; i++) {
+			persons[i] = createPerson(shared.persons[i]);
+			personMap.put(shared.persons[i], persons[i]);
+		}
+
+		EpisimPerson.Activity[] acts = new EpisimPerson.Activity[shared.actTypes.length];
+		for (int i = 0; i < acts.length; i++)
+			acts[i] = paramsMap.computeIfAbsent(shared.actTypes[i], this::createActivityType);
+
+		for (int i = 0; i < persons.length; i++)
+			persons[i].setSchedule(shared.getTrajectory(i, acts), shared.startOfDay[i], shared.endOfDay[i], shared.firstFacilityId[i]);
+
+		EpisimContainer<?>[] containers = new EpisimContainer[shared.facilities.length + shared.vehicles.length];
+		for (int i = 0; i < shared.facilities.length; i++) {
+			EpisimFacility facility = new EpisimFacility(shared.facilities[i]);
+			pseudoFacilityMap.put(facility.getContainerId(), facility);
+			containers[i] = facility;
+		}
+
+		for (int i = 0; i < shared.vehicles.length; i++) {
+			EpisimVehicle vehicle = new EpisimVehicle(shared.vehicles[i]);
+			vehicleMap.put(vehicle.getContainerId(), vehicle);
+			containers[shared.facilities.length + i] = vehicle;
+		}
+
+		for (int c = 0; c < containers.length; c++) {
+			for (int i = shared.occupancyOffset[c]; i < shared.occupancyOffset[c + 1]; i++)
+				containers[c].addPerson(persons[shared.occupants[i]], shared.enterTimes[i]);
+		}
+
+		Object2IntMap<EpisimContainer<?>> totalUsers = new Object2IntOpenHashMap<>();
+		Object2IntMap<EpisimContainer<?>> maxGroupSize = new Object2IntOpenHashMap<>();
+		Map<EpisimContainer<?>, Object2IntMap<String>> activityUsage = new HashMap<>();
+
+		for (int c = 0; c < containers.length; c++) {
+			if (shared.maxGroupSize[c] < 0)
+				continue;
+
+			maxGroupSize.put(containers[c], shared.maxGroupSize[c]);
+			totalUsers.put(containers[c], shared.totalUsers[c]);
+			if (shared.activityUsage[c] != null)
+				activityUsage.put(containers[c], shared.activityUsage[c]);
+		}
+
+		reporting.reportContainerUsage(maxGroupSize, totalUsers, activityUsage);
+
+		boolean useVehicles = !scenario.getVehicles().getVehicles().isEmpty();
+
+		paramsMap.computeIfAbsent("tr", this::createActivityType);
+		paramsMap.computeIfAbsent("home", this::createActivityType);
+
+		for (int c = 0; c < containers.length; c++) {
+			if (shared.maxGroupSize[c] >= 0)
+				initContainer(containers[c], shared.totalUsers[c], shared.maxGroupSize[c], shared.activityUsage[c], useVehicles);
+		}
+
+		policy.init(episimConfig.getStartDate(), ImmutableMap.copyOf(this.restrictions));
+
+		if (shared.days != null) {
+			EpisimPerson[] eventPersons = new EpisimPerson[shared.eventPersons.length];
+			for (int i = 0; i < eventPersons.length; i++)
+				eventPersons[i] = persons[shared.eventPersons[i]];
+
+			EpisimFacility[] eventFacilities = new EpisimFacility[shared.eventContainers.length];
+			List<EpisimVehicle> eventVehicles = new ArrayList<>();
+			int nFacilities = 0;
+			for (int c : shared.eventContainers) {
+				if (containers[c] instanceof EpisimFacility)
+					eventFacilities[nFacilities++] = (EpisimFacility) containers[c];
+				else
+					eventVehicles.add((EpisimVehicle) containers[c]);
+			}
+
+			compiled = CompiledEvents.share(eventPersons, Arrays.copyOf(eventFacilities, nFacilities), eventVehicles.toArray(new EpisimVehicle[0]),
+					shared.eventActTypes, shared.days, shared.numShards);
+		}
+
+		personMap.values().forEach(EpisimPerson::compileActivityMask);
+
+		initReplay();
+
+		log.info("Initialized {} persons from shared data", personMap.size());
+
+		init = true;
+	}
+
+	/**
+	 * Sets the size of a container from its statistics.
+	 *
+	 * @param totalUsers   unscaled number of users
+	 * @param maxGroupSize unscaled maximum group size
+	 * @param usage        number of activities by type in this container
+	 */
+	private void initContainer(EpisimContainer<?> container, int totalUsers, int maxGroupSize, @Nullable Object2IntMap<String> usage,
+							   boolean useVehicles) {
+
 		// entry for undefined activity type
 		AbstractObject2IntMap.BasicEntry<String> undefined = new AbstractObject2IntMap.BasicEntry<>("undefined", -1);
 
-		for (Object2IntMap.Entry<EpisimContainer<?>> kv : maxGroupSize.object2IntEntrySet()) {
+		double scale = 1 / episimConfig.getSampleSize();
 
-			EpisimContainer<?> container = kv.getKey();
-			double scale = 1 / episimConfig.getSampleSize();
-
-			container.setTotalUsers((int) (totalUsers.getInt(container) * scale));
-			container.setMaxGroupSize((int) (kv.getIntValue() * scale));
-
-			Object2IntMap<String> usage = activityUsage.get(kv.getKey());
-			if (usage != null) {
-				Object2IntMap.Entry<String> max = usage.object2IntEntrySet().stream()
-						.reduce(undefined, (s1, s2) -> s1.getIntValue() > s2.getIntValue() ? s1 : s2);
-
-				if (max != undefined) {
-					// set container spaces to spaces of most used activity
-					EpisimPerson.Activity act = paramsMap.get(max.getKey());
-					if (act == null)
-						log.warn("No activity found for {}", max.getKey());
-					else
-						container.setNumSpaces(act.params.getSpacesPerFacility());
-				}
+		container.setTotalUsers((int) (totalUsers * scale));
+		container.setMaxGroupSize((int) (maxGroupSize * scale));
+
+		if (usage != null) {
+			Object2IntMap.Entry<String> max = usage.object2IntEntrySet().stream()
+					.reduce(undefined, (s1, s2) -> s1.getIntValue() > s2.getIntValue() ? s1 : s2);
+
+			if (max != undefined) {
+				// set container spaces to spaces of most used activity
+				EpisimPerson.Activity act = paramsMap.get(max.getKey());
+				if (act == null)
+					log.warn("No activity found for {}", max.getKey());
+				else
+					container.setNumSpaces(act.params.getSpacesPerFacility());
 			}
+		}
 
-			if (useVehicles && container instanceof EpisimVehicle) {
+		if (useVehicles && container instanceof EpisimVehicle) {
 
-				Id<Vehicle> vehicleId = Id.createVehicleId(container.getContainerId().toString());
-				Vehicle vehicle = scenario.getVehicles().getVehicles().get(vehicleId);
+			Id<Vehicle> vehicleId = Id.createVehicleId(container.getContainerId().toString());
+			Vehicle vehicle = scenario.getVehicles().getVehicles().get(vehicleId);
 
-				if (vehicle == null) {
-					log.warn("No type found for vehicleId={}; using capacity of 150.", vehicleId);
-					container.setTypicalCapacity(150);
-				} else {
-					int capacity = vehicle.getType().getCapacity().getStandingRoom() + vehicle.getType().getCapacity().getSeats();
-					container.setTypicalCapacity(capacity);
-				}
+			if (vehicle == null) {
+				log.warn("No type found for vehicleId={}; using capacity of 150.", vehicleId);
+				container.setTypicalCapacity(150);
+			} else {
+				int capacity = vehicle.getType().getCapacity().getStandingRoom() + vehicle.getType().getCapacity().getSeats();
+				container.setTypicalCapacity(capacity);
 			}
 		}
+	}
 
-		policy.init(episimConfig.getStartDate(), ImmutableMap.copyOf(this.restrictions));
+	/**
+	 * Prepares the replay of compiled events, either from the co-presence network or sequentially or in parallel.
+	 */
+	private void initReplay() {
 
-		// Clear time-use after first iteration
-		personMap.values().forEach(p -> p.getSpentTime().clear());
-		init = true;
-	}
+		if (episimConfig.getContactNetwork()) {
+			if (compiled == null)
+				throw new IllegalStateException("Contact network requires compiled events, which is not possible with writeEvents=" + episimConfig.getWriteEvents());
 
-	public void handleEvent(ActivityStartEvent activityStartEvent) {
-//		double now = activityStartEvent.getTime();
-		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), activityStartEvent.getTime(), iteration);
+			if (!(contactModel instanceof SymmetricContactModel))
+				throw new IllegalStateException("Contact network is only supported for SymmetricContactModel, not " + contactModel.getClass());
 
-		reporting.handleEvent(activityStartEvent);
+			if (episimConfig.getThreads() > 1)
+				log.warn("Contact network is evaluated sequentially, threads={} will not be used.", episimConfig.getThreads());
 
-		// find the person:
-		EpisimPerson episimPerson = this.personMap.get(activityStartEvent.getPersonId());
+			network = new CoPresenceNetwork(compiled, personMap.values(), pseudoFacilityMap, vehicleMap.values());
 
-		// create pseudo facility id that includes the activity type:
-		Id<ActivityFacility> episimFacilityId = activityStartEvent.getFacilityId();
+			int groups = 0;
+			long contacts = 0;
+			for (DayOfWeek day : DayOfWeek.values()) {
+				groups += network.getDay(day).size;
+				contacts += network.getDay(day).numContacts();
+			}
 
-		// find the facility
-		EpisimFacility episimFacility = this.pseudoFacilityMap.get(episimFacilityId);
+			log.info("Built contact network with {} groups and {} contacts per week", groups, contacts);
+			return;
+		}
 
-		// add person to facility
-		episimFacility.addPerson(episimPerson, now);
+		if (numShards > 0)
+			initShards(numShards);
+		else if (episimConfig.getThreads() > 1)
+			initShards(episimConfig.getThreads());
+	}
 
-		handlePersonTrajectory(episimPerson.getPersonId(), activityStartEvent.getActType());
+	/**
+	 * Use parallel replay with a fixed number of shards, independent of the number of threads. Needs to be set before {@link #init(Map)}.
+	 */
+	void setNumShards(int numShards) {
+		this.numShards = numShards;
+	}
 
-		contactModel.notifyEnterFacility(episimPerson, episimFacility, now);
+	/**
+	 * Whether contact dynamics are skipped on days without contagious persons, which is the default.
+	 * Evaluating them anyway gives the same results and is only useful to compare both paths.
+	 */
+	void setSkipQuiescentDays(boolean skip) {
+		this.skipQuiescentDays = skip;
 	}
 
-	public void handleEvent(ActivityEndEvent activityEndEvent) {
-//		double now = activityEndEvent.getTime();
-		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), activityEndEvent.getTime(), iteration);
+	/**
+	 * Partitions the containers and creates one set of models per thread, if parallel replay is possible.
+	 */
+	private void initShards(int n) {
 
-		reporting.handleEvent(activityEndEvent);
+		if (compiled == null) {
+			log.warn("Events are not compiled, parallel replay is not possible with writeEvents={}", episimConfig.getWriteEvents());
+			return;
+		}
 
-		EpisimPerson episimPerson = this.personMap.get(activityEndEvent.getPersonId());
+		// contacts are reported directly to the writer, which is not thread-safe
+		if (episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.tracing) {
+			log.warn("Parallel replay is not possible with writeEvents={}", episimConfig.getWriteEvents());
+			return;
+		}
 
-		EpisimFacility episimFacility = (EpisimFacility) episimPerson.getCurrentContainer();
-		assert (episimFacility.equals(pseudoFacilityMap.get(activityEndEvent.getFacilityId()))) :
-				"Person=" + episimPerson.getPersonId().toString() + " has activity end event at facility=" +
-						activityEndEvent.getFacilityId() + " but actually is at facility=" + episimFacility.getContainerId().toString();
+		if (!(contactModel instanceof AbstractContactModel)) {
+			log.warn("Parallel replay is not supported for contact model {}", contactModel.getClass());
+			return;
+		}
 
+		List<ReplayShard> shards = new ArrayList<>(n);
+		try {
+			for (int i = 0; i < n; i++)
+				shards.add(new ReplayShard(i, (AbstractContactModel) contactModel));
+		} catch (UnsupportedOperationException e) {
+			log.warn("Parallel replay is not possible: {}", e.getMessage());
+			return;
+		}
 
-		contactModel.infectionDynamicsFacility(episimPerson, episimFacility, now, activityEndEvent.getActType());
+		compiled.partition(n);
 
-		double timeSpent = now - episimFacility.getContainerEnteringTime(episimPerson.getPersonId());
-		episimPerson.addSpentTime(activityEndEvent.getActType(), timeSpent);
+		this.shards = shards;
+		containerStreams = new SplittableRandom[compiled.facilities.length + compiled.vehicles.length];
 
-		episimFacility.removePerson(episimPerson);
+		log.info("Using parallel replay with {} shards and {} threads", n, episimConfig.getThreads());
+	}
 
-		handlePersonTrajectory(episimPerson.getPersonId(), activityEndEvent.getActType());
+	/**
+	 * Shuts down the threads used for parallel replay. They are started again if the handler is used afterwards.
+	 */
+	void close() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
 	}
 
-	public void handleEvent(PersonEntersVehicleEvent entersVehicleEvent) {
-//		double now = entersVehicleEvent.getTime();
-		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), entersVehicleEvent.getTime(), iteration);
+	public void handleEvent(ActivityStartEvent activityStartEvent) {
+		reporting.handleEvent(activityStartEvent);
+		replayActivityStart(activityStartEvent.getPersonId(), activityStartEvent.getFacilityId(), activityStartEvent.getTime(), activityStartEvent.getActType());
+	}
+
+	public void handleEvent(ActivityEndEvent activityEndEvent) {
+		reporting.handleEvent(activityEndEvent);
+		replayActivityEnd(activityEndEvent.getPersonId(), activityEndEvent.getFacilityId(), activityEndEvent.getTime(), activityEndEvent.getActType());
+	}
 
+	public void handleEvent(PersonEntersVehicleEvent entersVehicleEvent) {
 		reporting.handleEvent(entersVehicleEvent);
+		replayEntersVehicle(entersVehicleEvent.getPersonId(), entersVehicleEvent.getVehicleId(), entersVehicleEvent.getTime());
+	}
+
+	public void handleEvent(PersonLeavesVehicleEvent leavesVehicleEvent) {
+		reporting.handleEvent(leavesVehicleEvent);
+		replayLeavesVehicle(leavesVehicleEvent.getPersonId(), leavesVehicleEvent.getVehicleId(), leavesVehicleEvent.getTime());
+	}
+
+	/**
+	 * Same as {@link #handleEvent(ActivityStartEvent)}, but without an event object. Input events are not passed to the reporting.
+	 */
+	void replayActivityStart(Id<Person> personId, Id<ActivityFacility> facilityId, double time, String actType) {
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), time, iteration);
 
 		// find the person:
-		EpisimPerson episimPerson = this.personMap.get(entersVehicleEvent.getPersonId());
+		EpisimPerson episimPerson = this.personMap.get(personId);
 
-		// find the vehicle:
-		EpisimVehicle episimVehicle = this.vehicleMap.get(entersVehicleEvent.getVehicleId());
+		// find the facility
+		EpisimFacility episimFacility = this.pseudoFacilityMap.get(facilityId);
 
-		// add person to vehicle and memorize entering time:
-		episimVehicle.addPerson(episimPerson, now);
+		handleActivityStart(episimPerson, episimFacility, now, actType);
+	}
 
-		contactModel.notifyEnterVehicle(episimPerson, episimVehicle, now);
+	/**
+	 * Same as {@link #handleEvent(ActivityEndEvent)}, but without an event object.
+	 */
+	void replayActivityEnd(Id<Person> personId, Id<ActivityFacility> facilityId, double time, String actType) {
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), time, iteration);
+
+		EpisimPerson episimPerson = this.personMap.get(personId);
+
+		handleActivityEnd(episimPerson, facilityId, now, actType);
 	}
 
-	public void handleEvent(PersonLeavesVehicleEvent leavesVehicleEvent) {
-//		double now = leavesVehicleEvent.getTime();
-		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), leavesVehicleEvent.getTime(), iteration);
+	/**
+	 * Same as {@link #handleEvent(PersonEntersVehicleEvent)}, but without an event object.
+	 */
+	void replayEntersVehicle(Id<Person> personId, Id<Vehicle> vehicleId, double time) {
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), time, iteration);
 
-		reporting.handleEvent(leavesVehicleEvent);
+		// find the person:
+		EpisimPerson episimPerson = this.personMap.get(personId);
+
+		// find the vehicle:
+		EpisimVehicle episimVehicle = this.vehicleMap.get(vehicleId);
+
+		handleEntersVehicle(episimPerson, episimVehicle, now);
+	}
+
+	/**
+	 * Same as {@link #handleEvent(PersonLeavesVehicleEvent)}, but without an event object.
+	 */
+	void replayLeavesVehicle(Id<Person> personId, Id<Vehicle> vehicleId, double time) {
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), time, iteration);
 
 		// find vehicle:
-		EpisimVehicle episimVehicle = this.vehicleMap.get(leavesVehicleEvent.getVehicleId());
+		EpisimVehicle episimVehicle = this.vehicleMap.get(vehicleId);
+
+		EpisimPerson episimPerson = this.personMap.get(personId);
+
+		handleLeavesVehicle(episimPerson, episimVehicle, now);
+	}
+
+	/**
+	 * Whether the events have been compiled during {@link #init(Map)} and {@link #replayDay(DayOfWeek)} can be used.
+	 */
+	boolean isCompiled() {
+		return compiled != null;
+	}
 
-		EpisimPerson episimPerson = this.personMap.get(leavesVehicleEvent.getPersonId());
+	/**
+	 * Adds the counters of all contact models to the performance metrics of the current day.
+	 */
+	void collectCounters() {
+		if (contactModel instanceof AbstractContactModel)
+			((AbstractContactModel) contactModel).collectCounters(metrics);
+
+		if (shards != null) {
+			for (ReplayShard shard : shards)
+				shard.contactModel.collectCounters(metrics);
+		}
+	}
 
-		contactModel.infectionDynamicsVehicle(episimPerson, episimVehicle, now);
+	/**
+	 * Replays the compiled events of one day. Equivalent to passing all events of this day to the respective handle methods.
+	 */
+	void replayDay(DayOfWeek day) {
+
+		if (compiled == null)
+			throw new IllegalStateException("Events have not been compiled.");
+
+		if (network != null) {
+			replayNetwork(day);
+			return;
+		}
+
+		// moving persons without contact dynamics is cheap enough to be done sequentially
+		if (shards != null && !quiescent) {
+			replayDayParallel(day);
+			return;
+		}
+
+		final CompiledEvents.Day events = compiled.getDay(day);
+		final EpisimPerson[] persons = compiled.persons;
+		final EpisimFacility[] facilities = compiled.facilities;
+		final EpisimVehicle[] vehicles = compiled.vehicles;
+		final String[] actTypes = compiled.actTypes;
+		final long startOffset = episimConfig.getStartOffset();
+
+		for (int i = 0; i < events.size; i++) {
+
+			double now = EpisimUtils.getCorrectedTime(startOffset, events.time[i], iteration);
+			EpisimPerson person = persons[events.person[i]];
+
+			switch (events.kind[i]) {
+				case CompiledEvents.ACTIVITY_END:
+					handleActivityEnd(person, facilities[events.container[i]].getContainerId(), now, actTypes[events.actType[i]]);
+					break;
+				case CompiledEvents.ACTIVITY_START:
+					handleActivityStart(person, facilities[events.container[i]], now, actTypes[events.actType[i]]);
+					break;
+				case CompiledEvents.ENTERS_VEHICLE:
+					handleEntersVehicle(person, vehicles[events.container[i]], now);
+					break;
+				case CompiledEvents.LEAVES_VEHICLE:
+					handleLeavesVehicle(person, vehicles[events.container[i]], now);
+					break;
+				default:
+					throw new IllegalStateException("Unknown event kind: " + events.kind[i]);
+			}
+		}
+	}
+
+	/**
+	 * Evaluates the groups of the co-presence network of a day. As long as contacts are not traced, only groups that contain at least one
+	 * contagious person can lead to infections and all other groups are skipped.
+	 */
+	private void replayNetwork(DayOfWeek day) {
+
+		final CoPresenceNetwork.Day groups = network.getDay(day);
+		final EpisimPerson[] persons = network.persons;
+		final EpisimContainer<?>[] containers = network.containers;
+		final SymmetricContactModel model = (SymmetricContactModel) contactModel;
+		final double start = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), 0, iteration);
+
+		boolean all = iteration >= tracingConfig.getPutTraceablePersonsInQuarantineAfterDay()
+				|| episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.tracing;
+
+		BitSet relevant = null;
+		if (!all) {
+			relevant = new BitSet(groups.size);
+			for (int p = 0; p < persons.length; p++) {
+				EpisimPerson.DiseaseStatus status = persons[p].getDiseaseStatus();
+				if (status == EpisimPerson.DiseaseStatus.contagious || status == EpisimPerson.DiseaseStatus.showingSymptoms) {
+					for (int i = groups.personOffset[p]; i < groups.personOffset[p + 1]; i++)
+						relevant.set(groups.personGroups[i]);
+				}
+			}
+		}
+
+		if (networkEnterTimes == null || networkEnterTimes.length < groups.numContacts())
+			networkEnterTimes = new double[groups.numContacts()];
+
+		int g = all ? 0 : relevant.nextSetBit(0);
+		while (g != -1 && g < groups.size) {
+
+			// times in the network are relative to the start of the day
+			for (int i = groups.offset[g]; i < groups.offset[g + 1]; i++)
+				networkEnterTimes[i] = start + groups.contactEnterTime[i];
+
+			long t = metrics.tick();
+			model.infectionDynamicsGroup(persons[groups.person[g]], groups.position[g], start + groups.enterTime[g], containers[groups.container[g]],
+					start + groups.time[g], persons, groups.contact, groups.contactPosition, networkEnterTimes,
+					groups.offset[g], groups.offset[g + 1]);
+			metrics.add(PerformanceMetrics.Phase.contacts, t);
+			metrics.count(PerformanceMetrics.Counter.containers, 1);
+
+			g = all ? g + 1 : relevant.nextSetBit(g + 1);
+		}
+
+		for (g = 0; g < groups.size; g++)
+			persons[groups.person[g]].addSpentTime(groups.actType[g], groups.time[g] - groups.enterTime[g]);
+	}
+
+	/**
+	 * Replays the shards of a day in parallel. Each shard only modifies its own containers, all changes to persons are
+	 * deferred and applied at the end of the day. Each container draws from its own random number stream, so that for a fixed seed
+	 * the results do not depend on the number of shards or threads.
+	 */
+	private void replayDayParallel(DayOfWeek day) {
+
+		final CompiledEvents.Day events = compiled.getDay(day);
+
+		// streams are split in fixed order, independent of the thread scheduling and partitioning
+		SplittableRandom daySeeds = new SplittableRandom(rnd.nextLong());
+		for (int c = 0; c < containerStreams.length; c++)
+			containerStreams[c] = daySeeds.split();
+
+		if (pool == null)
+			pool = new ForkJoinPool(episimConfig.getThreads());
+
+		List<Callable<Void>> tasks = new ArrayList<>(shards.size());
+		for (ReplayShard shard : shards) {
+			tasks.add(() -> {
+				replayShard(shard, events);
+				return null;
+			});
+		}
+
+		try {
+			for (Future<Void> f : pool.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted during parallel replay", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw new IllegalStateException("Error during parallel replay", e.getCause());
+		}
+
+		List<DeferredEffects> deferred = new ArrayList<>(shards.size());
+		for (ReplayShard shard : shards) {
+			deferred.add(shard.deferred);
+			metrics.addTime(PerformanceMetrics.Phase.contacts, shard.contactTime);
+			metrics.count(PerformanceMetrics.Counter.containers, shard.containers);
+			shard.contactTime = 0;
+			shard.containers = 0;
+		}
+
+		DeferredEffects.apply(deferred, reporting, infectionLocations);
+
+		// restore position and container of persons as if the events were replayed sequentially
+		for (int p = 0; p < compiled.persons.length; p++) {
+			int i = events.lastEvent[p];
+			if (i == -1)
+				continue;
+
+			EpisimPerson person = compiled.persons[p];
+			person.setCurrentPositionInTrajectory(events.position[i]);
+
+			switch (events.kind[i]) {
+				case CompiledEvents.ACTIVITY_START:
+					person.resetCurrentContainer(compiled.facilities[events.container[i]]);
+					break;
+				case CompiledEvents.ENTERS_VEHICLE:
+					person.resetCurrentContainer(compiled.vehicles[events.container[i]]);
+					break;
+				default:
+					person.resetCurrentContainer(null);
+			}
+		}
+
+		for (EpisimFacility facility : compiled.facilities)
+			facility.clearPositions();
+
+		for (EpisimVehicle vehicle : compiled.vehicles)
+			vehicle.clearPositions();
+	}
+
+	/**
+	 * Replays all events of one shard. Persons are only read and entered into containers of this shard.
+	 */
+	private void replayShard(ReplayShard shard, CompiledEvents.Day events) {
+
+		final AbstractContactModel model = shard.contactModel;
+		final DeferredEffects deferred = shard.deferred;
+		final int[] indices = events.shards[shard.index];
+		final long startOffset = episimConfig.getStartOffset();
+		final boolean timed = metrics.isEnabled();
+
+		final SplittableRandom[] streams = containerStreams;
+		final int nFacilities = compiled.facilities.length;
+
+		for (int i : indices) {
+
+			double now = EpisimUtils.getCorrectedTime(startOffset, events.time[i], iteration);
+			EpisimPerson person = compiled.persons[events.person[i]];
+
+			boolean isFacility = events.kind[i] == CompiledEvents.ACTIVITY_START || events.kind[i] == CompiledEvents.ACTIVITY_END;
+			int container = isFacility ? events.container[i] : nFacilities + events.container[i];
+			shard.enter(streams, container);
+
+			switch (events.kind[i]) {
+				case CompiledEvents.ACTIVITY_END: {
+					EpisimFacility facility = compiled.facilities[events.container[i]];
+					String actType = compiled.actTypes[events.actType[i]];
+
+					long t = timed ? System.nanoTime() : 0;
+					model.infectionDynamicsFacility(person, facility, now, actType);
+					if (timed)
+						shard.contactTime += System.nanoTime() - t;
+
+					shard.containers++;
+					deferred.addSpentTime(person, actType, now - facility.getContainerEnteringTime(person.getPersonId()));
+					facility.leave(person);
+					break;
+				}
+				case CompiledEvents.ACTIVITY_START: {
+					EpisimFacility facility = compiled.facilities[events.container[i]];
+					facility.enter(person, now, events.position[i]);
+					model.notifyEnterFacility(person, facility, now);
+					break;
+				}
+				case CompiledEvents.ENTERS_VEHICLE: {
+					EpisimVehicle vehicle = compiled.vehicles[events.container[i]];
+					vehicle.enter(person, now, events.position[i]);
+					model.notifyEnterVehicle(person, vehicle, now);
+					break;
+				}
+				case CompiledEvents.LEAVES_VEHICLE: {
+					EpisimVehicle vehicle = compiled.vehicles[events.container[i]];
+					long t = timed ? System.nanoTime() : 0;
+					model.infectionDynamicsVehicle(person, vehicle, now);
+					if (timed)
+						shard.contactTime += System.nanoTime() - t;
+
+					shard.containers++;
+					deferred.addSpentTime(person, "pt", now - vehicle.getContainerEnteringTime(person.getPersonId()));
+					vehicle.leave(person);
+					break;
+				}
+				default:
+					throw new IllegalStateException("Unknown event kind: " + events.kind[i]);
+			}
+		}
+	}
+
+	private void handleActivityStart(EpisimPerson episimPerson, EpisimFacility episimFacility, double now, String actType) {
+
+		// add person to facility
+		episimFacility.addPerson(episimPerson, now);
+
+		handlePersonTrajectory(episimPerson, actType);
+
+		if (!quiescent)
+			contactModel.notifyEnterFacility(episimPerson, episimFacility, now);
+	}
+
+	private void handleActivityEnd(EpisimPerson episimPerson, Id<ActivityFacility> facilityId, double now, String actType) {
+
+		EpisimFacility episimFacility = (EpisimFacility) episimPerson.getCurrentContainer();
+		assert (episimFacility.getContainerId().equals(facilityId)) :
+				"Person=" + episimPerson.getPersonId().toString() + " has activity end event at facility=" +
+						facilityId + " but actually is at facility=" + episimFacility.getContainerId().toString();
+
+
+		if (!quiescent) {
+			long t = metrics.tick();
+			contactModel.infectionDynamicsFacility(episimPerson, episimFacility, now, actType);
+			metrics.add(PerformanceMetrics.Phase.contacts, t);
+			metrics.count(PerformanceMetrics.Counter.containers, 1);
+		}
+
+		double timeSpent = now - episimFacility.getContainerEnteringTime(episimPerson.getPersonId());
+		episimPerson.addSpentTime(actType, timeSpent);
+
+		episimFacility.removePerson(episimPerson);
+
+		handlePersonTrajectory(episimPerson, actType);
+	}
+
+	private void handleEntersVehicle(EpisimPerson episimPerson, EpisimVehicle episimVehicle, double now) {
+
+		// add person to vehicle and memorize entering time:
+		episimVehicle.addPerson(episimPerson, now);
+
+		if (!quiescent)
+			contactModel.notifyEnterVehicle(episimPerson, episimVehicle, now);
+	}
+
+	private void handleLeavesVehicle(EpisimPerson episimPerson, EpisimVehicle episimVehicle, double now) {
+
+		if (!quiescent) {
+			long t = metrics.tick();
+			contactModel.infectionDynamicsVehicle(episimPerson, episimVehicle, now);
+			metrics.add(PerformanceMetrics.Phase.contacts, t);
+			metrics.count(PerformanceMetrics.Counter.containers, 1);
+		}
 
 		double timeSpent = now - episimVehicle.getContainerEnteringTime(episimPerson.getPersonId());
 
@@ -555,7 +1181,7 @@ public final class InfectionEventHandler implements Externalizable {
 
 		boolean traceable = localRnd.nextDouble() < tracingConfig.getEquipmentRate();
 
-		EpisimPerson p = new EpisimPerson(id, attrs, traceable, reporting);
+		EpisimPerson p = new EpisimPerson(id, attrs, traceable, reporting, personState);
 
 		Double compliance = EpisimUtils.findValidEntry(vaccinationConfig.getCompliancePerAge(), 1.0, p.getAgeOrDefault(-1));
 
@@ -570,7 +1196,7 @@ public final class InfectionEventHandler implements Externalizable {
 	 * Creates the home facility of a person.
 	 */
 	private EpisimFacility createHomeFacility(EpisimPerson person) {
-		String homeId = (String) person.getAttributes().getAttribute("homeId");
+		String homeId = person.getHomeId();
 		if (homeId == null)
 			homeId = "home_of_" + person.getPersonId().toString();
 
@@ -580,12 +1206,12 @@ public final class InfectionEventHandler implements Externalizable {
 	}
 
 	private EpisimPerson.Activity createActivityType(String actType) {
-		return new EpisimPerson.Activity(actType, episimConfig.selectInfectionParams(actType));
+		EpisimConfigGroup.InfectionParams params = episimConfig.selectInfectionParams(actType);
+		return new EpisimPerson.Activity(actType, params, activityIds++, containerTypes.indexOf(params.getContainerName()));
 	}
 
 
-	private void handlePersonTrajectory(Id<Person> personId, String trajectoryElement) {
-		EpisimPerson person = personMap.get(personId);
+	private void handlePersonTrajectory(EpisimPerson person, String trajectoryElement) {
 
 		if (person.getCurrentPositionInTrajectory() + 1 == person.getTrajectory().size()) {
 			return;
@@ -622,7 +1248,7 @@ public final class InfectionEventHandler implements Externalizable {
 						episimPerson.setFirstFacilityId(facilityId, day);
 					}
 
-					episimPerson.addToTrajectory(new EpisimPerson.Activity("home", paramsMap.get("home").params));
+					episimPerson.addToTrajectory(paramsMap.get("home"));
 
 					facility.addPerson(episimPerson, 0);
 
@@ -652,26 +1278,73 @@ public final class InfectionEventHandler implements Externalizable {
 		LocalDate date = episimConfig.getStartDate().plusDays(iteration - 1);
 		DayOfWeek day = EpisimUtils.getDayOfWeek(episimConfig, iteration);
 
+		metrics.begin(PerformanceMetrics.Phase.progression);
+
 		progressionModel.setIteration(iteration);
 		testingModel.setIteration(iteration);
 		progressionModel.beforeStateUpdates(personMap, iteration, this.report);
 		testingModel.beforeStateUpdates(personMap, iteration, this.report);
-		for (EpisimPerson person : personMap.values()) {
-			checkAndHandleEndOfNonCircularTrajectory(person, day);
+
+		for (int slot = 0; slot < personState.size(); slot++) {
+			EpisimPerson person = personState.getPerson(slot);
+
+			// persons are not moved between containers when the contact network is used
+			if (network == null)
+				checkAndHandleEndOfNonCircularTrajectory(person, day);
 			person.resetCurrentPositionInTrajectory(day);
-			progressionModel.updateState(person, iteration);
-			testingModel.performTesting(person, iteration);
 		}
 
+		IntList scheduled = progressionModel.pollScheduledUpdates(iteration);
+		if (scheduled == null || updateAll) {
+			for (int slot = 0; slot < personState.size(); slot++) {
+				EpisimPerson person = personState.getPerson(slot);
+				progressionModel.updateState(person, iteration);
+				person.clearStatusChanged();
+			}
+		} else {
+			// idle persons have no pending transition and don't need to be updated
+			IntIterator it = scheduled.iterator();
+			while (it.hasNext())
+				personState.markStatusChanged(it.nextInt());
+
+			// updates may change the status of other persons, which are still updated today if they come later
+			for (int slot = personState.nextStatusChanged(0); slot >= 0; slot = personState.nextStatusChanged(slot + 1)) {
+				EpisimPerson person = personState.getPerson(slot);
+				progressionModel.updateState(person, iteration);
+				person.clearStatusChanged();
+			}
+		}
+
+		// contacts can not be traced anymore after the longest tracing delay and distance
+		int delay = tracingConfig.getTracingDelay().values().stream().mapToInt(Integer::intValue).max().orElse(0);
+		personState.expireContacts(now - (delay + tracingConfig.getTracingDayDistance() + 1) * 24. * 3600);
+
+		long t = metrics.tick();
+		for (int slot = 0; slot < personState.size(); slot++)
+			testingModel.performTesting(personState.getPerson(slot), iteration);
+
+		metrics.add(PerformanceMetrics.Phase.testing, t);
+
+		updateAll = false;
+
+		metrics.end(PerformanceMetrics.Phase.progression);
+		metrics.begin(PerformanceMetrics.Phase.vaccination);
+
 		int available = EpisimUtils.findValidEntry(vaccinationConfig.getVaccinationCapacity(), 0, date);
-		vaccinationModel.handleVaccination(personMap, false, (int) (available * episimConfig.getSampleSize()), iteration, now);
+		vaccinationModel.handleVaccination(personState.getVaccinationPool(false), (int) (available * episimConfig.getSampleSize()), iteration, now);
 
 		available = EpisimUtils.findValidEntry(vaccinationConfig.getReVaccinationCapacity(), 0, date);
-		vaccinationModel.handleVaccination(personMap, true, (int) (available * episimConfig.getSampleSize()), iteration, now);
+		vaccinationModel.handleVaccination(personState.getVaccinationPool(true), (int) (available * episimConfig.getSampleSize()), iteration, now);
+
+		metrics.end(PerformanceMetrics.Phase.vaccination);
 
 		this.iteration = iteration;
 
-		int infected = this.initialInfections.handleInfections(personMap, iteration);
+		metrics.begin(PerformanceMetrics.Phase.diseaseImport);
+		int infected = this.initialInfections.handleInfections(personMap, personState.getSusceptibleIndex(), iteration);
+		metrics.end(PerformanceMetrics.Phase.diseaseImport);
+
+		metrics.begin(PerformanceMetrics.Phase.reporting);
 
 		Map<String, EpisimReporting.InfectionReport> reports = reporting.createReports(personMap.values(), iteration);
 		this.report = reports.get("total");
@@ -680,10 +1353,27 @@ public final class InfectionEventHandler implements Externalizable {
 		reporting.reportTimeUse(restrictions.keySet(), personMap.values(), iteration, report.date);
 		reporting.reportDiseaseImport(infected, iteration, report.date);
 
+		metrics.end(PerformanceMetrics.Phase.reporting);
+		metrics.begin(PerformanceMetrics.Phase.policy);
+
 		ImmutableMap<String, Restriction> im = ImmutableMap.copyOf(this.restrictions);
 		policy.updateRestrictions(report, im);
-		contactModel.setRestrictionsForIteration(iteration, im);
+		setRestrictionsForIteration(iteration, im);
+
+		metrics.end(PerformanceMetrics.Phase.policy);
+
+		metrics.begin(PerformanceMetrics.Phase.reporting);
 		reporting.reportRestrictions(restrictions, iteration, report.date);
+		metrics.end(PerformanceMetrics.Phase.reporting);
+
+		// status of persons does not change during the day, only new infections become contagious on later days
+		boolean idle = skipQuiescentDays && report.nContagious == 0 && report.nShowingSymptoms == 0 && contactModel.isIdleWithoutContagious();
+		if (idle && !quiescent)
+			log.info("Nobody is contagious on day {}, contact dynamics are skipped", iteration);
+		else if (!idle && quiescent)
+			log.info("Contact dynamics are evaluated again from day {}", iteration);
+
+		quiescent = idle;
 
 	}
 
@@ -747,6 +1437,13 @@ public final class InfectionEventHandler implements Externalizable {
 		return Collections.unmodifiableCollection(personMap.values());
 	}
 
+	/**
+	 * Columnar state of all persons.
+	 */
+	PersonStateStore getPersonState() {
+		return personState;
+	}
+
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
 
@@ -805,6 +1502,9 @@ public final class InfectionEventHandler implements Externalizable {
 			personMap.get(id).read(in, personMap, pseudoFacilityMap, vehicleMap);
 		}
 
+		updateAll = true;
+		infectionLocations.rebuild(personMap.values());
+
 		int vehicles = in.readInt();
 		for (int i = 0; i < vehicles; i++) {
 			Id<Vehicle> id = Id.create(readChars(in), Vehicle.class);
@@ -822,7 +1522,241 @@ public final class InfectionEventHandler implements Externalizable {
 
 		policy.restore(episimConfig.getStartDate().plusDays(iteration), im);
 
-		contactModel.setRestrictionsForIteration(iteration, im);
+		setRestrictionsForIteration(iteration, im);
+	}
+
+	/**
+	 * Passes the restrictions of the day to all contact models.
+	 */
+	private void setRestrictionsForIteration(int iteration, ImmutableMap<String, Restriction> im) {
+
+		DailyRestrictionTable table = new DailyRestrictionTable(containerTypes, im);
+
+		contactModel.setRestrictionsForIteration(iteration, table);
+		if (shards != null) {
+			for (ReplayShard shard : shards)
+				shard.contactModel.setRestrictionsForIteration(iteration, table);
+		}
+	}
+
+	/**
+	 * Writes the state in the binary snapshot format. Persons and containers are referenced by their index in id tables,
+	 * which are only contained in full snapshots. A delta snapshot only contains persons whose state changed since the last snapshot
+	 * and has to be applied on top of the snapshots it is based on.
+	 */
+	void writeBinary(DataOutput out, boolean delta) throws IOException {
+
+		out.writeInt(SnapshotTables.MAGIC);
+		out.writeInt(SnapshotTables.VERSION);
+		out.writeBoolean(delta);
+
+		out.writeLong(EpisimUtils.getSeed(rnd));
+		out.writeInt(initialInfections.getInfectionsLeft());
+		out.writeInt(iteration);
+
+		out.writeInt(restrictions.size());
+		for (Map.Entry<String, Restriction> e : restrictions.entrySet()) {
+			writeChars(out, e.getKey());
+			writeChars(out, e.getValue().asMap().toString());
+		}
+
+		Object2IntMap<EpisimPerson> index = new Object2IntOpenHashMap<>(personMap.size());
+		for (EpisimPerson person : personMap.values())
+			index.put(person, index.size());
+
+		out.writeInt(personMap.size());
+		out.writeInt(pseudoFacilityMap.size());
+		out.writeInt(vehicleMap.size());
+
+		if (!delta) {
+			for (Id<Person> id : personMap.keySet())
+				writeChars(out, id.toString());
+			for (Id<ActivityFacility> id : pseudoFacilityMap.keySet())
+				writeChars(out, id.toString());
+			for (Id<Vehicle> id : vehicleMap.keySet())
+				writeChars(out, id.toString());
+		}
+
+		out.writeInt(delta ? personState.countChanged() : personMap.size());
+		for (EpisimPerson person : personMap.values()) {
+			if (!delta || person.isChanged()) {
+				out.writeInt(index.getInt(person));
+				person.writeBinary(out, index);
+			}
+		}
+
+		// spent time is only kept for one day and therefore always written completely
+		int n = 0;
+		for (EpisimPerson person : personMap.values()) {
+			if (!person.getSpentTime().isEmpty())
+				n++;
+		}
+
+		out.writeInt(n);
+		for (EpisimPerson person : personMap.values()) {
+			if (person.getSpentTime().isEmpty())
+				continue;
+
+			out.writeInt(index.getInt(person));
+			out.writeInt(person.getSpentTime().size());
+			for (Object2DoubleMap.Entry<String> kv : person.getSpentTime().object2DoubleEntrySet()) {
+				writeChars(out, kv.getKey());
+				out.writeDouble(kv.getDoubleValue());
+			}
+		}
+
+		writeContainers(out, pseudoFacilityMap.values(), index);
+		writeContainers(out, vehicleMap.values(), index);
+
+		personState.clearChanged();
+	}
+
+	/**
+	 * Write all non-empty containers.
+	 */
+	private static void writeContainers(DataOutput out, Collection<? extends EpisimContainer<?>> containers,
+										Object2IntMap<EpisimPerson> index) throws IOException {
+
+		int n = 0;
+		for (EpisimContainer<?> container : containers) {
+			if (!container.getPersons().isEmpty())
+				n++;
+		}
+
+		out.writeInt(n);
+
+		int i = 0;
+		for (EpisimContainer<?> container : containers) {
+			if (!container.getPersons().isEmpty()) {
+				out.writeInt(i);
+				container.writeBinary(out, index);
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Reads state written by {@link #writeBinary(DataOutput, boolean)}.
+	 *
+	 * @param tables id tables of the base snapshot, needs to be null for full snapshots
+	 * @return id tables that need to be passed when reading a following delta snapshot
+	 */
+	SnapshotTables readBinary(DataInput in, @Nullable SnapshotTables tables) throws IOException {
+
+		if (in.readInt() != SnapshotTables.MAGIC)
+			throw new IllegalStateException("Not a binary episim snapshot.");
+
+		int version = in.readInt();
+		if (version != SnapshotTables.VERSION)
+			throw new IllegalStateException("Unsupported snapshot version " + version);
+
+		boolean delta = in.readBoolean();
+		if (delta && tables == null)
+			throw new IllegalStateException("Delta snapshot can only be read after its base snapshot.");
+		if (!delta && tables != null)
+			throw new IllegalStateException("Expected delta snapshot, but got a full snapshot.");
+
+		long storedSeed = in.readLong();
+		if (episimConfig.getSnapshotSeed() == EpisimConfigGroup.SnapshotSeed.restore) {
+			EpisimUtils.setSeed(rnd, storedSeed);
+		} else if (episimConfig.getSnapshotSeed() == EpisimConfigGroup.SnapshotSeed.reseed) {
+			EpisimUtils.setSeed(rnd, config.global().getRandomSeed());
+		}
+
+		initialInfections.setInfectionsLeft(in.readInt());
+		iteration = in.readInt();
+
+		int r = in.readInt();
+		for (int i = 0; i < r; i++) {
+			String act = readChars(in);
+			restrictions.put(act, Restriction.fromConfig(ConfigFactory.parseString(readChars(in))));
+		}
+
+		int nPersons = in.readInt();
+		int nFacilities = in.readInt();
+		int nVehicles = in.readInt();
+
+		if (!delta) {
+			tables = new SnapshotTables(nPersons, nFacilities, nVehicles);
+			for (int i = 0; i < nPersons; i++)
+				tables.persons[i] = lookup(personMap, Id.create(readChars(in), Person.class));
+			for (int i = 0; i < nFacilities; i++)
+				tables.facilities[i] = lookup(pseudoFacilityMap, Id.create(readChars(in), ActivityFacility.class));
+			for (int i = 0; i < nVehicles; i++)
+				tables.vehicles[i] = lookup(vehicleMap, Id.create(readChars(in), Vehicle.class));
+
+		} else if (nPersons != tables.persons.length || nFacilities != tables.facilities.length || nVehicles != tables.vehicles.length)
+			throw new IllegalStateException("Delta snapshot does not match its base snapshot.");
+
+		int n = in.readInt();
+		for (int i = 0; i < n; i++)
+			tables.persons[in.readInt()].readBinary(in, tables.persons);
+
+		personMap.values().forEach(p -> p.getSpentTime().clear());
+
+		n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			EpisimPerson person = tables.persons[in.readInt()];
+			int k = in.readInt();
+			for (int j = 0; j < k; j++)
+				person.getSpentTime().put(readChars(in), in.readDouble());
+		}
+
+		personMap.values().forEach(p -> p.resetCurrentContainer(null));
+		pseudoFacilityMap.values().forEach(EpisimContainer::clearPersons);
+		vehicleMap.values().forEach(EpisimContainer::clearPersons);
+
+		readContainers(in, tables.facilities, tables.persons);
+		readContainers(in, tables.vehicles, tables.persons);
+
+		personState.clearChanged();
+		updateAll = true;
+		infectionLocations.rebuild(personMap.values());
+
+		ImmutableMap<String, Restriction> im = ImmutableMap.copyOf(this.restrictions);
+
+		policy.restore(episimConfig.getStartDate().plusDays(iteration), im);
+
+		setRestrictionsForIteration(iteration, im);
+
+		return tables;
+	}
+
+	private static void readContainers(DataInput in, EpisimContainer<?>[] containers, EpisimPerson[] persons) throws IOException {
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			EpisimContainer<?> container = containers[in.readInt()];
+			container.readBinary(in, persons);
+			for (EpisimPerson person : container.getPersons())
+				person.resetCurrentContainer(container);
+		}
+	}
+
+	private static <K, V> V lookup(Map<K, V> map, K key) {
+		V v = map.get(key);
+		if (v == null)
+			throw new IllegalStateException("Snapshot contains unknown id " + key);
+
+		return v;
+	}
+
+	/**
+	 * Mapping of indices used in a binary snapshot to persons and containers.
+	 */
+	static final class SnapshotTables {
+
+		static final int MAGIC = 0x45504953;
+		static final int VERSION = 1;
+
+		private final EpisimPerson[] persons;
+		private final EpisimFacility[] facilities;
+		private final EpisimVehicle[] vehicles;
+
+		private SnapshotTables(int persons, int facilities, int vehicles) {
+			this.persons = new EpisimPerson[persons];
+			this.facilities = new EpisimFacility[facilities];
+			this.vehicles = new EpisimVehicle[vehicles];
+		}
 	}
 
 	/**
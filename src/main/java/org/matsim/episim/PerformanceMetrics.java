@@ -0,0 +1,341 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import com.google.inject.Inject;
+import jdk.jfr.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Wall time, allocated bytes and counters of the phases of each simulated day.
+ * Metrics are only recorded if enabled with {@link EpisimConfigGroup#setPerformanceMetrics(boolean)}.
+ * They are then written to {@code performance.tsv} and emitted as JFR events, which are recorded if a flight recording is running.
+ * <p>
+ * Top-level phases are measured as a whole, including the bytes allocated by the calling thread.
+ * Nested phases are measured per call and only record their time, which is excluded from the time of their enclosing phase.
+ * The time of nested phases during parallel replay is summed over all threads.
+ */
+public final class PerformanceMetrics {
+
+	private static final Logger log = LogManager.getLogger(PerformanceMetrics.class);
+
+	/**
+	 * Phases of one day in the order they are written.
+	 */
+	public enum Phase {
+		replay(null),
+		contacts(replay),
+		progression(null),
+		testing(progression),
+		vaccination(null),
+		diseaseImport(null),
+		reporting(null),
+		policy(null);
+
+		/**
+		 * Enclosing phase, or null for top-level phases.
+		 */
+		@Nullable
+		private final Phase parent;
+
+		Phase(@Nullable Phase parent) {
+			this.parent = parent;
+		}
+	}
+
+	public enum Counter {
+		/**
+		 * Number of times the contact dynamics of a container were evaluated.
+		 */
+		containers,
+		/**
+		 * Number of contacts between two persons that were evaluated.
+		 */
+		contacts,
+		/**
+		 * Number of computed infection probabilities.
+		 */
+		infectionProbabilities
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+	private static final Counter[] COUNTERS = Counter.values();
+
+	private final boolean enabled;
+
+	/**
+	 * Null if allocations can not be measured by this JVM.
+	 */
+	@Nullable
+	private final com.sun.management.ThreadMXBean threads;
+
+	private final long[] time = new long[PHASES.length];
+	private final long[] allocated = new long[PHASES.length];
+	private final long[] counters = new long[COUNTERS.length];
+
+	private final long[] startTime = new long[PHASES.length];
+	private final long[] startAllocated = new long[PHASES.length];
+	private final PhaseEvent[] events = new PhaseEvent[PHASES.length];
+
+	private int iteration;
+
+	@Inject
+	PerformanceMetrics(Config config) {
+		this(ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class).getPerformanceMetrics());
+	}
+
+	PerformanceMetrics(boolean enabled) {
+		this.enabled = enabled;
+
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (enabled && bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			this.threads = (com.sun.management.ThreadMXBean) bean;
+			this.threads.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			if (enabled)
+				log.warn("Allocated memory per thread can not be measured, allocations will not be reported.");
+
+			this.threads = null;
+		}
+	}
+
+	/**
+	 * Column names of {@link #endDay(String)} after day and date.
+	 */
+	static String[] getColumns() {
+		List<String> columns = new ArrayList<>();
+		for (Phase phase : PHASES) {
+			columns.add(phase.name() + "Time");
+			if (phase.parent == null)
+				columns.add(phase.name() + "Allocated");
+		}
+
+		for (Counter counter : COUNTERS)
+			columns.add(counter.name());
+
+		return columns.toArray(new String[0]);
+	}
+
+	/**
+	 * Whether metrics are recorded at all.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Resets all metrics before a new day is simulated.
+	 */
+	void startDay(int iteration) {
+		this.iteration = iteration;
+		Arrays.fill(time, 0);
+		Arrays.fill(allocated, 0);
+		Arrays.fill(counters, 0);
+	}
+
+	/**
+	 * Starts measuring a top-level phase. Measurements of the same phase on one day are accumulated.
+	 */
+	public void begin(Phase phase) {
+		if (!enabled)
+			return;
+
+		int i = phase.ordinal();
+		PhaseEvent event = new PhaseEvent();
+		event.begin();
+		events[i] = event;
+		startAllocated[i] = allocatedBytes();
+		startTime[i] = System.nanoTime();
+	}
+
+	/**
+	 * Stops measuring a top-level phase.
+	 */
+	public void end(Phase phase) {
+		if (!enabled)
+			return;
+
+		int i = phase.ordinal();
+		long bytes = allocatedBytes() - startAllocated[i];
+		time[i] += System.nanoTime() - startTime[i];
+		allocated[i] += bytes;
+
+		PhaseEvent event = events[i];
+		event.end();
+		if (event.shouldCommit()) {
+			event.day = iteration;
+			event.phase = phase.name();
+			event.allocated = bytes;
+			event.commit();
+		}
+
+		events[i] = null;
+	}
+
+	/**
+	 * Timestamp to measure one call of a nested phase with {@link #add(Phase, long)}, 0 if disabled.
+	 */
+	public long tick() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Adds the time since {@code tick} to a phase.
+	 */
+	public void add(Phase phase, long tick) {
+		if (enabled)
+			time[phase.ordinal()] += System.nanoTime() - tick;
+	}
+
+	/**
+	 * Adds already measured time in nanoseconds to a phase, e.g. from other threads.
+	 */
+	public void addTime(Phase phase, long nanos) {
+		time[phase.ordinal()] += nanos;
+	}
+
+	/**
+	 * Increments a counter.
+	 */
+	public void count(Counter counter, long n) {
+		counters[counter.ordinal()] += n;
+	}
+
+	/**
+	 * Time of a phase in nanoseconds on the current day. Time of nested phases is included in their enclosing phase.
+	 */
+	public long getTime(Phase phase) {
+		return time[phase.ordinal()];
+	}
+
+	/**
+	 * Value of a counter on the current day.
+	 */
+	public long getCount(Counter counter) {
+		return counters[counter.ordinal()];
+	}
+
+	/**
+	 * Finishes the current day, emits its summary as JFR event and returns one row of {@code performance.tsv}.
+	 */
+	String[] endDay(String date) {
+
+		DayEvent event = new DayEvent();
+		if (event.shouldCommit()) {
+			event.day = iteration;
+			event.date = date;
+			event.contactsTime = getTime(Phase.contacts);
+			event.testingTime = getTime(Phase.testing);
+			event.containers = getCount(Counter.containers);
+			event.contacts = getCount(Counter.contacts);
+			event.infectionProbabilities = getCount(Counter.infectionProbabilities);
+			event.commit();
+		}
+
+		List<String> row = new ArrayList<>();
+		row.add(String.valueOf(iteration));
+		row.add(date);
+
+		for (Phase phase : PHASES) {
+			long nanos = time[phase.ordinal()];
+
+			// nested time is reported separately
+			for (Phase nested : PHASES) {
+				if (nested.parent == phase)
+					nanos -= time[nested.ordinal()];
+			}
+
+			row.add(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+
+			if (phase.parent == null)
+				row.add(threads != null ? String.valueOf(allocated[phase.ordinal()]) : "NA");
+		}
+
+		for (long counter : counters)
+			row.add(String.valueOf(counter));
+
+		return row.toArray(new String[0]);
+	}
+
+	private long allocatedBytes() {
+		return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+
+	@Name("org.matsim.episim.Phase")
+	@Label("Episim Phase")
+	@Category("MATSim Episim")
+	@Description("Top-level phase of a simulated day")
+	@StackTrace(false)
+	static final class PhaseEvent extends Event {
+
+		@Label("Day")
+		int day;
+
+		@Label("Phase")
+		String phase;
+
+		@Label("Allocated")
+		@DataAmount
+		long allocated;
+	}
+
+	@Name("org.matsim.episim.Day")
+	@Label("Episim Day")
+	@Category("MATSim Episim")
+	@Description("Nested phases and counters of a simulated day")
+	@StackTrace(false)
+	static final class DayEvent extends Event {
+
+		@Label("Day")
+		int day;
+
+		@Label("Date")
+		String date;
+
+		@Label("Contacts Time")
+		@Timespan
+		long contactsTime;
+
+		@Label("Testing Time")
+		@Timespan
+		long testingTime;
+
+		@Label("Containers")
+		long containers;
+
+		@Label("Contacts")
+		long contacts;
+
+		@Label("Infection Probabilities")
+		long infectionProbabilities;
+	}
+
+}
@@ -0,0 +1,433 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.episim.model.VirusStrain;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Columnar storage of the frequently accessed state of many {@link EpisimPerson}s.
+ * Each person owns one slot and the state is stored in primitive arrays at this index, so that
+ * iterating over the whole population in slot order accesses memory sequentially.
+ * <p>
+ * Person attributes needed during the simulation are extracted into typed columns when a person is added.
+ */
+public final class PersonStateStore {
+
+	static final EpisimPerson.DiseaseStatus[] DISEASE_STATUS = EpisimPerson.DiseaseStatus.values();
+	static final EpisimPerson.QuarantineStatus[] QUARANTINE_STATUS = EpisimPerson.QuarantineStatus.values();
+	static final EpisimPerson.VaccinationStatus[] VACCINATION_STATUS = EpisimPerson.VaccinationStatus.values();
+	static final EpisimPerson.TestStatus[] TEST_STATUS = EpisimPerson.TestStatus.values();
+	static final VirusStrain[] VIRUS_STRAIN = VirusStrain.values();
+
+	/**
+	 * Number of slots in use.
+	 */
+	private int size;
+
+	/**
+	 * Person owning each slot.
+	 */
+	private EpisimPerson[] persons;
+
+	/**
+	 * Traceable contacts between persons of this store.
+	 */
+	final ContactTraceLog contacts = new ContactTraceLog();
+
+	/**
+	 * Persons eligible for their first vaccination and for re-vaccination.
+	 */
+	private final VaccinationPool vaccinationPool = new VaccinationPool(this, false);
+	private final VaccinationPool reVaccinationPool = new VaccinationPool(this, true);
+
+	/**
+	 * Susceptible persons by district and age.
+	 */
+	private final SusceptibleIndex susceptibleIndex = new SusceptibleIndex(this);
+
+	byte[] diseaseStatus;
+	byte[] quarantineStatus;
+	byte[] virusStrain;
+	byte[] vaccinationStatus;
+	byte[] reVaccinationStatus;
+	byte[] testStatus;
+
+	int[] quarantineDate;
+	int[] vaccinationDate;
+	int[] testDate;
+	byte[] age;
+
+	/**
+	 * Interned household of each person, see {@link #households}.
+	 */
+	int[] household;
+
+	/**
+	 * Interned district of each person, -1 if unknown.
+	 */
+	int[] districtId;
+
+	/**
+	 * Declared attributes by column and slot, allocated when the first person is added.
+	 */
+	float[][] attributes;
+
+	/**
+	 * Index of the district counts in {@link EpisimReporting}, -1 if not resolved yet.
+	 */
+	int[] district;
+
+	/**
+	 * First time of change to each disease status, stored at {@code slot * DISEASE_STATUS.length + status.ordinal()}.
+	 * NaN if a status was never set.
+	 */
+	double[] statusChanges;
+
+	/**
+	 * Slots of persons whose persistent state changed since the last call of {@link #clearChanged()}.
+	 */
+	private final BitSet changed = new BitSet();
+
+	/**
+	 * Slots of persons whose disease, quarantine or test status changed since their last progression update.
+	 */
+	private final BitSet statusChanged = new BitSet();
+
+	/**
+	 * Household ids in the order they were first seen.
+	 */
+	private final Object2IntMap<String> households = new Object2IntOpenHashMap<>();
+	private final List<String> householdNames = new ArrayList<>();
+
+	/**
+	 * Slots of persons with a home id attribute, otherwise the household was named after the person.
+	 */
+	private final BitSet hasHome = new BitSet();
+
+	private final Object2IntMap<String> districts = new Object2IntOpenHashMap<>();
+	private final List<String> districtNames = new ArrayList<>();
+
+	private final AttributeRegistry registry;
+
+	/**
+	 * Creates a store with initial capacity, which does not extract any declared attributes.
+	 */
+	public PersonStateStore(int capacity) {
+		this(capacity, new AttributeRegistry());
+	}
+
+	/**
+	 * Creates a store with initial capacity.
+	 *
+	 * @param registry attributes that will be extracted for each person
+	 */
+	public PersonStateStore(int capacity, AttributeRegistry registry) {
+		this.registry = registry;
+		allocate(Math.max(1, capacity));
+	}
+
+	/**
+	 * Number of persons in this store.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a new person with default state and returns its slot.
+	 *
+	 * @param attrs attributes of the person, which are only read once
+	 */
+	int add(EpisimPerson person, Attributes attrs) {
+
+		if (attributes == null) {
+			registry.lock();
+			attributes = new float[registry.size()][diseaseStatus.length];
+		}
+
+		if (size == diseaseStatus.length)
+			allocate(diseaseStatus.length + (diseaseStatus.length >> 1) + 1);
+
+		int slot = size++;
+
+		persons[slot] = person;
+		diseaseStatus[slot] = (byte) EpisimPerson.DiseaseStatus.susceptible.ordinal();
+		quarantineStatus[slot] = (byte) EpisimPerson.QuarantineStatus.no.ordinal();
+		virusStrain[slot] = (byte) VirusStrain.SARS_CoV_2.ordinal();
+		vaccinationStatus[slot] = (byte) EpisimPerson.VaccinationStatus.no.ordinal();
+		reVaccinationStatus[slot] = (byte) EpisimPerson.VaccinationStatus.no.ordinal();
+		testStatus[slot] = (byte) EpisimPerson.TestStatus.untested.ordinal();
+
+		quarantineDate[slot] = -1;
+		vaccinationDate[slot] = -1;
+		testDate[slot] = -1;
+		this.age[slot] = (byte) Math.min(getAge(attrs), Byte.MAX_VALUE);
+		district[slot] = -1;
+
+		Object home = attrs.getAttribute("homeId");
+		hasHome.set(slot, home != null);
+
+		// fallback to person id if there is no home
+		household[slot] = intern(households, householdNames, home != null ? home.toString() : person.getPersonId().toString());
+
+		Object districtName = attrs.getAttribute("district");
+		districtId[slot] = districtName != null ? intern(districts, districtNames, districtName.toString()) : -1;
+
+		for (int i = 0; i < attributes.length; i++) {
+			Object value = attrs.getAttribute(registry.getName(i));
+			if (value == null)
+				attributes[i][slot] = registry.getDefault(i);
+			else if (value instanceof Number)
+				attributes[i][slot] = ((Number) value).floatValue();
+			else
+				attributes[i][slot] = Float.parseFloat(value.toString());
+		}
+
+		Arrays.fill(statusChanges, slot * DISEASE_STATUS.length, (slot + 1) * DISEASE_STATUS.length, Double.NaN);
+
+		changed.set(slot);
+		statusChanged.set(slot);
+		return slot;
+	}
+
+	/**
+	 * Lookup age from attributes, -1 if there is none.
+	 */
+	private static int getAge(Attributes attrs) {
+		int age = -1;
+
+		for (String attr : attrs.getAsMap().keySet()) {
+			if (attr.contains("age")) {
+				age = Integer.parseInt(attrs.getAttribute(attr).toString());
+				break;
+			}
+		}
+
+		return age;
+	}
+
+	private static int intern(Object2IntMap<String> index, List<String> names, String name) {
+		return index.computeIntIfAbsent(name, k -> {
+			names.add(name);
+			return names.size() - 1;
+		});
+	}
+
+	private void allocate(int capacity) {
+
+		persons = persons == null ? new EpisimPerson[capacity] : Arrays.copyOf(persons, capacity);
+
+		diseaseStatus = grow(diseaseStatus, capacity);
+		quarantineStatus = grow(quarantineStatus, capacity);
+		virusStrain = grow(virusStrain, capacity);
+		vaccinationStatus = grow(vaccinationStatus, capacity);
+		reVaccinationStatus = grow(reVaccinationStatus, capacity);
+		testStatus = grow(testStatus, capacity);
+
+		quarantineDate = grow(quarantineDate, capacity);
+		vaccinationDate = grow(vaccinationDate, capacity);
+		testDate = grow(testDate, capacity);
+		age = grow(age, capacity);
+		household = grow(household, capacity);
+		districtId = grow(districtId, capacity);
+
+		if (attributes != null) {
+			for (int i = 0; i < attributes.length; i++)
+				attributes[i] = Arrays.copyOf(attributes[i], capacity);
+		}
+		district = grow(district, capacity);
+
+		statusChanges = statusChanges == null ? new double[capacity * DISEASE_STATUS.length] :
+				Arrays.copyOf(statusChanges, capacity * DISEASE_STATUS.length);
+	}
+
+	private static byte[] grow(byte[] array, int capacity) {
+		return array == null ? new byte[capacity] : Arrays.copyOf(array, capacity);
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+	}
+
+	/**
+	 * Person owning {@code slot}.
+	 */
+	EpisimPerson getPerson(int slot) {
+		return persons[slot];
+	}
+
+	/**
+	 * Disease status of the person in {@code slot}.
+	 */
+	public EpisimPerson.DiseaseStatus getDiseaseStatus(int slot) {
+		return DISEASE_STATUS[diseaseStatus[slot]];
+	}
+
+	/**
+	 * Quarantine status of the person in {@code slot}.
+	 */
+	public EpisimPerson.QuarantineStatus getQuarantineStatus(int slot) {
+		return QUARANTINE_STATUS[quarantineStatus[slot]];
+	}
+
+	/**
+	 * Vaccination status of the person in {@code slot}.
+	 */
+	public EpisimPerson.VaccinationStatus getVaccinationStatus(int slot) {
+		return VACCINATION_STATUS[vaccinationStatus[slot]];
+	}
+
+	/**
+	 * Time of first change to {@code status}, or NaN if person never had this status.
+	 */
+	double getStatusChange(int slot, EpisimPerson.DiseaseStatus status) {
+		return statusChanges[slot * DISEASE_STATUS.length + status.ordinal()];
+	}
+
+	void setStatusChange(int slot, EpisimPerson.DiseaseStatus status, double time) {
+		statusChanges[slot * DISEASE_STATUS.length + status.ordinal()] = time;
+	}
+
+	/**
+	 * Number of distinct households of all persons.
+	 */
+	public int getNumHouseholds() {
+		return households.size();
+	}
+
+	/**
+	 * Home id of the person in {@code slot}, or null if the person has none.
+	 */
+	@Nullable
+	String getHomeId(int slot) {
+		return hasHome.get(slot) ? householdNames.get(household[slot]) : null;
+	}
+
+	/**
+	 * District of the person in {@code slot}, or null if unknown.
+	 */
+	@Nullable
+	String getDistrict(int slot) {
+		return districtId[slot] >= 0 ? districtNames.get(districtId[slot]) : null;
+	}
+
+	/**
+	 * Interned id of a district, -1 if no person is in this district.
+	 */
+	int getDistrictId(String district) {
+		return districts.getOrDefault(district, -1);
+	}
+
+	/**
+	 * Number of distinct known districts.
+	 */
+	int getNumDistricts() {
+		return districtNames.size();
+	}
+
+	/**
+	 * Persons eligible for a vaccination, either for their first dose or for re-vaccination.
+	 */
+	public VaccinationPool getVaccinationPool(boolean reVaccination) {
+		return reVaccination ? reVaccinationPool : vaccinationPool;
+	}
+
+	/**
+	 * Susceptible persons, which can be selected by district and age.
+	 */
+	public SusceptibleIndex getSusceptibleIndex() {
+		return susceptibleIndex;
+	}
+
+	/**
+	 * Updates the vaccination pools and the susceptible index after the state of a person changed.
+	 */
+	void updatePools(int slot) {
+		vaccinationPool.update(slot);
+		reVaccinationPool.update(slot);
+		susceptibleIndex.update(slot);
+	}
+
+	void markChanged(int slot) {
+		changed.set(slot);
+	}
+
+	boolean isChanged(int slot) {
+		return changed.get(slot);
+	}
+
+	void markStatusChanged(int slot) {
+		statusChanged.set(slot);
+	}
+
+	boolean isStatusChanged(int slot) {
+		return statusChanged.get(slot);
+	}
+
+	void clearStatusChanged(int slot) {
+		statusChanged.clear(slot);
+	}
+
+	/**
+	 * Removes traceable contacts of all persons from days that ended before {@code before}.
+	 */
+	void expireContacts(double before) {
+		contacts.expire(before, this::markChanged);
+	}
+
+	/**
+	 * First slot from {@code from} on with a changed status, or -1 if there is none.
+	 */
+	int nextStatusChanged(int from) {
+		return statusChanged.nextSetBit(from);
+	}
+
+	/**
+	 * Number of persons that changed since the last call of {@link #clearChanged()}.
+	 */
+	int countChanged() {
+		return changed.cardinality();
+	}
+
+	/**
+	 * Reset change tracking, e.g. after the state was persisted.
+	 */
+	void clearChanged() {
+		changed.clear();
+	}
+
+	/**
+	 * Removes all recorded status changes of a person.
+	 */
+	void clearStatusChanges(int slot) {
+		Arrays.fill(statusChanges, slot * DISEASE_STATUS.length, (slot + 1) * DISEASE_STATUS.length, Double.NaN);
+	}
+
+}
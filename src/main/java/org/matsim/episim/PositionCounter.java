@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Fenwick tree counting the contained positions of a fixed order of persons, which is used by the person pools.
+ * Adding, removing, counting and selecting the k-th contained position take logarithmic time.
+ */
+final class PositionCounter {
+
+	/**
+	 * One based tree with the number of contained positions.
+	 */
+	private final int[] tree;
+
+	/**
+	 * Builds the tree in linear time.
+	 *
+	 * @param n         number of positions
+	 * @param contained whether a position is contained initially
+	 */
+	PositionCounter(int n, IntPredicate contained) {
+		tree = new int[n + 1];
+
+		for (int pos = 0; pos < n; pos++) {
+			if (contained.test(pos))
+				tree[pos + 1]++;
+		}
+
+		for (int i = 1; i <= n; i++) {
+			int parent = i + (i & -i);
+			if (parent <= n)
+				tree[parent] += tree[i];
+		}
+	}
+
+	/**
+	 * Changes the count of a position by {@code delta}.
+	 */
+	void add(int pos, int delta) {
+		for (int i = pos + 1; i < tree.length; i += i & -i)
+			tree[i] += delta;
+	}
+
+	/**
+	 * Number of contained positions before {@code pos}.
+	 */
+	int prefix(int pos) {
+		int sum = 0;
+		for (int i = pos; i > 0; i -= i & -i)
+			sum += tree[i];
+
+		return sum;
+	}
+
+	/**
+	 * Position of the k-th (zero based) contained position.
+	 */
+	int select(int k) {
+		int pos = 0;
+		for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+			if (pos + step < tree.length && tree[pos + step] <= k) {
+				pos += step;
+				k -= tree[pos];
+			}
+		}
+
+		return pos;
+	}
+}
@@ -45,12 +45,16 @@ import org.matsim.core.router.TripStructureUtils;
 import org.matsim.facilities.ActivityFacility;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.time.DayOfWeek;
 import java.util.*;
 
 
 /**
  * Handler that replays events from {@link EpisimConfigGroup#getInputEventsFile()} with corrected time and attributes.
+ * Input files ending with {@link BinaryEvents#EXTENSION} are read as pre-processed {@link BinaryEvents}.
  */
 public final class ReplayHandler {
 
@@ -83,6 +87,12 @@ public final class ReplayHandler {
 	private final Scenario scenario;
 	private final Map<DayOfWeek, List<Event>> events = new EnumMap<>(DayOfWeek.class);
 
+	/**
+	 * Whether runs using this handler share their initialization.
+	 */
+	private boolean shareInit = false;
+	private SharedInit sharedInit;
+
 	/**
 	 * Constructor with optional scenario. Events will be read from given {@link EpisimConfigGroup#getInputEventsFiles()}.
 	 */
@@ -95,11 +105,26 @@ public final class ReplayHandler {
 
 			rnd = new SplittableRandom(0);
 
-			List<Event> eventsForDay = new ArrayList<>();
-			EventsManager manager = EventsUtils.createEventsManager();
-			manager.addHandler(new EventReader(eventsForDay));
-			EventsUtils.readEvents(manager, input.getPath());
-			manager.finishProcessing();
+			List<Event> eventsForDay;
+			if (input.getPath().endsWith(BinaryEvents.EXTENSION)) {
+
+				// binary events contain neither link nor coordinates, which would be needed to write them again
+				if (config.getWriteEvents() == EpisimConfigGroup.WriteEvents.input || config.getWriteEvents() == EpisimConfigGroup.WriteEvents.all)
+					throw new IllegalStateException("Input events can not be written when using binary events: " + input.getPath());
+
+				try {
+					eventsForDay = BinaryEvents.read(Path.of(input.getPath()));
+				} catch (IOException e) {
+					throw new UncheckedIOException("Could not read binary events " + input.getPath(), e);
+				}
+
+			} else {
+				eventsForDay = new ArrayList<>();
+				EventsManager manager = EventsUtils.createEventsManager();
+				manager.addHandler(new EventReader(eventsForDay));
+				EventsUtils.readEvents(manager, input.getPath());
+				manager.finishProcessing();
+			}
 
 			log.info("Read in {} events for {}, with time range {} - {}", eventsForDay.size(), input.getDays(), eventsForDay.get(0).getTime(),
 					eventsForDay.get(eventsForDay.size() - 1).getTime());
@@ -138,9 +163,21 @@ public final class ReplayHandler {
 
 	/**
 	 * Replays event add modifies attributes based on current iteration.
+	 * Compiled events of the handler are used when available.
 	 */
 	public void replayEvents(final InfectionEventHandler infectionHandler, DayOfWeek day) {
-		for (final Event e : events.get(day)) {
+		if (infectionHandler.isCompiled()) {
+			infectionHandler.replayDay(day);
+			return;
+		}
+
+		List<Event> eventsForDay = events.get(day);
+		if (eventsForDay instanceof BinaryEvents) {
+			((BinaryEvents) eventsForDay).replay(infectionHandler);
+			return;
+		}
+
+		for (final Event e : eventsForDay) {
 			if (e instanceof ActivityStartEvent) {
 				infectionHandler.handleEvent((ActivityStartEvent) e);
 			} else if (e instanceof ActivityEndEvent) {
@@ -153,6 +190,40 @@ public final class ReplayHandler {
 		}
 	}
 
+	/**
+	 * Initializes the handler with these events. If sharing is enabled, only the first run processes the events and
+	 * all following runs are initialized from its shared data.
+	 *
+	 * @see #setShareInit(boolean)
+	 */
+	void init(InfectionEventHandler handler) {
+
+		if (!shareInit) {
+			handler.init(getEvents());
+			return;
+		}
+
+		SharedInit shared;
+		synchronized (this) {
+			if (sharedInit == null) {
+				sharedInit = handler.initAndShare(getEvents());
+				return;
+			}
+
+			shared = sharedInit;
+		}
+
+		handler.init(shared);
+	}
+
+	/**
+	 * Enable sharing of trajectories, compiled events and container statistics between all runs using this handler.
+	 * This requires that all runs use the same population.
+	 */
+	public void setShareInit(boolean shareInit) {
+		this.shareInit = shareInit;
+	}
+
 	/**
 	 * All available events.
 	 */
@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import org.matsim.episim.model.AbstractContactModel;
+
+import java.util.SplittableRandom;
+
+/**
+ * Independent part of the contact dynamics during parallel replay.
+ * Each shard owns a subset of the containers and has its own copy of the contact model, see {@link AbstractContactModel#copy(SplittableRandom)}.
+ */
+final class ReplayShard {
+
+	final int index;
+	final DeferredEffects deferred = new DeferredEffects();
+	final AbstractContactModel contactModel;
+
+	/**
+	 * Time spent in the contact model and number of evaluated containers, only collected if performance metrics are enabled.
+	 */
+	long contactTime;
+	long containers;
+
+	ReplayShard(int index, AbstractContactModel model) {
+		this.index = index;
+		this.contactModel = model.copy(new SplittableRandom(index));
+		this.contactModel.setDeferredEffects(deferred);
+	}
+
+	/**
+	 * Continues the random number stream of {@code container} and attributes deferred effects to it.
+	 */
+	void enter(SplittableRandom[] streams, int container) {
+		contactModel.setRandom(streams[container]);
+		deferred.setContainer(container);
+	}
+
+}
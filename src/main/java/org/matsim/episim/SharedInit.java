@@ -0,0 +1,240 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import javax.annotation.Nullable;
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * Immutable part of the state created by {@link InfectionEventHandler#init(Map)}, which only depends on the events and the population.
+ * Runs with the same input can be initialized from this data instead of processing all events again.
+ * Trajectories, compiled events and container statistics are then shared between all runs, while the mutable state is allocated per run.
+ * <p>
+ * Containers are indexed by their position in the facility map, vehicles are offset by the number of facilities.
+ */
+final class SharedInit {
+
+	/**
+	 * Persons in the order they were created.
+	 */
+	final Id<Person>[] persons;
+	final Id<ActivityFacility>[] facilities;
+	final Id<Vehicle>[] vehicles;
+
+	/**
+	 * Activity types used in the trajectories.
+	 */
+	final String[] actTypes;
+
+	/**
+	 * Trajectories of all persons as indices into {@link #actTypes}. The trajectory of person i is stored from
+	 * {@code trajectoryOffset[i]} to {@code trajectoryOffset[i + 1]}.
+	 */
+	private final int[] trajectoryOffset;
+	private final int[] trajectories;
+
+	final int[][] startOfDay;
+	final int[][] endOfDay;
+	final Id<ActivityFacility>[][] firstFacilityId;
+
+	/**
+	 * Unscaled number of users and max group size of each container, -1 if unknown.
+	 */
+	final int[] totalUsers;
+	final int[] maxGroupSize;
+	final Object2IntMap<String>[] activityUsage;
+
+	/**
+	 * Persons in each container after initialization in the order they entered, stored from {@code occupancyOffset[c]} to
+	 * {@code occupancyOffset[c + 1]}.
+	 */
+	final int[] occupancyOffset;
+	final int[] occupants;
+	final double[] enterTimes;
+
+	/**
+	 * Compiled events, null if the events were not compiled. The tables are stored as indices into the person and container arrays.
+	 */
+	@Nullable
+	final Map<DayOfWeek, CompiledEvents.Day> days;
+	final int numShards;
+	final int[] eventPersons;
+	final int[] eventContainers;
+	final String[] eventActTypes;
+
+	@SuppressWarnings("unchecked")
+	SharedInit(Collection<EpisimPerson> persons, Map<Id<ActivityFacility>, InfectionEventHandler.EpisimFacility> facilityMap,
+			   Map<Id<Vehicle>, InfectionEventHandler.EpisimVehicle> vehicleMap,
+			   Object2IntMap<EpisimContainer<?>> totalUsers, Object2IntMap<EpisimContainer<?>> maxGroupSize,
+			   Map<EpisimContainer<?>, Object2IntMap<String>> activityUsage, @Nullable CompiledEvents compiled) {
+
+		// creation order determines the random numbers drawn for each person
+		EpisimPerson[] ordered = persons.toArray(new EpisimPerson[0]);
+		Arrays.sort(ordered, Comparator.comparingInt(EpisimPerson::getSlot));
+
+		int n = ordered.length;
+		Object2IntMap<EpisimPerson> personIndex = new Object2IntOpenHashMap<>(n);
+		Object2IntMap<String> actIndex = new Object2IntOpenHashMap<>();
+
+		this.persons = new Id[n];
+		this.startOfDay = new int[n][7];
+		this.endOfDay = new int[n][7];
+		this.firstFacilityId = new Id[n][7];
+		this.trajectoryOffset = new int[n + 1];
+
+		int length = 0;
+		for (EpisimPerson p : ordered)
+			length += p.getTrajectory().size();
+
+		this.trajectories = new int[length];
+
+		List<String> acts = new ArrayList<>();
+		int t = 0;
+		for (int i = 0; i < n; i++) {
+			EpisimPerson p = ordered[i];
+			personIndex.put(p, i);
+			this.persons[i] = p.getPersonId();
+
+			for (DayOfWeek day : DayOfWeek.values()) {
+				startOfDay[i][day.ordinal()] = p.getStartOfDay(day);
+				endOfDay[i][day.ordinal()] = p.getEndOfDay(day);
+				firstFacilityId[i][day.ordinal()] = p.getFirstFacilityId(day);
+			}
+
+			trajectoryOffset[i] = t;
+			for (EpisimPerson.Activity act : p.getTrajectory()) {
+				trajectories[t++] = actIndex.computeIntIfAbsent(act.actType, k -> {
+					acts.add(act.actType);
+					return acts.size() - 1;
+				});
+			}
+		}
+
+		trajectoryOffset[n] = t;
+		this.actTypes = acts.toArray(new String[0]);
+
+		List<EpisimContainer<?>> containers = new ArrayList<>(facilityMap.size() + vehicleMap.size());
+		containers.addAll(facilityMap.values());
+		containers.addAll(vehicleMap.values());
+
+		this.facilities = facilityMap.keySet().toArray(new Id[0]);
+		this.vehicles = vehicleMap.keySet().toArray(new Id[0]);
+
+		int c = containers.size();
+		Object2IntMap<EpisimContainer<?>> containerIndex = new Object2IntOpenHashMap<>(c);
+
+		this.totalUsers = new int[c];
+		this.maxGroupSize = new int[c];
+		this.activityUsage = new Object2IntMap[c];
+		this.occupancyOffset = new int[c + 1];
+
+		int occupied = 0;
+		for (EpisimContainer<?> container : containers)
+			occupied += container.getPersons().size();
+
+		this.occupants = new int[occupied];
+		this.enterTimes = new double[occupied];
+
+		int o = 0;
+		for (int i = 0; i < c; i++) {
+			EpisimContainer<?> container = containers.get(i);
+			containerIndex.put(container, i);
+
+			this.totalUsers[i] = totalUsers.containsKey(container) ? totalUsers.getInt(container) : -1;
+			this.maxGroupSize[i] = maxGroupSize.containsKey(container) ? maxGroupSize.getInt(container) : -1;
+			this.activityUsage[i] = activityUsage.get(container);
+
+			occupancyOffset[i] = o;
+			for (EpisimPerson p : container.getPersons()) {
+				occupants[o] = personIndex.getInt(p);
+				enterTimes[o++] = container.getContainerEnteringTime(p.getPersonId());
+			}
+		}
+
+		occupancyOffset[c] = o;
+
+		if (compiled != null) {
+			this.days = new EnumMap<>(compiled.getDays());
+			this.numShards = compiled.getNumShards();
+			this.eventPersons = new int[compiled.persons.length];
+			for (int i = 0; i < eventPersons.length; i++)
+				eventPersons[i] = personIndex.getInt(compiled.persons[i]);
+
+			this.eventContainers = new int[compiled.facilities.length + compiled.vehicles.length];
+			for (int i = 0; i < compiled.facilities.length; i++)
+				eventContainers[i] = containerIndex.getInt(compiled.facilities[i]);
+			for (int i = 0; i < compiled.vehicles.length; i++)
+				eventContainers[compiled.facilities.length + i] = containerIndex.getInt(compiled.vehicles[i]);
+
+			this.eventActTypes = compiled.actTypes;
+		} else {
+			this.days = null;
+			this.numShards = 0;
+			this.eventPersons = null;
+			this.eventContainers = null;
+			this.eventActTypes = null;
+		}
+	}
+
+	/**
+	 * Trajectory of the i-th person, using the activities of one run.
+	 *
+	 * @param activities activities corresponding to {@link #actTypes}
+	 */
+	List<EpisimPerson.Activity> getTrajectory(int i, EpisimPerson.Activity[] activities) {
+		return new Trajectory(trajectoryOffset[i], trajectoryOffset[i + 1] - trajectoryOffset[i], activities);
+	}
+
+	/**
+	 * Read-only view on the shared trajectory array.
+	 */
+	private final class Trajectory extends AbstractList<EpisimPerson.Activity> implements RandomAccess {
+
+		private final int offset;
+		private final int size;
+		private final EpisimPerson.Activity[] activities;
+
+		private Trajectory(int offset, int size, EpisimPerson.Activity[] activities) {
+			this.offset = offset;
+			this.size = size;
+			this.activities = activities;
+		}
+
+		@Override
+		public EpisimPerson.Activity get(int index) {
+			Objects.checkIndex(index, size);
+			return activities[trajectories[offset + index]];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
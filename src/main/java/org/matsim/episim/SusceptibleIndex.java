@@ -0,0 +1,367 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Susceptible persons in the iteration order of the person map, which is used to draw initial infections without searching the whole population.
+ * The index is updated by the status setters of {@link EpisimPerson}, so that persons are removed as soon as they are infected.
+ * <p>
+ * Persons are ordered by their id index, which is the order of the person map, and counted in the same way as in {@link VaccinationPool}.
+ * The k-th person is therefore the same as the k-th susceptible person of the map, also after restoring a snapshot.
+ * A second order groups persons by district, so that district filters are counted in logarithmic time.
+ * For age filters, either order is grouped by age once it is needed. Persons of an age range are then counted per age
+ * and selected by a binary search over positions, which keeps the order of the person map.
+ * Age bounds of -1 are unbounded, persons with unknown age only match if both bounds are unbounded.
+ */
+public final class SusceptibleIndex {
+
+	/**
+	 * Number of age groups, the first one is for unknown age. Ages are stored as byte in the {@link PersonStateStore}.
+	 */
+	private static final int AGE_GROUPS = Byte.MAX_VALUE + 2;
+
+	private final PersonStateStore state;
+
+	/**
+	 * Number of persons when the index was built, or -1 if it needs to be built.
+	 */
+	private int built = -1;
+
+	/**
+	 * Slots ordered by id index, and the position of each slot in this order.
+	 */
+	private int[] order;
+	private int[] position;
+
+	/**
+	 * Slots ordered by district and id index, and the position of each slot in this order.
+	 */
+	private int[] districtOrder;
+	private int[] districtPosition;
+
+	/**
+	 * First position of each district in {@link #districtOrder}, the first district is the one for unknown district.
+	 */
+	private int[] districtStart;
+
+	private PositionCounter counter;
+	private PositionCounter districtCounter;
+	private final BitSet contained = new BitSet();
+	private int size;
+
+	/**
+	 * Both orders grouped by age, or null if not needed yet.
+	 */
+	@Nullable
+	private AgeOrder ageOrder;
+	@Nullable
+	private AgeOrder districtAgeOrder;
+
+	SusceptibleIndex(PersonStateStore state) {
+		this.state = state;
+	}
+
+	/**
+	 * Number of susceptible persons.
+	 */
+	public int size() {
+		build();
+		return size;
+	}
+
+	/**
+	 * Number of susceptible persons in a district and age range.
+	 *
+	 * @param district district of persons or null for all districts
+	 * @param minAge   minimum age (inclusive) or -1
+	 * @param maxAge   maximum age (inclusive) or -1
+	 */
+	public int size(@Nullable String district, int minAge, int maxAge) {
+		build();
+
+		int d = district == null ? -1 : state.getDistrictId(district) + 1;
+
+		// group of unknown district never matches a given district
+		if (d == 0)
+			return 0;
+
+		if (minAge == -1 && maxAge == -1)
+			return d == -1 ? size : districtCounter.prefix(districtStart[d + 1]) - districtCounter.prefix(districtStart[d]);
+
+		AgeOrder ages = ages(d);
+		int from = d == -1 ? 0 : districtStart[d];
+		int to = d == -1 ? order.length : districtStart[d + 1];
+
+		return ages.count(minAge, maxAge, from, to);
+	}
+
+	/**
+	 * Susceptible person at {@code index}, in the order of the person map.
+	 */
+	public EpisimPerson get(int index) {
+		build();
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for index of size " + size);
+
+		return state.getPerson(order[counter.select(index)]);
+	}
+
+	/**
+	 * Susceptible person at {@code index} within a district and age range, in the order of the person map.
+	 *
+	 * @see #size(String, int, int)
+	 */
+	public EpisimPerson get(@Nullable String district, int minAge, int maxAge, int index) {
+		build();
+
+		int d = district == null ? -1 : state.getDistrictId(district) + 1;
+
+		if (index >= 0 && d != 0) {
+
+			if (minAge == -1 && maxAge == -1) {
+				if (d == -1)
+					return get(index);
+
+				int k = districtCounter.prefix(districtStart[d]) + index;
+				if (k < districtCounter.prefix(districtStart[d + 1]))
+					return state.getPerson(districtOrder[districtCounter.select(k)]);
+
+			} else {
+				AgeOrder ages = ages(d);
+				int from = d == -1 ? 0 : districtStart[d];
+				int to = d == -1 ? order.length : districtStart[d + 1];
+
+				if (index < ages.count(minAge, maxAge, from, to)) {
+
+					// smallest end position that contains more than index matching persons
+					int lo = from + 1;
+					int hi = to;
+					while (lo < hi) {
+						int mid = (lo + hi) >>> 1;
+						if (ages.count(minAge, maxAge, from, mid) > index)
+							hi = mid;
+						else
+							lo = mid + 1;
+					}
+
+					return state.getPerson(ages.baseOrder[lo - 1]);
+				}
+			}
+		}
+
+		throw new IndexOutOfBoundsException("Index " + index + " out of bounds for district " + district + " and ages " + minAge + "-" + maxAge);
+	}
+
+	/**
+	 * Updates the index after the state of a person changed.
+	 */
+	void update(int slot) {
+
+		// index will be built from scratch
+		if (built != state.size())
+			return;
+
+		boolean susceptible = isSusceptible(slot);
+		if (susceptible == contained.get(slot))
+			return;
+
+		int delta = susceptible ? 1 : -1;
+		contained.set(slot, susceptible);
+		counter.add(position[slot], delta);
+		districtCounter.add(districtPosition[slot], delta);
+		size += delta;
+
+		if (ageOrder != null)
+			ageOrder.add(slot, delta);
+		if (districtAgeOrder != null)
+			districtAgeOrder.add(slot, delta);
+	}
+
+	private boolean isSusceptible(int slot) {
+		return state.getDiseaseStatus(slot) == EpisimPerson.DiseaseStatus.susceptible;
+	}
+
+	/**
+	 * Order grouped by age for a district filter, which is built on first use.
+	 */
+	private AgeOrder ages(int d) {
+		if (d == -1) {
+			if (ageOrder == null)
+				ageOrder = new AgeOrder(order, position, counter);
+			return ageOrder;
+		}
+
+		if (districtAgeOrder == null)
+			districtAgeOrder = new AgeOrder(districtOrder, districtPosition, districtCounter);
+		return districtAgeOrder;
+	}
+
+	private int ageGroup(int slot) {
+		return state.age[slot] < 0 ? 0 : state.age[slot] + 1;
+	}
+
+	/**
+	 * Orders all persons and counts the susceptible ones, if persons were added since the last build.
+	 */
+	private void build() {
+
+		int n = state.size();
+		if (built == n)
+			return;
+
+		order = IntStream.range(0, n).boxed()
+				.sorted(Comparator.comparingInt(slot -> state.getPerson(slot).getPersonId().index()))
+				.mapToInt(Integer::intValue).toArray();
+
+		position = new int[n];
+		for (int pos = 0; pos < n; pos++)
+			position[order[pos]] = pos;
+
+		// stable counting sort by district keeps the id order within each district
+		int districts = state.getNumDistricts() + 1;
+		districtStart = new int[districts + 1];
+		for (int slot = 0; slot < n; slot++)
+			districtStart[state.districtId[slot] + 2]++;
+
+		for (int d = 0; d < districts; d++)
+			districtStart[d + 1] += districtStart[d];
+
+		int[] next = Arrays.copyOf(districtStart, districts);
+		districtOrder = new int[n];
+		districtPosition = new int[n];
+		for (int slot : order) {
+			int pos = next[state.districtId[slot] + 1]++;
+			districtOrder[pos] = slot;
+			districtPosition[slot] = pos;
+		}
+
+		contained.clear();
+		for (int slot = 0; slot < n; slot++) {
+			if (isSusceptible(slot))
+				contained.set(slot);
+		}
+
+		counter = new PositionCounter(n, pos -> contained.get(order[pos]));
+		districtCounter = new PositionCounter(n, pos -> contained.get(districtOrder[pos]));
+		size = contained.cardinality();
+		ageOrder = null;
+		districtAgeOrder = null;
+		built = n;
+	}
+
+	/**
+	 * Persons of a base order, grouped by age and in the base order within each group.
+	 */
+	private final class AgeOrder {
+
+		private final int[] baseOrder;
+		private final int[] basePosition;
+		private final PositionCounter baseCounter;
+
+		/**
+		 * Slots ordered by age group and base order, and the position of each slot in this order.
+		 */
+		private final int[] slots;
+		private final int[] agePosition;
+		private final int[] ageStart = new int[AGE_GROUPS + 1];
+		private final PositionCounter ageCounter;
+
+		private AgeOrder(int[] baseOrder, int[] basePosition, PositionCounter baseCounter) {
+			this.baseOrder = baseOrder;
+			this.basePosition = basePosition;
+			this.baseCounter = baseCounter;
+
+			int n = baseOrder.length;
+			for (int slot = 0; slot < n; slot++)
+				ageStart[ageGroup(slot) + 1]++;
+
+			for (int g = 0; g < AGE_GROUPS; g++)
+				ageStart[g + 1] += ageStart[g];
+
+			// stable counting sort keeps the base order within each group
+			int[] next = Arrays.copyOf(ageStart, AGE_GROUPS);
+			slots = new int[n];
+			agePosition = new int[n];
+			for (int slot : baseOrder) {
+				int pos = next[ageGroup(slot)]++;
+				slots[pos] = slot;
+				agePosition[slot] = pos;
+			}
+
+			ageCounter = new PositionCounter(n, pos -> contained.get(slots[pos]));
+		}
+
+		private void add(int slot, int delta) {
+			ageCounter.add(agePosition[slot], delta);
+		}
+
+		/**
+		 * Number of susceptible persons within the age range at base positions from {@code from} (inclusive) to {@code to} (exclusive).
+		 */
+		private int count(int minAge, int maxAge, int from, int to) {
+
+			int lo = minAge == -1 ? 1 : Math.max(1, minAge + 1);
+			int hi = maxAge == -1 ? AGE_GROUPS - 1 : Math.min(AGE_GROUPS - 1, maxAge + 1);
+			if (lo > hi)
+				return 0;
+
+			// wide ranges are counted by their complement
+			if (2 * (hi - lo + 1) <= AGE_GROUPS)
+				return countGroups(lo, hi + 1, from, to);
+
+			int all = baseCounter.prefix(to) - baseCounter.prefix(from);
+			return all - countGroups(0, lo, from, to) - countGroups(hi + 1, AGE_GROUPS, from, to);
+		}
+
+		private int countGroups(int fromGroup, int toGroup, int from, int to) {
+			int n = 0;
+			for (int g = fromGroup; g < toGroup; g++) {
+				if (ageStart[g] < ageStart[g + 1])
+					n += ageCounter.prefix(lowerBound(g, to)) - ageCounter.prefix(lowerBound(g, from));
+			}
+
+			return n;
+		}
+
+		/**
+		 * First position of an age group whose base position is at least {@code pos}.
+		 */
+		private int lowerBound(int g, int pos) {
+			int lo = ageStart[g];
+			int hi = ageStart[g + 1];
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (basePosition[slots[mid]] < pos)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+
+			return lo;
+		}
+	}
+}
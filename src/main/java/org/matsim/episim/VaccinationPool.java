@@ -0,0 +1,204 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Persons eligible for a vaccination dose, grouped by age. The pool is updated by the status setters of {@link EpisimPerson},
+ * so vaccination models do not need to search the whole population.
+ * <p>
+ * Eligible persons are counted in Fenwick trees over all persons in the iteration order of the person map, and ordered by age
+ * and the same order. Adding, removing and selecting the i-th eligible person only take logarithmic time.
+ * The i-th person is the same as the i-th eligible person of the person map, also after restoring a snapshot.
+ */
+public final class VaccinationPool {
+
+	/**
+	 * Number of age groups. Persons older than this are in the last group, persons with unknown age in the first.
+	 */
+	public static final int AGE_GROUPS = 130;
+
+	private final PersonStateStore state;
+	private final boolean reVaccination;
+
+	/**
+	 * Number of persons when the pool was built, or -1 if it needs to be built.
+	 */
+	private int built = -1;
+
+	/**
+	 * Slots ordered by id index, which is the order of the person map, and the position of each slot in this order.
+	 */
+	private int[] order;
+	private int[] position;
+
+	/**
+	 * Slots ordered by age and id index, and the position of each slot in this order.
+	 */
+	private int[] ageOrder;
+	private int[] agePosition;
+
+	/**
+	 * First position of each age group in {@link #ageOrder}.
+	 */
+	private final int[] ageStart = new int[AGE_GROUPS + 1];
+
+	/**
+	 * Number of eligible persons by position in both orders.
+	 */
+	private PositionCounter counter;
+	private PositionCounter ageCounter;
+	private final BitSet contained = new BitSet();
+	private int size;
+
+	VaccinationPool(PersonStateStore state, boolean reVaccination) {
+		this.state = state;
+		this.reVaccination = reVaccination;
+	}
+
+	/**
+	 * Whether this pool contains persons eligible for re-vaccination, otherwise for their first vaccination.
+	 */
+	public boolean isReVaccination() {
+		return reVaccination;
+	}
+
+	/**
+	 * Number of eligible persons.
+	 */
+	public int size() {
+		build();
+		return size;
+	}
+
+	/**
+	 * Number of eligible persons of an age group.
+	 */
+	public int size(int age) {
+		build();
+		return ageCounter.prefix(ageStart[age + 1]) - ageCounter.prefix(ageStart[age]);
+	}
+
+	/**
+	 * Eligible person at {@code index}, in the order of the person map.
+	 */
+	public EpisimPerson get(int index) {
+		build();
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for pool of size " + size);
+
+		return state.getPerson(order[counter.select(index)]);
+	}
+
+	/**
+	 * Eligible person at {@code index} within an age group, in the order of the person map.
+	 */
+	public EpisimPerson get(int age, int index) {
+		build();
+		int n = size(age);
+		if (index < 0 || index >= n)
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for age " + age + " with " + n + " persons");
+
+		return state.getPerson(ageOrder[ageCounter.select(ageCounter.prefix(ageStart[age]) + index)]);
+	}
+
+	/**
+	 * Updates the pool after the state of a person changed.
+	 */
+	void update(int slot) {
+
+		// pool will be built from scratch
+		if (built != state.size())
+			return;
+
+		boolean eligible = isEligible(slot);
+		if (eligible == contained.get(slot))
+			return;
+
+		int delta = eligible ? 1 : -1;
+		contained.set(slot, eligible);
+		counter.add(position[slot], delta);
+		ageCounter.add(agePosition[slot], delta);
+		size += delta;
+	}
+
+	private boolean isEligible(int slot) {
+		EpisimPerson p = state.getPerson(slot);
+		return p.isVaccinable() &&
+				p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible &&
+				p.getVaccinationStatus() == (reVaccination ? EpisimPerson.VaccinationStatus.yes : EpisimPerson.VaccinationStatus.no) &&
+				p.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.no;
+	}
+
+	private static int ageGroup(int age) {
+		return Math.max(0, Math.min(AGE_GROUPS - 1, age));
+	}
+
+	/**
+	 * Orders all persons and counts the eligible ones, if persons were added since the last build.
+	 */
+	private void build() {
+
+		int n = state.size();
+		if (built == n)
+			return;
+
+		order = IntStream.range(0, n).boxed()
+				.sorted(Comparator.comparingInt(slot -> state.getPerson(slot).getPersonId().index()))
+				.mapToInt(Integer::intValue).toArray();
+
+		position = new int[n];
+		for (int pos = 0; pos < n; pos++)
+			position[order[pos]] = pos;
+
+		// stable counting sort by age keeps the id order within each age group
+		Arrays.fill(ageStart, 0);
+		for (int slot = 0; slot < n; slot++)
+			ageStart[ageGroup(state.age[slot]) + 1]++;
+
+		for (int age = 0; age < AGE_GROUPS; age++)
+			ageStart[age + 1] += ageStart[age];
+
+		int[] next = Arrays.copyOf(ageStart, AGE_GROUPS);
+		ageOrder = new int[n];
+		agePosition = new int[n];
+		for (int slot : order) {
+			int pos = next[ageGroup(state.age[slot])]++;
+			ageOrder[pos] = slot;
+			agePosition[slot] = pos;
+		}
+
+		contained.clear();
+		for (int slot = 0; slot < n; slot++) {
+			if (isEligible(slot))
+				contained.set(slot);
+		}
+
+		counter = new PositionCounter(n, pos -> contained.get(order[pos]));
+		ageCounter = new PositionCounter(n, pos -> contained.get(ageOrder[pos]));
+		size = contained.cardinality();
+		built = n;
+	}
+}
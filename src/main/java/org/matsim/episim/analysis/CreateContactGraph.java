@@ -15,7 +15,7 @@ import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.handler.BasicEventHandler;
 import org.matsim.core.utils.io.IOUtils;
 import org.matsim.episim.events.EpisimContactEvent;
-import org.matsim.episim.events.EpisimEventsReader;
+import org.matsim.run.AnalysisCommand;
 import picocli.CommandLine;
 
 import java.io.BufferedWriter;
@@ -59,7 +59,7 @@ public class CreateContactGraph implements Callable<Integer>, BasicEventHandler
 
 		graph = new DefaultUndirectedWeightedGraph<>(DefaultEdge.class);
 
-		new EpisimEventsReader(manager).readFile(input.toString());
+		AnalysisCommand.readEvents(manager, input);
 
 		log.info("Created graph with {} nodes and {} edges", graph.vertexSet().size(), graph.edgeSet().size());
 
@@ -75,7 +75,7 @@ public class CreateContactGraph implements Callable<Integer>, BasicEventHandler
 		for (Map.Entry<String, GraphExporter<Id<Person>, DefaultEdge>> e : exporter.entrySet()) {
 
 			try {
-				String baseName = input.getFileName().toString().replace(".xml", "").replace(".gz", "");
+				String baseName = input.getFileName().toString().replace(".xml", "").replace(".bin", "").replace(".gz", "");
 
 				String filename = outputFolder.resolve("graph-" + baseName + "." + e.getKey() + ".gz").toString();
 				BufferedWriter writer = IOUtils.getBufferedWriter(filename);
@@ -133,12 +133,12 @@ public class RValuesFromEvents implements Callable<Integer> {
 		manager.addHandler(rHandler);
 
 		List<Path> eventFiles = Files.list(eventFolder)
-				.filter(p -> p.getFileName().toString().contains("xml.gz"))
+				.filter(AnalysisCommand::isEventFile)
 				.collect(Collectors.toList());
 
 		for (Path p : eventFiles) {
 			try {
-				new EpisimEventsReader(manager).readFile(p.toString());
+				AnalysisCommand.readEvents(manager, p);
 			} catch (UncheckedIOException e) {
 				log.warn("Caught UncheckedIOException. Could not read file {}", p);
 			}
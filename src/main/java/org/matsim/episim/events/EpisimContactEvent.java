@@ -19,7 +19,7 @@ public final class EpisimContactEvent extends Event implements HasPersonId {
 	public static final String CONTACT_PERSON = "contactPerson";
 	public static final String DURATION = "duration";
 	public static final String CONTAINER = "container";
-	private static final String INFECTION_PROB = "infectionProb";
+	public static final String INFECTION_PROB = "infectionProb";
 	public static final String GROUP_SIZE = "groupSize";
 
 	private final Id<Person> personId;
@@ -66,6 +66,24 @@ public final class EpisimContactEvent extends Event implements HasPersonId {
 		return duration;
 	}
 
+	public Id<?> getContainerId() {
+		return containerId;
+	}
+
+	/**
+	 * Activity type of the person.
+	 */
+	public String getActType() {
+		return actType;
+	}
+
+	/**
+	 * Number of persons in the container.
+	 */
+	public int getGroupSize() {
+		return groupSize;
+	}
+
 	@Override
 	public Map<String, String> getAttributes() {
 		Map<String, String> attr = super.getAttributes();
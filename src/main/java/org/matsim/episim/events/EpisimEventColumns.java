@@ -0,0 +1,142 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.events;
+
+import java.util.Arrays;
+
+/**
+ * Attributes of one kind of episim events within a chunk of the binary events format, stored as one array per attribute.
+ * The i-th event of this kind is stored at index i of each column. Ids, activity types and enums are stored as index into the
+ * string dictionary of the file.
+ *
+ * @see EpisimEventsBinaryWriter
+ * @see EpisimEventsBinaryReader
+ */
+public final class EpisimEventColumns {
+
+	public static final byte INFECTION = 0;
+	public static final byte CONTACT = 1;
+	public static final byte TRACING = 2;
+	public static final byte STATUS = 3;
+
+	static final int KINDS = 4;
+
+	/**
+	 * Double column with the time, present for all kinds.
+	 */
+	public static final int TIME = 0;
+	/**
+	 * Double column of {@link #INFECTION}.
+	 */
+	public static final int PROBABILITY = 1;
+	/**
+	 * Double column of {@link #CONTACT}.
+	 */
+	public static final int DURATION = 1;
+
+	/**
+	 * Int column with the person, present for all kinds.
+	 */
+	public static final int PERSON = 0;
+	/**
+	 * Int column with the infector of {@link #INFECTION} and the contact person of {@link #CONTACT} and {@link #TRACING}.
+	 */
+	public static final int CONTACT_PERSON = 1;
+	/**
+	 * Int columns of {@link #INFECTION} and {@link #CONTACT}. Type is the infection type or activity type respectively.
+	 */
+	public static final int CONTAINER = 2;
+	public static final int TYPE = 3;
+	public static final int GROUP_SIZE = 4;
+	/**
+	 * Int column of {@link #INFECTION}.
+	 */
+	public static final int VIRUS_STRAIN = 5;
+	/**
+	 * Int columns of {@link #STATUS}, -1 if the status is not set.
+	 */
+	public static final int DISEASE_STATUS = 1;
+	public static final int QUARANTINE_STATUS = 2;
+
+	private static final int[] DOUBLE_COLUMNS = {2, 2, 1, 1};
+	private static final int[] INT_COLUMNS = {6, 5, 2, 3};
+
+	private final byte kind;
+	final double[][] doubles;
+	final int[][] ints;
+	int size;
+
+	EpisimEventColumns(byte kind) {
+		this.kind = kind;
+		this.doubles = new double[DOUBLE_COLUMNS[kind]][0];
+		this.ints = new int[INT_COLUMNS[kind]][0];
+	}
+
+	/**
+	 * Kind of the events in these columns.
+	 */
+	public byte getKind() {
+		return kind;
+	}
+
+	/**
+	 * Number of events in these columns.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public double getDouble(int column, int i) {
+		return doubles[column][i];
+	}
+
+	public int getInt(int column, int i) {
+		return ints[column][i];
+	}
+
+	/**
+	 * Underlying array of a double column, only the first {@link #size()} entries are valid.
+	 */
+	public double[] getDoubleColumn(int column) {
+		return doubles[column];
+	}
+
+	/**
+	 * Underlying array of an int column, only the first {@link #size()} entries are valid.
+	 */
+	public int[] getIntColumn(int column) {
+		return ints[column];
+	}
+
+	/**
+	 * Ensures that all columns can store at least {@code capacity} events.
+	 */
+	void ensureCapacity(int capacity) {
+		if (capacity <= (doubles[TIME].length))
+			return;
+
+		int n = Math.max(capacity, doubles[TIME].length + (doubles[TIME].length >> 1) + 16);
+		for (int c = 0; c < doubles.length; c++)
+			doubles[c] = Arrays.copyOf(doubles[c], n);
+		for (int c = 0; c < ints.length; c++)
+			ints[c] = Arrays.copyOf(ints[c], n);
+	}
+}
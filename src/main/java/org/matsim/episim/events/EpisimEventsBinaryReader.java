@@ -0,0 +1,243 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.events;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.episim.EpisimContainer;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.model.VirusStrain;
+import org.matsim.facilities.ActivityFacility;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.matsim.episim.EpisimUtils.readChars;
+import static org.matsim.episim.events.EpisimEventColumns.*;
+
+/**
+ * Reader for events written by {@link EpisimEventsBinaryWriter}. Events can either be passed to an {@link EventsManager}
+ * in their original order, or be processed directly from their columns with {@link #readChunks(Path, Consumer)}.
+ */
+public final class EpisimEventsBinaryReader {
+
+	private final EventsManager manager;
+
+	/**
+	 * Cached ids for each dictionary index.
+	 */
+	private Id<Person>[] persons;
+	private Id<?>[] containers;
+
+	/**
+	 * Reader that passes all events to {@code manager}.
+	 */
+	public EpisimEventsBinaryReader(EventsManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Whether a file is in the binary format, based on its name.
+	 */
+	public static boolean isBinary(String filename) {
+		return filename.endsWith(EpisimEventsBinaryWriter.EXTENSION);
+	}
+
+	/**
+	 * Reads a file and creates events in the same order as they were written.
+	 */
+	@SuppressWarnings("unchecked")
+	public void readFile(String filename) {
+
+		persons = new Id[0];
+		containers = new Id[0];
+
+		int[] cursor = new int[KINDS];
+
+		try {
+			readChunks(Path.of(filename), chunk -> {
+
+				if (persons.length < chunk.dictionary.size()) {
+					persons = Arrays.copyOf(persons, chunk.dictionary.size());
+					containers = Arrays.copyOf(containers, chunk.dictionary.size());
+				}
+
+				Arrays.fill(cursor, 0);
+				for (int i = 0; i < chunk.size; i++) {
+					byte kind = chunk.order[i];
+					manager.processEvent(createEvent(chunk, chunk.columns[kind], cursor[kind]++));
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Event createEvent(Chunk chunk, EpisimEventColumns c, int i) {
+
+		double time = c.doubles[TIME][i];
+		Id<Person> person = person(chunk, c.ints[PERSON][i]);
+
+		switch (c.getKind()) {
+			case INFECTION:
+				int strain = c.ints[VIRUS_STRAIN][i];
+				return new EpisimInfectionEvent(time, person, person(chunk, c.ints[CONTACT_PERSON][i]), container(chunk, c.ints[CONTAINER][i]),
+						chunk.getString(c.ints[TYPE][i]), c.ints[GROUP_SIZE][i], strain == -1 ? null : VirusStrain.valueOf(chunk.getString(strain)),
+						c.doubles[PROBABILITY][i]);
+			case CONTACT:
+				return new EpisimContactEvent(time, person, person(chunk, c.ints[CONTACT_PERSON][i]), container(chunk, c.ints[CONTAINER][i]),
+						chunk.getString(c.ints[TYPE][i]), c.doubles[DURATION][i], c.ints[GROUP_SIZE][i]);
+			case TRACING:
+				return new EpisimTracingEvent(time, person, person(chunk, c.ints[CONTACT_PERSON][i]));
+			case STATUS:
+				int status = c.ints[DISEASE_STATUS][i];
+				if (status != -1)
+					return new EpisimPersonStatusEvent(time, person, EpisimPerson.DiseaseStatus.valueOf(chunk.getString(status)));
+
+				return new EpisimPersonStatusEvent(time, person, EpisimPerson.QuarantineStatus.valueOf(chunk.getString(c.ints[QUARANTINE_STATUS][i])));
+			default:
+				throw new IllegalStateException("Unknown event kind: " + c.getKind());
+		}
+	}
+
+	private Id<Person> person(Chunk chunk, int index) {
+		if (persons[index] == null)
+			persons[index] = Id.createPersonId(chunk.getString(index));
+
+		return persons[index];
+	}
+
+	/**
+	 * Container ids are always created as facility ids.
+	 */
+	private Id<?> container(Chunk chunk, int index) {
+		if (containers[index] == null)
+			containers[index] = Id.create(chunk.getString(index), ActivityFacility.class);
+
+		return containers[index];
+	}
+
+	/**
+	 * Reads all chunks of a file. The chunk instance and its columns are reused, so they must not be stored by the consumer.
+	 */
+	public static void readChunks(Path path, Consumer<Chunk> consumer) throws IOException {
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path), 64 * 1024), 1024 * 1024))) {
+
+			if (in.readInt() != EpisimEventsBinaryWriter.MAGIC)
+				throw new IllegalArgumentException("File " + path + " does not contain binary episim events.");
+
+			int version = in.readInt();
+			if (version != EpisimEventsBinaryWriter.VERSION)
+				throw new IllegalArgumentException("Unsupported binary events version " + version + " in " + path);
+
+			Chunk chunk = new Chunk();
+			byte[] buffer = new byte[0];
+
+			int strings;
+			while ((strings = in.readInt()) != -1) {
+
+				for (int i = 0; i < strings; i++)
+					chunk.dictionary.add(readChars(in).intern());
+
+				chunk.size = in.readInt();
+				if (chunk.order.length < chunk.size)
+					chunk.order = new byte[chunk.size];
+
+				in.readFully(chunk.order, 0, chunk.size);
+
+				for (EpisimEventColumns c : chunk.columns) {
+					c.size = in.readInt();
+					c.ensureCapacity(c.size);
+
+					if (buffer.length < 8 * c.size)
+						buffer = new byte[8 * c.size];
+
+					for (double[] column : c.doubles) {
+						in.readFully(buffer, 0, 8 * c.size);
+						ByteBuffer.wrap(buffer).asDoubleBuffer().get(column, 0, c.size);
+					}
+
+					for (int[] column : c.ints) {
+						in.readFully(buffer, 0, 4 * c.size);
+						ByteBuffer.wrap(buffer).asIntBuffer().get(column, 0, c.size);
+					}
+				}
+
+				consumer.accept(chunk);
+			}
+		}
+	}
+
+	/**
+	 * Events of one chunk.
+	 */
+	public static final class Chunk {
+
+		private final List<String> dictionary = new ArrayList<>();
+		private final EpisimEventColumns[] columns = new EpisimEventColumns[KINDS];
+		private byte[] order = new byte[0];
+		private int size;
+
+		private Chunk() {
+			for (byte k = 0; k < KINDS; k++)
+				columns[k] = new EpisimEventColumns(k);
+		}
+
+		/**
+		 * Number of events in this chunk.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Kind of the i-th event in this chunk.
+		 */
+		public byte getKind(int i) {
+			return order[i];
+		}
+
+		/**
+		 * Columns of all events of one kind.
+		 */
+		public EpisimEventColumns getColumns(byte kind) {
+			return columns[kind];
+		}
+
+		/**
+		 * String of a dictionary index, or null for -1.
+		 */
+		public String getString(int index) {
+			return index == -1 ? null : dictionary.get(index);
+		}
+	}
+}
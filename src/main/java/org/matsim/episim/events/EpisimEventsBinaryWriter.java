@@ -0,0 +1,204 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.events;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.events.Event;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.matsim.episim.EpisimUtils.writeChars;
+import static org.matsim.episim.events.EpisimEventColumns.*;
+
+/**
+ * Writes episim events in a compact columnar format, which is much faster to read than xml events.
+ * <p>
+ * Events are buffered and written in chunks. Each chunk contains the strings added to the dictionary since the last chunk,
+ * the kind of each event in their original order and the {@link EpisimEventColumns} of all kinds.
+ * The file is terminated by a chunk with a dictionary size of -1.
+ *
+ * @see EpisimEventsBinaryReader
+ */
+public final class EpisimEventsBinaryWriter implements Closeable {
+
+	/**
+	 * Files with this extension are read as binary episim events.
+	 */
+	public static final String EXTENSION = ".bin.gz";
+
+	static final int MAGIC = 0x45504945;
+	static final int VERSION = 1;
+
+	/**
+	 * Number of events buffered before a chunk is written.
+	 */
+	static final int CHUNK_SIZE = 1 << 16;
+
+	private final DataOutputStream out;
+
+	/**
+	 * Ids, activity types and enums are stored in the same dictionary. Ids are interned, so they are used as keys directly.
+	 */
+	private final Object2IntMap<Object> dictionary = new Object2IntOpenHashMap<>();
+	private final List<String> pending = new ArrayList<>();
+
+	private final EpisimEventColumns[] columns = new EpisimEventColumns[KINDS];
+	private final byte[] order = new byte[CHUNK_SIZE];
+	private int size;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+	public EpisimEventsBinaryWriter(Path path) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path), 64 * 1024), 1024 * 1024));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+
+		for (byte k = 0; k < KINDS; k++)
+			columns[k] = new EpisimEventColumns(k);
+	}
+
+	/**
+	 * Appends an event.
+	 *
+	 * @return false if the event type is not supported by this format
+	 */
+	public boolean append(Event event) throws IOException {
+
+		if (event instanceof EpisimInfectionEvent) {
+			EpisimInfectionEvent e = (EpisimInfectionEvent) event;
+			EpisimEventColumns c = columns[INFECTION];
+			int i = add(c, e.getTime(), e.getPersonId());
+			c.doubles[PROBABILITY][i] = e.getProbability();
+			c.ints[CONTACT_PERSON][i] = index(e.getInfectorId());
+			c.ints[CONTAINER][i] = index(e.getContainerId());
+			c.ints[TYPE][i] = index(e.getInfectionType());
+			c.ints[GROUP_SIZE][i] = e.getGroupSize();
+			c.ints[VIRUS_STRAIN][i] = index(e.getVirusStrain());
+		} else if (event instanceof EpisimContactEvent) {
+			EpisimContactEvent e = (EpisimContactEvent) event;
+			EpisimEventColumns c = columns[CONTACT];
+			int i = add(c, e.getTime(), e.getPersonId());
+			c.doubles[DURATION][i] = e.getDuration();
+			c.ints[CONTACT_PERSON][i] = index(e.getContactPersonId());
+			c.ints[CONTAINER][i] = index(e.getContainerId());
+			c.ints[TYPE][i] = index(e.getActType());
+			c.ints[GROUP_SIZE][i] = e.getGroupSize();
+		} else if (event instanceof EpisimTracingEvent) {
+			EpisimTracingEvent e = (EpisimTracingEvent) event;
+			EpisimEventColumns c = columns[TRACING];
+			int i = add(c, e.getTime(), e.getPersonId());
+			c.ints[CONTACT_PERSON][i] = index(e.getContactPersonId());
+		} else if (event instanceof EpisimPersonStatusEvent) {
+			EpisimPersonStatusEvent e = (EpisimPersonStatusEvent) event;
+			EpisimEventColumns c = columns[STATUS];
+			int i = add(c, e.getTime(), e.getPersonId());
+			c.ints[DISEASE_STATUS][i] = index(e.getDiseaseStatus());
+			c.ints[QUARANTINE_STATUS][i] = index(e.getQuarantineStatus());
+		} else
+			return false;
+
+		if (size == CHUNK_SIZE)
+			writeChunk();
+
+		return true;
+	}
+
+	/**
+	 * Adds an event to the columns and returns its index.
+	 */
+	private int add(EpisimEventColumns c, double time, Object person) {
+		int i = c.size++;
+		c.ensureCapacity(c.size);
+		c.doubles[TIME][i] = time;
+		c.ints[PERSON][i] = index(person);
+		order[size++] = c.getKind();
+		return i;
+	}
+
+	/**
+	 * Index of an object in the dictionary, -1 for null.
+	 */
+	private int index(Object obj) {
+		if (obj == null)
+			return -1;
+
+		return dictionary.computeIntIfAbsent(obj, k -> {
+			pending.add(obj instanceof Enum ? ((Enum<?>) obj).name() : obj.toString());
+			return dictionary.size();
+		});
+	}
+
+	private void writeChunk() throws IOException {
+
+		out.writeInt(pending.size());
+		for (String s : pending)
+			writeChars(out, s);
+
+		pending.clear();
+
+		out.writeInt(size);
+		out.write(order, 0, size);
+
+		for (EpisimEventColumns c : columns) {
+			out.writeInt(c.size);
+
+			for (double[] column : c.doubles) {
+				buffer(8 * c.size).asDoubleBuffer().put(column, 0, c.size);
+				out.write(buffer.array(), 0, 8 * c.size);
+			}
+
+			for (int[] column : c.ints) {
+				buffer(4 * c.size).asIntBuffer().put(column, 0, c.size);
+				out.write(buffer.array(), 0, 4 * c.size);
+			}
+
+			c.size = 0;
+		}
+
+		size = 0;
+	}
+
+	private ByteBuffer buffer(int length) {
+		if (buffer.capacity() < length)
+			buffer = ByteBuffer.allocate(length);
+
+		return buffer.clear();
+	}
+
+	/**
+	 * Writes the remaining events and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (size > 0)
+			writeChunk();
+
+		out.writeInt(-1);
+		out.close();
+	}
+}
@@ -16,13 +16,13 @@ public final class EpisimInfectionEvent extends Event implements HasPersonId {
 
 	// TODO: hasLink or hasCoord?
 
-	static final String EVENT_TYPE = "episimInfection";
-	static final String INFECTOR = "infector";
-	static final String CONTAINER = "container";
-	static final String INFECTION_TYPE = "infectionType";
-	static final String VIRUS_STRAIN = "virusStrain";
-	static final String PROBABILITY = "probability";
-	static final String GROUP_SIZE = "groupSize";
+	public static final String EVENT_TYPE = "episimInfection";
+	public static final String INFECTOR = "infector";
+	public static final String CONTAINER = "container";
+	public static final String INFECTION_TYPE = "infectionType";
+	public static final String VIRUS_STRAIN = "virusStrain";
+	public static final String PROBABILITY = "probability";
+	public static final String GROUP_SIZE = "groupSize";
 
 	private final Id<Person> personId;
 	private final Id<Person> infectorId;
@@ -77,6 +77,24 @@ public final class EpisimInfectionEvent extends Event implements HasPersonId {
 		return infectionType;
 	}
 
+	/**
+	 * Number of persons in the container at the time of infection.
+	 */
+	public int getGroupSize() {
+		return groupSize;
+	}
+
+	public VirusStrain getVirusStrain() {
+		return virusStrain;
+	}
+
+	/**
+	 * Probability of this infection.
+	 */
+	public double getProbability() {
+		return probability;
+	}
+
 	@Override
 	public Map<String, String> getAttributes() {
 		Map<String, String> attr = super.getAttributes();
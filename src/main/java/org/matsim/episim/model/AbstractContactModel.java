@@ -20,15 +20,18 @@
  */
 package org.matsim.episim.model;
 
+import com.google.inject.Inject;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.episim.*;
+import org.matsim.episim.policy.DailyRestrictionTable;
 import org.matsim.episim.policy.Restriction;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.SplittableRandom;
 
@@ -43,7 +46,7 @@ public abstract class AbstractContactModel implements ContactModel {
 	public static final String QUARANTINE_HOME = "quarantine_home";
 
 	protected final Scenario scenario = null;
-	protected final SplittableRandom rnd;
+	protected SplittableRandom rnd;
 	protected final EpisimConfigGroup episimConfig;
 	protected final EpisimReporting reporting;
 
@@ -65,25 +68,60 @@ public abstract class AbstractContactModel implements ContactModel {
 	 */
 	protected final InfectionModel infectionModel;
 
+	/**
+	 * Precomputed interaction rules of activity pairs.
+	 */
+	final ActivityInteractions interactions = new ActivityInteractions();
+
 	protected int iteration;
-	private Map<String, Restriction> restrictions;
+	private DailyRestrictionTable restrictions;
+
+	/**
+	 * Number of evaluated contacts and computed infection probabilities since the last {@link #collectCounters(PerformanceMetrics)}.
+	 */
+	protected long contactsEvaluated;
+	protected long probabilitiesComputed;
 
 	/**
 	 * Curfew compliance valid for the day.
 	 */
 	private double curfewCompliance;
 
+	/**
+	 * If set, infections and traceable contacts are collected instead of being applied directly.
+	 */
+	private DeferredEffects deferred;
+
+	/**
+	 * Index of infection locations, only present if the model was created by injection.
+	 */
+	@Nullable
+	private InfectionLocationIndex infectionLocations;
 
 	AbstractContactModel(SplittableRandom rnd, Config config, InfectionModel infectionModel, EpisimReporting reporting) {
 		this.rnd = rnd;
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 		this.infectionModel = infectionModel;
 		this.reporting = reporting;
-		this.trParams = new EpisimPerson.Activity("tr", episimConfig.selectInfectionParams("tr"));
-		this.qhParams = new EpisimPerson.Activity(QUARANTINE_HOME, episimConfig.selectInfectionParams(QUARANTINE_HOME));
+		this.trParams = createActivity(episimConfig, "tr");
+		this.qhParams = createActivity(episimConfig, QUARANTINE_HOME);
 		this.trackingMinDuration = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class).getMinDuration();
 	}
 
+	/**
+	 * Copy constructor for {@link #copy(SplittableRandom)}, the infection model is copied as well.
+	 */
+	AbstractContactModel(AbstractContactModel other, SplittableRandom rnd) {
+		this.rnd = rnd;
+		this.episimConfig = other.episimConfig;
+		this.infectionModel = other.infectionModel.copy(rnd);
+		this.reporting = other.reporting;
+		this.trParams = other.trParams;
+		this.qhParams = other.qhParams;
+		this.trackingMinDuration = other.trackingMinDuration;
+		this.infectionLocations = other.infectionLocations;
+	}
+
 	private static boolean hasDiseaseStatusRelevantForInfectionDynamics(EpisimPerson personWrapper) {
 		switch (personWrapper.getDiseaseStatus()) {
 			case susceptible:
@@ -133,6 +171,14 @@ public abstract class AbstractContactModel implements ContactModel {
 		}
 	}
 
+	/**
+	 * Returns the current activity of a person inside a container. The container may hold a different position than the person
+	 * during parallel replay.
+	 */
+	protected static EpisimPerson.Activity getCurrentActivity(EpisimPerson person, EpisimContainer<?> container) {
+		return person.getTrajectory().get(container.getPositionInTrajectory(person));
+	}
+
 	/**
 	 * Get the relevant infection parameter based on container and activity and person.
 	 */
@@ -140,17 +186,44 @@ public abstract class AbstractContactModel implements ContactModel {
 		if (container instanceof EpisimVehicle) {
 			return trParams.params;
 		} else if (container instanceof EpisimFacility) {
-			EpisimConfigGroup.InfectionParams params = episimConfig.selectInfectionParams(activity);
+			return adjustInfectionParams(person, episimConfig.selectInfectionParams(activity));
+		} else
+			throw new IllegalStateException("Don't know how to deal with container " + container);
 
+	}
+
+	/**
+	 * Activity with the container type index used by {@link DailyRestrictionTable}.
+	 */
+	private static EpisimPerson.Activity createActivity(EpisimConfigGroup episimConfig, String actType) {
+		EpisimConfigGroup.InfectionParams params = episimConfig.selectInfectionParams(actType);
+		return new EpisimPerson.Activity(actType, params, episimConfig.getContainerTypes().indexOf(params.getContainerName()));
+	}
+
+	/**
+	 * Activity whose infection params and restriction apply to a person in a container, which is the activity itself unless the person
+	 * is in a vehicle or quarantined at home.
+	 */
+	protected final EpisimPerson.Activity getInfectionActivity(EpisimContainer<?> container, EpisimPerson person, EpisimPerson.Activity activity) {
+		if (container instanceof EpisimVehicle) {
+			return trParams;
+		} else if (container instanceof EpisimFacility) {
 			// Select different infection params for home quarantined persons
-			if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome && params.getContainerName().equals("home")) {
-				return qhParams.params;
-			}
+			if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome && activity.params.getContainerName().equals("home"))
+				return qhParams;
 
-			return params;
+			return activity;
 		} else
 			throw new IllegalStateException("Don't know how to deal with container " + container);
+	}
+
+	private EpisimConfigGroup.InfectionParams adjustInfectionParams(EpisimPerson person, EpisimConfigGroup.InfectionParams params) {
+		// Select different infection params for home quarantined persons
+		if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome && params.getContainerName().equals("home")) {
+			return qhParams.params;
+		}
 
+		return params;
 	}
 
 	protected void trackContactPerson(EpisimPerson personLeavingContainer, EpisimPerson otherPerson, double now, double jointTimeInContainer,
@@ -161,17 +234,30 @@ public abstract class AbstractContactModel implements ContactModel {
 			return;
 		}
 
+		trackContactPerson(personLeavingContainer, otherPerson, now, jointTimeInContainer);
+	}
+
+	/**
+	 * Track contact of two persons, whose activities have already been checked to be traceable.
+	 */
+	protected final void trackContactPerson(EpisimPerson personLeavingContainer, EpisimPerson otherPerson, double now, double jointTimeInContainer) {
+
 		// don't track below threshold
 		if (jointTimeInContainer < trackingMinDuration) {
 			return;
 		}
 
+		if (deferred != null) {
+			deferred.addContact(personLeavingContainer, otherPerson, now);
+			return;
+		}
+
 		personLeavingContainer.addTraceableContactPerson(otherPerson, now);
 		otherPerson.addTraceableContactPerson(personLeavingContainer, now);
 	}
 
-	private boolean activityRelevantForInfectionDynamics(EpisimPerson person, EpisimContainer<?> container, Map<String, Restriction> restrictions, SplittableRandom rnd) {
-		EpisimPerson.Activity act = person.getTrajectory().get(person.getCurrentPositionInTrajectory());
+	private boolean activityRelevantForInfectionDynamics(EpisimPerson person, EpisimContainer<?> container, EpisimPerson.Activity act, int groupSize,
+														 DailyRestrictionTable restrictions, SplittableRandom rnd) {
 
 		// Check if person is home quarantined
 		if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome && !act.actType.startsWith("home"))
@@ -179,7 +265,7 @@ public abstract class AbstractContactModel implements ContactModel {
 
 
 		// enforce max group sizes
-		Restriction r = restrictions.get(act.params.getContainerName());
+		Restriction r = restrictions.get(act);
 		if (r.getMaxGroupSize() != null && r.getMaxGroupSize() > -1 && container.getMaxGroupSize() > 0 &&
 				container.getMaxGroupSize() > r.getMaxGroupSize())
 			return false;
@@ -187,7 +273,7 @@ public abstract class AbstractContactModel implements ContactModel {
 		// reduce group size probabilistically
 		Integer reducedGroupSize = r.getReducedGroupSize();
 		if (reducedGroupSize != null && reducedGroupSize > -1 && reducedGroupSize != Integer.MAX_VALUE) {
-			double current = (container.getPersons().size() * episimConfig.getSampleSize()) / container.getNumSpaces();
+			double current = (groupSize * episimConfig.getSampleSize()) / container.getNumSpaces();
 
 			// always false if current < reduced size
 			boolean out = rnd.nextDouble() > reducedGroupSize / current;
@@ -202,9 +288,9 @@ public abstract class AbstractContactModel implements ContactModel {
 		return actIsRelevant(act, restrictions, rnd);
 	}
 
-	private boolean actIsRelevant(EpisimPerson.Activity act, Map<String, Restriction> restrictions, SplittableRandom rnd) {
+	private boolean actIsRelevant(EpisimPerson.Activity act, DailyRestrictionTable restrictions, SplittableRandom rnd) {
 
-		Restriction r = restrictions.get(act.params.getContainerName());
+		Restriction r = restrictions.get(act);
 		// avoid use of rnd if outcome is known beforehand
 		if (r.getRemainingFraction() == 1)
 			return true;
@@ -215,16 +301,16 @@ public abstract class AbstractContactModel implements ContactModel {
 
 	}
 
-	private boolean tripRelevantForInfectionDynamics(EpisimPerson person, Map<String, Restriction> restrictions, SplittableRandom rnd) {
+	private boolean tripRelevantForInfectionDynamics(EpisimPerson person, int position, DailyRestrictionTable restrictions, SplittableRandom rnd) {
 		EpisimPerson.Activity lastAct = null;
-		if (person.getCurrentPositionInTrajectory() != 0) {
-			lastAct = person.getTrajectory().get(person.getCurrentPositionInTrajectory() - 1);
+		if (position != 0) {
+			lastAct = person.getTrajectory().get(position - 1);
 		}
 
 		if (person.getQuarantineStatus() != EpisimPerson.QuarantineStatus.no)
 			return false;
 
-		EpisimPerson.Activity nextAct = person.getTrajectory().get(person.getCurrentPositionInTrajectory());
+		EpisimPerson.Activity nextAct = person.getTrajectory().get(position);
 
 		// last activity is only considered if present
 		return actIsRelevant(trParams, restrictions, rnd) && actIsRelevant(nextAct, restrictions, rnd)
@@ -239,11 +325,21 @@ public abstract class AbstractContactModel implements ContactModel {
 	 * @noinspection BooleanMethodIsAlwaysInverted
 	 */
 	protected final boolean personRelevantForTrackingOrInfectionDynamics(EpisimPerson person, EpisimContainer<?> container,
-																		 Map<String, Restriction> restrictions, SplittableRandom rnd) {
+																		 DailyRestrictionTable restrictions, SplittableRandom rnd) {
 
 		return personHasRelevantStatus(person) && checkPersonInContainer(person, container, restrictions, rnd);
 	}
 
+	/**
+	 * Same as {@link #personRelevantForTrackingOrInfectionDynamics(EpisimPerson, EpisimContainer, Map, SplittableRandom)},
+	 * but with position in the trajectory and group size given explicitly instead of taken from the container.
+	 */
+	protected final boolean personRelevantForTrackingOrInfectionDynamics(EpisimPerson person, EpisimContainer<?> container, int position, int groupSize,
+																		 DailyRestrictionTable restrictions, SplittableRandom rnd) {
+
+		return personHasRelevantStatus(person) && checkPersonInContainer(person, container, position, groupSize, restrictions, rnd);
+	}
+
 	protected final boolean personHasRelevantStatus(EpisimPerson person) {
 		// Infected but not contagious persons are considered additionally
 		return hasDiseaseStatusRelevantForInfectionDynamics(person) ||
@@ -253,24 +349,41 @@ public abstract class AbstractContactModel implements ContactModel {
 	/**
 	 * Checks whether a person would be present in the container.
 	 */
-	protected final boolean checkPersonInContainer(EpisimPerson person, EpisimContainer<?> container, Map<String, Restriction> restrictions, SplittableRandom rnd) {
+	protected final boolean checkPersonInContainer(EpisimPerson person, EpisimContainer<?> container, DailyRestrictionTable restrictions, SplittableRandom rnd) {
+		return checkPersonInContainer(person, container, container.getPositionInTrajectory(person), container.getPersons().size(), restrictions, rnd);
+	}
+
+	/**
+	 * Checks whether a person at {@code position} of its trajectory would be present in a container with {@code groupSize} persons.
+	 */
+	protected final boolean checkPersonInContainer(EpisimPerson person, EpisimContainer<?> container, int position, int groupSize,
+												   DailyRestrictionTable restrictions, SplittableRandom rnd) {
 		if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.full) {
 			return false;
 		}
 
-		if (container instanceof EpisimFacility && activityRelevantForInfectionDynamics(person, container, restrictions, rnd)) {
+		if (container instanceof EpisimFacility &&
+				activityRelevantForInfectionDynamics(person, container, person.getTrajectory().get(position), groupSize, restrictions, rnd)) {
 			return true;
 		}
-		return container instanceof EpisimVehicle && tripRelevantForInfectionDynamics(person, restrictions, rnd);
+		return container instanceof EpisimVehicle && tripRelevantForInfectionDynamics(person, position, restrictions, rnd);
 	}
 
 	/**
 	 * Calculate the joint time persons have been in a container.
 	 * This takes possible closing hours into account.
 	 */
-	protected double calculateJointTimeInContainer(double now, EpisimPerson person, double containerEnterTimeOfPersonLeaving, double containerEnterTimeOfOtherPerson) {
-		EpisimPerson.Activity act = person.getTrajectory().get(person.getCurrentPositionInTrajectory());
-		Restriction r = getRestrictions().get(act.params.getContainerName());
+	protected double calculateJointTimeInContainer(double now, EpisimPerson person, EpisimContainer<?> container,
+												   double containerEnterTimeOfPersonLeaving, double containerEnterTimeOfOtherPerson) {
+		return calculateJointTimeInContainer(now, getCurrentActivity(person, container), containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
+	}
+
+	/**
+	 * Calculate the joint time, where {@code act} is the activity of the person leaving.
+	 */
+	protected final double calculateJointTimeInContainer(double now, EpisimPerson.Activity act,
+														 double containerEnterTimeOfPersonLeaving, double containerEnterTimeOfOtherPerson) {
+		Restriction r = restrictions.get(act);
 
 		double max = Math.max(containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
 
@@ -293,12 +406,13 @@ public abstract class AbstractContactModel implements ContactModel {
 	}
 
 	/**
-	 * Set the iteration number and restrictions that are in place.
+	 * Set the iteration number and restrictions that are in place. Restrictions that are not already a {@link DailyRestrictionTable}
+	 * are wrapped once, so that all lookups during the day go through the table.
 	 */
 	@Override
 	public void setRestrictionsForIteration(int iteration, Map<String, Restriction> restrictions) {
 		this.iteration = iteration;
-		this.restrictions = restrictions;
+		this.restrictions = DailyRestrictionTable.of(restrictions);
 		this.infectionModel.setIteration(iteration);
 		this.curfewCompliance = EpisimUtils.findValidEntry(episimConfig.getCurfewCompliance(), 1.0,
 				episimConfig.getStartDate().plusDays(iteration - 1));
@@ -307,7 +421,17 @@ public abstract class AbstractContactModel implements ContactModel {
 	/**
 	 * Sets the infection status of a person and reports the event.
 	 */
-	protected void infectPerson(EpisimPerson personWrapper, EpisimPerson infector, double now, StringBuilder infectionType, double prob, EpisimContainer<?> container) {
+	protected void infectPerson(EpisimPerson personWrapper, EpisimPerson infector, double now, CharSequence infectionType, double prob, EpisimContainer<?> container) {
+		infectPerson(personWrapper, infector, now, infectionType, prob, container, -1);
+	}
+
+	/**
+	 * Sets the infection status of a person in a group of known size. This group may not be the current content of the container.
+	 *
+	 * @param groupSize size of the group, or -1 to use the persons in the container
+	 */
+	protected final void infectPerson(EpisimPerson personWrapper, EpisimPerson infector, double now, CharSequence infectionType, double prob,
+									  EpisimContainer<?> container, int groupSize) {
 
 		if (personWrapper.getDiseaseStatus() != EpisimPerson.DiseaseStatus.susceptible) {
 			throw new IllegalStateException("Person to be infected is not susceptible. Status is=" + personWrapper.getDiseaseStatus());
@@ -321,7 +445,8 @@ public abstract class AbstractContactModel implements ContactModel {
 		if (infector.getQuarantineStatus() == EpisimPerson.QuarantineStatus.full) {
 			throw new IllegalStateException("Infector is in ful quarantine.");
 		}
-		if (!personWrapper.getCurrentContainer().equals(infector.getCurrentContainer())) {
+		// the current container of persons is not maintained during parallel replay
+		if (deferred == null && groupSize == -1 && !personWrapper.getCurrentContainer().equals(infector.getCurrentContainer())) {
 			throw new IllegalStateException("Person and infector are not in same container!");
 		}
 
@@ -334,12 +459,21 @@ public abstract class AbstractContactModel implements ContactModel {
 
 		String infType = infectionType.toString();
 
-		reporting.reportInfection(personWrapper, infector, now, infType, infector.getVirusStrain(), prob, container);
+		if (deferred != null) {
+			deferred.addInfection(personWrapper, infector, now, infType, prob, container);
+			return;
+		}
+
+		reporting.reportInfection(personWrapper, infector, now, infType, infector.getVirusStrain(), prob, container,
+				groupSize == -1 ? container.getPersons().size() : groupSize);
 		personWrapper.setDiseaseStatus(now, EpisimPerson.DiseaseStatus.infectedButNotContagious);
 		personWrapper.setVirusStrain(infector.getVirusStrain());
 		personWrapper.setInfectionContainer(container);
 		personWrapper.setInfectionType(infType);
 
+		if (infectionLocations != null)
+			infectionLocations.add(personWrapper);
+
 		// TODO: Currently not in use, is it still needed?
 		// Necessary for the otfvis visualization (although it is unfortunately not working).  kai, apr'20
 		if (scenario != null) {
@@ -350,10 +484,50 @@ public abstract class AbstractContactModel implements ContactModel {
 		}
 	}
 
-	public Map<String, Restriction> getRestrictions() {
+	public DailyRestrictionTable getRestrictions() {
 		return restrictions;
 	}
 
+	/**
+	 * Collect infections and traceable contacts in {@code deferred} instead of applying them directly.
+	 * This is needed when multiple instances of the model operate on the same persons in parallel.
+	 */
+	public void setDeferredEffects(DeferredEffects deferred) {
+		this.deferred = deferred;
+	}
+
+	/**
+	 * Adds the counters of this model to {@code metrics} and resets them.
+	 */
+	public final void collectCounters(PerformanceMetrics metrics) {
+		metrics.count(PerformanceMetrics.Counter.contacts, contactsEvaluated);
+		metrics.count(PerformanceMetrics.Counter.infectionProbabilities, probabilitiesComputed);
+		contactsEvaluated = 0;
+		probabilitiesComputed = 0;
+	}
+
+	/**
+	 * Creates an independent instance of this model, which draws from {@code rnd}. Used for parallel replay, where each shard needs its own models.
+	 *
+	 * @throws UnsupportedOperationException if the model can not be copied
+	 */
+	public AbstractContactModel copy(SplittableRandom rnd) {
+		throw new UnsupportedOperationException("Contact model " + getClass() + " can not be copied.");
+	}
+
+	/**
+	 * Replaces the random number generator of this model and its infection model.
+	 */
+	public final void setRandom(SplittableRandom rnd) {
+		this.rnd = rnd;
+		this.infectionModel.setRandom(rnd);
+	}
+
+	@Inject
+	void setInfectionLocations(InfectionLocationIndex infectionLocations) {
+		this.infectionLocations = infectionLocations;
+	}
+
 	@Override
 	public void notifyEnterVehicle(EpisimPerson personEnteringVehicle, EpisimVehicle vehicle, double now) {
 	}
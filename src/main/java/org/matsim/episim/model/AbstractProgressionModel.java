@@ -1,5 +1,10 @@
 package org.matsim.episim.model;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntLists;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import org.matsim.api.core.v01.Id;
@@ -30,6 +35,12 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 	 */
 	private final Object2LongMap<Id<Person>> nextStateAndDay = new Object2LongOpenHashMap<>();
 
+	/**
+	 * Calendar queue of person slots that need an update, bucketed by day. A slot may be contained multiple times.
+	 * Every update schedules the next one, so the queue is rebuilt after all persons have been updated once.
+	 */
+	private final Int2ObjectMap<IntArrayList> schedule = new Int2ObjectOpenHashMap<>();
+
 	@Inject
 	AbstractProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig) {
 		this.rnd = rnd;
@@ -79,12 +90,16 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 				onTransition(person, now, day, status, next);
 
 				if (next != EpisimPerson.DiseaseStatus.recovered) {
-					if (updateNext(person, id, next))
+					if (updateNext(person, id, next, day))
 						updateState(person, day);
-				}
-			}
+				} else if (person.getQuarantineStatus() != EpisimPerson.QuarantineStatus.no)
+					schedule(person, day + 1);
+
+			} else
+				schedule(person, day - daysSince + transitionDay);
+
 		} else {
-			if (updateNext(person, id, status))
+			if (updateNext(person, id, status, day))
 				updateState(person, day);
 		}
 	}
@@ -94,16 +109,38 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 	 *
 	 * @return true when there should be an immediate update again
 	 */
-	private boolean updateNext(EpisimPerson person, Id<Person> id, EpisimPerson.DiseaseStatus from) {
+	private boolean updateNext(EpisimPerson person, Id<Person> id, EpisimPerson.DiseaseStatus from, int day) {
 		EpisimPerson.DiseaseStatus next = decideNextState(person);
 		int nextTransitionDay = decideTransitionDay(person, from, next);
 
 		nextStateAndDay.put(id, compoundLong(next.ordinal(), nextTransitionDay));
 
+		if (nextTransitionDay > 0)
+			schedule(person, Math.max(day + 1, day - person.daysSince(from, day) + nextTransitionDay));
+
 		// allow multiple updates on the same day
 		return nextTransitionDay == 0;
 	}
 
+	/**
+	 * Schedule an update of a person at {@code day}, which must be after the current day.
+	 */
+	protected final void schedule(EpisimPerson person, int day) {
+		IntArrayList bucket = schedule.get(day);
+		if (bucket == null) {
+			bucket = new IntArrayList();
+			schedule.put(day, bucket);
+		}
+
+		bucket.add(person.getSlot());
+	}
+
+	@Override
+	public IntList pollScheduledUpdates(int day) {
+		IntArrayList bucket = schedule.remove(day);
+		return bucket != null ? bucket : IntLists.EMPTY_LIST;
+	}
+
 	/**
 	 * Choose the next state a person will attain.
 	 */
@@ -152,6 +189,9 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 
 	@Override
 	public void readExternal(ObjectInput in) throws IOException {
+		// schedule is rebuilt during the first update of all persons
+		schedule.clear();
+
 		int n = in.readInt();
 		for (int i = 0; i < n; i++) {
 			Id<Person> key = Id.createPersonId(EpisimUtils.readChars(in));
@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import org.matsim.episim.EpisimPerson;
+
+/**
+ * Rules for the interaction of two activity types inside a facility, stored as a matrix over the dense {@link EpisimPerson.Activity#id}.
+ * Entries are computed from the activity type names when a pair is seen for the first time, afterwards a contact only needs one array lookup.
+ * Activities without id are evaluated each time.
+ */
+final class ActivityInteractions {
+
+	/**
+	 * The persons of these activities do not interact.
+	 */
+	static final byte FORBIDDEN = 1;
+	/**
+	 * Interaction is possible, but the contact can not be traced.
+	 */
+	static final byte ALLOWED = 2;
+	/**
+	 * Interaction is possible and the contact can be traced.
+	 */
+	static final byte TRACEABLE = 3;
+
+	private int size = 0;
+	private byte[] rules = new byte[0];
+	private String[] types = new String[0];
+
+	/**
+	 * Rule for the person leaving with activity {@code leaving} and the contact with activity {@code other}.
+	 */
+	byte getRule(EpisimPerson.Activity leaving, EpisimPerson.Activity other) {
+		if (leaving.id < 0 || other.id < 0)
+			return computeRule(leaving.actType, other.actType);
+
+		return rules[index(leaving, other)];
+	}
+
+	/**
+	 * Infection type of the pair, which is used for reporting.
+	 */
+	String getInfectionType(EpisimPerson.Activity leaving, EpisimPerson.Activity other) {
+		if (leaving.id < 0 || other.id < 0)
+			return leaving.actType + "_" + other.actType;
+
+		return types[index(leaving, other)];
+	}
+
+	private int index(EpisimPerson.Activity leaving, EpisimPerson.Activity other) {
+
+		int n = Math.max(leaving.id, other.id) + 1;
+		if (n > size)
+			grow(n);
+
+		int idx = leaving.id * size + other.id;
+		if (rules[idx] == 0) {
+			rules[idx] = computeRule(leaving.actType, other.actType);
+			types[idx] = (leaving.actType + "_" + other.actType).intern();
+		}
+
+		return idx;
+	}
+
+	private void grow(int n) {
+
+		// leave some space for more activity types
+		int newSize = Math.max(n, size * 2);
+		byte[] newRules = new byte[newSize * newSize];
+		String[] newTypes = new String[newSize * newSize];
+
+		for (int i = 0; i < size; i++) {
+			System.arraycopy(rules, i * size, newRules, i * newSize, size);
+			System.arraycopy(types, i * size, newTypes, i * newSize, size);
+		}
+
+		size = newSize;
+		rules = newRules;
+		types = newTypes;
+	}
+
+	/**
+	 * Same rules as previously applied on the infection type string.
+	 */
+	static byte computeRule(String leavingPersonsActivity, String otherPersonsActivity) {
+
+		String infectionType = leavingPersonsActivity + "_" + otherPersonsActivity;
+
+		//home can only interact with home, leisure or work
+		if (infectionType.contains("home") && !infectionType.contains("leis") && !infectionType.contains("work")
+				&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home")))
+			return FORBIDDEN;
+
+		//edu can only interact with work or edu
+		if (infectionType.contains("edu") && !infectionType.contains("work")
+				&& !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu")))
+			return FORBIDDEN;
+
+		// Don't track certain activities
+		if (infectionType.contains("pt") || infectionType.contains("shop"))
+			return ALLOWED;
+
+		return TRACEABLE;
+	}
+}
@@ -6,9 +6,9 @@ import org.apache.commons.math3.distribution.RealDistribution;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
+import org.matsim.episim.policy.DailyRestrictionTable;
 import org.matsim.episim.policy.Restriction;
 
-import java.util.Map;
 import java.util.SplittableRandom;
 
 /**
@@ -20,12 +20,12 @@ public final class AgeAndProgressionDependentInfectionModelWithSeasonality imple
 	private final ProgressionModel progression;
 	private final EpisimConfigGroup episimConfig;
 	private final EpisimReporting reporting;
-	private final SplittableRandom rnd;
+	private SplittableRandom rnd;
 	private final VaccinationConfigGroup vaccinationConfig;
 	private final VirusStrainConfigGroup virusStrainConfig;
 
-	private final double[] susceptibility = new double[128];
-	private final double[] infectivity = new double[susceptibility.length];
+	private final double[] susceptibility;
+	private final double[] infectivity;
 	private final RealDistribution distribution;
 
 	/**
@@ -46,6 +46,8 @@ public final class AgeAndProgressionDependentInfectionModelWithSeasonality imple
 		this.virusStrainConfig = ConfigUtils.addOrGetModule(config, VirusStrainConfigGroup.class);
 		this.reporting = reporting;
 		this.rnd = rnd;
+		this.susceptibility = new double[128];
+		this.infectivity = new double[susceptibility.length];
 
 		// pre-compute interpolated age dependent entries
 		for (int i = 0; i < susceptibility.length; i++) {
@@ -57,21 +59,51 @@ public final class AgeAndProgressionDependentInfectionModelWithSeasonality imple
 		scale = 1 / distribution.density(distribution.getNumericalMean());
 	}
 
+	private AgeAndProgressionDependentInfectionModelWithSeasonality(AgeAndProgressionDependentInfectionModelWithSeasonality other, SplittableRandom rnd) {
+		this.maskModel = other.maskModel.copy(rnd);
+		this.progression = other.progression;
+		this.episimConfig = other.episimConfig;
+		this.vaccinationConfig = other.vaccinationConfig;
+		this.virusStrainConfig = other.virusStrainConfig;
+		this.reporting = null;
+		this.rnd = rnd;
+		this.susceptibility = other.susceptibility;
+		this.infectivity = other.infectivity;
+		this.distribution = other.distribution;
+		this.scale = other.scale;
+	}
+
+	@Override
+	public InfectionModel copy(SplittableRandom rnd) {
+		return new AgeAndProgressionDependentInfectionModelWithSeasonality(this, rnd);
+	}
+
+	@Override
+	public void setRandom(SplittableRandom rnd) {
+		this.rnd = rnd;
+		maskModel.setRandom(rnd);
+	}
+
 	@Override
 	public void setIteration(int iteration) {
 		this.outdoorFactor = InfectionModelWithSeasonality.interpolateOutdoorFraction(episimConfig, iteration);
 		this.iteration = iteration;
-		reporting.reportOutdoorFraction(this.outdoorFactor, iteration);
+		// copies used for parallel replay do not report
+		if (reporting != null)
+			reporting.reportOutdoorFraction(this.outdoorFactor, iteration);
 
 	}
 
 	@Override
-	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions,
-										   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
+	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, DailyRestrictionTable restrictions,
+										   EpisimPerson.Activity act1, EpisimPerson.Activity act2,
 										   double contactIntensity, double jointTimeInContainer) {
 
+		Restriction r1 = restrictions.get(act1);
+		Restriction r2 = restrictions.get(act2);
+
 		//noinspection ConstantConditions 		// ci corr can not be null, because sim is initialized with non null value
-		double ciCorrection = Math.min(restrictions.get(act1.getContainerName()).getCiCorrection(), restrictions.get(act2.getContainerName()).getCiCorrection());
+		double ciCorrection = Math.min(r1.getCiCorrection(), r2.getCiCorrection());
 
 		double susceptibility = this.susceptibility[target.getAge()];
 		double infectivity = this.infectivity[infector.getAge()];
@@ -82,13 +114,13 @@ public final class AgeAndProgressionDependentInfectionModelWithSeasonality imple
 			susceptibility *= DefaultInfectionModel.getVaccinationEffectiveness(strain, target, vaccinationConfig, iteration);
 		}
 
-		double indoorOutdoorFactor = InfectionModelWithSeasonality.getIndoorOutdoorFactor(outdoorFactor, rnd, act1, act2);
+		double indoorOutdoorFactor = InfectionModelWithSeasonality.getIndoorOutdoorFactor(outdoorFactor, rnd, act1.params, act2.params);
 
 		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * susceptibility * infectivity * contactIntensity * jointTimeInContainer * ciCorrection
 				* getInfectivity(infector)
 				* strain.getInfectiousness()
-				* maskModel.getWornMask(infector, act2, restrictions.get(act2.getContainerName())).shedding
-				* maskModel.getWornMask(target, act1, restrictions.get(act1.getContainerName())).intake
+				* maskModel.getWornMask(infector, act2.params, r2).shedding
+				* maskModel.getWornMask(target, act1.params, r1).intake
 				* indoorOutdoorFactor
 		);
 	}
@@ -14,6 +14,7 @@ import org.matsim.episim.EpisimPerson.DiseaseStatus;
 import org.matsim.episim.EpisimPerson.TestStatus;
 import org.matsim.facilities.ActivityFacility;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
@@ -115,6 +116,12 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 	 */
 	private long prevShowingSymptoms;
 
+	/**
+	 * Persons by the container they have been infected in, only present if the model was created by injection.
+	 */
+	@Nullable
+	private InfectionLocationIndex infectionLocations;
+
 	@Inject
 	public ConfigurableProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig,
 	                                    VirusStrainConfigGroup strainConfig, VaccinationConfigGroup vaccinationConfig) {
@@ -135,6 +142,11 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 		tMatrix = t.asArray();
 	}
 
+	@Inject
+	void setInfectionLocations(InfectionLocationIndex infectionLocations) {
+		this.infectionLocations = infectionLocations;
+	}
+
 	@Override
 	public void setIteration(int day) {
 
@@ -179,6 +191,31 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 
 		// clear tracing if not relevant anymore
 		person.clearTraceableContractPersons(now - (tracingDelay + tracingConfig.getTracingDayDistance() + 1) * DAY);
+
+		scheduleTimedUpdates(person, day);
+	}
+
+	/**
+	 * Schedules the days at which this person may be released from quarantine or needs delayed tracing.
+	 */
+	private void scheduleTimedUpdates(EpisimPerson person, int day) {
+
+		if (releasePerson(person)) {
+			schedule(person, Math.max(day + 1, day - person.daysSinceQuarantine(day) + tracingConfig.getQuarantineDuration() + 1));
+
+			if (person.getTestStatus() == TestStatus.positive)
+				schedule(person, Math.max(day + 1, day - person.daysSinceTest(day) + 3));
+		}
+
+		if (person.hadDiseaseStatus(DiseaseStatus.showingSymptoms)) {
+			int daysSince = person.daysSince(DiseaseStatus.showingSymptoms, day);
+
+			// the delay depends on the date, so every configured value needs to be considered
+			for (int delay : tracingConfig.getTracingDelay().values()) {
+				if (delay > daysSince)
+					schedule(person, day - daysSince + delay);
+			}
+		}
 	}
 
 	/**
@@ -249,7 +286,10 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 				if (tracingCapacity <= 0)
 					break;
 
-				for (EpisimPerson p : persons.values()) {
+				// without the index all persons need to be searched
+				Collection<EpisimPerson> infected = infectionLocations != null ? infectionLocations.getPersons(e.getKey()) : persons.values();
+
+				for (EpisimPerson p : infected) {
 
 					if (p.getInfectionContainer() == e.getKey()) {
 
@@ -401,7 +441,7 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 
 		// quarantine household flag controls direct household and 2nd order household
 		if (tracingConfig.getQuarantineHousehold())
-			homeId = (String) person.getAttributes().getAttribute("homeId");
+			homeId = person.getHomeId();
 
 		for (EpisimPerson pw : person.getTraceableContactPersons(now - tracingConfig.getTracingDayDistance() * DAY)) {
 
@@ -416,7 +456,7 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 				continue;
 
 			// Persons of the same household are always traced successfully
-			if ((homeId != null && homeId.equals(pw.getAttributes().getAttribute("homeId")))
+			if ((homeId != null && homeId.equals(pw.getHomeId()))
 					|| tracingProb == 1d || rnd.nextDouble() < tracingProb) {
 				quarantinePerson(pw, day);
 				log.debug("sending person={} into quarantine because of contact to person={}", pw.getPersonId(), person.getPersonId());
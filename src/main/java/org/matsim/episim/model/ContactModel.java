@@ -44,8 +44,17 @@ public interface ContactModel {
 	void notifyEnterFacility(EpisimPerson personEnteringFacility, InfectionEventHandler.EpisimFacility facility, double now);
 
 	/**
-	 * Set the current iteration and restrictions in place.
+	 * Set the current iteration and restrictions in place. The event handler passes a {@link org.matsim.episim.policy.DailyRestrictionTable},
+	 * which allows looking up restrictions by the container type of an activity.
 	 */
 	void setRestrictionsForIteration(int iteration, Map<String, Restriction> restrictions);
 
+	/**
+	 * Whether contacts on the current day have no effect as long as no person is contagious. This requires that the model neither draws
+	 * random numbers nor traces or reports contacts in this case. Days without contagious persons are then replayed without this model.
+	 */
+	default boolean isIdleWithoutContagious() {
+		return false;
+	}
+
 }
@@ -64,6 +64,16 @@ public final class DefaultContactModel extends AbstractContactModel {
 		this.trackingAfterDay = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class).getPutTraceablePersonsInQuarantineAfterDay();
 	}
 
+	private DefaultContactModel(DefaultContactModel other, SplittableRandom rnd) {
+		super(other, rnd);
+		this.trackingAfterDay = other.trackingAfterDay;
+	}
+
+	@Override
+	public DefaultContactModel copy(SplittableRandom rnd) {
+		return new DefaultContactModel(this, rnd);
+	}
+
 	@Override
 	public void infectionDynamicsVehicle(EpisimPerson personLeavingVehicle, InfectionEventHandler.EpisimVehicle vehicle, double now) {
 		infectionDynamicsGeneralized(personLeavingVehicle, vehicle, now);
@@ -88,7 +98,7 @@ public final class DefaultContactModel extends AbstractContactModel {
 		// start tracking late as possible because of computational costs
 		boolean trackingEnabled = iteration >= trackingAfterDay;
 
-		EpisimConfigGroup.InfectionParams leavingParams = null;
+		EpisimPerson.Activity leavingInfectionAct = null;
 
 		otherPersonsInContainer.addAll(container.getPersons());
 		otherPersonsInContainer.remove(personLeavingContainer);
@@ -107,6 +117,7 @@ public final class DefaultContactModel extends AbstractContactModel {
 
 			// Draw the contact person and remove it -> we don't want to draw it multiple times
 			EpisimPerson contactPerson = otherPersonsInContainer.remove(rnd.nextInt(otherPersonsInContainer.size()));
+			contactsEvaluated++;
 
 
 			if (!personRelevantForTrackingOrInfectionDynamics(contactPerson, container, getRestrictions(), rnd)) {
@@ -126,14 +137,16 @@ public final class DefaultContactModel extends AbstractContactModel {
 				}
 			}
 
-			String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-			String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
+			EpisimPerson.Activity leavingAct = getCurrentActivity(personLeavingContainer, container);
+			String leavingPersonsActivity = leavingAct.actType;
+			EpisimPerson.Activity otherAct = getCurrentActivity(contactPerson, container);
+			String otherPersonsActivity = otherAct.actType;
 
 			StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
 
 			double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
 			double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
-			double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
+			double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, container, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
 
 			//forbid certain cross-activity interactions, keep track of contacts
 			if (container instanceof InfectionEventHandler.EpisimFacility) {
@@ -183,25 +196,27 @@ public final class DefaultContactModel extends AbstractContactModel {
 
 
 			// Parameter will only be retrieved one time
-			if (leavingParams == null)
-				leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+			if (leavingInfectionAct == null)
+				leavingInfectionAct = getInfectionActivity(container, personLeavingContainer, leavingAct);
 
 			// activity params of the contact person and leaving person
-			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+			EpisimPerson.Activity contactInfectionAct = getInfectionActivity(container, contactPerson, otherAct);
+
+			double contactIntensity = Math.min(leavingInfectionAct.params.getContactIntensity(), contactInfectionAct.params.getContactIntensity());
 
-			double contactIntensity = Math.min(leavingParams.getContactIntensity(), contactParams.getContactIntensity());
+			probabilitiesComputed++;
 
 			// need to differentiate which person might be the infector
 			if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
 
 				double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
-						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
+						leavingInfectionAct, contactInfectionAct, contactIntensity, jointTimeInContainer);
 				if (rnd.nextDouble() < prob)
 					infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
 
 			} else {
 				double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
-						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
+						contactInfectionAct, leavingInfectionAct, contactIntensity, jointTimeInContainer);
 
 				if (rnd.nextDouble() < prob)
 					infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
@@ -13,7 +13,7 @@ import java.util.SplittableRandom;
  */
 public class DefaultFaceMaskModel implements FaceMaskModel {
 
-	private final SplittableRandom rnd;
+	private SplittableRandom rnd;
 
 	@Inject
 	public DefaultFaceMaskModel(SplittableRandom rnd) {
@@ -24,4 +24,14 @@ public class DefaultFaceMaskModel implements FaceMaskModel {
 	public FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, Restriction restriction) {
 		return restriction.determineMask(rnd);
 	}
+
+	@Override
+	public FaceMaskModel copy(SplittableRandom rnd) {
+		return new DefaultFaceMaskModel(rnd);
+	}
+
+	@Override
+	public void setRandom(SplittableRandom rnd) {
+		this.rnd = rnd;
+	}
 }
@@ -7,9 +7,10 @@ import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.VaccinationConfigGroup;
 import org.matsim.episim.VirusStrainConfigGroup;
+import org.matsim.episim.policy.DailyRestrictionTable;
 import org.matsim.episim.policy.Restriction;
 
-import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * This infection model calculates the joint time two persons have been at the same place and calculates a infection probability according to:
@@ -34,18 +35,38 @@ public final class DefaultInfectionModel implements InfectionModel {
 
 	}
 
+	private DefaultInfectionModel(DefaultInfectionModel other, SplittableRandom rnd) {
+		this.maskModel = other.maskModel.copy(rnd);
+		this.episimConfig = other.episimConfig;
+		this.vaccinationConfig = other.vaccinationConfig;
+		this.virusStrainConfig = other.virusStrainConfig;
+	}
+
+	@Override
+	public InfectionModel copy(SplittableRandom rnd) {
+		return new DefaultInfectionModel(this, rnd);
+	}
+
+	@Override
+	public void setRandom(SplittableRandom rnd) {
+		maskModel.setRandom(rnd);
+	}
+
 	@Override
 	public void setIteration(int iteration) {
 		this.iteration = iteration;
 	}
 
 	@Override
-	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions,
-										   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
+	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, DailyRestrictionTable restrictions,
+										   EpisimPerson.Activity act1, EpisimPerson.Activity act2,
 										   double contactIntensity, double jointTimeInContainer) {
 
+		Restriction r1 = restrictions.get(act1);
+		Restriction r2 = restrictions.get(act2);
+
 		// ci corr can not be null, because sim is initialized with non null value
-		double ciCorrection = Math.min(restrictions.get(act1.getContainerName()).getCiCorrection(), restrictions.get(act2.getContainerName()).getCiCorrection());
+		double ciCorrection = Math.min(r1.getCiCorrection(), r2.getCiCorrection());
 
 		// note that for 1pct runs, calibParam is of the order of one, which means that for typical times of 100sec or more,
 		// exp( - 1 * 1 * 100 ) \approx 0, and thus the infection proba becomes 1.  Which also means that changes in contactIntensity has
@@ -57,8 +78,8 @@ public final class DefaultInfectionModel implements InfectionModel {
 		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * contactIntensity * jointTimeInContainer * ciCorrection
 				* susceptibility
 				* strain.getInfectiousness()
-				* maskModel.getWornMask(infector, act2, restrictions.get(act2.getContainerName())).shedding
-				* maskModel.getWornMask(target, act1, restrictions.get(act1.getContainerName())).intake
+				* maskModel.getWornMask(infector, act2.params, r2).shedding
+				* maskModel.getWornMask(target, act1.params, r1).intake
 		);
 	}
 
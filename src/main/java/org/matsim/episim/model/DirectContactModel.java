@@ -50,11 +50,6 @@ public final class DirectContactModel extends AbstractContactModel {
 	 */
 	private final boolean traceSusceptible;
 
-	/**
-	 * This buffer is used to store the infection type.
-	 */
-	private final StringBuilder buffer = new StringBuilder();
-
 	private final Map<EpisimContainer<?>, EpisimPerson> singlePersons = new IdentityHashMap<>();
 	private final Map<EpisimContainer<?>, List<Group>> groups = new IdentityHashMap<>();
 
@@ -66,6 +61,17 @@ public final class DirectContactModel extends AbstractContactModel {
 		this.traceSusceptible = tracingConfig.getTraceSusceptible();
 	}
 
+	private DirectContactModel(DirectContactModel other, SplittableRandom rnd) {
+		super(other, rnd);
+		this.trackingAfterDay = other.trackingAfterDay;
+		this.traceSusceptible = other.traceSusceptible;
+	}
+
+	@Override
+	public DirectContactModel copy(SplittableRandom rnd) {
+		return new DirectContactModel(this, rnd);
+	}
+
 	@Override
 	public void infectionDynamicsVehicle(EpisimPerson personLeavingVehicle, EpisimVehicle vehicle, double now) {
 		infectionDynamicsGeneralized(personLeavingVehicle, vehicle, now);
@@ -141,6 +147,7 @@ public final class DirectContactModel extends AbstractContactModel {
 		Pair<EpisimPerson, Double> group = removePersonFromGroups(container, personLeavingContainer, now);
 
 		EpisimPerson contactPerson = group.getKey();
+		contactsEvaluated++;
 
 		if (!personRelevantForTrackingOrInfectionDynamics(contactPerson, container, getRestrictions(), rnd)) {
 			return;
@@ -161,10 +168,10 @@ public final class DirectContactModel extends AbstractContactModel {
 				&& contactPerson.getDiseaseStatus() == DiseaseStatus.susceptible)
 			return;
 
-		String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-		String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
+		EpisimPerson.Activity leavingAct = getCurrentActivity(personLeavingContainer, container);
+		EpisimPerson.Activity otherAct = getCurrentActivity(contactPerson, container);
 
-		StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
+		String infectionType = container instanceof EpisimFacility ? interactions.getInfectionType(leavingAct, otherAct) : "pt";
 
 		// use joint time in group as time
 		// TODO: this model does not support closing hours at the moment
@@ -178,18 +185,12 @@ public final class DirectContactModel extends AbstractContactModel {
 
 		//forbid certain cross-activity interactions, keep track of contacts
 		if (container instanceof EpisimFacility) {
-			//home can only interact with home, leisure or work
-			if (infectionType.indexOf("home") >= 0 && infectionType.indexOf("leis") == -1 && infectionType.indexOf("work") == -1
-					&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home"))) {
-				// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
-				return;
-			} else if (infectionType.indexOf("edu") >= 0 && infectionType.indexOf("work") == -1 && !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu"))) {
-				//edu can only interact with work or edu
-				// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
+			byte rule = interactions.getRule(leavingAct, otherAct);
+			if (rule == ActivityInteractions.FORBIDDEN)
 				return;
-			}
-			if (trackingEnabled) {
-				trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, infectionType);
+
+			if (trackingEnabled && rule == ActivityInteractions.TRACEABLE) {
+				trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer);
 			}
 
 			// Only a subset of contacts are reported at the moment
@@ -213,24 +214,28 @@ public final class DirectContactModel extends AbstractContactModel {
 			throw new IllegalStateException("joint time in container is not plausible for personLeavingContainer=" + personLeavingContainer.getPersonId() + " and contactPerson=" + contactPerson.getPersonId() + ". Joint time is=" + jointTimeInContainer);
 		}
 
-		EpisimConfigGroup.InfectionParams leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+		EpisimPerson.Activity leavingInfectionAct = getInfectionActivity(container, personLeavingContainer, leavingAct);
+		EpisimConfigGroup.InfectionParams leavingParams = leavingInfectionAct.params;
 
 		// activity params of the contact person and leaving person
-		EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+		EpisimPerson.Activity contactInfectionAct = getInfectionActivity(container, contactPerson, otherAct);
+		EpisimConfigGroup.InfectionParams contactParams = contactInfectionAct.params;
 
 		double contactIntensity = Math.min(leavingParams.getContactIntensity(), contactParams.getContactIntensity());
 
+		probabilitiesComputed++;
+
 		// need to differentiate which person might be the infector
 		if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
 
 			double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
-					leavingParams, contactParams, contactIntensity, jointTimeInContainer);
+					leavingInfectionAct, contactInfectionAct, contactIntensity, jointTimeInContainer);
 			if (rnd.nextDouble() < prob)
 				infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
 
 		} else {
 			double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
-					contactParams, leavingParams, contactIntensity, jointTimeInContainer);
+					contactInfectionAct, leavingInfectionAct, contactIntensity, jointTimeInContainer);
 
 			if (rnd.nextDouble() < prob)
 				infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
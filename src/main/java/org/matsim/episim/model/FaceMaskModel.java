@@ -4,6 +4,8 @@ import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.policy.Restriction;
 
+import java.util.SplittableRandom;
+
 /**
  * Model which decides which mask a person is wearing during activity.
  */
@@ -14,4 +16,20 @@ public interface FaceMaskModel {
 	 */
 	FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, Restriction restriction);
 
+	/**
+	 * Creates an independent instance of this model, which draws from {@code rnd}. Used for parallel replay.
+	 *
+	 * @throws UnsupportedOperationException if the model can not be copied
+	 */
+	default FaceMaskModel copy(SplittableRandom rnd) {
+		throw new UnsupportedOperationException("Face mask model " + getClass() + " can not be copied.");
+	}
+
+	/**
+	 * Replaces the random number generator of a copied model.
+	 */
+	default void setRandom(SplittableRandom rnd) {
+		throw new UnsupportedOperationException("Face mask model " + getClass() + " can not be copied.");
+	}
+
 }
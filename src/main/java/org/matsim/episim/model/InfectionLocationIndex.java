@@ -0,0 +1,111 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.facilities.ActivityFacility;
+
+import java.util.*;
+
+/**
+ * Index of persons by the container they have been infected in. It is updated with every infection,
+ * so that location based tracing only visits the persons infected at a traced location instead of the whole population.
+ */
+public final class InfectionLocationIndex {
+
+	/**
+	 * Persons of each container, sorted by the index of their ids and without duplicates.
+	 * May contain persons that have been infected again elsewhere, which are removed on the next query.
+	 */
+	private final Map<Id<ActivityFacility>, List<EpisimPerson>> persons = new HashMap<>();
+
+	/**
+	 * Adds a person to the index of its {@link EpisimPerson#getInfectionContainer()}.
+	 */
+	public void add(EpisimPerson person) {
+		Id<ActivityFacility> container = person.getInfectionContainer();
+		if (container == null)
+			throw new IllegalArgumentException("Person " + person.getPersonId() + " has no infection container.");
+
+		List<EpisimPerson> list = persons.computeIfAbsent(container, k -> new ArrayList<>());
+
+		int idx = search(list, person.getPersonId().index());
+		if (idx < 0)
+			list.add(-idx - 1, person);
+	}
+
+	/**
+	 * Binary search for a person id index, with the same return value as {@link Collections#binarySearch(List, Object)}.
+	 */
+	private static int search(List<EpisimPerson> list, int index) {
+		int low = 0;
+		int high = list.size() - 1;
+
+		// infections are mostly added in ascending order
+		if (high >= 0 && list.get(high).getPersonId().index() < index)
+			return -list.size() - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = Integer.compare(list.get(mid).getPersonId().index(), index);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+	/**
+	 * Persons whose infection container is {@code container}, ordered by the index of their ids.
+	 * This is the same order in which persons are iterated in the person map.
+	 * The returned list is an unmodifiable view, which is only valid until the next infection.
+	 */
+	public List<EpisimPerson> getPersons(Id<ActivityFacility> container) {
+		List<EpisimPerson> list = persons.get(container);
+		if (list == null)
+			return List.of();
+
+		// persons may have been infected again at another container and will never be returned for this one
+		list.removeIf(p -> p.getInfectionContainer() != container);
+		if (list.isEmpty()) {
+			persons.remove(container);
+			return List.of();
+		}
+
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Rebuilds the index from the infection containers of all persons, e.g. after a snapshot was restored.
+	 */
+	public void rebuild(Collection<EpisimPerson> all) {
+		persons.clear();
+		for (EpisimPerson p : all) {
+			if (p.getInfectionContainer() != null)
+				add(p);
+		}
+	}
+}
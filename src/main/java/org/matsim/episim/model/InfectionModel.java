@@ -1,10 +1,9 @@
 package org.matsim.episim.model;
 
-import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
-import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.DailyRestrictionTable;
 
-import java.util.Map;
+import java.util.SplittableRandom;
 
 public interface InfectionModel {
 
@@ -17,20 +16,36 @@ public interface InfectionModel {
 	default void setIteration(int iteration) {
 	}
 
+	/**
+	 * Creates an independent instance of this model, which draws from {@code rnd}. Used for parallel replay, where each shard needs its own models.
+	 *
+	 * @throws UnsupportedOperationException if the model can not be copied
+	 */
+	default InfectionModel copy(SplittableRandom rnd) {
+		throw new UnsupportedOperationException("Infection model " + getClass() + " can not be copied.");
+	}
+
+	/**
+	 * Replaces the random number generator of a copied model, including the one of its face mask model.
+	 */
+	default void setRandom(SplittableRandom rnd) {
+		throw new UnsupportedOperationException("Infection model " + getClass() + " can not be copied.");
+	}
+
 	/**
 	 * Calculates the probability that person {@code infector} infects {@code target}.
 	 *
 	 * @param target               The potentially infected person
 	 * @param infector             The infectious person
-	 * @param restrictions         Restrictions currently in place
-	 * @param act1                 Activity of target
-	 * @param act2                 Activity of infector
+	 * @param restrictions         Restrictions currently in place, looked up with {@link DailyRestrictionTable#get(EpisimPerson.Activity)}
+	 * @param act1                 Activity of target, with the infection params that apply to it
+	 * @param act2                 Activity of infector, with the infection params that apply to it
 	 * @param contactIntensity     Contact intensity of this activity
 	 * @param jointTimeInContainer joint time doing these activity in seconds
 	 * @return probability between 0 and 1
 	 */
-	double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions,
-									EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
+	double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, DailyRestrictionTable restrictions,
+									EpisimPerson.Activity act1, EpisimPerson.Activity act2,
 									double contactIntensity, double jointTimeInContainer);
 
 }
@@ -4,10 +4,10 @@ import com.google.inject.Inject;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
+import org.matsim.episim.policy.DailyRestrictionTable;
 import org.matsim.episim.policy.Restriction;
 
 import java.time.LocalDate;
-import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SplittableRandom;
 
@@ -17,7 +17,7 @@ import java.util.SplittableRandom;
 public final class InfectionModelWithSeasonality implements InfectionModel {
 
 	private final FaceMaskModel maskModel;
-	private final SplittableRandom rnd;
+	private SplittableRandom rnd;
 	private final EpisimConfigGroup episimConfig;
 	private final EpisimReporting reporting;
 	private final VaccinationConfigGroup vaccinationConfig;
@@ -36,20 +36,45 @@ public final class InfectionModelWithSeasonality implements InfectionModel {
 		this.reporting = reporting;
 	}
 
+	private InfectionModelWithSeasonality(InfectionModelWithSeasonality other, SplittableRandom rnd) {
+		this.maskModel = other.maskModel.copy(rnd);
+		this.rnd = rnd;
+		this.episimConfig = other.episimConfig;
+		this.vaccinationConfig = other.vaccinationConfig;
+		this.virusStrainConfig = other.virusStrainConfig;
+		this.reporting = null;
+	}
+
+	@Override
+	public InfectionModel copy(SplittableRandom rnd) {
+		return new InfectionModelWithSeasonality(this, rnd);
+	}
+
+	@Override
+	public void setRandom(SplittableRandom rnd) {
+		this.rnd = rnd;
+		maskModel.setRandom(rnd);
+	}
+
 	@Override
 	public void setIteration(int iteration) {
 		this.outdoorFactor = interpolateOutdoorFraction(episimConfig, iteration);
 		this.iteration = iteration;
-		reporting.reportOutdoorFraction(this.outdoorFactor, iteration);
+		// copies used for parallel replay do not report
+		if (reporting != null)
+			reporting.reportOutdoorFraction(this.outdoorFactor, iteration);
 	}
 
 	@Override
-	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions,
-										   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
+	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, DailyRestrictionTable restrictions,
+										   EpisimPerson.Activity act1, EpisimPerson.Activity act2,
 										   double contactIntensity, double jointTimeInContainer) {
 
+		Restriction r1 = restrictions.get(act1);
+		Restriction r2 = restrictions.get(act2);
+
 		// ci corr can not be null, because sim is initialized with non null value
-		double ciCorrection = Math.min(restrictions.get(act1.getContainerName()).getCiCorrection(), restrictions.get(act2.getContainerName()).getCiCorrection());
+		double ciCorrection = Math.min(r1.getCiCorrection(), r2.getCiCorrection());
 
 		// note that for 1pct runs, calibParam is of the order of one, which means that for typical times of 100sec or more,
 		// exp( - 1 * 1 * 100 ) \approx 0, and thus the infection proba becomes 1.  Which also means that changes in contactIntensity has
@@ -61,9 +86,9 @@ public final class InfectionModelWithSeasonality implements InfectionModel {
 		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * contactIntensity * jointTimeInContainer * ciCorrection
 				* susceptibility
 				* strain.getInfectiousness()
-				* maskModel.getWornMask(infector, act2, restrictions.get(act2.getContainerName())).shedding
-				* maskModel.getWornMask(target, act1, restrictions.get(act1.getContainerName())).intake
-				* getIndoorOutdoorFactor(outdoorFactor, rnd, act1, act2)
+				* maskModel.getWornMask(infector, act2.params, r2).shedding
+				* maskModel.getWornMask(target, act1.params, r1).intake
+				* getIndoorOutdoorFactor(outdoorFactor, rnd, act1.params, act2.params)
 		);
 
 	}
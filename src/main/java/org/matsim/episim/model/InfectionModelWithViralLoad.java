@@ -3,12 +3,14 @@ package org.matsim.episim.model;
 import com.google.inject.Inject;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.AttributeRegistry;
 import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.VirusStrainConfigGroup;
+import org.matsim.episim.policy.DailyRestrictionTable;
 import org.matsim.episim.policy.Restriction;
 
-import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * Extension of the {@link DefaultInfectionModel}, with additional parameter {@link #SUSCEPTIBILITY} and {@link #VIRAL_LOAD},
@@ -23,32 +25,61 @@ public final class InfectionModelWithViralLoad implements InfectionModel {
 	private final EpisimConfigGroup episimConfig;
 	private final VirusStrainConfigGroup virusStrainConfig;
 
+	/**
+	 * Columns of the person attributes.
+	 */
+	private final int susceptibility;
+	private final int viralLoad;
+
 	@Inject
-	public InfectionModelWithViralLoad(FaceMaskModel faceMaskModel, Config config) {
+	public InfectionModelWithViralLoad(FaceMaskModel faceMaskModel, Config config, AttributeRegistry attributes) {
 		this.maskModel = faceMaskModel;
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 		this.virusStrainConfig = ConfigUtils.addOrGetModule(config, VirusStrainConfigGroup.class);
+		this.susceptibility = attributes.declare(SUSCEPTIBILITY, 1f);
+		this.viralLoad = attributes.declare(VIRAL_LOAD, 1f);
+	}
+
+	private InfectionModelWithViralLoad(InfectionModelWithViralLoad other, SplittableRandom rnd) {
+		this.maskModel = other.maskModel.copy(rnd);
+		this.episimConfig = other.episimConfig;
+		this.virusStrainConfig = other.virusStrainConfig;
+		this.susceptibility = other.susceptibility;
+		this.viralLoad = other.viralLoad;
+	}
+
+	@Override
+	public InfectionModel copy(SplittableRandom rnd) {
+		return new InfectionModelWithViralLoad(this, rnd);
+	}
+
+	@Override
+	public void setRandom(SplittableRandom rnd) {
+		maskModel.setRandom(rnd);
 	}
 
 
 	@Override
-	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions,
-										   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
+	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, DailyRestrictionTable restrictions,
+										   EpisimPerson.Activity act1, EpisimPerson.Activity act2,
 										   double contactIntensity, double jointTimeInContainer) {
 
+		Restriction r1 = restrictions.get(act1);
+		Restriction r2 = restrictions.get(act2);
+
 		// ci corr can not be null, because sim is initialized with non null value
-		double ciCorrection = Math.min(restrictions.get(act1.getContainerName()).getCiCorrection(), restrictions.get(act2.getContainerName()).getCiCorrection());
+		double ciCorrection = Math.min(r1.getCiCorrection(), r2.getCiCorrection());
 
 		// note that for 1pct runs, calibParam is of the order of one, which means that for typical times of 100sec or more, exp( - 1 * 1 * 100 ) \approx 0, and
 		// thus the infection proba becomes 1.  Which also means that changes in contactIntensity has no effect.  kai, mar'20
 
-		double susceptibility = (double) target.getAttributes().getAttribute(SUSCEPTIBILITY);
-		double infectability = (double) infector.getAttributes().getAttribute(VIRAL_LOAD);
+		double susceptibility = target.getAttribute(this.susceptibility);
+		double infectability = infector.getAttribute(viralLoad);
 
 		return 1 - Math.exp(-episimConfig.getCalibrationParameter() * susceptibility * infectability * contactIntensity * jointTimeInContainer * ciCorrection
 				* virusStrainConfig.getParams(infector.getVirusStrain()).getInfectiousness()
-				* maskModel.getWornMask(infector, act2, restrictions.get(act2.getContainerName())).shedding
-				* maskModel.getWornMask(target, act1, restrictions.get(act1.getContainerName())).intake
+				* maskModel.getWornMask(infector, act2.params, r2).shedding
+				* maskModel.getWornMask(target, act1.params, r1).intake
 		);
 	}
 }
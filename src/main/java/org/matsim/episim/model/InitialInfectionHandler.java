@@ -3,6 +3,7 @@ package org.matsim.episim.model;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.SusceptibleIndex;
 
 import java.util.Map;
 
@@ -13,9 +14,10 @@ public interface InitialInfectionHandler {
 
 	/**
 	 * Called at the start of every iteration. This class should set the disease state of persons as necessary.
+	 * @param susceptible index of all susceptible persons in {@code persons}
 	 * @return number of people infected
 	 */
-	int handleInfections(Map<Id<Person>, EpisimPerson> persons, int iteration);
+	int handleInfections(Map<Id<Person>, EpisimPerson> persons, SusceptibleIndex susceptible, int iteration);
 
 	/**
 	 * Number of initial infections left that will also be persisted. Might be relevant for certain models to stop disease import.
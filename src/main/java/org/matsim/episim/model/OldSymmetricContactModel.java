@@ -65,6 +65,17 @@ public final class OldSymmetricContactModel extends AbstractContactModel {
 		this.traceSusceptible = tracingConfig.getTraceSusceptible();
 	}
 
+	private OldSymmetricContactModel(OldSymmetricContactModel other, SplittableRandom rnd) {
+		super(other, rnd);
+		this.trackingAfterDay = other.trackingAfterDay;
+		this.traceSusceptible = other.traceSusceptible;
+	}
+
+	@Override
+	public OldSymmetricContactModel copy(SplittableRandom rnd) {
+		return new OldSymmetricContactModel(this, rnd);
+	}
+
 	@Override
 	public void infectionDynamicsVehicle(EpisimPerson personLeavingVehicle, InfectionEventHandler.EpisimVehicle vehicle, double now) {
 		infectionDynamicsGeneralized(personLeavingVehicle, vehicle, now);
@@ -89,7 +100,7 @@ public final class OldSymmetricContactModel extends AbstractContactModel {
 		// start tracking late as possible because of computational costs
 		boolean trackingEnabled = iteration >= trackingAfterDay;
 
-		EpisimConfigGroup.InfectionParams leavingParams = null;
+		EpisimPerson.Activity leavingInfectionAct = null;
 
 		for( EpisimPerson contactPerson : container.getPersons() ){
 
@@ -98,6 +109,8 @@ public final class OldSymmetricContactModel extends AbstractContactModel {
 				continue;
 			}
 
+			contactsEvaluated++;
+
 			int maxPersonsInContainer = (int) (container.getMaxGroupSize() * episimConfig.getSampleSize());
 			// typical size is undefined if no vehicle file is used
 			if ( container instanceof InfectionEventHandler.EpisimVehicle && container.getTypicalCapacity() > -1) {
@@ -141,14 +154,16 @@ public final class OldSymmetricContactModel extends AbstractContactModel {
 					&& contactPerson.getDiseaseStatus() == DiseaseStatus.susceptible)
 				continue;
 
-			String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-			String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
+			EpisimPerson.Activity leavingAct = getCurrentActivity(personLeavingContainer, container);
+			String leavingPersonsActivity = leavingAct.actType;
+			EpisimPerson.Activity otherAct = getCurrentActivity(contactPerson, container);
+			String otherPersonsActivity = otherAct.actType;
 
 			StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
 
 			double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
 			double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
-			double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
+			double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, container, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
 
 			//forbid certain cross-activity interactions, keep track of contacts
 			if (container instanceof InfectionEventHandler.EpisimFacility) {
@@ -200,25 +215,27 @@ public final class OldSymmetricContactModel extends AbstractContactModel {
 
 
 			// Parameter will only be retrieved one time
-			if (leavingParams == null)
-				leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+			if (leavingInfectionAct == null)
+				leavingInfectionAct = getInfectionActivity(container, personLeavingContainer, leavingAct);
 
 			// activity params of the contact person and leaving person
-			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+			EpisimPerson.Activity contactInfectionAct = getInfectionActivity(container, contactPerson, otherAct);
+
+			double contactIntensity = Math.min(leavingInfectionAct.params.getContactIntensity(), contactInfectionAct.params.getContactIntensity());
 
-			double contactIntensity = Math.min(leavingParams.getContactIntensity(), contactParams.getContactIntensity());
+			probabilitiesComputed++;
 
 			// need to differentiate which person might be the infector
 			if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
 
 				double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
-						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
+						leavingInfectionAct, contactInfectionAct, contactIntensity, jointTimeInContainer);
 				if (rnd.nextDouble() < prob)
 					infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
 
 			} else {
 				double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
-						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
+						contactInfectionAct, leavingInfectionAct, contactIntensity, jointTimeInContainer);
 
 				if (rnd.nextDouble() < prob)
 					infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
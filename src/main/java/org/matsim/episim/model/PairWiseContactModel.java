@@ -49,11 +49,6 @@ public final class PairWiseContactModel extends AbstractContactModel {
 	 */
 	private final boolean traceSusceptible;
 
-	/**
-	 * This buffer is used to store the infection type.
-	 */
-	private final StringBuilder buffer = new StringBuilder();
-
 	/**
 	 * Reusable list for contact persons.
 	 */
@@ -69,6 +64,17 @@ public final class PairWiseContactModel extends AbstractContactModel {
 		this.traceSusceptible = tracingConfig.getTraceSusceptible();
 	}
 
+	private PairWiseContactModel(PairWiseContactModel other, SplittableRandom rnd) {
+		super(other, rnd);
+		this.trackingAfterDay = other.trackingAfterDay;
+		this.traceSusceptible = other.traceSusceptible;
+	}
+
+	@Override
+	public PairWiseContactModel copy(SplittableRandom rnd) {
+		return new PairWiseContactModel(this, rnd);
+	}
+
 	@Override
 	public void infectionDynamicsVehicle(EpisimPerson personLeavingVehicle, EpisimVehicle vehicle, double now) {
 		infectionDynamicsGeneralized(personLeavingVehicle, vehicle, now);
@@ -126,6 +132,7 @@ public final class PairWiseContactModel extends AbstractContactModel {
 		EpisimPerson contactPerson = contactPersons.get(rnd.nextInt(contactPersons.size()));
 		contacts.get(container).remove(contactPerson);
 		contactPersons.clear();
+		contactsEvaluated++;
 
 		if (!personHasRelevantStatus(personLeavingContainer) || !personHasRelevantStatus(contactPerson)) {
 			return;
@@ -146,29 +153,23 @@ public final class PairWiseContactModel extends AbstractContactModel {
 				&& contactPerson.getDiseaseStatus() == DiseaseStatus.susceptible)
 			return;
 
-		String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-		String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
+		EpisimPerson.Activity leavingAct = getCurrentActivity(personLeavingContainer, container);
+		EpisimPerson.Activity otherAct = getCurrentActivity(contactPerson, container);
 
-		StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
+		String infectionType = container instanceof EpisimFacility ? interactions.getInfectionType(leavingAct, otherAct) : "pt";
 
 		double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
 		double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
-		double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
+		double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, container, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
 
 		//forbid certain cross-activity interactions, keep track of contacts
 		if (container instanceof EpisimFacility) {
-			//home can only interact with home, leisure or work
-			if (infectionType.indexOf("home") >= 0 && infectionType.indexOf("leis") == -1 && infectionType.indexOf("work") == -1
-					&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home"))) {
-				// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
-				return;
-			} else if (infectionType.indexOf("edu") >= 0 && infectionType.indexOf("work") == -1 && !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu"))) {
-				//edu can only interact with work or edu
-				// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
+			byte rule = interactions.getRule(leavingAct, otherAct);
+			if (rule == ActivityInteractions.FORBIDDEN)
 				return;
-			}
-			if (trackingEnabled) {
-				trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, infectionType);
+
+			if (trackingEnabled && rule == ActivityInteractions.TRACEABLE) {
+				trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer);
 			}
 
 			// Only a subset of contacts are reported at the moment
@@ -204,24 +205,28 @@ public final class PairWiseContactModel extends AbstractContactModel {
 		}
 
 
-		EpisimConfigGroup.InfectionParams leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+		EpisimPerson.Activity leavingInfectionAct = getInfectionActivity(container, personLeavingContainer, leavingAct);
+		EpisimConfigGroup.InfectionParams leavingParams = leavingInfectionAct.params;
 
 		// activity params of the contact person and leaving person
-		EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+		EpisimPerson.Activity contactInfectionAct = getInfectionActivity(container, contactPerson, otherAct);
+		EpisimConfigGroup.InfectionParams contactParams = contactInfectionAct.params;
 
 		double contactIntensity = Math.min(leavingParams.getContactIntensity(), contactParams.getContactIntensity());
 
+		probabilitiesComputed++;
+
 		// need to differentiate which person might be the infector
 		if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
 
 			double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
-					leavingParams, contactParams, contactIntensity, jointTimeInContainer);
+					leavingInfectionAct, contactInfectionAct, contactIntensity, jointTimeInContainer);
 			if (rnd.nextDouble() < prob)
 				infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
 
 		} else {
 			double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
-					contactParams, leavingParams, contactIntensity, jointTimeInContainer);
+					contactInfectionAct, leavingInfectionAct, contactIntensity, jointTimeInContainer);
 
 			if (rnd.nextDouble() < prob)
 				infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
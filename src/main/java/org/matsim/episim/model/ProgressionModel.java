@@ -20,11 +20,13 @@
  */
 package org.matsim.episim.model;
 
+import it.unimi.dsi.fastutil.ints.IntList;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.EpisimReporting;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 
 /**
@@ -44,6 +46,18 @@ public interface ProgressionModel {
 	 */
 	void updateState(EpisimPerson person, int day);
 
+	/**
+	 * Removes and returns the slots of persons that have an update scheduled at {@code day}, see {@link EpisimPerson#getSlot()}.
+	 * Models that schedule their updates only need to be updated for these persons and for persons whose disease,
+	 * quarantine or test status changed since their last update.
+	 *
+	 * @return scheduled slots, which may contain duplicates, or null if all persons need to be updated every day.
+	 */
+	@Nullable
+	default IntList pollScheduledUpdates(int day) {
+		return null;
+	}
+
 	/**
 	 * Called before all state updates for all persons have been done.
 	 */
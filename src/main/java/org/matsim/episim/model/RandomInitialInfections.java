@@ -11,13 +11,13 @@ import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.EpisimUtils;
+import org.matsim.episim.SusceptibleIndex;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SplittableRandom;
-import java.util.stream.Collectors;
 
 /**
  * Randomly infect persons, optionally filtering by age group and district.
@@ -38,7 +38,7 @@ public class RandomInitialInfections implements InitialInfectionHandler {
 	}
 
 	@Override
-	public int handleInfections(Map<Id<Person>, EpisimPerson> persons, int iteration) {
+	public int handleInfections(Map<Id<Person>, EpisimPerson> persons, SusceptibleIndex susceptible, int iteration) {
 
 		if (initialInfectionsLeft == 0) return 0;
 
@@ -57,28 +57,31 @@ public class RandomInitialInfections implements InitialInfectionHandler {
 
 			int numInfections = EpisimUtils.findValidEntry(e.getValue(), 1, date);
 
-			List<EpisimPerson> candidates = persons.values().stream()
-					.filter(p -> district == null || district.equals(p.getAttributes().getAttribute("district")))
-					.filter(p -> lowerAgeBoundaryForInitInfections == -1 || (int) p.getAttributes().getAttribute("microm:modeled:age") >= lowerAgeBoundaryForInitInfections)
-					.filter(p -> upperAgeBoundaryForInitInfections == -1 || (int) p.getAttributes().getAttribute("microm:modeled:age") <= upperAgeBoundaryForInitInfections)
-					.filter(p -> p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
-					.collect(Collectors.toList());
+			int numCandidates = susceptible.size(district, lowerAgeBoundaryForInitInfections, upperAgeBoundaryForInitInfections);
 
-			if (candidates.size() < numInfections) {
+			if (numCandidates < numInfections) {
 				log.warn("Not enough persons match the initial infection requirement, using whole population...");
-				candidates = Lists.newArrayList(persons.values());
-			}
 
-			while (numInfections > 0 && initialInfectionsLeft > 0 && candidates.size() > 0) {
-				EpisimPerson randomPerson = candidates.remove(rnd.nextInt(candidates.size()));
-				if (randomPerson.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible) {
-					randomPerson.setDiseaseStatus(now, EpisimPerson.DiseaseStatus.infectedButNotContagious);
-					randomPerson.setVirusStrain(e.getKey());
-					log.warn("Person {} has initial infection with {}.", randomPerson.getPersonId(), e.getKey());
-					initialInfectionsLeft--;
-					numInfections--;
-					infected++;
+				List<EpisimPerson> candidates = Lists.newArrayList(persons.values());
+				while (numInfections > 0 && initialInfectionsLeft > 0 && candidates.size() > 0) {
+					EpisimPerson randomPerson = candidates.remove(rnd.nextInt(candidates.size()));
+					if (randomPerson.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible) {
+						infect(randomPerson, now, e.getKey());
+						numInfections--;
+						infected++;
+					}
 				}
+
+				continue;
+			}
+
+			// infected persons leave the index, so the candidates are the remaining matching persons in the order of the person map
+			while (numInfections > 0 && initialInfectionsLeft > 0 && numCandidates > 0) {
+				int index = rnd.nextInt(numCandidates);
+				infect(susceptible.get(district, lowerAgeBoundaryForInitInfections, upperAgeBoundaryForInitInfections, index), now, e.getKey());
+				numInfections--;
+				numCandidates--;
+				infected++;
 			}
 		}
 
@@ -86,6 +89,13 @@ public class RandomInitialInfections implements InitialInfectionHandler {
 		return infected;
 	}
 
+	private void infect(EpisimPerson person, double now, VirusStrain strain) {
+		person.setDiseaseStatus(now, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+		person.setVirusStrain(strain);
+		log.warn("Person {} has initial infection with {}.", person.getPersonId(), strain);
+		initialInfectionsLeft--;
+	}
+
 	@Override
 	public int getInfectionsLeft() {
 		return initialInfectionsLeft;
@@ -3,14 +3,10 @@ package org.matsim.episim.model;
 import com.google.inject.Inject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.VaccinationPool;
 
-import java.util.List;
-import java.util.Map;
 import java.util.SplittableRandom;
-import java.util.stream.Collectors;
 
 /**
  * Vaccinate people in the population randomly.
@@ -28,33 +24,26 @@ public class RandomVaccination implements VaccinationModel {
 
 
 	@Override
-	public int handleVaccination(Map<Id<Person>, EpisimPerson> persons, boolean reVaccination, int availableVaccinations, int iteration, double now) {
+	public int handleVaccination(VaccinationPool candidates, int availableVaccinations, int iteration, double now) {
 
 		if (availableVaccinations == 0)
 			return 0;
 
-		List<EpisimPerson> candidates = persons.values().stream()
-				.filter(EpisimPerson::isVaccinable)
-				.filter(p -> p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
-				.filter(p -> p.getVaccinationStatus() == (reVaccination ? EpisimPerson.VaccinationStatus.yes : EpisimPerson.VaccinationStatus.no))
-				.filter(p -> p.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.no)
-				.collect(Collectors.toList());
-
 		if (candidates.size() < availableVaccinations) {
 			log.warn("Not enough people to vaccinate left ({})", availableVaccinations);
 			return 0;
 		}
 
-		int vaccinationsLeft = availableVaccinations;
-		int vaccinated = 0;
-		while (vaccinationsLeft > 0) {
-			EpisimPerson randomPerson = candidates.get(rnd.nextInt(candidates.size()));
-			if (randomPerson.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible) {
-				vaccinate(randomPerson, iteration, reVaccination);
-				vaccinationsLeft--;
-			}
-		}
+		// persons are drawn with replacement from the candidates at the start of the day,
+		// so all of them are selected before the pool changes
+		int n = candidates.size();
+		EpisimPerson[] selected = new EpisimPerson[availableVaccinations];
+		for (int i = 0; i < selected.length; i++)
+			selected[i] = candidates.get(rnd.nextInt(n));
+
+		for (EpisimPerson randomPerson : selected)
+			vaccinate(randomPerson, iteration, candidates.isReVaccination());
 
-		return vaccinated;
+		return availableVaccinations;
 	}
 }
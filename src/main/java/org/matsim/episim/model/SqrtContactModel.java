@@ -58,6 +58,16 @@ public final class SqrtContactModel extends AbstractContactModel {
 		this.trackingAfterDay = tracingConfig.getPutTraceablePersonsInQuarantineAfterDay();
 	}
 
+	private SqrtContactModel(SqrtContactModel other, SplittableRandom rnd) {
+		super(other, rnd);
+		this.trackingAfterDay = other.trackingAfterDay;
+	}
+
+	@Override
+	public SqrtContactModel copy(SplittableRandom rnd) {
+		return new SqrtContactModel(this, rnd);
+	}
+
 	@Override
 	public void infectionDynamicsVehicle(EpisimPerson personLeavingVehicle, InfectionEventHandler.EpisimVehicle vehicle, double now) {
 		infectionDynamicsGeneralized(personLeavingVehicle, vehicle, now);
@@ -82,10 +92,12 @@ public final class SqrtContactModel extends AbstractContactModel {
 		// start tracking late as possible because of computational costs
 		boolean trackingEnabled = iteration >= trackingAfterDay;
 
-		EpisimConfigGroup.InfectionParams leavingParams = null;
+		EpisimPerson.Activity leavingInfectionAct = null;
 
 		for( EpisimPerson contactPerson : container.getPersons() ){
 
+			contactsEvaluated++;
+
 			int maxPersonsInContainer = container.getMaxGroupSize();
 			Gbl.assertIf( maxPersonsInContainer>1 );
 			// ==1 should not happen because if ever not more than 1 person in container, then method exits already earlier.  ???
@@ -113,8 +125,10 @@ public final class SqrtContactModel extends AbstractContactModel {
 				}
 			}
 
-			String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-			String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
+			EpisimPerson.Activity leavingAct = getCurrentActivity(personLeavingContainer, container);
+			String leavingPersonsActivity = leavingAct.actType;
+			EpisimPerson.Activity otherAct = getCurrentActivity(contactPerson, container);
+			String otherPersonsActivity = otherAct.actType;
 
 			StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
 
@@ -170,26 +184,28 @@ public final class SqrtContactModel extends AbstractContactModel {
 
 
 			// Parameter will only be retrieved one time
-			if (leavingParams == null)
-				leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+			if (leavingInfectionAct == null)
+				leavingInfectionAct = getInfectionActivity(container, personLeavingContainer, leavingAct);
 
 			// activity params of the contact person and leaving person
-			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+			EpisimPerson.Activity contactInfectionAct = getInfectionActivity(container, contactPerson, otherAct);
+
+			double contactIntensity = Math.min(leavingInfectionAct.params.getContactIntensity(), contactInfectionAct.params.getContactIntensity());
 
-			double contactIntensity = Math.min(leavingParams.getContactIntensity(), contactParams.getContactIntensity());
 
+			probabilitiesComputed++;
 
 			// need to differentiate which person might be the infector
 			if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
 
 				double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
-						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
+						leavingInfectionAct, contactInfectionAct, contactIntensity, jointTimeInContainer);
 				if (rnd.nextDouble() < prob)
 					infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
 
 			} else {
 				double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
-						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
+						contactInfectionAct, leavingInfectionAct, contactIntensity, jointTimeInContainer);
 
 				if (rnd.nextDouble() < prob)
 					infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
@@ -26,6 +26,7 @@ import org.apache.logging.log4j.Logger;
 import org.matsim.core.config.Config;
 import org.matsim.episim.*;
 
+import java.util.List;
 import java.util.SplittableRandom;
 
 import static org.matsim.episim.EpisimPerson.DiseaseStatus;
@@ -48,9 +49,9 @@ public final class SymmetricContactModel extends AbstractContactModel {
 	private final boolean traceSusceptible;
 
 	/**
-	 * This buffer is used to store the infection type.
+	 * Whether contacts are written as events, in which case all pairs need to be evaluated.
 	 */
-	private final StringBuilder buffer = new StringBuilder();
+	private final boolean reportContacts;
 
 	@Inject
 		/* package */
@@ -60,6 +61,28 @@ public final class SymmetricContactModel extends AbstractContactModel {
 		super(rnd, config, infectionModel, reporting);
 		this.trackingAfterDay = tracingConfig.getPutTraceablePersonsInQuarantineAfterDay();
 		this.traceSusceptible = tracingConfig.getTraceSusceptible();
+		this.reportContacts = episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.tracing
+				|| episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.all;
+	}
+
+	private SymmetricContactModel(SymmetricContactModel other, SplittableRandom rnd) {
+		super(other, rnd);
+		this.trackingAfterDay = other.trackingAfterDay;
+		this.traceSusceptible = other.traceSusceptible;
+		this.reportContacts = other.reportContacts;
+	}
+
+	@Override
+	public SymmetricContactModel copy(SplittableRandom rnd) {
+		return new SymmetricContactModel(this, rnd);
+	}
+
+	/**
+	 * Without tracing, only pairs with a contagious person are evaluated and no random numbers are drawn for other pairs.
+	 */
+	@Override
+	public boolean isIdleWithoutContagious() {
+		return iteration < trackingAfterDay && !reportContacts;
 	}
 
 	@Override
@@ -74,19 +97,28 @@ public final class SymmetricContactModel extends AbstractContactModel {
 
 	private void infectionDynamicsGeneralized(EpisimPerson personLeavingContainer, EpisimContainer<?> container, double now) {
 
+		int groupSize = container.getPersons().size();
+
 		// no infection possible if there is only one person
-		if (iteration == 0 || container.getPersons().size() == 1) {
+		if (iteration == 0 || groupSize == 1) {
 			return;
 		}
 
-		if (!personRelevantForTrackingOrInfectionDynamics(personLeavingContainer, container, getRestrictions(), rnd)) {
+		// start tracking late as possible because of computational costs
+		boolean trackingEnabled = iteration >= trackingAfterDay;
+
+		if (!trackingEnabled && !reportContacts) {
+			infectionDynamicsInfectious(personLeavingContainer, container, groupSize, now);
 			return;
 		}
 
-		// start tracking late as possible because of computational costs
-		boolean trackingEnabled = iteration >= trackingAfterDay;
+		int position = container.getPositionInTrajectory(personLeavingContainer);
+
+		if (!personRelevantForTrackingOrInfectionDynamics(personLeavingContainer, container, position, groupSize, getRestrictions(), rnd)) {
+			return;
+		}
 
-		EpisimConfigGroup.InfectionParams leavingParams = null;
+		double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
 
 		for (EpisimPerson contactPerson : container.getPersons()) {
 
@@ -95,144 +127,236 @@ public final class SymmetricContactModel extends AbstractContactModel {
 				continue;
 			}
 
-			int maxPersonsInContainer = (int) (container.getMaxGroupSize() * episimConfig.getSampleSize());
-			// typical size is undefined if no vehicle file is used
-			if (container instanceof InfectionEventHandler.EpisimVehicle && container.getTypicalCapacity() > -1) {
-				maxPersonsInContainer = (int) (container.getTypicalCapacity() * episimConfig.getSampleSize());
-//				if ( container.getMaxGroupSize() > container.getTypicalCapacity() ) {
-//					log.warn("yyyyyy: vehicleId={}: maxGroupSize={} is larger than typicalCapacity={}; need to find organized answer to this.",
-//							container.getContainerId(), container.getMaxGroupSize(), container.getTypicalCapacity() );
-//				}
-//				log.warn("containerId={}; typical capacity={}; maxPersonsInContainer={}" , container.getContainerId(), container.getTypicalCapacity(), maxPersonsInContainer );
-			}
+			interact(personLeavingContainer, position, containerEnterTimeOfPersonLeaving, contactPerson, container.getPositionInTrajectory(contactPerson),
+					container.getContainerEnteringTime(contactPerson.getPersonId()), container, groupSize, now, trackingEnabled, -1);
+		}
+	}
 
-			// it may happen that persons enter and leave an container at the same time
-			// effectively they have a joint time of 0 and will not count towards maximum group size
-			// still the size of the list of persons in the container may be larger than max group size
-			if (maxPersonsInContainer <= 1) {
-				log.debug("maxPersonsInContainer is={} even though there are {} persons in container={}", maxPersonsInContainer, container.getPersons().size(), container.getContainerId());
-				// maxPersonsInContainer = container.getPersons().size();
-			}
+	/**
+	 * Contact dynamics without tracing, where only pairs of one susceptible and one contagious person are evaluated.
+	 * A leaving susceptible person only interacts with the contagious persons in the container and a leaving contagious person only with the
+	 * susceptible ones, both are looked up from the indices of the container. Other persons can not infect or be infected and are skipped.
+	 * <p>
+	 * If there are no candidates, no random numbers are drawn at all, not even the one for the relevance of the leaving person.
+	 * Otherwise, it is drawn first, followed by the numbers of each candidate in the order of {@link EpisimContainer#getPersons()}.
+	 * Persons that were infected earlier on the same day in this container are still candidates, but draw no numbers.
+	 * Results are therefore reproducible for a fixed seed, but not identical to evaluating all pairs.
+	 */
+	private void infectionDynamicsInfectious(EpisimPerson personLeavingContainer, EpisimContainer<?> container, int groupSize, double now) {
 
-			/*
-			if ( rnd.nextDouble() >= episimConfig.getMaxContacts()/(maxPersonsInContainer-1) ) {
-				continue;
-			}
-			// since every pair of persons interacts only once, there is now a constant interaction probability per pair
-			// if we want superspreading events, then maxInteractions needs to be much larger than 3 or 10.
+		DiseaseStatus status = personLeavingContainer.getDiseaseStatus();
 
-			*/
+		List<EpisimPerson> candidates;
+		if (status == DiseaseStatus.susceptible)
+			candidates = container.getContagiousPersons(iteration);
+		else if (status == DiseaseStatus.contagious || status == DiseaseStatus.showingSymptoms)
+			candidates = container.getSusceptiblePersons(iteration);
+		else
+			return;
 
-			double nSpacesPerFacility = container.getNumSpaces();
-			if (rnd.nextDouble() > 1. / nSpacesPerFacility) { // i.e. other person is in other space
-				continue;
-			}
+		// no random numbers are drawn if there is nobody to infect or to be infected by
+		if (candidates.isEmpty())
+			return;
 
-			if (!personRelevantForTrackingOrInfectionDynamics(contactPerson, container, getRestrictions(), rnd)) {
-				continue;
-			}
+		int position = container.getPositionInTrajectory(personLeavingContainer);
 
-			// we have thrown the random numbers, so we can bail out in some cases if we are not tracking:
-			if (!trackingEnabled) {
-				if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
-					continue;
-				}
-				if (contactPerson.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
-					continue;
-				}
-				if (personLeavingContainer.getDiseaseStatus() == contactPerson.getDiseaseStatus()) {
-					continue;
-				}
-			} else if (!traceSusceptible && personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible
-					&& contactPerson.getDiseaseStatus() == DiseaseStatus.susceptible)
-				continue;
+		if (!personRelevantForTrackingOrInfectionDynamics(personLeavingContainer, container, position, groupSize, getRestrictions(), rnd)) {
+			return;
+		}
 
-			String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-			String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
-
-			StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
-
-			double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
-			double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
-			double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
-
-			//forbid certain cross-activity interactions, keep track of contacts
-			if (container instanceof InfectionEventHandler.EpisimFacility) {
-				//home can only interact with home, leisure or work
-				if (infectionType.indexOf("home") >= 0 && infectionType.indexOf("leis") == -1 && infectionType.indexOf("work") == -1
-						&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home"))) {
-					// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
-					continue;
-				} else if (infectionType.indexOf("edu") >= 0 && infectionType.indexOf("work") == -1 && !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu"))) {
-					//edu can only interact with work or edu
-					// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
-					continue;
-				}
-				if (trackingEnabled) {
-					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, infectionType);
-				}
-
-				// Only a subset of contacts are reported at the moment
-				// tracking has to be enabled to report more contacts
-				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer);
-			}
+		double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
 
-			if (!AbstractContactModel.personsCanInfectEachOther(personLeavingContainer, contactPerson)) {
-				continue;
-			}
+		for (int i = 0; i < candidates.size(); i++) {
+			EpisimPerson contactPerson = candidates.get(i);
 
-			// person can only infect others x days after being contagious
-			if ((personLeavingContainer.hadDiseaseStatus(DiseaseStatus.contagious) &&
-					personLeavingContainer.daysSince(DiseaseStatus.contagious, iteration) > episimConfig.getDaysInfectious())
-					|| (contactPerson.hadDiseaseStatus(DiseaseStatus.contagious) &&
-					contactPerson.daysSince(DiseaseStatus.contagious, iteration) > episimConfig.getDaysInfectious()))
+			if (personLeavingContainer == contactPerson || status != DiseaseStatus.susceptible && contactPerson.getDiseaseStatus() != DiseaseStatus.susceptible)
 				continue;
 
-			// persons leaving their first-ever activity have no starting time for that activity.  Need to hedge against that.  Since all persons
-			// start healthy (the first seeds are set at enterVehicle), we can make some assumptions.
-			if (containerEnterTimeOfPersonLeaving < 0 && containerEnterTimeOfOtherPerson < 0) {
-				throw new IllegalStateException("should not happen");
-				// should only happen at first activity.  However, at first activity all persons are susceptible.  So the only way we
-				// can get here is if an infected person entered the container and is now leaving again, while the other person has been in the
-				// container from the beginning.  ????  kai, mar'20
+			interact(personLeavingContainer, position, containerEnterTimeOfPersonLeaving, contactPerson, container.getPositionInTrajectory(contactPerson),
+					container.getContainerEnteringTime(contactPerson.getPersonId()), container, groupSize, now, false, -1);
+		}
+	}
+
+	/**
+	 * Contact dynamics of a person leaving a container, where the other persons in the container are given explicitly.
+	 * The containers themselves are not used to look up persons, which allows evaluating contacts from a precomputed co-presence network.
+	 *
+	 * @param position   position in the trajectory of the leaving person
+	 * @param enterTime  time the leaving person entered the container
+	 * @param persons    all persons, referenced by index from {@code contacts}
+	 * @param contacts   persons in the container besides the leaving one, stored from {@code from} to {@code to}
+	 * @param positions  position in the trajectory of each contact
+	 * @param enterTimes time each contact entered the container
+	 */
+	public void infectionDynamicsGroup(EpisimPerson personLeavingContainer, int position, double enterTime, EpisimContainer<?> container, double now,
+									   EpisimPerson[] persons, int[] contacts, int[] positions, double[] enterTimes, int from, int to) {
+
+		int groupSize = to - from + 1;
+
+		if (iteration == 0 || groupSize == 1) {
+			return;
+		}
+
+		if (!personRelevantForTrackingOrInfectionDynamics(personLeavingContainer, container, position, groupSize, getRestrictions(), rnd)) {
+			return;
+		}
+
+		boolean trackingEnabled = iteration >= trackingAfterDay;
+
+		for (int i = from; i < to; i++) {
+			interact(personLeavingContainer, position, enterTime, persons[contacts[i]], positions[i], enterTimes[i], container, groupSize, now,
+					trackingEnabled, groupSize);
+		}
+	}
+
+	/**
+	 * Interaction of the leaving person with one other person in the container.
+	 *
+	 * @param reportedGroupSize group size for reporting, or -1 to use the persons in the container
+	 */
+	private void interact(EpisimPerson personLeavingContainer, int leavingPosition, double containerEnterTimeOfPersonLeaving,
+						  EpisimPerson contactPerson, int contactPosition, double containerEnterTimeOfOtherPerson,
+						  EpisimContainer<?> container, int groupSize, double now, boolean trackingEnabled, int reportedGroupSize) {
+
+		contactsEvaluated++;
+
+		int maxPersonsInContainer = (int) (container.getMaxGroupSize() * episimConfig.getSampleSize());
+		// typical size is undefined if no vehicle file is used
+		if (container instanceof InfectionEventHandler.EpisimVehicle && container.getTypicalCapacity() > -1) {
+			maxPersonsInContainer = (int) (container.getTypicalCapacity() * episimConfig.getSampleSize());
+//			if ( container.getMaxGroupSize() > container.getTypicalCapacity() ) {
+//				log.warn("yyyyyy: vehicleId={}: maxGroupSize={} is larger than typicalCapacity={}; need to find organized answer to this.",
+//						container.getContainerId(), container.getMaxGroupSize(), container.getTypicalCapacity() );
+//			}
+//			log.warn("containerId={}; typical capacity={}; maxPersonsInContainer={}" , container.getContainerId(), container.getTypicalCapacity(), maxPersonsInContainer );
+		}
+
+		// it may happen that persons enter and leave an container at the same time
+		// effectively they have a joint time of 0 and will not count towards maximum group size
+		// still the size of the list of persons in the container may be larger than max group size
+		if (maxPersonsInContainer <= 1) {
+			log.debug("maxPersonsInContainer is={} even though there are {} persons in container={}", maxPersonsInContainer, groupSize, container.getContainerId());
+			// maxPersonsInContainer = container.getPersons().size();
+		}
+
+		/*
+		if ( rnd.nextDouble() >= episimConfig.getMaxContacts()/(maxPersonsInContainer-1) ) {
+			continue;
+		}
+		// since every pair of persons interacts only once, there is now a constant interaction probability per pair
+		// if we want superspreading events, then maxInteractions needs to be much larger than 3 or 10.
+
+		*/
+
+		double nSpacesPerFacility = container.getNumSpaces();
+		if (rnd.nextDouble() > 1. / nSpacesPerFacility) { // i.e. other person is in other space
+			return;
+		}
+
+		if (!personRelevantForTrackingOrInfectionDynamics(contactPerson, container, contactPosition, groupSize, getRestrictions(), rnd)) {
+			return;
+		}
+
+		// we have thrown the random numbers, so we can bail out in some cases if we are not tracking:
+		if (!trackingEnabled) {
+			if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
+				return;
+			}
+			if (contactPerson.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
+				return;
 			}
+			if (personLeavingContainer.getDiseaseStatus() == contactPerson.getDiseaseStatus()) {
+				return;
+			}
+		} else if (!traceSusceptible && personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible
+				&& contactPerson.getDiseaseStatus() == DiseaseStatus.susceptible)
+			return;
+
+		EpisimPerson.Activity leavingAct = personLeavingContainer.getTrajectory().get(leavingPosition);
+		EpisimPerson.Activity otherAct = contactPerson.getTrajectory().get(contactPosition);
 
-			if (jointTimeInContainer < 0 || jointTimeInContainer > 86400 * 18) {
-				log.warn(containerEnterTimeOfPersonLeaving);
-				log.warn(containerEnterTimeOfOtherPerson);
-				log.warn(now);
-				throw new IllegalStateException("joint time in container is not plausible for personLeavingContainer=" + personLeavingContainer.getPersonId() + " and contactPerson=" + contactPerson.getPersonId() + ". Joint time is=" + jointTimeInContainer);
+		double jointTimeInContainer = calculateJointTimeInContainer(now, leavingAct, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
+
+		String infectionType;
+
+		//forbid certain cross-activity interactions, keep track of contacts
+		if (container instanceof InfectionEventHandler.EpisimFacility) {
+			byte rule = interactions.getRule(leavingAct, otherAct);
+			if (rule == ActivityInteractions.FORBIDDEN)
+				return;
+
+			infectionType = interactions.getInfectionType(leavingAct, otherAct);
+
+			if (trackingEnabled && rule == ActivityInteractions.TRACEABLE) {
+				trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer);
 			}
 
-			// Parameter will only be retrieved one time
-			if (leavingParams == null)
-				leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+			// Only a subset of contacts are reported at the moment
+			// tracking has to be enabled to report more contacts
+			if (reportedGroupSize == -1)
+				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer);
+			else
+				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer, reportedGroupSize);
+		} else
+			infectionType = "pt";
 
-			// activity params of the contact person and leaving person
-			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+		if (!AbstractContactModel.personsCanInfectEachOther(personLeavingContainer, contactPerson)) {
+			return;
+		}
+
+		// person can only infect others x days after being contagious
+		if ((personLeavingContainer.hadDiseaseStatus(DiseaseStatus.contagious) &&
+				personLeavingContainer.daysSince(DiseaseStatus.contagious, iteration) > episimConfig.getDaysInfectious())
+				|| (contactPerson.hadDiseaseStatus(DiseaseStatus.contagious) &&
+				contactPerson.daysSince(DiseaseStatus.contagious, iteration) > episimConfig.getDaysInfectious()))
+			return;
 
-			// (same computation as above; could just memorize)
-			// this is currently 1 / (sqmPerPerson * airExchangeRate).  Need to multiply sqmPerPerson with maxPersonsInSpace to obtain room size:
-			double contactIntensity = Math.min(
-					leavingParams.getContactIntensity() / (maxPersonsInContainer / leavingParams.getSpacesPerFacility()),
-					contactParams.getContactIntensity() / (maxPersonsInContainer / nSpacesPerFacility)
-			);
+		// persons leaving their first-ever activity have no starting time for that activity.  Need to hedge against that.  Since all persons
+		// start healthy (the first seeds are set at enterVehicle), we can make some assumptions.
+		if (containerEnterTimeOfPersonLeaving < 0 && containerEnterTimeOfOtherPerson < 0) {
+			throw new IllegalStateException("should not happen");
+			// should only happen at first activity.  However, at first activity all persons are susceptible.  So the only way we
+			// can get here is if an infected person entered the container and is now leaving again, while the other person has been in the
+			// container from the beginning.  ????  kai, mar'20
+		}
 
-			// need to differentiate which person might be the infector
-			if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
+		if (jointTimeInContainer < 0 || jointTimeInContainer > 86400 * 18) {
+			log.warn(containerEnterTimeOfPersonLeaving);
+			log.warn(containerEnterTimeOfOtherPerson);
+			log.warn(now);
+			throw new IllegalStateException("joint time in container is not plausible for personLeavingContainer=" + personLeavingContainer.getPersonId() + " and contactPerson=" + contactPerson.getPersonId() + ". Joint time is=" + jointTimeInContainer);
+		}
 
-				double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
-						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
-				if (rnd.nextDouble() < prob)
-					infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
+		EpisimPerson.Activity leavingInfectionAct = getInfectionActivity(container, personLeavingContainer, leavingAct);
+		EpisimConfigGroup.InfectionParams leavingParams = leavingInfectionAct.params;
 
-			} else {
-				double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
-						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
+		// activity params of the contact person and leaving person
+		EpisimPerson.Activity contactInfectionAct = getInfectionActivity(container, contactPerson, otherAct);
+		EpisimConfigGroup.InfectionParams contactParams = contactInfectionAct.params;
 
-				if (rnd.nextDouble() < prob)
-					infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
-			}
+		// (same computation as above; could just memorize)
+		// this is currently 1 / (sqmPerPerson * airExchangeRate).  Need to multiply sqmPerPerson with maxPersonsInSpace to obtain room size:
+		double contactIntensity = Math.min(
+				leavingParams.getContactIntensity() / (maxPersonsInContainer / leavingParams.getSpacesPerFacility()),
+				contactParams.getContactIntensity() / (maxPersonsInContainer / nSpacesPerFacility)
+		);
+
+		probabilitiesComputed++;
+
+		// need to differentiate which person might be the infector
+		if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
+
+			double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
+					leavingInfectionAct, contactInfectionAct, contactIntensity, jointTimeInContainer);
+			if (rnd.nextDouble() < prob)
+				infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container, reportedGroupSize);
+
+		} else {
+			double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
+					contactInfectionAct, leavingInfectionAct, contactIntensity, jointTimeInContainer);
+
+			if (rnd.nextDouble() < prob)
+				infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container, reportedGroupSize);
 		}
 	}
 
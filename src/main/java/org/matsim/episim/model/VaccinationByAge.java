@@ -1,12 +1,14 @@
 package org.matsim.episim.model;
 
 import com.google.inject.Inject;
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.population.Person;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import org.matsim.episim.EpisimPerson;
-import org.matsim.episim.EpisimUtils;
+import org.matsim.episim.VaccinationPool;
 
-import java.util.*;
+import java.util.SplittableRandom;
 
 /**
  * Vaccinate people starting with oldest first
@@ -15,7 +17,7 @@ public class VaccinationByAge implements VaccinationModel {
 
 	private final SplittableRandom rnd;
 
-	private final static int MAX_AGE = 130;
+	private final static int MAX_AGE = VaccinationPool.AGE_GROUPS;
 	private final static int MINIMUM_AGE_FOR_VACCINATIONS = 6;
 
 	@Inject
@@ -24,54 +26,56 @@ public class VaccinationByAge implements VaccinationModel {
 	}
 
 	@Override
-	public int handleVaccination(Map<Id<Person>, EpisimPerson> persons, boolean reVaccination, int availableVaccinations, int iteration, double now) {
+	public int handleVaccination(VaccinationPool candidates, int availableVaccinations, int iteration, double now) {
 
 		if (availableVaccinations == 0)
 			return 0;
 
-		// perAge is an ArrayList where we have for each age (in years) an
-		// ArrayList of Persons that are qualified for a vaccination
-		final List<EpisimPerson>[] perAge = new List[MAX_AGE];
+		int vaccinationsLeft = availableVaccinations;
 
-		for (int i = 0; i < MAX_AGE; i++)
-			perAge[i] = new ArrayList<>();
+		for (int age = MAX_AGE - 1; age >= MINIMUM_AGE_FOR_VACCINATIONS && vaccinationsLeft > 0; age--) {
 
-		for (EpisimPerson p : persons.values()) {
-			if (p.isVaccinable() &&
-					p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible &&
-					p.getVaccinationStatus() == (reVaccination ? EpisimPerson.VaccinationStatus.yes : EpisimPerson.VaccinationStatus.no) &&
-					p.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.no) {
+			int n = candidates.size(age);
+			if (n == 0)
+				continue;
 
-				perAge[p.getAge()].add(p);
+			// persons are selected before anyone is vaccinated, because vaccinated persons leave the pool
+			EpisimPerson[] selected = new EpisimPerson[Math.min(n, vaccinationsLeft)];
+			if (selected.length == n) {
+				for (int i = 0; i < n; i++)
+					selected[i] = candidates.get(age, i);
+			} else {
+				// there are not enough vaccinations left for the persons of this age, so distinct persons are drawn
+				IntList draws = sample(n, selected.length);
+				for (int i = 0; i < selected.length; i++)
+					selected[i] = candidates.get(age, draws.getInt(i));
 			}
-		}
 
-		int age = MAX_AGE - 1;
-		int vaccinationsLeft = availableVaccinations;
-
-		while (vaccinationsLeft > 0) {
+			for (EpisimPerson person : selected)
+				vaccinate(person, iteration, candidates.isReVaccination());
 
-			if (perAge[age].size() == 0) {
-				age--;
+			vaccinationsLeft -= selected.length;
+		}
 
-				if (age < MINIMUM_AGE_FOR_VACCINATIONS)
-					return availableVaccinations - vaccinationsLeft;
+		return availableVaccinations - vaccinationsLeft;
+	}
 
-				// there are not enough vaccinationsLeft for the Persons of
-				// this age, so we shuffle this set for we get the first n Persons
-				if (perAge[age].size() > vaccinationsLeft)
-					Collections.shuffle(perAge[age], new Random(EpisimUtils.getSeed(rnd)));
-				continue;
+	/**
+	 * Draws {@code k} distinct indices out of {@code n} with Floyd's algorithm.
+	 */
+	private IntList sample(int n, int k) {
+		IntSet drawn = new IntOpenHashSet(k);
+		IntList result = new IntArrayList(k);
+		for (int j = n - k; j < n; j++) {
+			int t = rnd.nextInt(j + 1);
+			if (!drawn.add(t)) {
+				drawn.add(j);
+				t = j;
 			}
 
-			List<EpisimPerson> candidates = perAge[age];
-			for (int i = 0; i < candidates.size() && vaccinationsLeft > 0; i++) {
-				EpisimPerson person = candidates.get(i);
-				vaccinate(person, iteration, reVaccination);
-				vaccinationsLeft--;
-			}
+			result.add(t);
 		}
 
-		return availableVaccinations - vaccinationsLeft;
+		return result;
 	}
 }
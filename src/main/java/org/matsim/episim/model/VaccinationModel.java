@@ -1,10 +1,7 @@
 package org.matsim.episim.model;
 
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.EpisimPerson;
-
-import java.util.Map;
+import org.matsim.episim.VaccinationPool;
 
 /**
  * Vaccination model executed every iterations.
@@ -12,16 +9,15 @@ import java.util.Map;
 public interface VaccinationModel {
 
 	/**
-	 * Perform vaccinations on the given persons
+	 * Perform vaccinations on the given persons. Vaccinated persons are removed from the pool immediately.
 	 *
-	 * @param persons               all existing persons.
-	 * @param reVaccination         whether this is for vaccination
+	 * @param candidates            persons eligible for vaccination, {@link VaccinationPool#isReVaccination()} indicates re-vaccination.
 	 * @param availableVaccinations number of vaccinations available for this day.
 	 * @param iteration             current iteration
 	 * @param now                   current time (start of day)
 	 * @return number of people vaccinated
 	 */
-	int handleVaccination(Map<Id<Person>, EpisimPerson> persons, boolean reVaccination, int availableVaccinations, int iteration, double now);
+	int handleVaccination(VaccinationPool candidates, int availableVaccinations, int iteration, double now);
 
 	/**
 	 * Set vaccination status of a person.
@@ -117,6 +117,10 @@ public final class DataBasedTestingModel extends DefaultTestingModel {
 		// update is run at end of day, the test needs to be for the next day
 		DayOfWeek dow = EpisimUtils.getDayOfWeek(episimConfig, day + 1);
 
+		// persons without any testing activity are skipped without looking at their trajectory
+		if (person.hasActivityMask() && (person.getActivityMask(dow) & testingActivities) == 0)
+			return;
+
 		String act = person.matchActivities(dow, testingConfig.getActivities(), this::chooseActivity, null);
 
 		if (act != null) {
@@ -9,9 +9,9 @@ import org.matsim.episim.*;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.SplittableRandom;
 
 /**
@@ -34,10 +34,20 @@ public class DefaultTestingModel implements TestingModel {
 	 */
 	private Object2DoubleMap<String> testingRateForActivities;
 
+	/**
+	 * Container types of the testing activities as bit mask, see {@link EpisimPerson#getActivityMask(DayOfWeek)}.
+	 */
+	protected long testingActivities;
+
+	/**
+	 * Testing rates for current day indexed by container type.
+	 */
+	private double[] testingRateForTypes;
+
 	/**
 	 * Ids of households that are not compliant.
 	 */
-	private final Set<String> nonCompliantHouseholds = new HashSet<>();
+	private final BitSet nonCompliantHouseholds = new BitSet();
 
 	@Inject
 	DefaultTestingModel(SplittableRandom rnd, Config config, TestingConfigGroup testingConfig, EpisimConfigGroup episimConfig) {
@@ -57,6 +67,17 @@ public class DefaultTestingModel implements TestingModel {
 			testingCapacity *= episimConfig.getSampleSize();
 
 		testingRateForActivities = testingConfig.getDailyTestingRateForActivities(date);
+
+		List<String> containerTypes = episimConfig.getContainerTypes();
+		testingActivities = 0;
+		testingRateForTypes = new double[Math.min(containerTypes.size(), Long.SIZE)];
+		for (int i = 0; i < testingRateForTypes.length; i++) {
+			String act = containerTypes.get(i);
+			if (testingConfig.getActivities().contains(act)) {
+				testingActivities |= 1L << i;
+				testingRateForTypes[i] = testingRateForActivities.getOrDefault(act, testingConfig.getTestingRate());
+			}
+		}
 	}
 
 	@Override
@@ -73,24 +94,34 @@ public class DefaultTestingModel implements TestingModel {
 		SplittableRandom rnd = new SplittableRandom(config.global().getRandomSeed());
 
 		// don't draw one household multiple times
-		Set<String> checked = new HashSet<>();
+		BitSet checked = new BitSet();
 
 		for (EpisimPerson p : personMap.values()) {
-			String home = getHomeId(p);
+			int home = p.getHouseholdId();
 
-			if (!checked.contains(home)) {
+			if (!checked.get(home)) {
 				if (rnd.nextDouble() > testingConfig.getHouseholdCompliance())
-					nonCompliantHouseholds.add(home);
+					nonCompliantHouseholds.set(home);
 
-				checked.add(home);
+				checked.set(home);
 			}
 		}
 	}
 
-	private String getHomeId(EpisimPerson person) {
-		String home = (String) person.getAttributes().getAttribute("homeId");
-		// fallback to person id if there is no home
-		return home != null ? home : person.getPersonId().toString();
+	/**
+	 * Highest testing rate of all testing activities a person performs on a day, or 0 if there are none.
+	 */
+	private double getActivityTestingRate(EpisimPerson person, DayOfWeek dow) {
+
+		if (!person.hasActivityMask())
+			return person.matchActivities(dow, testingConfig.getActivities(),
+					(act, v) -> Math.max(v, testingRateForActivities.getOrDefault(act, testingConfig.getTestingRate())), 0d);
+
+		double rate = 0d;
+		for (long mask = person.getActivityMask(dow) & testingActivities; mask != 0; mask &= mask - 1)
+			rate = Math.max(rate, testingRateForTypes[Long.numberOfTrailingZeros(mask)]);
+
+		return rate;
 	}
 
 	/**
@@ -116,14 +147,12 @@ public class DefaultTestingModel implements TestingModel {
 				testAndQuarantine(person, day, testingConfig.getTestingRate());
 		} else if (testingConfig.getStrategy() == TestingConfigGroup.Strategy.ACTIVITIES) {
 
-			double rate = person.matchActivities(dow, testingConfig.getActivities(),
-					(act, v) -> Math.max(v, testingRateForActivities.getOrDefault(act, testingConfig.getTestingRate())), 0d);
+			double rate = getActivityTestingRate(person, dow);
 
 			testAndQuarantine(person, day, rate);
 		} else if (testingConfig.getStrategy() == TestingConfigGroup.Strategy.FIXED_ACTIVITIES && testingConfig.getTestDays().contains(dow)) {
 
-			double rate = person.matchActivities(dow, testingConfig.getActivities(),
-					(act, v) -> Math.max(v, testingRateForActivities.getOrDefault(act, testingConfig.getTestingRate())), 0d);
+			double rate = getActivityTestingRate(person, dow);
 
 			testAndQuarantine(person, day, rate);
 		}
@@ -139,7 +168,7 @@ public class DefaultTestingModel implements TestingModel {
 		if (testingRate == 0)
 			return false;
 
-		if (nonCompliantHouseholds.contains(getHomeId(person)))
+		if (nonCompliantHouseholds.get(person.getHouseholdId()))
 			return false;
 
 		if (testingRate != 1d && rnd.nextDouble() >= testingRate)
@@ -22,12 +22,10 @@ package org.matsim.episim.policy;
 
 import com.google.common.collect.ImmutableMap;
 import com.typesafe.config.Config;
-import com.typesafe.config.ConfigValue;
 import it.unimi.dsi.fastutil.objects.*;
 import org.matsim.episim.EpisimReporting;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,30 +42,37 @@ public class AdaptivePolicy extends ShutdownPolicy {
 	private static final int INTERVAL_DAY = 14;
 
 	/**
-	 * Incidences triggers for configured activities.
+	 * Activities with incidence triggers and their thresholds to open and to restrict.
 	 */
-	private final Config incidenceTriggers;
+	private final String[] triggerActivities;
+	private final double[] openAt;
+	private final double[] restrictAt;
 
 	/**
 	 * Policy applied at the start.
 	 */
-	private final Config initialPolicy;
+	private final RestrictionTimeline initialPolicy;
 
 	/**
 	 * Policy when shutdown is in effect.
 	 */
-	private final Config restrictedPolicy;
+	private final RestrictionTimeline restrictedPolicy;
 
 	/**
 	 * Policy when everything is open.
 	 */
-	private final Config openPolicy;
+	private final RestrictionTimeline openPolicy;
 
 	/**
-	 * Store incidence for each day.
+	 * Cumulative cases per 100k of the last 7 days, needed to compute the weekly incidence.
 	 */
 	private final Object2DoubleSortedMap<LocalDate> cumCases = new Object2DoubleAVLTreeMap<>();
 
+	/**
+	 * Weekly incidence of the last {@link #INTERVAL_DAY} days.
+	 */
+	private final Object2DoubleSortedMap<LocalDate> incidence = new Object2DoubleAVLTreeMap<>();
+
 	/**
 	 * Whether currently in lockdown.
 	 */
@@ -76,12 +81,24 @@ public class AdaptivePolicy extends ShutdownPolicy {
 	/**
 	 * Constructor from config.
 	 */
+	@SuppressWarnings("unchecked")
 	public AdaptivePolicy(Config config) {
 		super(config);
-		incidenceTriggers = config.getConfig("incidences");
-		restrictedPolicy = config.getConfig("restricted-policy");
-		openPolicy = config.getConfig("open-policy");
-		initialPolicy = config.hasPath("init-policy") ? config.getConfig("init-policy") : null;
+
+		Config incidenceTriggers = config.getConfig("incidences");
+		triggerActivities = incidenceTriggers.root().keySet().toArray(new String[0]);
+		openAt = new double[triggerActivities.length];
+		restrictAt = new double[triggerActivities.length];
+
+		for (int i = 0; i < triggerActivities.length; i++) {
+			List<Number> trigger = (List<Number>) incidenceTriggers.root().get(triggerActivities[i]).unwrapped();
+			openAt[i] = trigger.get(0).doubleValue();
+			restrictAt[i] = trigger.get(1).doubleValue();
+		}
+
+		restrictedPolicy = new RestrictionTimeline(config.getConfig("restricted-policy"));
+		openPolicy = new RestrictionTimeline(config.getConfig("open-policy"));
+		initialPolicy = config.hasPath("init-policy") ? new RestrictionTimeline(config.getConfig("init-policy")) : null;
 	}
 
 	/**
@@ -93,12 +110,8 @@ public class AdaptivePolicy extends ShutdownPolicy {
 
 	@Override
 	public void init(LocalDate start, ImmutableMap<String, Restriction> restrictions) {
-		if (initialPolicy != null && !initialPolicy.isEmpty()) {
-
-			for (Map.Entry<String, Restriction> e : restrictions.entrySet()) {
-				updateRestrictions(start, initialPolicy, e.getKey(), e.getValue());
-			}
-		}
+		if (initialPolicy != null)
+			initialPolicy.applyBefore(start, restrictions);
 	}
 
 	@Override
@@ -111,19 +124,7 @@ public class AdaptivePolicy extends ShutdownPolicy {
 
 		LocalDate date = LocalDate.parse(report.date);
 
-		calculateCases(report);
-		Object2DoubleSortedMap<LocalDate> cases = cumCases.tailMap(date.minus(INTERVAL_DAY + 6, ChronoUnit.DAYS));
-
-		Object2DoubleSortedMap<LocalDate> incidence = new Object2DoubleAVLTreeMap<>();
-
-		for (Object2DoubleMap.Entry<LocalDate> from : cases.object2DoubleEntrySet()) {
-			LocalDate until = from.getKey().plusDays(7);
-			if (cases.containsKey(until)) {
-				incidence.put(until, cases.getDouble(until) - cases.getDouble(from.getKey()));
-			} else
-				// if until was not contained, the next ones will not be either
-				break;
-		}
+		updateIncidence(date, report);
 
 		// for first 7 days, restrictions will stay the same
 		if (incidence.isEmpty())
@@ -131,20 +132,27 @@ public class AdaptivePolicy extends ShutdownPolicy {
 
 		// TODO: use first incidence to decide whether in lockdown or not
 
-		for (Map.Entry<String, ConfigValue> e : incidenceTriggers.entrySet()) {
+		double current = incidence.getDouble(incidence.lastKey());
+		double max = Double.NEGATIVE_INFINITY;
+		for (double inc : incidence.values())
+			max = Math.max(max, inc);
+
+		for (int i = 0; i < triggerActivities.length; i++) {
 
-			String act = e.getKey();
-			List<Double> trigger = (List<Double>) e.getValue().unwrapped();
+			String act = triggerActivities[i];
+			Restriction restriction = restrictions.get(act);
 
 			if (inLockdown.getBoolean(act)) {
-				if (incidence.values().stream().allMatch(inc -> inc <= trigger.get(0))) {
-					updateRestrictions(date, openPolicy, act, restrictions.get(act));
+				if (max <= openAt[i]) {
+					if (restriction != null)
+						openPolicy.applyBefore(date, act, restriction);
 					inLockdown.put(act, false);
 				}
 
 			} else {
-				if (incidence.getDouble(incidence.lastKey()) >= trigger.get(1)) {
-					updateRestrictions(date, restrictedPolicy, act, restrictions.get(act));
+				if (current >= restrictAt[i]) {
+					if (restriction != null)
+						restrictedPolicy.applyBefore(date, act, restriction);
 					inLockdown.put(act, true);
 				}
 			}
@@ -152,30 +160,19 @@ public class AdaptivePolicy extends ShutdownPolicy {
 	}
 
 	/**
-	 * Calculate incidence depending
+	 * Stores the cumulative cases of the day and updates the rolling incidence window. Days that dropped out of the window are removed.
 	 */
-	private void calculateCases(EpisimReporting.InfectionReport report) {
-		double cases = report.nShowingSymptomsCumulative * (100_000d / report.nTotal());
-		this.cumCases.put(LocalDate.parse(report.date), cases);
-	}
-
-	private void updateRestrictions(LocalDate start, Config policy, String act, Restriction restriction) {
+	private void updateIncidence(LocalDate date, EpisimReporting.InfectionReport report) {
 
-		// activity name
-		if (!policy.hasPath(act))
-			return;
-
-		Config actConfig = policy.getConfig(act);
+		double cases = report.nShowingSymptomsCumulative * (100_000d / report.nTotal());
+		cumCases.put(date, cases);
 
-		for (Map.Entry<String, ConfigValue> days : actConfig.root().entrySet()) {
-			if (days.getKey().startsWith("day")) continue;
+		LocalDate weekBefore = date.minusDays(7);
+		if (cumCases.containsKey(weekBefore))
+			incidence.put(date, cases - cumCases.getDouble(weekBefore));
 
-			LocalDate date = LocalDate.parse(days.getKey());
-			if (date.isBefore(start)) {
-				Restriction r = Restriction.fromConfig(actConfig.getConfig(days.getKey()));
-				restriction.update(r);
-			}
-		}
+		cumCases.headMap(weekBefore).clear();
+		incidence.headMap(date.minusDays(INTERVAL_DAY - 1)).clear();
 	}
 
 	/**
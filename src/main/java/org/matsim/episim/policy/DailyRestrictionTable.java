@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.policy;
+
+import com.google.common.collect.ImmutableMap;
+import org.matsim.episim.EpisimPerson;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable restrictions of one day, which can also be accessed by the index of the container type.
+ * Contact models use the index stored at each activity to avoid string lookups for every contact.
+ * The table is also usable as normal map from container name to restriction.
+ */
+public final class DailyRestrictionTable extends AbstractMap<String, Restriction> {
+
+	private final ImmutableMap<String, Restriction> restrictions;
+	private final Restriction[] byType;
+
+	/**
+	 * Creates the table.
+	 *
+	 * @param containerTypes container names ordered by their index
+	 * @param restrictions   restrictions of the day
+	 */
+	public DailyRestrictionTable(List<String> containerTypes, Map<String, Restriction> restrictions) {
+		this.restrictions = ImmutableMap.copyOf(restrictions);
+		this.byType = new Restriction[containerTypes.size()];
+		for (int i = 0; i < byType.length; i++)
+			byType[i] = restrictions.get(containerTypes.get(i));
+	}
+
+	/**
+	 * Creates a table without container type index. Lookups of activities fall back to their container name.
+	 */
+	public static DailyRestrictionTable of(Map<String, Restriction> restrictions) {
+		if (restrictions instanceof DailyRestrictionTable)
+			return (DailyRestrictionTable) restrictions;
+
+		return new DailyRestrictionTable(List.of(), restrictions);
+	}
+
+	/**
+	 * Restriction of an activity, looked up by its container type if it is indexed in this table.
+	 */
+	public Restriction get(EpisimPerson.Activity act) {
+		if (act.containerType >= 0 && act.containerType < byType.length)
+			return byType[act.containerType];
+
+		return restrictions.get(act.params.getContainerName());
+	}
+
+	/**
+	 * Restriction of the container type with index {@code containerType}.
+	 */
+	public Restriction get(int containerType) {
+		return byType[containerType];
+	}
+
+	/**
+	 * Number of indexed container types.
+	 */
+	public int getNumContainerTypes() {
+		return byType.length;
+	}
+
+	@Override
+	public Restriction get(Object key) {
+		return restrictions.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return restrictions.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return restrictions.size();
+	}
+
+	@Override
+	public Set<Entry<String, Restriction>> entrySet() {
+		return restrictions.entrySet();
+	}
+}
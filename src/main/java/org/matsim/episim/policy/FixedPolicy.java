@@ -44,11 +44,17 @@ public final class FixedPolicy extends ShutdownPolicy {
 
 	private static final Logger log = LogManager.getLogger(FixedPolicy.class);
 
+	/**
+	 * Updates of all activities, compiled from the config.
+	 */
+	private final RestrictionTimeline timeline;
+
 	/**
 	 * Constructor.
 	 */
 	public FixedPolicy(Config config) {
 		super(config);
+		this.timeline = new RestrictionTimeline(config);
 	}
 
 	/**
@@ -67,51 +73,13 @@ public final class FixedPolicy extends ShutdownPolicy {
 
 	@Override
 	public void init(LocalDate start, ImmutableMap<String, Restriction> restrictions) {
-
 		// Init restrictions that are before simulation start
-		for (Map.Entry<String, Restriction> entry : restrictions.entrySet()) {
-
-			// activity name
-			if (!config.hasPath(entry.getKey())) continue;
-
-			Config actConfig = this.config.getConfig(entry.getKey());
-
-			for (Map.Entry<String, ConfigValue> days : actConfig.root().entrySet()) {
-
-				if (days.getKey().startsWith("day")) continue;
-
-				LocalDate date = LocalDate.parse(days.getKey());
-				if (date.isBefore(start)) {
-					Restriction r = Restriction.fromConfig(actConfig.getConfig(days.getKey()));
-					entry.getValue().update(r);
-				}
-			}
-		}
+		timeline.applyBefore(start, restrictions);
 	}
 
 	@Override
 	public void updateRestrictions(EpisimReporting.InfectionReport report, ImmutableMap<String, Restriction> restrictions) {
-		for (Map.Entry<String, Restriction> entry : restrictions.entrySet()) {
-			// activity name
-			if (!config.hasPath(entry.getKey())) continue;
-
-			Config actConfig = this.config.getConfig(entry.getKey());
-			String dayKey = "day-" + report.day;
-			String dateKey = report.date;
-
-			// check for day or date config
-			Config dayConfig = null;
-			if (actConfig.hasPath(dayKey))
-				dayConfig = actConfig.getConfig(dayKey);
-			else if (actConfig.hasPath(dateKey))
-				dayConfig = actConfig.getConfig(dateKey);
-
-			if (dayConfig != null) {
-
-				Restriction r = Restriction.fromConfig(dayConfig);
-				entry.getValue().update(r);
-			}
-		}
+		timeline.apply(report.day, report.date, restrictions);
 	}
 
 	/**
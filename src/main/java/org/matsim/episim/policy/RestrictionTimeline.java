@@ -0,0 +1,175 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.policy;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigObject;
+import com.typesafe.config.ConfigValue;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Restriction updates of a {@link FixedPolicy} config, which are parsed once so that the daily update is an array lookup.
+ * Updates are either keyed by simulation day ({@code day-<n>}) or by date, day keys take precedence over dates of the same day.
+ */
+final class RestrictionTimeline {
+
+	/**
+	 * Activities present in the config.
+	 */
+	private final String[] activities;
+	private final Object2IntMap<String> activityIndex = new Object2IntOpenHashMap<>();
+
+	/**
+	 * Updates of each activity indexed by day, null if there are none.
+	 */
+	private final Restriction[][] byDay;
+
+	/**
+	 * Dates with updates in ascending order and the updates of each activity at these dates.
+	 */
+	private final LocalDate[] dates;
+	private final Restriction[][] byDate;
+
+	/**
+	 * Index into {@link #dates} for the date as written in reports.
+	 */
+	private final Object2IntMap<String> dateIndex = new Object2IntOpenHashMap<>();
+
+	/**
+	 * Compiles the timeline, where each entry of the config maps activities to their updates.
+	 */
+	RestrictionTimeline(Config config) {
+
+		activities = config.root().keySet().toArray(new String[0]);
+		for (int i = 0; i < activities.length; i++)
+			activityIndex.put(activities[i], i);
+
+		activityIndex.defaultReturnValue(-1);
+		dateIndex.defaultReturnValue(-1);
+
+		Int2ObjectMap<Restriction[]> days = new Int2ObjectOpenHashMap<>();
+		TreeMap<LocalDate, Restriction[]> dateMap = new TreeMap<>();
+		int maxDay = -1;
+
+		for (int i = 0; i < activities.length; i++) {
+
+			ConfigObject actConfig = (ConfigObject) config.root().get(activities[i]);
+
+			for (Map.Entry<String, ConfigValue> e : actConfig.entrySet()) {
+
+				String key = e.getKey();
+				Restriction r = Restriction.fromConfig(((ConfigObject) e.getValue()).toConfig());
+
+				if (key.startsWith("day")) {
+					int day = parseDay(key);
+					days.computeIfAbsent(day, k -> new Restriction[activities.length])[i] = r;
+					maxDay = Math.max(maxDay, day);
+				} else
+					dateMap.computeIfAbsent(LocalDate.parse(key), k -> new Restriction[activities.length])[i] = r;
+			}
+		}
+
+		byDay = new Restriction[maxDay + 1][];
+		for (Int2ObjectMap.Entry<Restriction[]> e : days.int2ObjectEntrySet())
+			byDay[e.getIntKey()] = e.getValue();
+
+		this.dates = dateMap.keySet().toArray(new LocalDate[0]);
+		this.byDate = dateMap.values().toArray(new Restriction[0][]);
+		for (int i = 0; i < dates.length; i++)
+			dateIndex.put(dates[i].toString(), i);
+	}
+
+	private static int parseDay(String key) {
+		try {
+			int day = Integer.parseInt(key.substring("day-".length()));
+			if (key.startsWith("day-") && day >= 0)
+				return day;
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			// handled below
+		}
+
+		throw new IllegalArgumentException("Invalid day key in policy config: " + key);
+	}
+
+	/**
+	 * Applies all updates before {@code start} in order of their date.
+	 */
+	void applyBefore(LocalDate start, Map<String, Restriction> restrictions) {
+		for (String act : activities) {
+			Restriction r = restrictions.get(act);
+			if (r != null)
+				applyBefore(start, act, r);
+		}
+	}
+
+	/**
+	 * Applies all updates of one activity before {@code start} in order of their date.
+	 */
+	void applyBefore(LocalDate start, String act, Restriction restriction) {
+
+		int a = activityIndex.getInt(act);
+		if (a == -1)
+			return;
+
+		for (int i = 0; i < dates.length && dates[i].isBefore(start); i++) {
+			if (byDate[i][a] != null)
+				restriction.update(byDate[i][a]);
+		}
+	}
+
+	/**
+	 * Applies the updates of one simulation day.
+	 *
+	 * @param day  day of the simulation
+	 * @param date date as written in the report
+	 */
+	void apply(long day, String date, Map<String, Restriction> restrictions) {
+
+		Restriction[] dayUpdates = day >= 0 && day < byDay.length ? byDay[(int) day] : null;
+
+		int i = dateIndex.getInt(date);
+		Restriction[] dateUpdates = i >= 0 ? byDate[i] : null;
+
+		if (dayUpdates == null && dateUpdates == null)
+			return;
+
+		for (int a = 0; a < activities.length; a++) {
+
+			Restriction update = dayUpdates != null ? dayUpdates[a] : null;
+			if (update == null && dateUpdates != null)
+				update = dateUpdates[a];
+
+			if (update == null)
+				continue;
+
+			Restriction r = restrictions.get(activities[a]);
+			if (r != null)
+				r.update(update);
+		}
+	}
+}
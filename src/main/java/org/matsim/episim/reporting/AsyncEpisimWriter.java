@@ -19,6 +19,7 @@ import java.io.Writer;
 
 /**
  * Overwrites the default episim writer to do all IO in an extra thread using the {@link Disruptor} library.
+ * When running multiple simulations, each one should use its own instance with one producer, instead of sharing one ring buffer.
  */
 public final class AsyncEpisimWriter extends EpisimWriter implements EventHandler<AsyncEpisimWriter.LogEvent>,
 		EventTranslatorThreeArg<AsyncEpisimWriter.LogEvent, Writer, Event, Double>, Closeable {
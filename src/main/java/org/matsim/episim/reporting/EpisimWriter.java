@@ -3,8 +3,16 @@ package org.matsim.episim.reporting;
 import com.google.common.base.Joiner;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
 import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.core.utils.io.IOUtils;
+import org.matsim.episim.events.EpisimContactEvent;
+import org.matsim.episim.events.EpisimInfectionEvent;
+import org.matsim.episim.events.EpisimPersonStatusEvent;
+import org.matsim.episim.events.EpisimTracingEvent;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -66,6 +74,49 @@ public class EpisimWriter {
 	 * Writes an event as xml representation to {@code out}.
 	 */
 	protected static void writeEvent(final Appendable out, final Event event, final double correctedTime) throws IOException {
+
+		// episim events are written directly from their fields, which avoids creating the attribute map
+		// attributes are in the same order as in their attribute map
+		double time = correctedTime >= 0 ? correctedTime : event.getTime();
+
+		if (event instanceof EpisimInfectionEvent) {
+			EpisimInfectionEvent e = (EpisimInfectionEvent) event;
+			writeEventStart(out, time, e.getEventType(), e.getPersonId());
+			writeAttribute(out, EpisimInfectionEvent.CONTAINER, e.getContainerId().toString());
+			writeAttribute(out, EpisimInfectionEvent.INFECTOR, e.getInfectorId().toString());
+			writeAttribute(out, EpisimInfectionEvent.INFECTION_TYPE, e.getInfectionType());
+			writeAttribute(out, EpisimInfectionEvent.GROUP_SIZE, Integer.toString(e.getGroupSize()));
+			writeAttribute(out, EpisimInfectionEvent.PROBABILITY, Double.toString(e.getProbability()));
+			writeAttribute(out, EpisimInfectionEvent.VIRUS_STRAIN, e.getVirusStrain().toString());
+			out.append(" />\n");
+			return;
+		} else if (event instanceof EpisimContactEvent) {
+			EpisimContactEvent e = (EpisimContactEvent) event;
+			writeEventStart(out, time, e.getEventType(), e.getPersonId());
+			writeAttribute(out, ActivityEndEvent.ATTRIBUTE_ACTTYPE, e.getActType());
+			writeAttribute(out, EpisimContactEvent.CONTACT_PERSON, e.getContactPersonId().toString());
+			writeAttribute(out, EpisimContactEvent.DURATION, Double.toString(e.getDuration()));
+			writeAttribute(out, EpisimContactEvent.CONTAINER, e.getContainerId().toString());
+			writeAttribute(out, EpisimContactEvent.GROUP_SIZE, Integer.toString(e.getGroupSize()));
+			out.append(" />\n");
+			return;
+		} else if (event instanceof EpisimPersonStatusEvent) {
+			EpisimPersonStatusEvent e = (EpisimPersonStatusEvent) event;
+			writeEventStart(out, time, e.getEventType(), e.getPersonId());
+			if (e.getDiseaseStatus() != null)
+				writeAttribute(out, EpisimPersonStatusEvent.DISEASE_STATUS, e.getDiseaseStatus().name());
+			if (e.getQuarantineStatus() != null)
+				writeAttribute(out, EpisimPersonStatusEvent.QUARANTINE_STATUS, e.getQuarantineStatus().name());
+			out.append(" />\n");
+			return;
+		} else if (event instanceof EpisimTracingEvent) {
+			EpisimTracingEvent e = (EpisimTracingEvent) event;
+			writeEventStart(out, time, e.getEventType(), e.getPersonId());
+			writeAttribute(out, EpisimTracingEvent.CONTACT_PERSON, e.getContactPersonId().toString());
+			out.append(" />\n");
+			return;
+		}
+
 		out.append("\t<event ");
 		Map<String, String> attr = event.getAttributes();
 
@@ -83,6 +134,24 @@ public class EpisimWriter {
 		out.append(" />\n");
 	}
 
+	/**
+	 * Writes the attributes that are common for all events.
+	 */
+	private static void writeEventStart(final Appendable out, final double time, final String type, final Id<Person> personId) throws IOException {
+		out.append("\t<event ");
+		writeAttribute(out, Event.ATTRIBUTE_TIME, Double.toString(time));
+		writeAttribute(out, Event.ATTRIBUTE_TYPE, type);
+		if (personId != null)
+			writeAttribute(out, HasPersonId.ATTRIBUTE_PERSON, personId.toString());
+	}
+
+	private static void writeAttribute(final Appendable out, final String key, final String value) throws IOException {
+		out.append(key);
+		out.append("=\"");
+		writeAttributeValue(out, value);
+		out.append("\" ");
+	}
+
 	/**
 	 * Same logic as in {@link org.matsim.core.events.algorithms.EventWriterXML}. But we need to ability to write directly
 	 * to the target {@code out} without creating an intermediate representation.
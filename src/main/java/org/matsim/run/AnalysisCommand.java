@@ -31,6 +31,7 @@ import org.matsim.episim.analysis.CreateContactGraph;
 import org.matsim.episim.analysis.ExtractInfectionGraph;
 import org.matsim.episim.analysis.ExtractInfectionsByAge;
 import org.matsim.episim.analysis.RValuesFromEvents;
+import org.matsim.episim.events.EpisimEventsBinaryReader;
 import org.matsim.episim.events.EpisimEventsReader;
 import picocli.AutoComplete;
 import picocli.CommandLine;
@@ -127,7 +128,7 @@ public class AnalysisCommand implements Runnable {
 		List<Path> eventFiles;
 		try {
 			eventFiles = Files.list(eventFolder)
-					.filter(p -> p.getFileName().toString().contains("xml.gz"))
+					.filter(AnalysisCommand::isEventFile)
 					.collect(Collectors.toList());
 		} catch (IOException e) {
 			throw new java.io.UncheckedIOException(e);
@@ -136,7 +137,7 @@ public class AnalysisCommand implements Runnable {
 		for (Path p : eventFiles) {
 			try {
 				callback.accept(p);
-				new EpisimEventsReader(manager).readFile(p.toString());
+				readEvents(manager, p);
 			} catch (UncheckedIOException e) {
 				log.warn("Caught UncheckedIOException. Could not read file {}", p);
 			}
@@ -145,6 +146,24 @@ public class AnalysisCommand implements Runnable {
 		manager.finishProcessing();
 	}
 
+	/**
+	 * Whether a file contains episim events, either in xml or binary format.
+	 */
+	public static boolean isEventFile(Path path) {
+		String name = path.getFileName().toString();
+		return name.contains("xml.gz") || EpisimEventsBinaryReader.isBinary(name);
+	}
+
+	/**
+	 * Reads an event file with the reader matching its format.
+	 */
+	public static void readEvents(EventsManager manager, Path path) {
+		if (EpisimEventsBinaryReader.isBinary(path.getFileName().toString()))
+			new EpisimEventsBinaryReader(manager).readFile(path.toString());
+		else
+			new EpisimEventsReader(manager).readFile(path.toString());
+	}
+
 	/**
 	 * Tries to determine the run id from given folder and files present within it.
 	 *
@@ -40,6 +40,7 @@ import picocli.CommandLine;
 import javax.annotation.Nullable;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -105,7 +106,16 @@ public class RunParallel<T> implements Callable<Integer> {
 	@CommandLine.Option(names = "--no-reuse", defaultValue = "false", description = "Don't reuse the scenario and events for the runs.")
 	private boolean noReuse;
 
-	@CommandLine.Option(names = "--async-io", defaultValue = "false", description = "Write files asynchronously.")
+	public static final String OPTION_BRANCH = "--branch-day";
+	@CommandLine.Option(names = OPTION_BRANCH, defaultValue = "0", description = "Simulate the first run until this day once and continue all runs from its state. " +
+			"All runs must have an identical history until this day. (0=disabled)")
+	private int branchDay;
+
+	@CommandLine.Option(names = "--share-init", defaultValue = "false", description = "Initialize the data derived from the events only once and " +
+			"share it between all runs.")
+	private boolean shareInit;
+
+	@CommandLine.Option(names = "--async-io", defaultValue = "false", description = "Write files asynchronously, using one writer thread for each run.")
 	private boolean asyncIO;
 
 	@CommandLine.Option(names = "--silent", defaultValue = "false", description = "Disable info and warn logging")
@@ -149,7 +159,6 @@ public class RunParallel<T> implements Callable<Integer> {
 
 		Scenario scenario = null;
 		ReplayHandler replay = null;
-		AsyncEpisimWriter writer = asyncIO ? new AsyncEpisimWriter(threads) : null;
 
 		if (noReuse) {
 			log.info("Reusing scenario and events is disabled.");
@@ -162,6 +171,26 @@ public class RunParallel<T> implements Callable<Integer> {
 
 			scenario = injector.getInstance(Scenario.class);
 			replay = injector.getInstance(ReplayHandler.class);
+			replay.setShareInit(shareInit);
+		}
+
+		BranchSnapshot branch = null;
+		if (branchDay > 0) {
+			if (noReuse) {
+				log.error("Branching requires reusing the scenario.");
+				return 1;
+			}
+
+			branch = createBranch(prepare, scenario, replay);
+
+			for (PreparedRun.Run run : prepare.runs) {
+				try {
+					branch.checkHistory(run.config);
+				} catch (IllegalStateException e) {
+					log.error("Run {} can not be continued from the branch: {}", run.id, e.getMessage());
+					return 1;
+				}
+			}
 		}
 
 		BufferedWriter infoWriter = null;
@@ -204,7 +233,7 @@ public class RunParallel<T> implements Callable<Integer> {
 			run.config.setContext(context);
 
 			futures.add(CompletableFuture.runAsync(
-					new Task(((BatchRun) prepare.setup).getBindings(run.id, run.args), new ParallelModule(run.config, scenario, replay, writer), maxIterations), executor)
+					new Task(((BatchRun) prepare.setup).getBindings(run.id, run.args), new ParallelModule(run.config, scenario, replay, asyncIO), maxIterations, branch), executor)
 					.exceptionally(t -> {
 						log.error("Task {} failed", outputPath, t);
 						return null;
@@ -227,24 +256,57 @@ public class RunParallel<T> implements Callable<Integer> {
 		log.info("Finished all tasks");
 		executor.shutdown();
 
-		if (writer != null)
-			writer.close();
-
 		return 0;
 	}
 
+	/**
+	 * Simulate the base run, which uses the parameters of the first run, until the branch day.
+	 */
+	private BranchSnapshot createBranch(PreparedRun prepare, Scenario scenario, ReplayHandler replay) {
+
+		PreparedRun.Run first = prepare.runs.get(0);
+		Config config = first.config;
+
+		// Output of the base run is written into a separate directory and then copied for each run
+		String outputPath = output + "/" + prepare.getOutputName(first) + "-branch";
+		String outputDir = config.controler().getOutputDirectory();
+		String runId = config.controler().getRunId();
+
+		config.controler().setOutputDirectory(outputPath);
+		config.controler().setRunId(prepare.setup.getMetadata().name + "branch");
+
+		log.info("Simulating base run until day {} into {}", branchDay, outputPath);
+
+		Module bindings = ((BatchRun) prepare.setup).getBindings(first.id, first.args);
+		Module base;
+		if (bindings == null)
+			base = new EpisimModule();
+		else
+			base = Modules.override(new EpisimModule()).with(bindings);
+
+		Injector injector = Guice.createInjector(Modules.override(base).with(new ParallelModule(config, scenario, replay, false)));
+		BranchSnapshot branch = injector.getInstance(EpisimRunner.class).branch(branchDay);
+
+		log.info("Base run finished, continuing runs from day {}", branch.getIteration());
+
+		config.controler().setOutputDirectory(outputDir);
+		config.controler().setRunId(runId);
+
+		return branch;
+	}
+
 	private static final class ParallelModule extends AbstractModule {
 
 		private final Config config;
 		private final Scenario scenario;
 		private final ReplayHandler replay;
-		private final AsyncEpisimWriter writer;
+		private final boolean asyncIO;
 
-		private ParallelModule(Config config, @Nullable Scenario scenario, ReplayHandler replay, AsyncEpisimWriter writer) {
+		private ParallelModule(Config config, @Nullable Scenario scenario, ReplayHandler replay, boolean asyncIO) {
 			this.scenario = scenario;
 			this.config = config;
 			this.replay = replay;
-			this.writer = writer;
+			this.asyncIO = asyncIO;
 		}
 
 		@Override
@@ -256,8 +318,9 @@ public class RunParallel<T> implements Callable<Integer> {
 				bind(ReplayHandler.class).toInstance(replay);
 			}
 
-			if (writer != null) {
-				bind(EpisimWriter.class).toInstance(writer);
+			// each run has its own ring buffer and writer thread, so runs do not contend for one consumer
+			if (asyncIO) {
+				bind(EpisimWriter.class).toInstance(new AsyncEpisimWriter(1));
 			}
 		}
 	}
@@ -270,11 +333,14 @@ public class RunParallel<T> implements Callable<Integer> {
 		private final Module bindings;
 		private final ParallelModule module;
 		private final int maxIterations;
+		@Nullable
+		private final BranchSnapshot branch;
 
-		private Task(@Nullable Module bindings, ParallelModule module, int maxIterations) {
+		private Task(@Nullable Module bindings, ParallelModule module, int maxIterations, @Nullable BranchSnapshot branch) {
 			this.bindings = bindings;
 			this.module = module;
 			this.maxIterations = maxIterations;
+			this.branch = branch;
 		}
 
 		@Override
@@ -298,7 +364,19 @@ public class RunParallel<T> implements Callable<Integer> {
 
 			EpisimRunner runner = injector.getInstance(EpisimRunner.class);
 
-			runner.run(maxIterations);
+			try {
+				runner.run(maxIterations, branch);
+			} finally {
+				// wait until all output of this run is written, the writer thread also needs to be stopped if the run failed
+				EpisimWriter writer = injector.getInstance(EpisimWriter.class);
+				if (writer instanceof AsyncEpisimWriter) {
+					try {
+						((AsyncEpisimWriter) writer).close();
+					} catch (IOException e) {
+						log.error("Could not close writer", e);
+					}
+				}
+			}
 
 			log.info("Task finished: {}", this.module.config.controler().getOutputDirectory());
 		}
@@ -86,6 +86,12 @@ public class SyntheticBatch implements BatchRun<SyntheticBatch.Params> {
 
 		// group size will be persons / facilities
 
+		/**
+		 * Sigma of the log-normal distribution of facility sizes, with 0 all facilities have the same size.
+		 */
+		@Parameter(0)
+		public double facilitySizeSigma = Double.parseDouble(System.getProperty("syn.facilitySizeSigma", "0"));
+
 		@IntParameter(1)
 		public int numActivitiesPerDay = (int) Double.parseDouble(System.getProperty("syn.numActivitiesPerDay", "1"));
 
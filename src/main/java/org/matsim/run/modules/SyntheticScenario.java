@@ -39,6 +39,7 @@ import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.ReplayHandler;
+import org.matsim.episim.SusceptibleIndex;
 import org.matsim.episim.TracingConfigGroup;
 import org.matsim.episim.model.*;
 import org.matsim.episim.policy.FixedPolicy;
@@ -117,12 +118,15 @@ public class SyntheticScenario extends AbstractModule {
 		int homeId = 0;
 		int homeSize = 0;
 
+		double[] sizes = facilitySizes();
+
 		for (int i = 0; i < params.persons; i++) {
 			Id<Person> id = Id.createPersonId("person" + i);
 
 			ActivityEndEvent homeEvent1 = new ActivityEndEvent(8 * 3600, id, link, Id.create("home" + homeId, ActivityFacility.class), "home");
 
-			Id<ActivityFacility> facility = Id.create("outside" + i % params.numFacilities, ActivityFacility.class);
+			int f = sizes == null ? i % params.numFacilities : facilityIndex(sizes, (i + 0.5) / params.persons);
+			Id<ActivityFacility> facility = Id.create("outside" + f, ActivityFacility.class);
 
 			// outside from 9 to 17 o clock
 			int length = (17 - 9) / params.numActivitiesPerDay;
@@ -158,6 +162,37 @@ public class SyntheticScenario extends AbstractModule {
 		return new ReplayHandler(all);
 	}
 
+	/**
+	 * Cumulative share of persons for each facility, or null if all facilities have the same size.
+	 */
+	private double[] facilitySizes() {
+
+		if (params.facilitySizeSigma <= 0)
+			return null;
+
+		Random rnd = new Random(params.seed);
+		double[] sizes = new double[params.numFacilities];
+
+		double sum = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			sum += Math.exp(params.facilitySizeSigma * rnd.nextGaussian());
+			sizes[i] = sum;
+		}
+
+		for (int i = 0; i < sizes.length; i++)
+			sizes[i] /= sum;
+
+		return sizes;
+	}
+
+	/**
+	 * Facility of the person at quantile {@code q}.
+	 */
+	private static int facilityIndex(double[] sizes, double q) {
+		int idx = Arrays.binarySearch(sizes, q);
+		return Math.min(idx >= 0 ? idx : -idx - 1, sizes.length - 1);
+	}
+
 	@Provides
 	@Singleton
 	public InitialInfectionHandler initialInfectionHandler(ReplayHandler replayHandler) {
@@ -212,14 +247,15 @@ public class SyntheticScenario extends AbstractModule {
 		}
 
 		@Override
-		public int handleInfections(Map<Id<Person>, EpisimPerson> persons, int iteration) {
+		public int handleInfections(Map<Id<Person>, EpisimPerson> persons, SusceptibleIndex susceptible, int iteration) {
 
 			if (iteration != 1) return 0;
 
 			for (Map.Entry<Id<ActivityFacility>, Set<Id<Person>>> e : facilities.entrySet()) {
 				Iterator<Id<Person>> it = e.getValue().iterator();
 
-				for (int i = 0; i < this.n; i++) {
+				// facilities may be smaller than n, if sizes are not equal
+				for (int i = 0; i < this.n && it.hasNext(); i++) {
 					Id<Person> p = it.next();
 					EpisimPerson person = persons.get(p);
 					person.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.infectedButNotContagious);
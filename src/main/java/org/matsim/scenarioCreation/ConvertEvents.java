@@ -0,0 +1,95 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.scenarioCreation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.episim.BinaryEvents;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.ReplayHandler;
+import picocli.CommandLine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static picocli.CommandLine.*;
+
+/**
+ * Converts event files into the pre-processed {@link BinaryEvents} format, which can be used directly as episim input.
+ */
+@Command(
+		name = "convertEvents",
+		description = "Convert event files into binary episim events.",
+		mixinStandardHelpOptions = true
+)
+public class ConvertEvents implements Callable<Integer> {
+
+	private static final Logger log = LogManager.getLogger(ConvertEvents.class);
+
+	@Parameters(paramLabel = "file", arity = "1..*", description = "Path to event files")
+	private List<Path> input;
+
+	@Option(names = "--facilities-handling", description = "Facilities handling used for the scenario: ${COMPLETION-CANDIDATES}", defaultValue = "snz")
+	private EpisimConfigGroup.FacilitiesHandling facilitiesHandling;
+
+	@Option(names = "--output", description = "Output directory. Uses directory of input files if not given.")
+	private Path output;
+
+	public static void main(String[] args) {
+		System.exit(new CommandLine(new ConvertEvents()).execute(args));
+	}
+
+	@Override
+	public Integer call() throws Exception {
+
+		if (output != null && !Files.exists(output)) Files.createDirectories(output);
+
+		for (Path in : input) {
+
+			if (!Files.exists(in)) {
+				log.error("Input file {} does not exists", in);
+				return 2;
+			}
+
+			EpisimConfigGroup config = new EpisimConfigGroup();
+			config.setFacilitiesHandling(facilitiesHandling);
+			config.setWriteEvents(EpisimConfigGroup.WriteEvents.none);
+			config.addInputEventsFile(in.toString()).addDays(DayOfWeek.values());
+
+			// events are the same for all days
+			List<Event> events = new ReplayHandler(config, null).getEvents().get(DayOfWeek.MONDAY);
+
+			String name = in.getFileName().toString().replace(".gz", "").replace(".xml", "") + BinaryEvents.EXTENSION;
+			Path out = (output != null ? output : in.toAbsolutePath().getParent()).resolve(name);
+
+			log.info("Writing {} events to {}", events.size(), out);
+
+			BinaryEvents.write(events, out);
+		}
+
+		return 0;
+	}
+
+}
@@ -0,0 +1,191 @@
+package org.matsim.episim;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.util.Modules;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.utils.collections.IdMap;
+import org.matsim.episim.model.DefaultContactModel;
+import org.matsim.episim.model.VaccinationModel;
+import org.matsim.episim.model.testing.TestingModel;
+import org.matsim.run.batch.SyntheticBatch;
+import org.matsim.run.modules.SyntheticScenario;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the components of a simulation day on a {@link SyntheticScenario}, which does not need any input files.
+ * Each invocation simulates one day of a component, so that the state advances like in a real run.
+ * Large populations need a big heap, e.g. {@code -Xmx32g} for 5M persons.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class BenchmarkSynthetic {
+
+	@Param({"10000", "100000", "1000000", "5000000"})
+	private int persons;
+
+	/**
+	 * Sigma of the log-normal distribution of facility sizes.
+	 */
+	@Param({"0", "1.5"})
+	private double facilitySizeSigma;
+
+	private EpisimRunner runner;
+	private ReplayHandler replay;
+	private InfectionEventHandler handler;
+	private EpisimReporting reporting;
+	private TestingModel testingModel;
+	private VaccinationModel vaccinationModel;
+	private EpisimConfigGroup episimConfig;
+
+	private Map<Id<Person>, EpisimPerson> personMap;
+	private Map<String, EpisimReporting.InfectionReport> reports;
+	private int iteration = 1;
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options opt = new OptionsBuilder()
+				.include(BenchmarkSynthetic.class.getSimpleName())
+				.forks(1)
+				.build();
+
+		new Runner(opt).run();
+	}
+
+	@Setup
+	public void setup() throws IOException {
+
+		// on average 20 persons per facility
+		SyntheticBatch.Params params = new SyntheticBatch.Params(persons, 4, Math.max(1, persons / 20), 2, 1,
+				DefaultContactModel.class, 10);
+		params.seed = 1;
+		params.facilitySizeSigma = facilitySizeSigma;
+
+		Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(new SyntheticScenario(params)));
+
+		Path output = Files.createTempDirectory("benchmark");
+		injector.getInstance(Config.class).controler().setOutputDirectory(output.toString());
+
+		TestingConfigGroup testingConfig = injector.getInstance(TestingConfigGroup.class);
+		testingConfig.setStrategy(TestingConfigGroup.Strategy.ACTIVITIES);
+		testingConfig.setActivities(List.of("outside"));
+		testingConfig.setTestingRate(0.1);
+
+		VaccinationConfigGroup vaccinationConfig = injector.getInstance(VaccinationConfigGroup.class);
+		vaccinationConfig.setVaccinationCapacity_pers_per_day(Map.of(LocalDate.MIN, persons / 100));
+		vaccinationConfig.setReVaccinationCapacity_pers_per_day(Map.of(LocalDate.MIN, persons / 200));
+
+		runner = injector.getInstance(EpisimRunner.class);
+		replay = injector.getInstance(ReplayHandler.class);
+		handler = injector.getInstance(InfectionEventHandler.class);
+		reporting = injector.getInstance(EpisimReporting.class);
+		testingModel = injector.getInstance(TestingModel.class);
+		vaccinationModel = injector.getInstance(VaccinationModel.class);
+		episimConfig = injector.getInstance(EpisimConfigGroup.class);
+
+		handler.init(replay.getEvents());
+
+		personMap = new IdMap<>(Person.class);
+		for (EpisimPerson person : handler.getPersons())
+			personMap.put(person.getPersonId(), person);
+
+		// simulate a few days, so that the infection is spreading
+		for (; iteration <= 5; iteration++)
+			runner.doStep(replay, handler, reporting, iteration);
+
+		reports = reporting.createReports(handler.getPersons(), iteration);
+	}
+
+	/**
+	 * Whole simulation day.
+	 */
+	@Benchmark
+	public void step() {
+		runner.doStep(replay, handler, reporting, iteration++);
+	}
+
+	/**
+	 * Replay of the events of one day, without the updates at the start of the day.
+	 */
+	@Benchmark
+	public void replay(Day day) {
+		handler.replayDay(EpisimUtils.getDayOfWeek(episimConfig, iteration - 1));
+	}
+
+	/**
+	 * Updates at the start of the day, where only persons from the scheduled queue of the progression model are updated.
+	 * Also includes moving persons, testing, vaccination, disease import, reporting and the policy.
+	 */
+	@Benchmark
+	public void reset() {
+		handler.reset(iteration++);
+	}
+
+	@Benchmark
+	public void testing() {
+
+		testingModel.setIteration(iteration);
+		testingModel.beforeStateUpdates(personMap, iteration, handler.getReport());
+
+		for (EpisimPerson person : handler.getPersons())
+			testingModel.performTesting(person, iteration);
+
+		iteration++;
+	}
+
+	@Benchmark
+	public int vaccination() {
+		PersonStateStore state = handler.getPersonState();
+		int n = vaccinationModel.handleVaccination(state.getVaccinationPool(false), persons / 100, iteration, 0);
+		n += vaccinationModel.handleVaccination(state.getVaccinationPool(true), persons / 200, iteration, 0);
+		iteration++;
+		return n;
+	}
+
+	@Benchmark
+	public void createReports(Blackhole bh) {
+		bh.consume(reporting.createReports(handler.getPersons(), iteration));
+	}
+
+	/**
+	 * Writing of the daily output files. Writers may be asynchronous, in this case only the submission is measured.
+	 */
+	@Benchmark
+	public void writers() {
+		String date = reports.get("total").date;
+		reporting.reporting(reports, iteration, date);
+		reporting.reportTimeUse(episimConfig.createInitialRestrictions().keySet(), handler.getPersons(), iteration, date);
+		iteration++;
+	}
+
+	/**
+	 * Starts a new day before each invocation, which is not measured.
+	 */
+	@State(Scope.Benchmark)
+	public static class Day {
+
+		@Setup(Level.Invocation)
+		public void reset(BenchmarkSynthetic sim) {
+			sim.handler.reset(sim.iteration++);
+		}
+	}
+
+}
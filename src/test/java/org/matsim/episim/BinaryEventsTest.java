@@ -0,0 +1,139 @@
+package org.matsim.episim;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.util.Modules;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.core.controler.OutputDirectoryLogging;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BinaryEventsTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Before
+	public void setUp() {
+		OutputDirectoryLogging.catchLogEntries();
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+
+		List<Event> events = List.of(
+				new ActivityEndEvent(100, Id.createPersonId("p1"), null, Id.create("home1", ActivityFacility.class), "home"),
+				new PersonEntersVehicleEvent(200, Id.createPersonId("p1"), Id.create("bus", Vehicle.class)),
+				new PersonEntersVehicleEvent(250, Id.createPersonId("p2"), Id.create("bus", Vehicle.class)),
+				new PersonLeavesVehicleEvent(300.5, Id.createPersonId("p1"), Id.create("bus", Vehicle.class)),
+				new ActivityStartEvent(400, Id.createPersonId("p1"), null, Id.create("work", ActivityFacility.class), "work", null)
+		);
+
+		Path path = Path.of(utils.getOutputDirectory(), "events" + BinaryEvents.EXTENSION);
+		BinaryEvents.write(events, path);
+
+		BinaryEvents read = BinaryEvents.read(path);
+
+		assertThat(read).hasSize(events.size());
+		assertThat(read.get(3).getTime()).isEqualTo(300.5);
+
+		for (int i = 0; i < events.size(); i++) {
+			Event expected = events.get(i);
+			Event actual = read.get(i);
+
+			assertThat(actual).isInstanceOf(expected.getClass());
+			assertThat(actual.getTime()).isEqualTo(expected.getTime());
+		}
+
+		ActivityStartEvent start = (ActivityStartEvent) read.get(4);
+		assertThat(start.getPersonId()).isSameAs(Id.createPersonId("p1"));
+		assertThat(start.getFacilityId()).isSameAs(Id.create("work", ActivityFacility.class));
+		assertThat(start.getActType()).isEqualTo("work");
+
+		PersonEntersVehicleEvent enter = (PersonEntersVehicleEvent) read.get(2);
+		assertThat(enter.getPersonId()).isSameAs(Id.createPersonId("p2"));
+		assertThat(enter.getVehicleId()).isSameAs(Id.create("bus", Vehicle.class));
+	}
+
+	/**
+	 * Runs a few days of the scenario, so that both handlers are in the same state with infections present.
+	 */
+	private Injector run(String output) {
+
+		Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(new ParallelReplayTest.TestScenario(output)));
+		injector.getInstance(EpisimRunner.class).run(10);
+
+		return injector;
+	}
+
+	@Test
+	public void replaySameAsEvents() throws IOException {
+
+		Injector injector = run(utils.getOutputDirectory() + "events/");
+		Injector other = run(utils.getOutputDirectory() + "binary/");
+
+		List<Event> events = injector.getInstance(ReplayHandler.class).getEvents().get(DayOfWeek.MONDAY);
+
+		Path path = Path.of(utils.getOutputDirectory(), "day" + BinaryEvents.EXTENSION);
+		BinaryEvents.write(events, path);
+		BinaryEvents binary = BinaryEvents.read(path);
+
+		InfectionEventHandler handler = injector.getInstance(InfectionEventHandler.class);
+		InfectionEventHandler binaryHandler = other.getInstance(InfectionEventHandler.class);
+
+		handler.reset(11);
+		binaryHandler.reset(11);
+
+		for (Event e : events) {
+			if (e instanceof ActivityStartEvent) {
+				handler.handleEvent((ActivityStartEvent) e);
+			} else if (e instanceof ActivityEndEvent) {
+				handler.handleEvent((ActivityEndEvent) e);
+			} else if (e instanceof PersonEntersVehicleEvent) {
+				handler.handleEvent((PersonEntersVehicleEvent) e);
+			} else {
+				handler.handleEvent((PersonLeavesVehicleEvent) e);
+			}
+		}
+
+		binary.replay(binaryHandler);
+
+		List<EpisimPerson> persons = new ArrayList<>(handler.getPersons());
+		List<EpisimPerson> binaryPersons = new ArrayList<>(binaryHandler.getPersons());
+
+		assertThat(binaryPersons).hasSameSizeAs(persons);
+
+		int infected = 0;
+		for (int i = 0; i < persons.size(); i++) {
+			EpisimPerson p = persons.get(i);
+			EpisimPerson b = binaryPersons.get(i);
+
+			assertThat(b.getPersonId()).isEqualTo(p.getPersonId());
+			assertThat(b.getDiseaseStatus()).as("Disease status of %s", p.getPersonId()).isEqualTo(p.getDiseaseStatus());
+			assertThat(b.getCurrentPositionInTrajectory()).as("Position of %s", p.getPersonId()).isEqualTo(p.getCurrentPositionInTrajectory());
+			assertThat(b.isInContainer()).isEqualTo(p.isInContainer());
+
+			if (p.isInContainer())
+				assertThat(b.getCurrentContainer().getContainerId()).isEqualTo(p.getCurrentContainer().getContainerId());
+
+			if (p.getDiseaseStatus() != EpisimPerson.DiseaseStatus.susceptible)
+				infected++;
+		}
+
+		assertThat(infected).isGreaterThan(0);
+	}
+
+}
@@ -0,0 +1,388 @@
+package org.matsim.episim;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.google.inject.util.Modules;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.OutputDirectoryLogging;
+import org.matsim.episim.model.ContactModel;
+import org.matsim.episim.model.SymmetricContactModel;
+import org.matsim.episim.policy.FixedPolicy;
+import org.matsim.episim.policy.Restriction;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.run.batch.SyntheticBatch;
+import org.matsim.run.modules.SyntheticScenario;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoPresenceNetworkTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Before
+	public void setUp() {
+		OutputDirectoryLogging.catchLogEntries();
+	}
+
+	/**
+	 * Runs a scenario with the symmetric contact model, either from the events or from the co-presence network.
+	 */
+	private static InfectionEventHandler run(Module scenario, boolean network, int days, Consumer<Injector> setup) {
+
+		Injector injector = Guice.createInjector(Modules.override(Modules.override(new EpisimModule()).with(scenario))
+				.with(binder -> binder.bind(ContactModel.class).to(SymmetricContactModel.class).in(Singleton.class)));
+
+		injector.getInstance(EpisimConfigGroup.class).setContactNetwork(network);
+		setup.accept(injector);
+
+		injector.getInstance(EpisimRunner.class).run(days);
+
+		return injector.getInstance(InfectionEventHandler.class);
+	}
+
+	/**
+	 * Traces all contacts. Random numbers are drawn in a different order by the network,
+	 * so contacts are made independent of them: nobody gets infected and all persons share one space.
+	 */
+	private static void traceAll(Injector injector) {
+		EpisimConfigGroup episimConfig = injector.getInstance(EpisimConfigGroup.class);
+		episimConfig.setCalibrationParameter(0);
+		episimConfig.setInitialInfections(0);
+		episimConfig.getInfectionParams().forEach(p -> p.setSpacesPerFacility(1));
+
+		TracingConfigGroup tracingConfig = injector.getInstance(TracingConfigGroup.class);
+		tracingConfig.setPutTraceablePersonsInQuarantineAfterDay(1);
+		tracingConfig.setMinContactDuration_sec(0);
+	}
+
+	/**
+	 * Restrictions that change every day, but do not depend on random numbers.
+	 */
+	private static FixedPolicy.ConfigBuilder changingPolicy() {
+		return FixedPolicy.config()
+				.restrict(2, Restriction.of(0), "leisure")
+				.restrict(3, Restriction.ofClosingHours(12, 15), "shop", "errands")
+				.restrict(4, Restriction.of(1), "leisure")
+				.restrict(4, Restriction.of(0), "edu");
+	}
+
+	@Test
+	public void sameContactsAsEvents() {
+
+		List<EpisimPerson> events = new ArrayList<>(run(new ParallelReplayTest.TestScenario(utils.getOutputDirectory() + "events/"),
+				false, 1, CoPresenceNetworkTest::traceAll).getPersons());
+		List<EpisimPerson> network = new ArrayList<>(run(new ParallelReplayTest.TestScenario(utils.getOutputDirectory() + "network/"),
+				true, 1, CoPresenceNetworkTest::traceAll).getPersons());
+
+		assertThat(network).hasSameSizeAs(events);
+		assertThat(compareContacts(events, network, 1)).isGreaterThan(0);
+	}
+
+	@Test
+	public void sameContactsOverDays() {
+
+		int days = 4;
+		Consumer<Injector> setup = injector -> {
+			traceAll(injector);
+			injector.getInstance(EpisimConfigGroup.class).setPolicy(FixedPolicy.class, changingPolicy().build());
+		};
+
+		List<EpisimPerson> events = new ArrayList<>(run(new ParallelReplayTest.TestScenario(utils.getOutputDirectory() + "events/"),
+				false, days, setup).getPersons());
+		List<EpisimPerson> network = new ArrayList<>(run(new ParallelReplayTest.TestScenario(utils.getOutputDirectory() + "network/"),
+				true, days, setup).getPersons());
+
+		assertThat(network).hasSameSizeAs(events);
+
+		// the state at the start of each day is derived from the previous weekday, which is exact when all days use the same events
+		for (int day = 2; day <= days; day++) {
+			assertThat(compareContacts(events, network, day)).as("Contacts since day %d", day).isGreaterThan(0);
+		}
+	}
+
+	/**
+	 * Compares the contacts whose last occurrence was on or after {@code day}.
+	 *
+	 * @return number of compared contacts
+	 */
+	private static int compareContacts(List<EpisimPerson> events, List<EpisimPerson> network, int day) {
+
+		// start offset is 0 for the default start date
+		double after = EpisimUtils.getCorrectedTime(0, 0, day);
+
+		int contacts = 0;
+		for (int i = 0; i < events.size(); i++) {
+			assertThat(network.get(i).getPersonId()).isEqualTo(events.get(i).getPersonId());
+
+			// groups are evaluated in a different order than the events, so only the set of contacts is the same
+			List<Id<Person>> expected = ids(events.get(i).getTraceableContactPersons(after));
+			assertThat(ids(network.get(i).getTraceableContactPersons(after)))
+					.as("Contacts of %s on day %d", events.get(i).getPersonId(), day)
+					.containsExactlyInAnyOrderElementsOf(expected);
+
+			contacts += expected.size();
+		}
+
+		return contacts;
+	}
+
+	/**
+	 * Until the first day with contagious persons, both modes draw the same random numbers. On this day, the number of draws differs,
+	 * but with one space, deterministic restrictions and a transmission probability of one, the infected persons are the same.
+	 * The infector of each person may still differ, because groups are evaluated in a different order.
+	 * All trajectories of the synthetic scenario start and end at home, so that no contacts happen at the start of a day,
+	 * which the events evaluate while the progression is updated.
+	 */
+	@Test
+	public void sameInfectionsOnFirstContagiousDay() throws IOException {
+
+		int days = 10;
+		SyntheticBatch.Params params = new SyntheticBatch.Params(1000, 3, 20, 2, 1, SymmetricContactModel.class, 3);
+
+		Path events = Path.of(utils.getOutputDirectory(), "events");
+		Path network = Path.of(utils.getOutputDirectory(), "network");
+
+		for (Path output : List.of(events, network)) {
+			run(new SyntheticScenario(params), output == network, days, injector -> {
+				injector.getInstance(Config.class).controler().setOutputDirectory(output.toString());
+
+				EpisimConfigGroup episimConfig = injector.getInstance(EpisimConfigGroup.class);
+				episimConfig.setCalibrationParameter(1e6);
+				episimConfig.getInfectionParams().forEach(p -> p.setSpacesPerFacility(1));
+				episimConfig.setPolicy(FixedPolicy.class, FixedPolicy.config()
+						.restrict(1, Restriction.ofClosedFacilities(List.of("outside0", "outside1", "outside2")), "outside")
+						.restrict(3, Restriction.ofClosingHours(9, 13), "outside")
+						.restrict(5, Restriction.of(0), "outside")
+						.restrict(7, Restriction.of(1), "outside")
+						.build());
+			});
+		}
+
+		List<Map<String, String>> expected = rows(events.resolve("infections.txt"));
+		List<Map<String, String>> actual = rows(network.resolve("infections.txt"));
+
+		int first = -1;
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i)).as("Infections on day %d", i + 1).isEqualTo(expected.get(i));
+
+			if (Long.parseLong(expected.get(i).get("nContagious")) + Long.parseLong(expected.get(i).get("nShowingSymptoms")) > 0) {
+				first = i;
+				break;
+			}
+		}
+
+		assertThat(first).as("First contagious day").isGreaterThanOrEqualTo(0);
+
+		String date = expected.get(first).get("date");
+		Set<String> infected = infected(events.resolve("infectionEvents.txt"), date);
+
+		assertThat(infected).isNotEmpty();
+		assertThat(infected(network.resolve("infectionEvents.txt"), date))
+				.as("Infected persons on %s", date)
+				.containsExactlyInAnyOrderElementsOf(infected);
+	}
+
+	/**
+	 * With several spaces and restrictions that depend on random numbers, both modes evaluate the same contacts, but draw the random
+	 * numbers in a different order. Afterwards, the runs only agree statistically.
+	 */
+	@Test
+	public void boundedDivergence() throws IOException {
+
+		int days = 14;
+		Consumer<Injector> setup = injector -> injector.getInstance(EpisimConfigGroup.class).setPolicy(FixedPolicy.class, FixedPolicy.config()
+				.restrict(3, 0.5, "work", "leisure", "shop")
+				.restrict(5, Restriction.ofClosingHours(21, 5), "leisure")
+				.restrict(7, Restriction.of(0), "edu")
+				.restrict(10, Restriction.of(0.8), "edu")
+				.build());
+
+		Path events = Path.of(utils.getOutputDirectory(), "events");
+		Path network = Path.of(utils.getOutputDirectory(), "network");
+
+		run(new ParallelReplayTest.TestScenario(events + "/"), false, days, setup);
+		run(new ParallelReplayTest.TestScenario(network + "/"), true, days, setup);
+
+		List<Map<String, String>> expected = rows(events.resolve("infections.txt"));
+		List<Map<String, String>> actual = rows(network.resolve("infections.txt"));
+
+		assertThat(actual).hasSameSizeAs(expected);
+
+		long a = Long.parseLong(expected.get(days - 1).get("nInfectedCumulative"));
+		long b = Long.parseLong(actual.get(days - 1).get("nInfectedCumulative"));
+
+		// more than the initial infections
+		assertThat(a).isGreaterThan(10);
+		assertThat(b).isBetween(a / 2, a * 2);
+	}
+
+	/**
+	 * The network assumes that each day starts where the previous weekday ended. When a day is replayed with the events of another weekday,
+	 * the day afterwards starts from a different state, but the approximation only lasts for this one day.
+	 */
+	@Test
+	public void previousWeekdayApproximation() {
+
+		// 1970-01-01 is a thursday, the saturday on day 3 is replayed with the events of a sunday
+		Map<LocalDate, DayOfWeek> inputDays = Map.of(LocalDate.of(1970, 1, 3), DayOfWeek.SUNDAY);
+
+		for (int days = 3; days <= 5; days++) {
+			String output = utils.getOutputDirectory() + "days" + days;
+
+			EpisimPerson[] events = persons(run(new WeekScenario(output + "/events/", inputDays), false, days, CoPresenceNetworkTest::traceAll));
+			EpisimPerson[] network = persons(run(new WeekScenario(output + "/network/", inputDays), true, days, CoPresenceNetworkTest::traceAll));
+
+			double after = EpisimUtils.getCorrectedTime(0, 0, days == 3 ? 1 : days);
+
+			List<Id<Person>> expected = ids(events[0].getTraceableContactPersons(after));
+			List<Id<Person>> actual = ids(network[0].getTraceableContactPersons(after));
+
+			if (days == 4) {
+				// both persons stayed in the bar overnight, but the network assumes the previous day to be a regular saturday
+				assertThat(expected).as("Events on day %d", days).containsExactly(events[1].getPersonId());
+				assertThat(actual).as("Network on day %d", days).isEmpty();
+			} else
+				assertThat(actual).as("Network on day %d", days).containsExactly(events[1].getPersonId())
+						.isEqualTo(expected);
+		}
+	}
+
+	private static EpisimPerson[] persons(InfectionEventHandler handler) {
+		return handler.getPersons().stream()
+				.sorted(Comparator.comparing(EpisimPerson::getPersonId))
+				.toArray(EpisimPerson[]::new);
+	}
+
+	/**
+	 * Reads the total rows of a report, one for each day.
+	 */
+	private static List<Map<String, String>> rows(Path path) throws IOException {
+		List<String> lines = Files.readAllLines(path);
+		String[] header = lines.get(0).split("\t");
+
+		List<Map<String, String>> rows = new ArrayList<>();
+		for (String line : lines.subList(1, lines.size())) {
+			String[] row = line.split("\t", -1);
+			Map<String, String> values = new LinkedHashMap<>();
+			for (int i = 0; i < header.length; i++)
+				values.put(header[i], row[i]);
+
+			if (!values.containsKey("district") || values.get("district").equals("total"))
+				rows.add(values);
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Persons infected on a certain date.
+	 */
+	private static Set<String> infected(Path path, String date) throws IOException {
+		return rows(path).stream()
+				.filter(row -> row.get("date").equals(date))
+				.map(row -> row.get("infected"))
+				.collect(Collectors.toSet());
+	}
+
+	private static List<Id<Person>> ids(List<EpisimPerson> persons) {
+		return persons.stream().map(EpisimPerson::getPersonId).collect(Collectors.toList());
+	}
+
+	/**
+	 * Two persons that work together on regular days and stay overnight in a bar on sundays.
+	 */
+	private static final class WeekScenario extends AbstractModule {
+
+		private final String output;
+		private final Map<LocalDate, DayOfWeek> inputDays;
+
+		private WeekScenario(String output, Map<LocalDate, DayOfWeek> inputDays) {
+			this.output = output;
+			this.inputDays = inputDays;
+		}
+
+		@Provides
+		@Singleton
+		public Config config() {
+			Config config = ConfigUtils.createConfig(new EpisimConfigGroup());
+			EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+
+			episimConfig.setFacilitiesHandling(EpisimConfigGroup.FacilitiesHandling.snz);
+			episimConfig.setSampleSize(1);
+			episimConfig.setInitialInfections(0);
+			episimConfig.setInputDays(inputDays);
+
+			episimConfig.getOrAddContainerParams("home");
+			episimConfig.getOrAddContainerParams("work");
+			episimConfig.getOrAddContainerParams("leisure");
+			episimConfig.getOrAddContainerParams("quarantine_home");
+
+			config.controler().setOutputDirectory(output);
+
+			return config;
+		}
+
+		@Provides
+		@Singleton
+		public ReplayHandler replayHandler() {
+
+			List<Event> regular = new ArrayList<>();
+			List<Event> sunday = new ArrayList<>();
+
+			for (String name : new String[]{"a", "b"}) {
+				Id<Person> person = Id.createPersonId(name);
+				int offset = name.equals("a") ? 0 : 1;
+
+				regular.add(end(8, person, "home_" + name, "home"));
+				regular.add(start(9, person, "work", "work"));
+				regular.add(end(17, person, "work", "work"));
+				regular.add(start(18, person, "home_" + name, "home"));
+
+				sunday.add(end(10, person, "home_" + name, "home"));
+				sunday.add(start(20 + offset, person, "bar", "leisure"));
+			}
+
+			regular.sort(Comparator.comparingDouble(Event::getTime));
+			sunday.sort(Comparator.comparingDouble(Event::getTime));
+
+			Map<DayOfWeek, List<Event>> all = new EnumMap<>(DayOfWeek.class);
+			for (DayOfWeek day : DayOfWeek.values())
+				all.put(day, day == DayOfWeek.SUNDAY ? sunday : regular);
+
+			return new ReplayHandler(all);
+		}
+
+		private static ActivityStartEvent start(int hour, Id<Person> person, String facility, String actType) {
+			return new ActivityStartEvent(hour * 3600., person, Id.create("link", Link.class), Id.create(facility, ActivityFacility.class), actType, null);
+		}
+
+		private static ActivityEndEvent end(int hour, Id<Person> person, String facility, String actType) {
+			return new ActivityEndEvent(hour * 3600., person, Id.create("link", Link.class), Id.create(facility, ActivityFacility.class), actType);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.matsim.episim;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.google.inject.util.Modules;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.OutputDirectoryLogging;
+import org.matsim.episim.model.ConfigurableProgressionModel;
+import org.matsim.episim.model.ProgressionModel;
+import org.matsim.run.modules.OpenBerlinScenario;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompiledEventsTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Before
+	public void setUp() {
+		OutputDirectoryLogging.catchLogEntries();
+	}
+
+	/**
+	 * Runs the scenario with contact tracing from the first day on and returns the event handler.
+	 */
+	private InfectionEventHandler run(String output, EpisimConfigGroup.WriteEvents writeEvents) {
+
+		Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(new TestScenario(output)));
+
+		injector.getInstance(EpisimConfigGroup.class).setWriteEvents(writeEvents);
+		injector.getInstance(TracingConfigGroup.class).setPutTraceablePersonsInQuarantineAfterDay(1);
+		injector.getInstance(EpisimRunner.class).run(5);
+
+		return injector.getInstance(InfectionEventHandler.class);
+	}
+
+	@Test
+	public void sameAsEvents() {
+
+		String compiledOutput = utils.getOutputDirectory() + "compiled/";
+		String eventsOutput = utils.getOutputDirectory() + "events/";
+
+		// input events can not be written from compiled events, so the event objects are replayed
+		InfectionEventHandler compiled = run(compiledOutput, EpisimConfigGroup.WriteEvents.episim);
+		InfectionEventHandler events = run(eventsOutput, EpisimConfigGroup.WriteEvents.all);
+
+		assertThat(compiled.isCompiled()).isTrue();
+		assertThat(events.isCompiled()).isFalse();
+
+		for (String name : new String[]{"infections.txt", "infectionEvents.txt"}) {
+			assertThat(new File(compiledOutput, name))
+					.hasSameTextualContentAs(new File(eventsOutput, name));
+		}
+
+		List<EpisimPerson> persons = new ArrayList<>(compiled.getPersons());
+		List<EpisimPerson> other = new ArrayList<>(events.getPersons());
+
+		assertThat(persons).hasSameSizeAs(other);
+
+		int contacts = 0;
+		for (int i = 0; i < persons.size(); i++) {
+			assertThat(persons.get(i).getPersonId()).isEqualTo(other.get(i).getPersonId());
+
+			List<Id<Person>> expected = ids(other.get(i).getTraceableContactPersons(0));
+			assertThat(ids(persons.get(i).getTraceableContactPersons(0)))
+					.isEqualTo(expected);
+
+			contacts += expected.size();
+		}
+
+		assertThat(contacts).isGreaterThan(0);
+	}
+
+	private static List<Id<Person>> ids(List<EpisimPerson> persons) {
+		return persons.stream().map(EpisimPerson::getPersonId).collect(Collectors.toList());
+	}
+
+	private static final class TestScenario extends AbstractModule {
+
+		private final String output;
+
+		private TestScenario(String output) {
+			this.output = output;
+		}
+
+		@Override
+		protected void configure() {
+			bind(ProgressionModel.class).to(ConfigurableProgressionModel.class).in(Singleton.class);
+		}
+
+		@Provides
+		@Singleton
+		public Config config() {
+			Config config = ConfigUtils.createConfig(new EpisimConfigGroup());
+			EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+
+			episimConfig.setInputEventsFile(
+					"https://svn.vsp.tu-berlin.de/repos/public-svn/matsim/scenarios/countries/de/berlin/berlin-v5.4-1pct/output-berlin-v5.4-1pct/berlin-v5.4-1pct.output_events_for_episim.xml.gz");
+
+			episimConfig.setFacilitiesHandling(EpisimConfigGroup.FacilitiesHandling.bln);
+			episimConfig.setSampleSize(0.01);
+			episimConfig.setCalibrationParameter(2);
+
+			config.controler().setOutputDirectory(output);
+
+			OpenBerlinScenario.addDefaultParams(episimConfig);
+
+			return config;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContactTraceLogTest {
+
+	private static final double DAY = 24 * 3600;
+
+	private ContactTraceLog log;
+
+	@Before
+	public void setup() {
+		log = new ContactTraceLog();
+	}
+
+	@Test
+	public void latestContact() {
+
+		log.add(0, 2, 100);
+		log.add(0, 1, 200);
+		log.add(0, 2, 2 * DAY + 100);
+		log.add(1, 0, 200);
+
+		assertThat(log.getContacts(0, 0))
+				.containsOnlyKeys(1, 2)
+				.containsEntry(1, 200d)
+				.containsEntry(2, 2 * DAY + 100);
+
+		// ordered by first contact
+		assertThat(log.getContacts(0, 0).keySet())
+				.containsExactly(2, 1);
+
+		assertThat(log.getContacts(0, DAY).keySet())
+				.containsExactly(2);
+
+		assertThat(log.getContacts(1, 0).keySet())
+				.containsExactly(0);
+
+		assertThat(log.getContacts(2, 0))
+				.isEmpty();
+	}
+
+	@Test
+	public void repeatedContacts() {
+
+		// interleaved contacts on the same day only keep one record per pair
+		for (int i = 0; i < 100; i++) {
+			log.add(0, 1, i);
+			log.add(0, 2, i);
+			log.add(0, 3, i);
+		}
+
+		assertThat(log.size()).isEqualTo(3);
+		assertThat(log.getContacts(0, 0).keySet()).containsExactly(1, 2, 3);
+		assertThat(log.getContacts(0, 99)).containsEntry(1, 99d);
+
+		// contacts on later days move the record
+		for (int day = 1; day < 10; day++)
+			log.add(0, 2, day * DAY);
+
+		assertThat(log.size()).isEqualTo(3);
+		assertThat(log.getContacts(0, 0).keySet()).containsExactly(1, 2, 3);
+	}
+
+	@Test
+	public void clear() {
+
+		for (int day = 0; day < 10; day++) {
+			log.add(0, day + 1, day * DAY + 3600);
+			log.add(1, day + 1, day * DAY + 3600);
+		}
+
+		assertThat(log.size()).isEqualTo(20);
+
+		assertThat(log.clear(0, 5 * DAY)).isTrue();
+		assertThat(log.clear(0, 5 * DAY)).isFalse();
+
+		// contacts of other persons are kept
+		assertThat(log.size()).isEqualTo(15);
+		assertThat(log.getContacts(0, 0).keySet())
+				.containsExactly(6, 7, 8, 9, 10);
+		assertThat(log.getContacts(1, 0))
+				.hasSize(10);
+
+		// a cleared contact is added at the end again
+		log.add(0, 1, 10 * DAY);
+		assertThat(log.getContacts(0, 0).keySet())
+				.containsExactly(6, 7, 8, 9, 10, 1);
+
+		// contacts that are not cleared keep their position
+		log.add(1, 1, 10 * DAY);
+		assertThat(log.clear(1, 5 * DAY)).isTrue();
+		assertThat(log.getContacts(1, 0).keySet())
+				.containsExactly(1, 6, 7, 8, 9, 10);
+	}
+
+	@Test
+	public void expire() {
+
+		for (int day = 0; day < 10; day++) {
+			log.add(0, day + 1, day * DAY + 3600);
+			log.add(1, day + 1, day * DAY + 3600);
+		}
+
+		// contact on a later day is not expired with its first day
+		log.add(0, 1, 9 * DAY);
+
+		IntSet changed = new IntOpenHashSet();
+		log.expire(5 * DAY + 100, changed::add);
+
+		assertThat(changed).containsExactlyInAnyOrder(0, 1);
+		assertThat(log.size()).isEqualTo(11);
+		assertThat(log.getContacts(0, 0).keySet())
+				.containsExactly(1, 6, 7, 8, 9, 10);
+		assertThat(log.getContacts(1, 0).keySet())
+				.containsExactly(6, 7, 8, 9, 10);
+
+		changed.clear();
+		log.expire(5 * DAY + 100, changed::add);
+		assertThat(changed).isEmpty();
+
+		// removed records are reused
+		log.add(2, 0, 10 * DAY);
+		assertThat(log.getContacts(2, 0).keySet()).containsExactly(0);
+
+		log.expire(Double.POSITIVE_INFINITY, changed::add);
+		assertThat(log.size()).isEqualTo(0);
+		assertThat(changed).containsExactlyInAnyOrder(0, 1, 2);
+	}
+
+	@Test
+	public void remove() {
+
+		log.add(0, 1, 100);
+		log.add(1, 0, 100);
+		log.add(0, 2, DAY + 100);
+
+		log.remove(0);
+
+		assertThat(log.getContacts(0, 0)).isEmpty();
+		assertThat(log.getContacts(1, 0).keySet()).containsExactly(0);
+
+		log.add(0, 3, DAY + 200);
+		assertThat(log.getContacts(0, 0).keySet()).containsExactly(3);
+		assertThat(log.size()).isEqualTo(2);
+	}
+}
@@ -3,12 +3,17 @@ package org.matsim.episim;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.utils.objectattributes.attributable.Attributes;
 
 import java.io.*;
+import java.time.DayOfWeek;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class EpisimPersonTest {
 
@@ -67,6 +72,115 @@ public class EpisimPersonTest {
 
 	}
 
+	@Test
+	public void sharedState() {
+
+		PersonStateStore state = new PersonStateStore(1);
+		EpisimReporting reporting = EpisimTestUtils.getReporting();
+
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("s1"), new Attributes(), true, reporting, state);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("s2"), new Attributes(), true, reporting, state);
+
+		p1.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.contagious);
+		p2.setQuarantineStatus(EpisimPerson.QuarantineStatus.atHome, 3);
+
+		assertThat(state.size()).isEqualTo(2);
+
+		assertThat(p1.getDiseaseStatus()).isEqualTo(EpisimPerson.DiseaseStatus.contagious);
+		assertThat(p1.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.no);
+		assertThat(p1.hadDiseaseStatus(EpisimPerson.DiseaseStatus.contagious)).isTrue();
+
+		assertThat(p2.getDiseaseStatus()).isEqualTo(EpisimPerson.DiseaseStatus.susceptible);
+		assertThat(p2.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.atHome);
+		assertThat(p2.hadDiseaseStatus(EpisimPerson.DiseaseStatus.contagious)).isFalse();
+		assertThat(p2.daysSinceQuarantine(5)).isEqualTo(2);
+		assertThat(p2.daysSinceTest(5)).isEqualTo(Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void activityMask() {
+
+		EpisimPerson p = EpisimTestUtils.createPerson(EpisimTestUtils.getReporting());
+		List<String> types = EpisimTestUtils.TEST_CONFIG.getContainerTypes();
+
+		for (String act : List.of("home", "work", "leis", "home")) {
+			p.addToTrajectory(new EpisimPerson.Activity(act, EpisimTestUtils.TEST_CONFIG.selectInfectionParams(act), -1, types.indexOf(act)));
+		}
+
+		for (DayOfWeek day : DayOfWeek.values()) {
+			p.setStartOfDay(day, day == DayOfWeek.SUNDAY ? 3 : 0);
+			p.setEndOfDay(day, 3);
+		}
+
+		p.compileActivityMask();
+
+		assertThat(p.hasActivityMask()).isTrue();
+		assertThat(p.getActivityMask(DayOfWeek.MONDAY))
+				.isEqualTo((1L << types.indexOf("home")) | (1L << types.indexOf("work")) | (1L << types.indexOf("leis")));
+		assertThat(p.getActivityMask(DayOfWeek.SUNDAY)).isEqualTo(0);
+
+		// same result as matching activities
+		assertThat(p.matchActivities(DayOfWeek.SUNDAY, Set.of("work"), (act, v) -> true, false)).isFalse();
+		assertThat(p.matchActivities(DayOfWeek.MONDAY, Set.of("work"), (act, v) -> true, false)).isTrue();
+	}
+
+	@Test
+	public void householdId() {
+
+		PersonStateStore state = new PersonStateStore(3);
+		EpisimReporting reporting = EpisimTestUtils.getReporting();
+
+		Attributes home = new Attributes();
+		home.putAttribute("homeId", "h1");
+
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("h1"), new Attributes(), true, reporting, state);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("h2"), home, true, reporting, state);
+		EpisimPerson p3 = new EpisimPerson(Id.createPersonId("h3"), home, true, reporting, state);
+
+		// person without home uses its id
+		assertThat(p1.getHouseholdId()).isEqualTo(p2.getHouseholdId());
+		assertThat(p2.getHouseholdId()).isEqualTo(p3.getHouseholdId());
+
+		EpisimPerson p4 = new EpisimPerson(Id.createPersonId("h4"), new Attributes(), true, reporting, state);
+		assertThat(p4.getHouseholdId()).isNotEqualTo(p1.getHouseholdId());
+		assertThat(state.getNumHouseholds()).isEqualTo(2);
+	}
+
+	@Test
+	public void attributeColumns() {
+
+		AttributeRegistry registry = new AttributeRegistry();
+		int load = registry.declare("viralLoad", 1f);
+		assertThat(registry.declare("viralLoad", 2f)).isEqualTo(load);
+
+		PersonStateStore state = new PersonStateStore(1, registry);
+		EpisimReporting reporting = EpisimTestUtils.getReporting();
+
+		Attributes attrs = new Attributes();
+		attrs.putAttribute("viralLoad", 2.5);
+		attrs.putAttribute("district", "Berlin");
+		attrs.putAttribute("homeId", "h1");
+		attrs.putAttribute("age", 42);
+
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("a1"), attrs, true, reporting, state);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("a2"), new Attributes(), true, reporting, state);
+
+		assertThat(p1.getAttribute(load)).isEqualTo(2.5f);
+		assertThat(p1.getDistrict()).isEqualTo("Berlin");
+		assertThat(p1.getHomeId()).isEqualTo("h1");
+		assertThat(p1.getAge()).isEqualTo(42);
+
+		assertThat(p2.getAttribute(load)).isEqualTo(1f);
+		assertThat(p2.getDistrict()).isNull();
+		assertThat(p2.getHomeId()).isNull();
+		assertThat(p2.getAgeOrDefault(-1)).isEqualTo(-1);
+
+		// columns are fixed after persons have been created
+		assertThat(registry.declare("viralLoad", 1f)).isEqualTo(load);
+		assertThatThrownBy(() -> registry.declare("susceptibility", 1f))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
 	@Test
 	public void readWrite() throws IOException {
 
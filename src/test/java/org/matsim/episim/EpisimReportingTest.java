@@ -0,0 +1,149 @@
+package org.matsim.episim;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.util.Modules;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.controler.OutputDirectoryLogging;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EpisimReportingTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Before
+	public void setUp() {
+		OutputDirectoryLogging.catchLogEntries();
+	}
+
+	private Injector create(String output) {
+		Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(new ParallelReplayTest.TestScenario(output)));
+
+		EpisimConfigGroup episimConfig = injector.getInstance(EpisimConfigGroup.class);
+
+		// persons are quarantined and vaccinated from the first days on
+		TracingConfigGroup tracingConfig = injector.getInstance(TracingConfigGroup.class);
+		tracingConfig.setPutTraceablePersonsInQuarantineAfterDay(1);
+		tracingConfig.setTracingProbability(1);
+
+		VaccinationConfigGroup vaccinationConfig = injector.getInstance(VaccinationConfigGroup.class);
+		vaccinationConfig.setVaccinationCapacity_pers_per_day(Map.of(episimConfig.getStartDate(), 50));
+
+		return injector;
+	}
+
+	/**
+	 * Compares the incrementally maintained counts with counts of all persons.
+	 */
+	private static void assertCounts(Injector injector, int iteration) {
+
+		EpisimReporting reporting = injector.getInstance(EpisimReporting.class);
+		EpisimConfigGroup episimConfig = injector.getInstance(EpisimConfigGroup.class);
+		Collection<EpisimPerson> persons = injector.getInstance(InfectionEventHandler.class).getPersons();
+
+		Map<String, EpisimReporting.InfectionReport> reports = reporting.createReports(persons, iteration);
+		Map<String, EpisimReporting.InfectionReport> expected = new LinkedHashMap<>();
+
+		for (EpisimPerson person : persons) {
+			String district = person.getDistrict() == null ? "unknown" : person.getDistrict();
+
+			count(expected.computeIfAbsent("total", EpisimReportingTest::report), person, iteration);
+			count(expected.computeIfAbsent(district, EpisimReportingTest::report), person, iteration);
+		}
+
+		expected.values().forEach(r -> r.scale(1 / episimConfig.getSampleSize()));
+
+		assertThat(reports).containsOnlyKeys(expected.keySet());
+		expected.forEach((district, report) -> assertThat(reports.get(district))
+				.usingRecursiveComparison()
+				.ignoringFields("time", "date", "day", "nContagiousCumulative", "nShowingSymptomsCumulative",
+						"nSeriouslySickCumulative", "nCriticalCumulative")
+				.isEqualTo(report)
+		);
+
+		assertThat(reports.get("total").nVaccinated).isGreaterThan(0);
+		assertThat(reports.get("total").nInQuarantineFull + reports.get("total").nInQuarantineHome).isGreaterThan(0);
+	}
+
+	private static EpisimReporting.InfectionReport report(String name) {
+		return new EpisimReporting.InfectionReport(name, 0, "", 0);
+	}
+
+	private static void count(EpisimReporting.InfectionReport report, EpisimPerson person, int iteration) {
+
+		switch (person.getDiseaseStatus()) {
+			case susceptible:
+				report.nSusceptible++;
+				break;
+			case infectedButNotContagious:
+				report.nInfectedButNotContagious++;
+				report.nTotalInfected++;
+				break;
+			case contagious:
+				report.nContagious++;
+				report.nTotalInfected++;
+				break;
+			case showingSymptoms:
+				report.nShowingSymptoms++;
+				report.nTotalInfected++;
+				break;
+			case seriouslySick:
+			case seriouslySickAfterCritical:
+				report.nSeriouslySick++;
+				report.nTotalInfected++;
+				break;
+			case critical:
+				report.nCritical++;
+				report.nTotalInfected++;
+				break;
+			case recovered:
+				report.nRecovered++;
+				break;
+			default:
+				throw new IllegalStateException("Unknown status " + person.getDiseaseStatus());
+		}
+
+		if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.full)
+			report.nInQuarantineFull++;
+		else if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome)
+			report.nInQuarantineHome++;
+
+		if (person.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes)
+			report.nVaccinated++;
+
+		if (person.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.yes)
+			report.nReVaccinated++;
+
+		if (person.daysSinceTest(iteration) == 0)
+			report.nTested++;
+	}
+
+	@Test
+	public void incrementalCounts() {
+
+		Injector injector = create(utils.getOutputDirectory());
+		injector.getInstance(EpisimConfigGroup.class).setSnapshotInterval(5);
+		injector.getInstance(EpisimRunner.class).run(10);
+
+		assertCounts(injector, 10);
+
+		// counts are rebuilt after the restore and then updated incrementally again
+		EpisimConfigGroup episimConfig = injector.getInstance(EpisimConfigGroup.class);
+		String snapshot = String.format("episim-snapshot-%03d-%s.zip", 5, episimConfig.getStartDate().plusDays(4).toString());
+
+		Injector restored = create(utils.getOutputDirectory() + "fromSnapshot/");
+		restored.getInstance(EpisimConfigGroup.class).setStartFromSnapshot(utils.getOutputDirectory() + snapshot);
+		restored.getInstance(EpisimRunner.class).run(10);
+
+		assertCounts(restored, 10);
+	}
+}
@@ -31,6 +31,11 @@ public class EpisimTestUtils {
 	private static final AtomicLong ID = new AtomicLong(0);
 	private static final EpisimReporting reporting = Mockito.mock(EpisimReporting.class, Mockito.withSettings().stubOnly());
 
+	/**
+	 * State of all test persons, which need to share one store to record contacts between them.
+	 */
+	private static final PersonStateStore STATE = new PersonStateStore(1024);
+
 	public static final EpisimConfigGroup TEST_CONFIG = ConfigUtils.addOrGetModule(createTestConfig(), EpisimConfigGroup.class);
 
 	/**
@@ -98,11 +103,18 @@ public class EpisimTestUtils {
 		return addPersons(container, n, act, init);
 	}
 
+	/**
+	 * Create an activity with an assigned id.
+	 */
+	public static EpisimPerson.Activity createActivity(String actType, int id) {
+		return new EpisimPerson.Activity(actType, TEST_CONFIG.selectInfectionParams(actType), id, -1);
+	}
+
 	/**
 	 * Create a person and add to container.
 	 */
 	public static EpisimPerson createPerson(String currentAct, @Nullable EpisimContainer<?> container) {
-		EpisimPerson p = new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), reporting);
+		EpisimPerson p = new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), true, reporting, STATE);
 
 		p.getTrajectory().add(new EpisimPerson.Activity(currentAct, TEST_CONFIG.selectInfectionParams(currentAct)));
 
@@ -117,14 +129,32 @@ public class EpisimTestUtils {
 	 * Create a person with specific reporting.
 	 */
 	public static EpisimPerson createPerson(EpisimReporting reporting) {
-		return new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), reporting);
+		return new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), true, reporting, STATE);
+	}
+
+	/**
+	 * Create a person with specific reporting and attributes.
+	 */
+	public static EpisimPerson createPerson(EpisimReporting reporting, Attributes attrs) {
+		return new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), attrs, true, reporting, STATE);
 	}
 
 	/**
 	 * Create person with vaccinable status.
 	 */
 	public static EpisimPerson createPerson(boolean vaccinable) {
-		EpisimPerson p = new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), reporting);
+		EpisimPerson p = new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), true, reporting, STATE);
+		p.setVaccinable(vaccinable);
+		return p;
+	}
+
+	/**
+	 * Create person with age and vaccinable status, whose state is stored in {@code state}.
+	 */
+	public static EpisimPerson createPerson(PersonStateStore state, int age, boolean vaccinable) {
+		Attributes attrs = new Attributes();
+		attrs.putAttribute("age", age);
+		EpisimPerson p = new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), attrs, true, reporting, state);
 		p.setVaccinable(vaccinable);
 		return p;
 	}
@@ -143,6 +173,13 @@ public class EpisimTestUtils {
 		return container;
 	}
 
+	/**
+	 * Add person to container.
+	 */
+	public static void addPerson(EpisimContainer<?> container, EpisimPerson p, double now) {
+		container.addPerson(p, now);
+	}
+
 	/**
 	 * Remove person from container.
 	 */
@@ -0,0 +1,95 @@
+package org.matsim.episim;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.google.inject.util.Modules;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.OutputDirectoryLogging;
+import org.matsim.episim.model.ConfigurableProgressionModel;
+import org.matsim.episim.model.ProgressionModel;
+import org.matsim.run.modules.OpenBerlinScenario;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelReplayTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Before
+	public void setUp() {
+		OutputDirectoryLogging.catchLogEntries();
+	}
+
+	/**
+	 * Runs the scenario with a fixed number of shards and returns the output directory.
+	 */
+	private File run(int shards) {
+
+		String output = utils.getOutputDirectory() + "shards" + shards + "/";
+
+		Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(new TestScenario(output)));
+
+		injector.getInstance(EpisimConfigGroup.class).setThreads(2);
+		injector.getInstance(InfectionEventHandler.class).setNumShards(shards);
+		injector.getInstance(EpisimRunner.class).run(20);
+
+		return new File(output);
+	}
+
+	@Test
+	public void sameInfections() {
+
+		File single = run(1);
+		File sharded = run(4);
+
+		for (String name : new String[]{"infections.txt", "infectionEvents.txt"}) {
+			assertThat(new File(sharded, name))
+					.hasSameTextualContentAs(new File(single, name));
+		}
+	}
+
+	static final class TestScenario extends AbstractModule {
+
+		private final String output;
+
+		TestScenario(String output) {
+			this.output = output;
+		}
+
+		@Override
+		protected void configure() {
+			bind(ProgressionModel.class).to(ConfigurableProgressionModel.class).in(Singleton.class);
+		}
+
+		@Provides
+		@Singleton
+		public Config config() {
+			Config config = ConfigUtils.createConfig(new EpisimConfigGroup());
+			EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+
+			episimConfig.setInputEventsFile(
+					"https://svn.vsp.tu-berlin.de/repos/public-svn/matsim/scenarios/countries/de/berlin/berlin-v5.4-1pct/output-berlin-v5.4-1pct/berlin-v5.4-1pct.output_events_for_episim.xml.gz");
+
+			episimConfig.setFacilitiesHandling(EpisimConfigGroup.FacilitiesHandling.bln);
+			episimConfig.setSampleSize(0.01);
+			episimConfig.setCalibrationParameter(2);
+
+			config.controler().setOutputDirectory(output);
+
+			OpenBerlinScenario.addDefaultParams(episimConfig);
+
+			return config;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package org.matsim.episim;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PerformanceMetricsTest {
+
+	@Test
+	public void row() throws InterruptedException {
+
+		PerformanceMetrics metrics = new PerformanceMetrics(true);
+		metrics.startDay(3);
+
+		metrics.begin(PerformanceMetrics.Phase.progression);
+		long t = metrics.tick();
+		Thread.sleep(5);
+		metrics.add(PerformanceMetrics.Phase.testing, t);
+		metrics.end(PerformanceMetrics.Phase.progression);
+
+		metrics.count(PerformanceMetrics.Counter.contacts, 10);
+		metrics.count(PerformanceMetrics.Counter.contacts, 5);
+
+		assertThat(metrics.getTime(PerformanceMetrics.Phase.progression))
+				.isGreaterThanOrEqualTo(metrics.getTime(PerformanceMetrics.Phase.testing))
+				.isGreaterThanOrEqualTo(5_000_000);
+
+		String[] row = metrics.endDay("2020-02-27");
+
+		assertThat(row).hasSize(PerformanceMetrics.getColumns().length + 2)
+				.startsWith("3", "2020-02-27")
+				.endsWith("0", "15", "0");
+
+		metrics.startDay(4);
+		assertThat(metrics.getTime(PerformanceMetrics.Phase.progression)).isZero();
+		assertThat(metrics.getCount(PerformanceMetrics.Counter.contacts)).isZero();
+	}
+
+	@Test
+	public void disabled() {
+
+		PerformanceMetrics metrics = new PerformanceMetrics(false);
+		metrics.startDay(1);
+
+		metrics.begin(PerformanceMetrics.Phase.replay);
+		metrics.add(PerformanceMetrics.Phase.contacts, metrics.tick());
+		metrics.end(PerformanceMetrics.Phase.replay);
+
+		assertThat(metrics.getTime(PerformanceMetrics.Phase.replay)).isZero();
+		assertThat(metrics.getTime(PerformanceMetrics.Phase.contacts)).isZero();
+	}
+}
@@ -0,0 +1,142 @@
+package org.matsim.episim;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.util.Modules;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.controler.OutputDirectoryLogging;
+import org.matsim.episim.model.ContactModel;
+import org.matsim.episim.model.SymmetricContactModel;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QuiescentDaysTest {
+
+	private static final int DAYS = 15;
+
+	private static final Module SYMMETRIC = binder -> binder.bind(ContactModel.class).to(SymmetricContactModel.class).in(Singleton.class);
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Before
+	public void setUp() {
+		OutputDirectoryLogging.catchLogEntries();
+	}
+
+	/**
+	 * Runs the scenario, where the initially infected persons become contagious only after a few days.
+	 *
+	 * @return number of evaluated containers per day
+	 */
+	private long[] run(String output, Module contactModel, boolean tracing) throws IOException {
+		return run(output, contactModel, tracing, true);
+	}
+
+	private long[] run(String output, Module contactModel, boolean tracing, boolean skip) throws IOException {
+
+		Injector injector = Guice.createInjector(Modules.override(new EpisimModule())
+				.with(new ParallelReplayTest.TestScenario(output), contactModel));
+
+		injector.getInstance(EpisimConfigGroup.class).setPerformanceMetrics(true);
+
+		injector.getInstance(InfectionEventHandler.class).setSkipQuiescentDays(skip);
+
+		if (tracing)
+			injector.getInstance(TracingConfigGroup.class).setPutTraceablePersonsInQuarantineAfterDay(1);
+
+		injector.getInstance(EpisimRunner.class).run(DAYS);
+
+		return column(Path.of(output, "performance.tsv"), "containers");
+	}
+
+	/**
+	 * Reads a numeric column for each day, only the total is used if the file contains rows for each district.
+	 */
+	private static long[] column(Path path, String name) throws IOException {
+		List<String> lines = Files.readAllLines(path);
+		List<String> header = Arrays.asList(lines.get(0).split("\t"));
+		int idx = header.indexOf(name);
+		int district = header.indexOf("district");
+
+		assertThat(idx).isGreaterThanOrEqualTo(0);
+
+		long[] values = lines.stream().skip(1)
+				.map(l -> l.split("\t"))
+				.filter(row -> district < 0 || row[district].equals("total"))
+				.mapToLong(row -> Long.parseLong(row[idx]))
+				.toArray();
+
+		assertThat(values).hasSize(DAYS);
+		return values;
+	}
+
+	@Test
+	public void skipWithoutContagious() throws IOException {
+
+		String output = utils.getOutputDirectory() + "symmetric/";
+		long[] containers = run(output, SYMMETRIC, false);
+
+		long[] contagious = column(Path.of(output, "infections.txt"), "nContagious");
+		long[] symptoms = column(Path.of(output, "infections.txt"), "nShowingSymptoms");
+
+		boolean skipped = false;
+		boolean evaluated = false;
+
+		for (int i = 0; i < DAYS; i++) {
+			if (contagious[i] + symptoms[i] == 0) {
+				assertThat(containers[i]).as("Containers on day %d", i + 1).isEqualTo(0);
+				skipped = true;
+			} else {
+				// evaluated from the first day with a contagious person on
+				assertThat(containers[i]).as("Containers on day %d", i + 1).isGreaterThan(0);
+				evaluated = true;
+			}
+		}
+
+		assertThat(skipped).isTrue();
+		assertThat(evaluated).isTrue();
+	}
+
+	@Test
+	public void optOut() throws IOException {
+
+		// the default contact model draws random numbers for all contacts and is never skipped
+		long[] containers = run(utils.getOutputDirectory() + "default/", binder -> {
+		}, false);
+
+		assertThat(containers).doesNotContain(0L);
+
+		// neither is the symmetric model when contacts are traced
+		containers = run(utils.getOutputDirectory() + "tracing/", SYMMETRIC, true);
+
+		assertThat(containers).doesNotContain(0L);
+	}
+
+	@Test
+	public void sameAsEvaluated() throws IOException {
+
+		File skipped = new File(utils.getOutputDirectory() + "skipped/");
+		File evaluated = new File(utils.getOutputDirectory() + "evaluated/");
+
+		assertThat(run(skipped.getPath(), SYMMETRIC, false, true)).contains(0L);
+		assertThat(run(evaluated.getPath(), SYMMETRIC, false, false)).doesNotContain(0L);
+
+		for (String name : new String[]{"infections.txt", "infectionEvents.txt"}) {
+			assertThat(new File(skipped, name))
+					.hasSameTextualContentAs(new File(evaluated, name));
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package org.matsim.episim;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class SusceptibleIndexTest {
+
+	private static int id = 0;
+
+	private static EpisimPerson createPerson(PersonStateStore state, String district, int age) {
+		Attributes attrs = new Attributes();
+		attrs.putAttribute("district", district);
+		attrs.putAttribute("microm:modeled:age", age);
+		return new EpisimPerson(Id.createPersonId("susceptible" + id++), attrs, true, EpisimTestUtils.getReporting(), state);
+	}
+
+	@Test
+	public void districtAndAge() {
+
+		PersonStateStore state = new PersonStateStore(10);
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			persons.add(createPerson(state, i % 2 == 0 ? "Berlin" : "Munich", 10 * i));
+
+		SusceptibleIndex index = state.getSusceptibleIndex();
+
+		assertThat(index.size()).isEqualTo(10);
+		assertThat(index.size("Berlin", -1, -1)).isEqualTo(5);
+		assertThat(index.size("Berlin", 20, 60)).isEqualTo(3);
+		assertThat(index.size(null, 20, 60)).isEqualTo(5);
+		assertThat(index.size(null, 85, -1)).isEqualTo(1);
+		assertThat(index.size("Hamburg", -1, -1)).isEqualTo(0);
+
+		// ordered like the person map
+		assertThat(index.get("Berlin", 20, 60, 0)).isSameAs(persons.get(2));
+		assertThat(index.get(null, 20, 60, 3)).isSameAs(persons.get(5));
+		assertThat(index.get("Munich", -1, -1, 2)).isSameAs(persons.get(5));
+
+		persons.get(4).setDiseaseStatus(0, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+
+		assertThat(index.size()).isEqualTo(9);
+		assertThat(index.size("Berlin", 20, 60)).isEqualTo(2);
+		assertThat(index.get("Berlin", 20, 60, 1)).isSameAs(persons.get(6));
+
+		assertThatExceptionOfType(IndexOutOfBoundsException.class)
+				.isThrownBy(() -> index.get("Berlin", 20, 60, 2));
+
+		persons.get(4).setDiseaseStatus(1, EpisimPerson.DiseaseStatus.susceptible);
+		assertThat(index.size("Berlin", 20, 60)).isEqualTo(3);
+	}
+
+	@Test
+	public void personMapOrder() {
+
+		// id is created before the other person, so it is iterated first by the person map
+		Id<Person> first = Id.createPersonId("susceptible" + id++);
+
+		PersonStateStore state = new PersonStateStore(2);
+		EpisimPerson b = createPerson(state, "Berlin", 30);
+		EpisimPerson a = new EpisimPerson(first, new Attributes(), true, EpisimTestUtils.getReporting(), state);
+
+		Map<Id<Person>, EpisimPerson> map = new IdMap<>(Person.class);
+		map.put(b.getPersonId(), b);
+		map.put(a.getPersonId(), a);
+
+		SusceptibleIndex index = state.getSusceptibleIndex();
+
+		assertThat(List.of(index.get(0), index.get(1))).containsExactlyElementsOf(map.values());
+
+		a.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+		assertThat(index.get(0)).isSameAs(b);
+	}
+
+	@Test
+	public void unknownAge() {
+
+		PersonStateStore state = new PersonStateStore(2);
+		EpisimPerson p = new EpisimPerson(Id.createPersonId("susceptible" + id++), new Attributes(), true, EpisimTestUtils.getReporting(), state);
+		createPerson(state, "Berlin", 0);
+
+		SusceptibleIndex index = state.getSusceptibleIndex();
+
+		assertThat(index.size(null, -1, -1)).isEqualTo(2);
+		assertThat(index.size(null, 0, -1)).isEqualTo(1);
+		assertThat(index.get(null, -1, -1, 0)).isSameAs(p);
+	}
+
+	@Test
+	public void sameAsScan() {
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		String[] districts = {"Berlin", "Munich", "Hamburg"};
+
+		PersonStateStore state = new PersonStateStore(1000);
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			if (i % 50 == 0)
+				persons.add(new EpisimPerson(Id.createPersonId("susceptible" + id++), new Attributes(), true, EpisimTestUtils.getReporting(), state));
+			else
+				persons.add(createPerson(state, districts[rnd.nextInt(districts.length)], rnd.nextInt(100)));
+		}
+
+		SusceptibleIndex index = state.getSusceptibleIndex();
+
+		int[][] ranges = {{-1, -1}, {0, 17}, {18, -1}, {-1, 59}, {20, 90}, {42, 42}, {101, -1}};
+
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 100; i++)
+				persons.get(rnd.nextInt(persons.size())).setDiseaseStatus(0, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+
+			for (String district : new String[]{null, "Berlin", "Hamburg"}) {
+				for (int[] r : ranges) {
+					List<EpisimPerson> expected = persons.stream()
+							.filter(p -> p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
+							.filter(p -> district == null || district.equals(p.getDistrict()))
+							.filter(p -> matches(p, r[0], r[1]))
+							.collect(Collectors.toList());
+
+					assertThat(index.size(district, r[0], r[1])).isEqualTo(expected.size());
+					for (int k = 0; k < expected.size(); k++)
+						assertThat(index.get(district, r[0], r[1], k)).isSameAs(expected.get(k));
+				}
+			}
+		}
+	}
+
+	private static boolean matches(EpisimPerson p, int minAge, int maxAge) {
+		int age = p.getAgeOrDefault(-1);
+		if (age < 0)
+			return minAge == -1 && maxAge == -1;
+
+		return (minAge == -1 || age >= minAge) && (maxAge == -1 || age <= maxAge);
+	}
+}
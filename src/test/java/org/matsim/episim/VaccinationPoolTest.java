@@ -0,0 +1,76 @@
+package org.matsim.episim;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
+import org.matsim.api.core.v01.population.Person;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VaccinationPoolTest {
+
+	@Test
+	public void eligibility() {
+
+		PersonStateStore state = new PersonStateStore(10);
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			persons.add(EpisimTestUtils.createPerson(state, 20 + i % 2, i != 0));
+
+		VaccinationPool pool = state.getVaccinationPool(false);
+		VaccinationPool re = state.getVaccinationPool(true);
+
+		assertThat(pool.size()).isEqualTo(9);
+		assertThat(pool.size(20)).isEqualTo(4);
+		assertThat(pool.size(21)).isEqualTo(5);
+		assertThat(re.size()).isEqualTo(0);
+
+		persons.get(2).setDiseaseStatus(0, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+		persons.get(3).setVaccinationStatus(EpisimPerson.VaccinationStatus.yes, 0);
+
+		assertThat(pool.size(20)).isEqualTo(3);
+		assertThat(pool.size(21)).isEqualTo(4);
+		assertThat(re.size()).isEqualTo(1);
+		assertThat(re.get(21, 0)).isSameAs(persons.get(3));
+
+		persons.get(3).setReVaccinationStatus(EpisimPerson.VaccinationStatus.yes, 1);
+		assertThat(re.size()).isEqualTo(0);
+
+		// persons added later are included as well
+		EpisimPerson p = EpisimTestUtils.createPerson(state, 5, true);
+		assertThat(pool.size()).isEqualTo(8);
+		assertThat(pool.get(5, 0)).isSameAs(p);
+	}
+
+	@Test
+	public void order() {
+
+		PersonStateStore state = new PersonStateStore(100);
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+			persons.add(EpisimTestUtils.createPerson(state, 99 - i, true));
+
+		VaccinationPool pool = state.getVaccinationPool(false);
+
+		for (int i = 0; i < 100; i += 3)
+			persons.get(i).setDiseaseStatus(0, EpisimPerson.DiseaseStatus.recovered);
+
+		Map<Id<Person>, EpisimPerson> map = new IdMap<>(Person.class);
+		persons.forEach(p -> map.put(p.getPersonId(), p));
+
+		// selection only depends on the eligible persons, in the order of the person map
+		List<EpisimPerson> eligible = map.values().stream()
+				.filter(p -> p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
+				.collect(Collectors.toList());
+
+		for (int i = 0; i < pool.size(); i++)
+			assertThat(pool.get(i)).isSameAs(eligible.get(i));
+
+		assertThat(pool.size()).isEqualTo(66);
+	}
+}
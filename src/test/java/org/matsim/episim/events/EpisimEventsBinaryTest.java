@@ -0,0 +1,76 @@
+package org.matsim.episim.events;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.model.VirusStrain;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EpisimEventsBinaryTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void roundTrip() throws IOException {
+
+		List<Event> events = new ArrayList<>();
+
+		// more than one chunk, with new ids in each chunk
+		for (int i = 0; i < EpisimEventsBinaryWriter.CHUNK_SIZE + 100; i++) {
+			Id<ActivityFacility> facility = Id.create("f" + (i % 1000), ActivityFacility.class);
+			switch (i % 5) {
+				case 0:
+					events.add(new EpisimInfectionEvent(i, Id.createPersonId(i), Id.createPersonId(i + 1), facility, "work", 4, VirusStrain.B117, 0.25));
+					break;
+				case 1:
+					events.add(new EpisimContactEvent(i, Id.createPersonId(i), Id.createPersonId(i - 1), facility, "leisure", 600, 3));
+					break;
+				case 2:
+					events.add(new EpisimTracingEvent(i, Id.createPersonId(i), Id.createPersonId(i - 2)));
+					break;
+				case 3:
+					events.add(new EpisimPersonStatusEvent(i, Id.createPersonId(i), EpisimPerson.DiseaseStatus.contagious));
+					break;
+				default:
+					events.add(new EpisimPersonStatusEvent(i, Id.createPersonId(i), EpisimPerson.QuarantineStatus.atHome));
+			}
+		}
+
+		Path path = Path.of(utils.getOutputDirectory(), "day_001" + EpisimEventsBinaryWriter.EXTENSION);
+		try (EpisimEventsBinaryWriter writer = new EpisimEventsBinaryWriter(path)) {
+			for (Event event : events)
+				assertThat(writer.append(event)).isTrue();
+		}
+
+		List<Event> read = new ArrayList<>();
+
+		EventsManager manager = EventsUtils.createEventsManager();
+		manager.addHandler((BasicEventHandler) read::add);
+		manager.initProcessing();
+
+		new EpisimEventsBinaryReader(manager).readFile(path.toString());
+		manager.finishProcessing();
+
+		assertThat(read).hasSameSizeAs(events);
+
+		for (int i = 0; i < events.size(); i++) {
+			assertThat(read.get(i)).isInstanceOf(events.get(i).getClass());
+			assertThat(read.get(i).getAttributes()).isEqualTo(events.get(i).getAttributes());
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package org.matsim.episim.model;
+
+import org.junit.Test;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ActivityInteractionsTest {
+
+	@Test
+	public void rules() {
+
+		assertThat(ActivityInteractions.computeRule("home", "home")).isEqualTo(ActivityInteractions.TRACEABLE);
+		assertThat(ActivityInteractions.computeRule("home", "leisure")).isEqualTo(ActivityInteractions.TRACEABLE);
+		assertThat(ActivityInteractions.computeRule("home", "shop_daily")).isEqualTo(ActivityInteractions.FORBIDDEN);
+		assertThat(ActivityInteractions.computeRule("edu_primary", "edu_primary")).isEqualTo(ActivityInteractions.TRACEABLE);
+		assertThat(ActivityInteractions.computeRule("edu_primary", "leisure")).isEqualTo(ActivityInteractions.FORBIDDEN);
+		assertThat(ActivityInteractions.computeRule("edu_primary", "work")).isEqualTo(ActivityInteractions.TRACEABLE);
+		assertThat(ActivityInteractions.computeRule("shop_daily", "leisure")).isEqualTo(ActivityInteractions.ALLOWED);
+	}
+
+	@Test
+	public void matrix() {
+
+		EpisimPerson.Activity home = EpisimTestUtils.createActivity("home", 0);
+		EpisimPerson.Activity leisure = EpisimTestUtils.createActivity("leisure", 1);
+		EpisimPerson.Activity edu = EpisimTestUtils.createActivity("edu", 5);
+		EpisimPerson.Activity other = new EpisimPerson.Activity("edu", home.params);
+
+		ActivityInteractions interactions = new ActivityInteractions();
+
+		assertThat(interactions.getRule(home, leisure)).isEqualTo(ActivityInteractions.TRACEABLE);
+		assertThat(interactions.getInfectionType(leisure, home)).isEqualTo("leisure_home");
+
+		// matrix grows and keeps existing entries
+		assertThat(interactions.getRule(edu, home)).isEqualTo(ActivityInteractions.FORBIDDEN);
+		assertThat(interactions.getInfectionType(home, leisure)).isEqualTo("home_leisure");
+
+		// activities without id
+		assertThat(interactions.getRule(other, edu)).isEqualTo(ActivityInteractions.TRACEABLE);
+		assertThat(interactions.getInfectionType(other, home)).isEqualTo("edu_home");
+	}
+}
@@ -0,0 +1,109 @@
+package org.matsim.episim.model;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.google.inject.util.Modules;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.episim.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each {@link ContactModel} for a single facility of different sizes.
+ * One invocation is a person leaving the facility and entering it again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BenchmarkContactModels {
+
+	private static final String ACT = "c1.0";
+
+	@Param({"DefaultContactModel", "SymmetricContactModel", "OldSymmetricContactModel", "DirectContactModel",
+			"PairWiseContactModel", "SqrtContactModel"})
+	private String model;
+
+	@Param({"10", "100", "1000"})
+	private int groupSize;
+
+	private ContactModel contactModel;
+	private InfectionEventHandler.EpisimFacility facility;
+	private List<EpisimPerson> persons;
+	private double now;
+	private int next;
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options opt = new OptionsBuilder()
+				.include(BenchmarkContactModels.class.getSimpleName())
+				.warmupIterations(5).warmupTime(TimeValue.seconds(1))
+				.measurementIterations(10).measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				.build();
+
+		new Runner(opt).run();
+	}
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() throws ClassNotFoundException {
+
+		Class<? extends ContactModel> type = (Class<? extends ContactModel>) Class.forName(ContactModel.class.getPackageName() + "." + model);
+		Config config = EpisimTestUtils.createTestConfig();
+
+		Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(new AbstractModule() {
+			@Override
+			protected void configure() {
+				bind(Config.class).toInstance(config);
+				bind(Scenario.class).toInstance(ScenarioUtils.createScenario(config));
+				bind(EpisimReporting.class).toInstance(EpisimTestUtils.getReporting());
+				bind(ContactModel.class).to(type).in(Singleton.class);
+			}
+		}));
+
+		contactModel = injector.getInstance(ContactModel.class);
+		contactModel.setRestrictionsForIteration(1, ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class).createInitialRestrictions());
+
+		facility = EpisimTestUtils.createFacility(groupSize, ACT, p -> {
+		});
+
+		persons = new ArrayList<>(facility.getPersons());
+		for (EpisimPerson p : persons)
+			contactModel.notifyEnterFacility(p, facility, 0);
+	}
+
+	/**
+	 * Resets the disease status, so that every iteration has the same number of contagious persons.
+	 */
+	@Setup(Level.Iteration)
+	public void resetStatus() {
+		for (int i = 0; i < persons.size(); i++)
+			persons.get(i).setDiseaseStatus(now, i % 10 == 0 ? EpisimPerson.DiseaseStatus.contagious : EpisimPerson.DiseaseStatus.susceptible);
+	}
+
+	@Benchmark
+	public void leaveAndEnter() {
+
+		EpisimPerson p = persons.get(next++ % persons.size());
+		now += 60;
+
+		contactModel.infectionDynamicsFacility(p, facility, now, ACT);
+		EpisimTestUtils.removePerson(facility, p);
+
+		EpisimTestUtils.addPerson(facility, p, now);
+		contactModel.notifyEnterFacility(p, facility, now);
+	}
+}
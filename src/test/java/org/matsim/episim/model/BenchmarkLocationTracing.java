@@ -0,0 +1,102 @@
+package org.matsim.episim.model;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.collections.IdMap;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimTestUtils;
+import org.matsim.episim.InfectionEventHandler;
+import org.matsim.facilities.ActivityFacility;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares searching the whole population with the {@link InfectionLocationIndex} for persons infected at traced locations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BenchmarkLocationTracing {
+
+	@Param({"10000", "100000", "1000000"})
+	private int population;
+
+	/**
+	 * Number of locations above the tracing threshold.
+	 */
+	@Param({"10", "100"})
+	private int locations;
+
+	private Map<Id<Person>, EpisimPerson> persons;
+	private InfectionLocationIndex index;
+	private List<Id<ActivityFacility>> traced;
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options opt = new OptionsBuilder()
+				.include(BenchmarkLocationTracing.class.getSimpleName())
+				.warmupIterations(5).warmupTime(TimeValue.seconds(1))
+				.measurementIterations(10).measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				.build();
+
+		new Runner(opt).run();
+	}
+
+	@Setup
+	public void setup() {
+
+		SplittableRandom rnd = new SplittableRandom(1);
+
+		persons = new IdMap<>(Person.class);
+		index = new InfectionLocationIndex();
+		traced = new ArrayList<>();
+
+		List<InfectionEventHandler.EpisimFacility> facilities = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+			facilities.add(EpisimTestUtils.createFacility());
+
+		for (int i = 0; i < locations; i++)
+			traced.add(facilities.get(i).getContainerId());
+
+		// one percent of the population has been infected
+		for (int i = 0; i < population; i++) {
+			EpisimPerson p = EpisimTestUtils.createPerson(EpisimTestUtils.getReporting());
+			persons.put(p.getPersonId(), p);
+
+			if (rnd.nextDouble() < 0.01) {
+				p.setInfectionContainer(facilities.get(rnd.nextInt(facilities.size())));
+				index.add(p);
+			}
+		}
+	}
+
+	@Benchmark
+	public void search(Blackhole bh) {
+		for (Id<ActivityFacility> location : traced) {
+			for (EpisimPerson p : persons.values()) {
+				if (p.getInfectionContainer() == location)
+					bh.consume(p);
+			}
+		}
+	}
+
+	@Benchmark
+	public void index(Blackhole bh) {
+		for (Id<ActivityFacility> location : traced) {
+			for (EpisimPerson p : index.getPersons(location))
+				bh.consume(p);
+		}
+	}
+}
@@ -2,12 +2,14 @@ package org.matsim.episim.model;
 
 import com.google.common.primitives.Doubles;
 import com.typesafe.config.Config;
+import it.unimi.dsi.fastutil.ints.IntList;
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
 import org.assertj.core.data.Percentage;
 import org.junit.Before;
 import org.junit.Test;
 import org.matsim.episim.*;
 import org.matsim.episim.EpisimPerson.DiseaseStatus;
+import org.matsim.utils.objectattributes.attributable.Attributes;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -205,17 +207,18 @@ public class ConfigurableProgressionModelTest {
 		// needed to update probability
 		model.setIteration(1);
 
-		EpisimPerson p = EpisimTestUtils.createPerson(reporting);
+		// attributes are only read when persons are created
+		Attributes home = new Attributes();
+		home.putAttribute("homeId", "1");
+
+		EpisimPerson p = EpisimTestUtils.createPerson(reporting, home);
 		p.setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
 		for (int day = 0; day <= 5; day++) {
 			model.setIteration(day);
 			model.updateState(p, day);
 		}
 
-		p.getAttributes().putAttribute("homeId", "1");
-
-		EpisimPerson contact = EpisimTestUtils.createPerson(reporting);
-		contact.getAttributes().putAttribute("homeId", "1");
+		EpisimPerson contact = EpisimTestUtils.createPerson(reporting, home);
 
 		p.addTraceableContactPerson(contact, 5 * 24 * 3600);
 
@@ -332,5 +335,40 @@ public class ConfigurableProgressionModelTest {
 				.isCloseTo(14, Percentage.withPercentage(1));
 	}
 
+	@Test
+	public void scheduledUpdates() {
+
+		ProgressionModel scheduled = new ConfigurableProgressionModel(new SplittableRandom(1), episimConfig, tracingConfig, strainConfig, vaccinationConfig);
+
+		List<EpisimPerson> daily = new ArrayList<>();
+		List<EpisimPerson> idle = new ArrayList<>();
+
+		for (int i = 0; i < 1000; i++) {
+			daily.add(EpisimTestUtils.createPerson(reporting));
+			idle.add(EpisimTestUtils.createPerson(reporting));
+			daily.get(i).setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
+			idle.get(i).setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
+		}
+
+		// updating only scheduled persons needs to give the same result as updating everyone
+		for (int day = 1; day <= 50; day++) {
+
+			model.setIteration(day);
+			scheduled.setIteration(day);
+			IntList due = scheduled.pollScheduledUpdates(day);
+
+			for (int i = 0; i < daily.size(); i++) {
+				EpisimPerson p = idle.get(i);
+				model.updateState(daily.get(i), day);
+				if (day == 1 || due.contains(p.getSlot()))
+					scheduled.updateState(p, day);
+
+				assertThat(p.getDiseaseStatus()).isEqualTo(daily.get(i).getDiseaseStatus());
+				assertThat(p.getQuarantineStatus()).isEqualTo(daily.get(i).getQuarantineStatus());
+			}
+		}
+
+		assertThat(idle).allMatch(p -> p.getDiseaseStatus() == DiseaseStatus.recovered);
+	}
 
 }
@@ -0,0 +1,104 @@
+package org.matsim.episim.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimTestUtils;
+import org.matsim.episim.InfectionEventHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InfectionLocationIndexTest {
+
+	private InfectionLocationIndex index;
+	private InfectionEventHandler.EpisimFacility a;
+	private InfectionEventHandler.EpisimFacility b;
+
+	@Before
+	public void setup() {
+		index = new InfectionLocationIndex();
+		a = EpisimTestUtils.createFacility();
+		b = EpisimTestUtils.createFacility();
+	}
+
+	private EpisimPerson infect(EpisimPerson p, InfectionEventHandler.EpisimFacility container) {
+		p.setInfectionContainer(container);
+		index.add(p);
+		return p;
+	}
+
+	@Test
+	public void persons() {
+
+		List<EpisimPerson> inA = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			inA.add(infect(EpisimTestUtils.createPerson(EpisimTestUtils.getReporting()), a));
+			infect(EpisimTestUtils.createPerson(EpisimTestUtils.getReporting()), b);
+		}
+
+		assertThat(index.getPersons(a.getContainerId()))
+				.containsExactlyElementsOf(inA);
+
+		assertThat(index.getPersons(b.getContainerId()))
+				.hasSize(5)
+				.doesNotContainAnyElementsOf(inA);
+
+		// infected again at another location
+		infect(inA.get(0), b);
+
+		assertThat(index.getPersons(a.getContainerId()))
+				.containsExactlyElementsOf(inA.subList(1, inA.size()));
+
+		assertThat(index.getPersons(b.getContainerId()))
+				.hasSize(6);
+	}
+
+	@Test
+	public void sortedWithoutDuplicates() {
+
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+			persons.add(EpisimTestUtils.createPerson(EpisimTestUtils.getReporting()));
+
+		for (int i = persons.size() - 1; i >= 0; i--)
+			infect(persons.get(i), a);
+
+		// infected at a again after being infected elsewhere
+		infect(persons.get(2), b);
+		infect(persons.get(2), a);
+
+		assertThat(index.getPersons(a.getContainerId()))
+				.containsExactlyElementsOf(persons);
+
+		infect(persons.get(0), b);
+		infect(persons.get(4), b);
+
+		assertThat(index.getPersons(a.getContainerId()))
+				.containsExactlyElementsOf(persons.subList(1, 4));
+
+		assertThat(index.getPersons(b.getContainerId()))
+				.containsExactly(persons.get(0), persons.get(4));
+	}
+
+	@Test
+	public void rebuild() {
+
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+			persons.add(infect(EpisimTestUtils.createPerson(EpisimTestUtils.getReporting()), a));
+
+		persons.add(EpisimTestUtils.createPerson(EpisimTestUtils.getReporting()));
+
+		InfectionLocationIndex other = new InfectionLocationIndex();
+		other.rebuild(persons);
+
+		assertThat(other.getPersons(a.getContainerId()))
+				.containsExactlyElementsOf(persons.subList(0, 5));
+
+		assertThat(other.getPersons(b.getContainerId()))
+				.isEmpty();
+	}
+}
@@ -5,11 +5,10 @@ import org.junit.Test;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
-import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.DailyRestrictionTable;
 import org.mockito.Mockito;
 
 import java.time.Duration;
-import java.util.Map;
 import java.util.SplittableRandom;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -18,8 +17,8 @@ public class InfectionModelWithSeasonalityTest {
 
 	private InfectionModel model;
 	private EpisimReporting reporting;
-	private Map<String, Restriction> restrictions;
-	private EpisimConfigGroup.InfectionParams act;
+	private DailyRestrictionTable restrictions;
+	private EpisimPerson.Activity act;
 
 	@Before
 	public void setUp() throws Exception {
@@ -29,8 +28,8 @@ public class InfectionModelWithSeasonalityTest {
 
 		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 
-		act = episimConfig.getInfectionParam("c10");
-		restrictions = episimConfig.createInitialRestrictions();
+		act = new EpisimPerson.Activity("c10", episimConfig.getInfectionParam("c10"));
+		restrictions = DailyRestrictionTable.of(episimConfig.createInitialRestrictions());
 		reporting = Mockito.mock(EpisimReporting.class);
 		model = new InfectionModelWithSeasonality(new DefaultFaceMaskModel(rnd), rnd, config, reporting);
 	}
@@ -46,25 +45,25 @@ public class InfectionModelWithSeasonalityTest {
 
 		model.setIteration(1);
 		double prob = model.calcInfectionProbability(target, infector, restrictions, act, act,
-				act.getContactIntensity(), Duration.ofHours(1).getSeconds());
+				act.params.getContactIntensity(), Duration.ofHours(1).getSeconds());
 
 		model.setIteration(7);
 		double prob2 = model.calcInfectionProbability(target, infector, restrictions, act, act,
-				act.getContactIntensity(), Duration.ofHours(1).getSeconds());
+				act.params.getContactIntensity(), Duration.ofHours(1).getSeconds());
 
 		assertThat(prob2)
 				.isLessThan(prob);
 
 		model.setIteration(40);
 		double prob3 = model.calcInfectionProbability(target, infector, restrictions, act, act,
-				act.getContactIntensity(), Duration.ofHours(1).getSeconds());
+				act.params.getContactIntensity(), Duration.ofHours(1).getSeconds());
 
 		assertThat(prob3)
 				.isLessThan(prob2);
 
 		model.setIteration(45);
 		double prob4 = model.calcInfectionProbability(target, infector, restrictions, act, act,
-				act.getContactIntensity(), Duration.ofHours(1).getSeconds());
+				act.params.getContactIntensity(), Duration.ofHours(1).getSeconds());
 
 		assertThat(prob4)
 				.isEqualTo(prob3);
@@ -0,0 +1,55 @@
+package org.matsim.episim.model;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimTestUtils;
+import org.matsim.episim.PersonStateStore;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RandomVaccinationTest {
+
+	@Test
+	public void sameAsPopulationScan() {
+
+		PersonStateStore state = new PersonStateStore(200);
+		Map<Id<Person>, EpisimPerson> persons = new IdMap<>(Person.class);
+
+		for (int i = 0; i < 200; i++) {
+			EpisimPerson p = EpisimTestUtils.createPerson(state, i % 80, i % 7 != 0);
+			persons.put(p.getPersonId(), p);
+
+			if (i % 5 == 0)
+				p.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.recovered);
+		}
+
+		// candidates are drawn with replacement from the filtered population
+		List<EpisimPerson> candidates = persons.values().stream()
+				.filter(EpisimPerson::isVaccinable)
+				.filter(p -> p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
+				.filter(p -> p.getVaccinationStatus() == EpisimPerson.VaccinationStatus.no)
+				.collect(Collectors.toList());
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		Set<EpisimPerson> expected = new LinkedHashSet<>();
+		for (int i = 0; i < 50; i++)
+			expected.add(candidates.get(rnd.nextInt(candidates.size())));
+
+		RandomVaccination model = new RandomVaccination(new SplittableRandom(1));
+		assertThat(model.handleVaccination(state.getVaccinationPool(false), 50, 0, 0))
+				.isEqualTo(50);
+
+		assertThat(persons.values().stream().filter(p -> p.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes))
+				.containsExactlyInAnyOrderElementsOf(expected);
+	}
+}
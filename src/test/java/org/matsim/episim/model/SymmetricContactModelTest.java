@@ -0,0 +1,171 @@
+package org.matsim.episim.model;
+
+import org.assertj.core.data.Offset;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.*;
+import org.matsim.episim.policy.Restriction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SymmetricContactModelTest {
+
+	private static final Offset<Double> OFFSET = Offset.offset(0.01);
+
+	/**
+	 * Creates a model without tracing. If contacts are written as events, all pairs are evaluated,
+	 * otherwise only pairs of susceptible and contagious persons.
+	 */
+	private static SymmetricContactModel createModel(long seed, boolean allPairs) {
+		return createModel(new SplittableRandom(seed), allPairs);
+	}
+
+	private static SymmetricContactModel createModel(SplittableRandom rnd, boolean allPairs) {
+
+		Config config = EpisimTestUtils.createTestConfig();
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		TracingConfigGroup tracingConfig = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class);
+
+		if (allPairs)
+			episimConfig.setWriteEvents(EpisimConfigGroup.WriteEvents.tracing);
+
+		InfectionModel infectionModel = new DefaultInfectionModel(new DefaultFaceMaskModel(rnd), config);
+		SymmetricContactModel model = new SymmetricContactModel(rnd, config, tracingConfig, EpisimTestUtils.getReporting(), infectionModel);
+		model.setRestrictionsForIteration(1, episimConfig.createInitialRestrictions());
+
+		assertThat(model.isIdleWithoutContagious()).isEqualTo(!allPairs);
+
+		return model;
+	}
+
+	/**
+	 * Creates a facility with contagious, susceptible and recovered persons, in a fixed order.
+	 */
+	private static InfectionEventHandler.EpisimFacility createFacility(String act) {
+		InfectionEventHandler.EpisimFacility facility = EpisimTestUtils.createFacility(2, act, 8, EpisimTestUtils.CONTAGIOUS);
+		EpisimTestUtils.addPersons(facility, 4, act, p -> {
+		});
+		EpisimTestUtils.addPersons(facility, 2, act, p -> p.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.recovered));
+		return facility;
+	}
+
+	/**
+	 * Lets all persons leave the facility in random order.
+	 *
+	 * @return whether each person, in the original order, has been infected
+	 */
+	private static List<Boolean> leave(SymmetricContactModel model, InfectionEventHandler.EpisimFacility facility, Duration time,
+									   String act, Random order) {
+
+		List<EpisimPerson> persons = new ArrayList<>(facility.getPersons());
+
+		while (!facility.getPersons().isEmpty()) {
+			EpisimPerson person = facility.getPersons().get(order.nextInt(facility.getPersons().size()));
+			model.infectionDynamicsFacility(person, facility, time.getSeconds(), act);
+			EpisimTestUtils.removePerson(facility, person);
+		}
+
+		List<Boolean> infected = new ArrayList<>();
+		for (EpisimPerson p : persons)
+			infected.add(p.getDiseaseStatus() == EpisimPerson.DiseaseStatus.infectedButNotContagious);
+
+		return infected;
+	}
+
+	@Test
+	public void certainInfections() {
+
+		SymmetricContactModel infectious = createModel(1, false);
+		SymmetricContactModel allPairs = createModel(2, true);
+
+		for (int i = 0; i < 100; i++) {
+
+			List<Boolean> expected = leave(allPairs, createFacility("c10"), Duration.ofHours(10), "c10", new Random(i));
+			List<Boolean> actual = leave(infectious, createFacility("c10"), Duration.ofHours(10), "c10", new Random(i));
+
+			assertThat(actual)
+					.isEqualTo(expected)
+					.containsExactly(false, false, true, true, true, true, false, false);
+
+			// no contact intensity, nobody gets infected
+			expected = leave(allPairs, createFacility("c00"), Duration.ofHours(10), "c00", new Random(i));
+			actual = leave(infectious, createFacility("c00"), Duration.ofHours(10), "c00", new Random(i));
+
+			assertThat(actual)
+					.isEqualTo(expected)
+					.containsOnly(false);
+		}
+	}
+
+	@Test
+	public void sameInfectionRate() {
+
+		SymmetricContactModel infectious = createModel(1, false);
+		SymmetricContactModel allPairs = createModel(1, true);
+
+		Random order = new Random(0);
+
+		int n = 20_000;
+		double expected = 0;
+		double actual = 0;
+
+		for (int i = 0; i < n; i++) {
+			expected += leave(allPairs, createFacility("c1.0"), Duration.ofMinutes(15), "c1.0", order).stream().filter(b -> b).count();
+			actual += leave(infectious, createFacility("c1.0"), Duration.ofMinutes(15), "c1.0", order).stream().filter(b -> b).count();
+		}
+
+		// infection rate of the susceptible persons
+		expected /= 4d * n;
+		actual /= 4d * n;
+
+		assertThat(expected).isBetween(0.05, 0.95);
+		assertThat(actual).isCloseTo(expected, OFFSET);
+	}
+
+	@Test
+	public void noDrawsWithoutCandidates() {
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		SymmetricContactModel model = createModel(rnd, false);
+
+		// the relevance of the leaving person depends on a random number
+		Map<String, Restriction> restrictions = new HashMap<>(EpisimTestUtils.TEST_CONFIG.createInitialRestrictions());
+		restrictions.put("c10", Restriction.of(0.5));
+		model.setRestrictionsForIteration(1, restrictions);
+
+		// contagious person alone in the facility
+		leave(model, EpisimTestUtils.createFacility(1, "c10", 8, EpisimTestUtils.CONTAGIOUS), Duration.ofHours(10), "c10", new Random(0));
+
+		// contagious person leaves persons behind that can not be infected
+		InfectionEventHandler.EpisimFacility facility = EpisimTestUtils.createFacility(1, "c10", 8, EpisimTestUtils.CONTAGIOUS);
+		EpisimTestUtils.addPersons(facility, 3, "c10", p -> p.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.recovered));
+		EpisimTestUtils.addPersons(facility, 2, "c10", EpisimTestUtils.SYMPTOMS);
+
+		EpisimPerson contagious = facility.getPersons().get(0);
+		model.infectionDynamicsFacility(contagious, facility, Duration.ofHours(10).getSeconds(), "c10");
+		EpisimTestUtils.removePerson(facility, contagious);
+
+		assertThat(rnd.nextLong()).isEqualTo(new SplittableRandom(1).nextLong());
+
+		// with a susceptible person numbers are drawn
+		rnd = new SplittableRandom(1);
+		model.setRandom(rnd);
+
+		facility = EpisimTestUtils.createFacility(1, "c10", 8, EpisimTestUtils.CONTAGIOUS);
+		EpisimTestUtils.addPersons(facility, 1, "c10", p -> {
+		});
+
+		model.infectionDynamicsFacility(facility.getPersons().get(0), facility, Duration.ofHours(10).getSeconds(), "c10");
+
+		assertThat(rnd.nextLong()).isNotEqualTo(new SplittableRandom(1).nextLong());
+	}
+}
@@ -2,13 +2,12 @@ package org.matsim.episim.model;
 
 import org.junit.Before;
 import org.junit.Test;
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.EpisimTestUtils;
+import org.matsim.episim.PersonStateStore;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.SplittableRandom;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -26,20 +25,79 @@ public class VaccinationByAgeTest {
 	@Test
 	public void handleVaccination() {
 
-		Map<Id<Person>, EpisimPerson> persons = new HashMap<>();
+		PersonStateStore state = new PersonStateStore(100);
+		List<EpisimPerson> persons = new ArrayList<>();
 
 		for (int i = 0; i < 100; i++) {
-			EpisimPerson p = EpisimTestUtils.createPerson(false);
-			persons.put(p.getPersonId(), p);
+			persons.add(EpisimTestUtils.createPerson(state, 50, false));
 		}
 
 
 		for (int i = 0; i < 100; i++) {
-			model.handleVaccination(persons, false, 100, i, 86400 * i);
+			assertThat(model.handleVaccination(state.getVaccinationPool(false), 100, i, 86400 * i))
+					.isEqualTo(0);
 		}
 
-		assertThat(persons.values())
+		assertThat(persons)
+				.allMatch(p -> p.getVaccinationStatus() == EpisimPerson.VaccinationStatus.no)
 				.allMatch(p -> p.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.no);
 
 	}
+
+	@Test
+	public void oldestFirst() {
+
+		PersonStateStore state = new PersonStateStore(300);
+		List<EpisimPerson> persons = new ArrayList<>();
+
+		for (int i = 0; i < 300; i++) {
+			persons.add(EpisimTestUtils.createPerson(state, i % 100, true));
+		}
+
+		assertThat(model.handleVaccination(state.getVaccinationPool(false), 100, 0, 0))
+				.isEqualTo(100);
+
+		// all persons of age 99 to 67 and one of age 66
+		assertThat(persons.stream().filter(p -> p.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes))
+				.hasSize(100)
+				.allMatch(p -> p.getAge() >= 66)
+				.filteredOn(p -> p.getAge() == 66).hasSize(1);
+
+		assertThat(model.handleVaccination(state.getVaccinationPool(true), 10, 1, 86400))
+				.isEqualTo(10);
+
+		// doses left over after the oldest group are given to the next groups
+		assertThat(persons.stream().filter(p -> p.getReVaccinationStatus() == EpisimPerson.VaccinationStatus.yes))
+				.hasSize(10)
+				.allMatch(p -> p.getAge() >= 96)
+				.filteredOn(p -> p.getAge() == 96).hasSize(1);
+
+		assertThat(state.getVaccinationPool(false).size()).isEqualTo(200);
+		assertThat(state.getVaccinationPool(true).size()).isEqualTo(90);
+	}
+
+	@Test
+	public void distinctWithinGroup() {
+
+		PersonStateStore state = new PersonStateStore(1000);
+		List<EpisimPerson> persons = new ArrayList<>();
+
+		for (int i = 0; i < 1000; i++) {
+			persons.add(EpisimTestUtils.createPerson(state, 50, true));
+		}
+
+		for (int day = 0; day < 3; day++) {
+			assertThat(model.handleVaccination(state.getVaccinationPool(false), 300, day, 86400 * day))
+					.isEqualTo(300);
+
+			assertThat(persons.stream().filter(p -> p.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes))
+					.hasSize(300 * (day + 1));
+		}
+
+		// only the remaining persons are vaccinated
+		assertThat(model.handleVaccination(state.getVaccinationPool(false), 300, 3, 86400 * 3))
+				.isEqualTo(100);
+
+		assertThat(persons).allMatch(p -> p.getVaccinationStatus() == EpisimPerson.VaccinationStatus.yes);
+	}
 }
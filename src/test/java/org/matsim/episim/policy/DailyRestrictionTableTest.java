@@ -0,0 +1,52 @@
+package org.matsim.episim.policy;
+
+import org.junit.Test;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DailyRestrictionTableTest {
+
+	@Test
+	public void lookup() {
+
+		Restriction home = Restriction.none();
+		Restriction work = Restriction.of(0.5);
+
+		DailyRestrictionTable table = new DailyRestrictionTable(List.of("work", "home"), Map.of("home", home, "work", work));
+
+		assertThat(table.get(0)).isSameAs(work);
+		assertThat(table.get(1)).isSameAs(home);
+		assertThat(table.get("home")).isSameAs(home);
+		assertThat(table.getNumContainerTypes()).isEqualTo(2);
+		assertThat(table).containsOnlyKeys("home", "work");
+	}
+
+	@Test
+	public void activities() {
+
+		EpisimConfigGroup config = ConfigUtils.addOrGetModule(EpisimTestUtils.createTestConfig(), EpisimConfigGroup.class);
+		List<String> types = config.getContainerTypes();
+
+		Map<String, Restriction> restrictions = config.createInitialRestrictions();
+		restrictions.put("c10", Restriction.of(0.5));
+
+		DailyRestrictionTable table = new DailyRestrictionTable(types, restrictions);
+
+		EpisimPerson.Activity indexed = new EpisimPerson.Activity("c10", config.getInfectionParam("c10"), types.indexOf("c10"));
+		EpisimPerson.Activity named = new EpisimPerson.Activity("c10", config.getInfectionParam("c10"));
+
+		assertThat(table.get(indexed)).isSameAs(restrictions.get("c10"));
+		assertThat(table.get(named)).isSameAs(restrictions.get("c10"));
+
+		// without index all lookups use the name
+		assertThat(DailyRestrictionTable.of(restrictions).get(indexed)).isSameAs(restrictions.get("c10"));
+		assertThat(DailyRestrictionTable.of(table)).isSameAs(table);
+	}
+}
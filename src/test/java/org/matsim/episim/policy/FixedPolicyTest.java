@@ -52,6 +52,26 @@ public class FixedPolicyTest {
 
 	}
 
+	@Test
+	public void dayBeforeDate() {
+
+		FixedPolicy.ConfigBuilder config = FixedPolicy.config()
+				.restrict(3, Restriction.of(0.5), "work")
+				.restrict(LocalDate.of(2020, 3, 1), Restriction.of(0.8), "work", "home")
+				.restrict(LocalDate.of(2020, 3, 2), Restriction.of(0.6), "work");
+
+		FixedPolicy policy = new FixedPolicy(config.build());
+		policy.init(LocalDate.of(2020, 3, 3), r);
+
+		// pre-start dates are applied in order
+		assertThat(r.get("work").getRemainingFraction()).isEqualTo(0.6);
+
+		policy.updateRestrictions(EpisimTestUtils.createReport("2020-03-01", 3), r);
+
+		assertThat(r.get("work").getRemainingFraction()).isEqualTo(0.5);
+		assertThat(r.get("home").getRemainingFraction()).isEqualTo(0.8);
+	}
+
 	@Test
 	public void merge() {
 
@@ -0,0 +1,56 @@
+package org.matsim.episim.reporting;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.events.EpisimContactEvent;
+import org.matsim.episim.events.EpisimInfectionEvent;
+import org.matsim.episim.events.EpisimPersonStatusEvent;
+import org.matsim.episim.events.EpisimTracingEvent;
+import org.matsim.episim.model.VirusStrain;
+import org.matsim.facilities.ActivityFacility;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EpisimWriterTest {
+
+	/**
+	 * Writes the event using its attribute map.
+	 */
+	private static String fromAttributes(Event event, double correctedTime) {
+		StringBuilder out = new StringBuilder("\t<event ");
+		Map<String, String> attr = event.getAttributes();
+		if (correctedTime >= 0)
+			attr.put(Event.ATTRIBUTE_TIME, Double.toString(correctedTime));
+
+		attr.forEach((k, v) -> out.append(k).append("=\"").append(v).append("\" "));
+		return out.append(" />\n").toString();
+	}
+
+	@Test
+	public void sameAsAttributes() throws IOException {
+
+		Id<ActivityFacility> facility = Id.create("f1", ActivityFacility.class);
+
+		List<Event> events = List.of(
+				new EpisimInfectionEvent(100, Id.createPersonId("p1"), Id.createPersonId("p2"), facility, "work_work", 4, VirusStrain.B117, 0.25),
+				new EpisimContactEvent(200.5, Id.createPersonId("p1"), Id.createPersonId("p3"), facility, "leisure", 600, 3),
+				new EpisimPersonStatusEvent(300, Id.createPersonId("p1"), EpisimPerson.DiseaseStatus.contagious),
+				new EpisimPersonStatusEvent(300, Id.createPersonId("p1"), EpisimPerson.QuarantineStatus.atHome),
+				new EpisimTracingEvent(400, Id.createPersonId("p1"), Id.createPersonId("p2"))
+		);
+
+		for (Event event : events) {
+			for (double time : new double[]{-1, 86500}) {
+				StringBuilder out = new StringBuilder();
+				EpisimWriter.writeEvent(out, event, time);
+				assertThat(out.toString()).isEqualTo(fromAttributes(event, time));
+			}
+		}
+	}
+}
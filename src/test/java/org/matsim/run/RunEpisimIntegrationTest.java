@@ -85,6 +85,24 @@ public class RunEpisimIntegrationTest {
 		runner.run(it);
 	}
 
+	@Test
+	public void testSharedInit() {
+
+		ReplayHandler replay = Guice.createInjector(Modules.override(new EpisimModule()).with(new TestScenario(utils)))
+				.getInstance(ReplayHandler.class);
+
+		replay.setShareInit(true);
+
+		// first run creates the shared data, which is used by the second one
+		for (int i = 0; i < 2; i++) {
+			Injector injector = Guice.createInjector(Modules.override(new EpisimModule())
+					.with(new TestScenario(utils), binder -> binder.bind(ReplayHandler.class).toInstance(replay)));
+
+			injector.getInstance(EpisimRunner.class).run(it);
+			assertSimulationOutput(utils);
+		}
+	}
+
 	@Test
 	public void testTracing() throws IOException {
 
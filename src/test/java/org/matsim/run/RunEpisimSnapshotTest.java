@@ -12,6 +12,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.OutputDirectoryLogging;
+import org.matsim.episim.BranchSnapshot;
 import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimModule;
 import org.matsim.episim.EpisimRunner;
@@ -25,6 +26,7 @@ import java.nio.file.Files;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @RunWith(Parameterized.class)
 public class RunEpisimSnapshotTest {
@@ -98,6 +100,24 @@ public class RunEpisimSnapshotTest {
 		runner.run(30);
 
 		setup();
+		compareWithSnapshot();
+	}
+
+	@Test
+	public void compareBinarySnapshots() {
+
+		// snapshot at day 15 is a delta on top of day 10 and 5
+		episimConfig.setSnapshotInterval(5);
+		episimConfig.setSnapshotFormat(EpisimConfigGroup.SnapshotFormat.binary);
+		episimConfig.setSnapshotDeltas(2);
+		runner.run(30);
+
+		setup();
+		episimConfig.setSnapshotFormat(EpisimConfigGroup.SnapshotFormat.binary);
+		compareWithSnapshot();
+	}
+
+	private void compareWithSnapshot() {
 
 		String fromSnapshot = utils.getOutputDirectory().replace(utils.getMethodName(), "fromSnapshot");
 		episimConfig.setStartFromSnapshot(utils.getOutputDirectory() + snapshotName());
@@ -105,6 +125,68 @@ public class RunEpisimSnapshotTest {
 
 		runner.run(30);
 
+		compareOutput(fromSnapshot);
+	}
+
+	@Test
+	public void compareBranch() {
+
+		runner.run(30);
+
+		setup();
+		config.controler().setOutputDirectory(utils.getOutputDirectory().replace(utils.getMethodName(), "branch"));
+		BranchSnapshot branch = runner.branch(15);
+
+		setup();
+		String fromBranch = utils.getOutputDirectory().replace(utils.getMethodName(), "fromBranch");
+		config.controler().setOutputDirectory(fromBranch);
+		runner.run(30, branch);
+
+		compareOutput(fromBranch);
+	}
+
+	@Test
+	public void branchWithDifferentHistory() {
+
+		config.controler().setOutputDirectory(utils.getOutputDirectory().replace(utils.getMethodName(), "branch"));
+		BranchSnapshot branch = runner.branch(15);
+
+		// changes from the branch day on are allowed
+		setup();
+		episimConfig.setPolicyConfig(FixedPolicy.config()
+				.shutdown(1, "freight")
+				.restrict(6, 0.2, "leisure", "edu", "business")
+				.restrict(6, 0.2, "work", "other")
+				.restrict(6, 0.3, "shop", "errands")
+				.restrict(15, 0.5, "leisure")
+				.build()
+		);
+
+		branch.checkHistory(config);
+
+		setup();
+		episimConfig.setPolicyConfig(FixedPolicy.config()
+				.shutdown(1, "freight")
+				.restrict(6, 0.2, "leisure", "edu", "business")
+				.restrict(6, 0.2, "work", "other")
+				.restrict(6, 0.3, "shop", "errands")
+				.restrict(14, 0.5, "leisure")
+				.build()
+		);
+
+		assertThatThrownBy(() -> runner.run(30, branch))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("branch day 15");
+
+		setup();
+		episimConfig.setCalibrationParameter(episimConfig.getCalibrationParameter() * 2);
+
+		assertThatThrownBy(() -> branch.checkHistory(config))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	private void compareOutput(String fromSnapshot) {
+
 		for (File file : Objects.requireNonNull(new File(utils.getOutputDirectory()).listFiles())) {
 
 			// check event files